@@ -0,0 +1,137 @@
+package io.hoplin.benchmarks;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Envelope;
+import io.hoplin.DefaultQueueConsumer;
+import io.hoplin.QueueOptions;
+import io.hoplin.Reply;
+import io.hoplin.json.JsonMessagePayloadCodec;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Consumes 100k messages on four handler threads and counts the {@code basic.ack} frames written
+ * to the channel, per message acknowledgements against coalesced ones. The {@code ackFrames}
+ * counter holds the frames of one invocation per iteration, JMH reports the sum over the
+ * measurement iterations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AckCoalescingBenchmark {
+
+  private static final int MESSAGES = 100_000;
+
+  private static final Channel STUB = StubChannel.create();
+
+  @Param({"1", "64"})
+  private int ackBatchSize;
+
+  private ExecutorService executor;
+
+  private AckCountingChannel acks;
+
+  private DefaultQueueConsumer consumer;
+
+  private AMQP.BasicProperties properties;
+
+  private byte[] body;
+
+  @Setup
+  public void setup() {
+    executor = Executors.newFixedThreadPool(4);
+    properties = new AMQP.BasicProperties.Builder().build();
+    body = JsonMessagePayloadCodec
+        .serializeWithDefaults(new BenchmarkMessage(1, "benchmark message", 42.5));
+  }
+
+  @Setup(Level.Invocation)
+  public void setupInvocation() {
+    acks = new AckCountingChannel();
+    final QueueOptions options = QueueOptions.of(false)
+        .setConcurrency(4)
+        .setAckBatchSize(ackBatchSize)
+        .setAckFlushInterval(1);
+    consumer = new DefaultQueueConsumer("benchmark", acks.channel, options, executor);
+    consumer.addHandler(BenchmarkMessage.class, (msg, context) -> Reply.withEmpty());
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public void consume(final Frames frames) {
+    for (long tag = 1; tag <= MESSAGES; ++tag) {
+      consumer.handleDelivery("benchmark-tag", new Envelope(tag, false, "benchmark.exchange",
+          "benchmark"), properties, body);
+    }
+    while (!acks.isSettled(MESSAGES)) {
+      LockSupport.parkNanos(10_000);
+    }
+    // every invocation consumes the same messages, the last one stands for the iteration
+    frames.ackFrames = acks.frames.get();
+  }
+
+  /**
+   * Ack frames written for 100k messages
+   */
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Frames {
+
+    public long ackFrames;
+  }
+
+  private static final class AckCountingChannel {
+
+    private final AtomicLong frames = new AtomicLong();
+
+    // highest tag acknowledged with multiple set
+    private final AtomicLong multiple = new AtomicLong();
+
+    private final AtomicLong single = new AtomicLong();
+
+    private final Channel channel = (Channel) Proxy.newProxyInstance(
+        AckCountingChannel.class.getClassLoader(), new Class<?>[]{Channel.class},
+        (proxy, method, args) -> {
+          if ("basicAck".equals(method.getName())) {
+            frames.incrementAndGet();
+            if ((Boolean) args[1]) {
+              multiple.accumulateAndGet((Long) args[0], Math::max);
+            } else {
+              single.incrementAndGet();
+            }
+            return null;
+          }
+          return method.invoke(STUB, args);
+        });
+
+    private boolean isSettled(final long messages) {
+      return multiple.get() == messages || single.get() == messages;
+    }
+  }
+}
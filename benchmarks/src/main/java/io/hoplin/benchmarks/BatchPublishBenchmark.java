@@ -0,0 +1,155 @@
+package io.hoplin.benchmarks;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
+import io.hoplin.BatchPublishResult;
+import io.hoplin.ChannelPool;
+import io.hoplin.ConnectionProvider;
+import io.hoplin.PublisherConfirms;
+import io.hoplin.Publisher;
+import io.hoplin.metrics.ChannelPoolMetrics;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Publishing a batch of messages one blocking publish at a time against a single batch publish.
+ * Stub channels ack every message as soon as it is written, so only client side cost is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchPublishBenchmark {
+
+  private static final Map<String, Object> HEADERS = Collections.emptyMap();
+
+  @Param({"1000"})
+  private int batchSize;
+
+  private ExecutorService executor;
+
+  private Publisher publisher;
+
+  private ConnectionProvider provider;
+
+  private Channel channel;
+
+  private List<BenchmarkMessage> messages;
+
+  @Setup
+  public void setup() {
+    executor = Executors.newFixedThreadPool(2);
+    publisher = new Publisher(executor);
+    channel = StubChannel.create();
+    provider = new PooledProvider(new ChannelPool(8, 1000, StubChannel::createConfirming,
+        new ChannelPoolMetrics.DefaultChannelPoolMetrics(), true));
+
+    messages = new ArrayList<>(batchSize);
+    for (int i = 0; i < batchSize; ++i) {
+      messages.add(new BenchmarkMessage(i, "message " + i, i * 1.5));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public void perMessage() {
+    for (final BenchmarkMessage message : messages) {
+      publisher.basicPublish(channel, "exchange", "key", message, HEADERS);
+    }
+  }
+
+  @Benchmark
+  public void perMessageConfirmed() {
+    for (final BenchmarkMessage message : messages) {
+      publisher.basicPublishConfirmAsync(provider, "exchange", "key", message, HEADERS).join();
+    }
+  }
+
+  @Benchmark
+  public BatchPublishResult batch() {
+    return publisher.basicPublishBatchAsync(provider, "exchange", "key", messages, HEADERS)
+        .join();
+  }
+
+  private static final class PooledProvider implements ConnectionProvider {
+
+    private final ChannelPool pool;
+
+    private PooledProvider(final ChannelPool pool) {
+      this.pool = pool;
+    }
+
+    @Override
+    public Channel acquire() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Channel lease() {
+      return pool.lease();
+    }
+
+    @Override
+    public void release(final Channel channel) {
+      pool.release(channel);
+    }
+
+    @Override
+    public PublisherConfirms confirms(final Channel channel) {
+      return pool.getConfirms(channel);
+    }
+
+    @Override
+    public boolean isConnected() {
+      return true;
+    }
+
+    @Override
+    public boolean isOpenChannel() {
+      return true;
+    }
+
+    @Override
+    public boolean isAvailable() {
+      return true;
+    }
+
+    @Override
+    public void disconnect() {
+      pool.close();
+    }
+
+    @Override
+    public boolean connect() {
+      return true;
+    }
+
+    @Override
+    public void shutdownCompleted(final ShutdownSignalException cause) {
+      // NOOP
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package io.hoplin.benchmarks;
+
+/**
+ * Message used across the benchmarks
+ */
+public class BenchmarkMessage {
+
+  private long id;
+
+  private String msg;
+
+  private double value;
+
+  public BenchmarkMessage() {
+    // serialization
+  }
+
+  public BenchmarkMessage(final long id, final String msg, final double value) {
+    this.id = id;
+    this.msg = msg;
+    this.value = value;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getMsg() {
+    return msg;
+  }
+
+  public double getValue() {
+    return value;
+  }
+}
@@ -0,0 +1,59 @@
+package io.hoplin.benchmarks;
+
+import io.hoplin.Publisher;
+import java.io.IOException;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. Accepts the regular JMH command line and, unless a result
+ * format is given, writes the results as JSON to {@code hoplin-<version>.json} so runs of different
+ * releases can be compared.
+ *
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar [regexp] [JMH options]
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+  private BenchmarkRunner() {
+  }
+
+  public static void main(final String[] args) throws RunnerException, IOException {
+    final CommandLineOptions cmd;
+    try {
+      cmd = new CommandLineOptions(args);
+    } catch (final CommandLineOptionException e) {
+      System.err.println("Error parsing command line: " + e.getMessage());
+      System.exit(1);
+      return;
+    }
+
+    if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListProfilers()
+        || cmd.shouldListResultFormats() || cmd.shouldListWithParams()) {
+      // listing and help are handled by the stock launcher
+      org.openjdk.jmh.Main.main(args);
+      return;
+    }
+
+    final ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+    if (!cmd.getResultFormat().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON);
+    }
+    if (!cmd.getResult().hasValue()) {
+      options.result(resultFile(cmd.getResultFormat().orElse(ResultFormatType.JSON)));
+    }
+    new Runner(options.build()).run();
+  }
+
+  private static String resultFile(final ResultFormatType format) {
+    final String version = Publisher.class.getPackage().getImplementationVersion();
+    return "hoplin-" + (version == null ? "snapshot" : version) + "."
+        + format.name().toLowerCase();
+  }
+}
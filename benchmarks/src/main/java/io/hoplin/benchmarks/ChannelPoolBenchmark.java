@@ -0,0 +1,67 @@
+package io.hoplin.benchmarks;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Channel;
+import io.hoplin.ChannelPool;
+import io.hoplin.metrics.ChannelPoolMetrics;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Concurrent publishing on one shared channel against channels leased from {@link ChannelPool}.
+ * Stub channels hold a per channel lock while publishing to model the channel frame lock.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ChannelPoolBenchmark {
+
+  private static final BasicProperties PROPS = new BasicProperties.Builder().build();
+
+  private static final byte[] BODY = new byte[256];
+
+  @Param({"100"})
+  private long publishTokens;
+
+  private Channel shared;
+
+  private ChannelPool pool;
+
+  @Setup
+  public void setup() {
+    shared = StubChannel.create(publishTokens);
+    pool = new ChannelPool(64, 1000, () -> StubChannel.create(publishTokens),
+        new ChannelPoolMetrics.DefaultChannelPoolMetrics());
+  }
+
+  @Benchmark
+  public void sharedChannel() throws IOException {
+    shared.basicPublish("exchange", "key", PROPS, BODY);
+  }
+
+  @Benchmark
+  public void pooledChannel() throws IOException {
+    final Channel channel = pool.lease();
+    try {
+      channel.basicPublish("exchange", "key", PROPS, BODY);
+    } finally {
+      pool.release(channel);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package io.hoplin.benchmarks;
+
+import io.hoplin.MessagePayload;
+import io.hoplin.json.Codec;
+import io.hoplin.json.CodecFactory;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares encode and decode cost of the JSON and CBOR codecs. The encoded sizes of the message are
+ * listed in the benchmarks section of the README.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+  @Param({"json", "cbor"})
+  private String format;
+
+  private Codec codec;
+
+  private BenchmarkMessage message;
+
+  private byte[] body;
+
+  @Setup
+  public void setup() {
+    final CodecFactory factory = "cbor".equals(format) ? CodecFactory.cbor() : CodecFactory.json();
+    codec = factory.create(Collections.singleton(BenchmarkMessage.class));
+    message = new BenchmarkMessage(1234567890L, "order-created", 42.5);
+    body = codec.serialize(new MessagePayload<>(message));
+  }
+
+  @Benchmark
+  public byte[] encode() {
+    return codec.serialize(new MessagePayload<>(message));
+  }
+
+  @Benchmark
+  public MessagePayload decode() {
+    return codec.deserialize(body, MessagePayload.class);
+  }
+}
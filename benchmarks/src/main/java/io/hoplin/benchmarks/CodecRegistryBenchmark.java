@@ -0,0 +1,60 @@
+package io.hoplin.benchmarks;
+
+import io.hoplin.MessagePayload;
+import io.hoplin.json.CodecRegistry;
+import io.hoplin.json.JsonMessagePayloadCodec;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares building a codec for every delivery against the consumer scoped {@link CodecRegistry}.
+ * Run with {@code -prof gc} to see the per delivery allocation rate.
+ *
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar CodecRegistryBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecRegistryBenchmark {
+
+  private Set<Class<?>> handlerClasses;
+
+  private CodecRegistry registry;
+
+  private byte[] body;
+
+  @Setup
+  public void setup() {
+    handlerClasses = Collections.singleton(BenchmarkMessage.class);
+    registry = CodecRegistry.empty().withHandlerClasses(handlerClasses);
+    body = JsonMessagePayloadCodec
+        .serializeWithDefaults(new BenchmarkMessage(1, "benchmark message", 42.5));
+  }
+
+  @Benchmark
+  public MessagePayload codecPerDelivery() {
+    final JsonMessagePayloadCodec codec = new JsonMessagePayloadCodec(handlerClasses);
+    return codec.deserialize(body, MessagePayload.class);
+  }
+
+  @Benchmark
+  public MessagePayload codecFromRegistry() {
+    return registry.getCodec().deserialize(body, MessagePayload.class);
+  }
+}
@@ -0,0 +1,42 @@
+package io.hoplin.benchmarks;
+
+import io.hoplin.MessageIdGenerator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Message id generation by several threads at once, random UUIDs contend on the lock of the shared
+ * {@link java.security.SecureRandom} while sequential ids only touch a counter once per block.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class MessageIdBenchmark {
+
+  private final MessageIdGenerator random = MessageIdGenerator.random();
+
+  private final MessageIdGenerator sequential = MessageIdGenerator.sequential();
+
+  @Benchmark
+  public String random() {
+    return random.nextId();
+  }
+
+  @Benchmark
+  public String sequential() {
+    return sequential.nextId();
+  }
+}
@@ -0,0 +1,67 @@
+package io.hoplin.benchmarks;
+
+import io.hoplin.MessagePayload;
+import io.hoplin.json.JsonMessagePayloadCodec;
+import io.hoplin.json.JsonMessagePayloadCodec.DecodeMode;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link DecodeMode#TREE} and {@link DecodeMode#STREAMING} decoding of {@link
+ * MessagePayload} for wrapped and native messages of different sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayloadDecodeBenchmark {
+
+  @Param({"200", "4096", "262144"})
+  private int size;
+
+  @Param({"TREE", "STREAMING"})
+  private DecodeMode mode;
+
+  @Param({"true", "false"})
+  private boolean wrapped;
+
+  private JsonMessagePayloadCodec codec;
+
+  private byte[] body;
+
+  @Setup
+  public void setup() {
+    codec = new JsonMessagePayloadCodec(Collections.singleton(BenchmarkMessage.class), builder -> {
+    }, mode);
+
+    // size the message text so that the encoded body is close to the requested size
+    final BenchmarkMessage empty = new BenchmarkMessage(1, "", 42.5);
+    final int overhead = encode(empty).length;
+    final char[] text = new char[Math.max(0, size - overhead)];
+    Arrays.fill(text, 'x');
+    body = encode(new BenchmarkMessage(1, new String(text), 42.5));
+  }
+
+  private byte[] encode(final BenchmarkMessage msg) {
+    return wrapped ? codec.serialize(new MessagePayload<>(msg)) : codec.serialize(msg);
+  }
+
+  @Benchmark
+  public MessagePayload decode() {
+    return codec.deserialize(body, MessagePayload.class);
+  }
+}
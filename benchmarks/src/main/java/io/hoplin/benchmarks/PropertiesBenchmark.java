@@ -0,0 +1,59 @@
+package io.hoplin.benchmarks;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import io.hoplin.PropertiesTemplate;
+import io.hoplin.Publisher;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building message properties through {@link BasicProperties.Builder} against deriving them from a
+ * {@link PropertiesTemplate}, and the default properties of {@link Publisher} that include
+ * generating a message id.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PropertiesBenchmark {
+
+  private static final Map<String, Object> HEADERS = Collections.singletonMap("key", "value");
+
+  private final PropertiesTemplate template = PropertiesTemplate.persistent()
+      .withContentType("application/json");
+
+  private final Publisher publisher = new Publisher(Runnable::run);
+
+  @Benchmark
+  public BasicProperties builder() {
+    return new BasicProperties.Builder()
+        .contentType("application/json")
+        .contentEncoding("UTF-8")
+        .messageId("message-id")
+        .deliveryMode(2)
+        .headers(HEADERS)
+        .build();
+  }
+
+  @Benchmark
+  public BasicProperties template() {
+    return template.derive("message-id", null, HEADERS);
+  }
+
+  @Benchmark
+  public BasicProperties publisherDefaults() {
+    return publisher.createBasisProperties(HEADERS);
+  }
+}
@@ -0,0 +1,65 @@
+package io.hoplin.benchmarks;
+
+import com.rabbitmq.client.Channel;
+import io.hoplin.Publisher;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency distribution of a single blocking publish written on the calling thread against the
+ * same publish handed to the executor and waited for. Sample mode reports p50 and p99.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PublishLatencyBenchmark {
+
+  private static final Map<String, Object> HEADERS = Collections.emptyMap();
+
+  private static final BenchmarkMessage MESSAGE = new BenchmarkMessage(1, "message", 1.5);
+
+  private ExecutorService executor;
+
+  private Publisher publisher;
+
+  private Channel channel;
+
+  @Setup
+  public void setup() {
+    executor = Executors.newFixedThreadPool(2);
+    publisher = new Publisher(executor);
+    channel = StubChannel.create();
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public void direct() {
+    publisher.basicPublish(channel, "exchange", "key", MESSAGE, HEADERS);
+  }
+
+  @Benchmark
+  public void async() {
+    publisher.basicPublishAsync(channel, "exchange", "key", MESSAGE, HEADERS).join();
+  }
+}
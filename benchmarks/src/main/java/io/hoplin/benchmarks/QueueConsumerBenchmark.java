@@ -0,0 +1,57 @@
+package io.hoplin.benchmarks;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Envelope;
+import io.hoplin.DefaultQueueConsumer;
+import io.hoplin.QueueOptions;
+import io.hoplin.Reply;
+import io.hoplin.json.JsonMessagePayloadCodec;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link DefaultQueueConsumer#handleDelivery} against a {@link StubChannel}. Handlers run
+ * on the calling thread so that only the dispatch path is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueueConsumerBenchmark {
+
+  private DefaultQueueConsumer consumer;
+
+  private Envelope envelope;
+
+  private AMQP.BasicProperties properties;
+
+  private byte[] body;
+
+  @Setup
+  public void setup() {
+    consumer = new DefaultQueueConsumer("benchmark", StubChannel.create(), QueueOptions.of(true),
+        Runnable::run);
+    consumer.addHandler(BenchmarkMessage.class, (msg, context) -> Reply.withEmpty());
+
+    envelope = new Envelope(1, false, "benchmark.exchange", "benchmark");
+    properties = new AMQP.BasicProperties.Builder().build();
+    body = JsonMessagePayloadCodec
+        .serializeWithDefaults(new BenchmarkMessage(1, "benchmark message", 42.5));
+  }
+
+  @Benchmark
+  public void handleDelivery() {
+    consumer.handleDelivery("benchmark-tag", envelope, properties, body);
+  }
+}
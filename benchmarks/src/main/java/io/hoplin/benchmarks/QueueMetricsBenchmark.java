@@ -0,0 +1,47 @@
+package io.hoplin.benchmarks;
+
+import io.hoplin.metrics.QueueMetrics;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Contention on a single {@link QueueMetrics} instance updated by every publishing and consuming
+ * thread, and the cost of looking the instance up on each publish.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueueMetricsBenchmark {
+
+  private final QueueMetrics metrics = QueueMetrics.Factory
+      .getInstance("benchmark.exchange", "benchmark");
+
+  @Benchmark
+  public void markSent() {
+    metrics.markMessageSent();
+    metrics.incrementSend(256);
+  }
+
+  @Benchmark
+  public void recordLatency() {
+    metrics.getHandlerLatency().record(12_345);
+  }
+
+  @Benchmark
+  public QueueMetrics lookup() {
+    return QueueMetrics.Factory.getInstance("benchmark.exchange", "benchmark");
+  }
+}
@@ -0,0 +1,65 @@
+package io.hoplin.benchmarks;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Envelope;
+import io.hoplin.MessageIdGenerator;
+import io.hoplin.MessagePayload;
+import io.hoplin.json.JsonMessagePayloadCodec;
+import io.hoplin.metrics.QueueMetrics;
+import io.hoplin.rpc.RpcCallerConsumer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reply side of an RPC call, a request is bound to its correlation id and the reply is looked up,
+ * decoded and completes the caller's future. Replies are completed on the calling thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RpcCorrelationBenchmark {
+
+  private final MessageIdGenerator idGenerator = MessageIdGenerator.sequential();
+
+  private RpcCallerConsumer consumer;
+
+  private Envelope envelope;
+
+  private byte[] body;
+
+  @Setup
+  public void setup() {
+    consumer = new RpcCallerConsumer(StubChannel.create(),
+        QueueMetrics.Factory.getInstance("benchmark-rpc"), Runnable::run);
+    envelope = new Envelope(1, false, "", "benchmark-reply");
+    body = JsonMessagePayloadCodec
+        .serializeWithDefaults(new MessagePayload<>(new BenchmarkMessage(1, "reply", 42.5)));
+  }
+
+  @Benchmark
+  public Object bindAndReply() {
+    final String correlationId = idGenerator.nextId();
+    final CompletableFuture<Object> promise = new CompletableFuture<>();
+    consumer.bind(correlationId, promise);
+
+    final AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+        .correlationId(correlationId)
+        .contentType("application/json")
+        .build();
+    consumer.handleDelivery("benchmark-tag", envelope, properties, body);
+    return promise.join();
+  }
+}
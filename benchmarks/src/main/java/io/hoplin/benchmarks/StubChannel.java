@@ -0,0 +1,132 @@
+package io.hoplin.benchmarks;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link Channel} that does not talk to a broker, every operation is a NOOP that returns the
+ * default value for its return type. Useful for measuring client side overhead only.
+ */
+public final class StubChannel implements InvocationHandler {
+
+  private final long publishTokens;
+
+  private final boolean confirming;
+
+  private final AtomicLong nextSeqNo = new AtomicLong(1);
+
+  private volatile ConfirmListener confirmListener;
+
+  private StubChannel(final long publishTokens, final boolean confirming) {
+    this.publishTokens = publishTokens;
+    this.confirming = confirming;
+  }
+
+  /**
+   * Create new stub channel
+   *
+   * @return {@link Channel} that swallows all operations
+   */
+  public static Channel create() {
+    return create(0);
+  }
+
+  /**
+   * Create new stub channel where {@code basicPublish} burns CPU while holding a per channel lock,
+   * like the frame lock of a real channel
+   *
+   * @param publishTokens amount of work per publish, see {@link Blackhole#consumeCPU(long)}
+   * @return {@link Channel} that swallows all operations
+   */
+  public static Channel create(final long publishTokens) {
+    return (Channel) Proxy.newProxyInstance(StubChannel.class.getClassLoader(),
+        new Class<?>[]{Channel.class}, new StubChannel(publishTokens, false));
+  }
+
+  /**
+   * Create new stub channel that acks every publish immediately once a {@link ConfirmListener} has
+   * been added
+   *
+   * @return {@link Channel} that confirms all publishes
+   */
+  public static Channel createConfirming() {
+    return (Channel) Proxy.newProxyInstance(StubChannel.class.getClassLoader(),
+        new Class<?>[]{Channel.class}, new StubChannel(0, true));
+  }
+
+  @Override
+  public Object invoke(final Object proxy, final Method method, final Object[] args)
+      throws IOException {
+    final String name = method.getName();
+    if (confirming) {
+      if ("getNextPublishSeqNo".equals(name)) {
+        return nextSeqNo.get();
+      }
+      if ("addConfirmListener".equals(name) && args[0] instanceof ConfirmListener) {
+        confirmListener = (ConfirmListener) args[0];
+        return args[0];
+      }
+      if ("basicPublish".equals(name)) {
+        final long seqNo = nextSeqNo.getAndIncrement();
+        final ConfirmListener listener = confirmListener;
+        if (listener != null) {
+          listener.handleAck(seqNo, false);
+        }
+        return null;
+      }
+    }
+    if (publishTokens > 0 && "basicPublish".equals(name)) {
+      synchronized (this) {
+        Blackhole.consumeCPU(publishTokens);
+      }
+      return null;
+    }
+    if ("isOpen".equals(name)) {
+      return true;
+    }
+    if ("hashCode".equals(name)) {
+      return System.identityHashCode(proxy);
+    }
+    if ("equals".equals(name)) {
+      return proxy == args[0];
+    }
+    if ("toString".equals(name)) {
+      return "StubChannel";
+    }
+    return defaultValue(method.getReturnType());
+  }
+
+  private static Object defaultValue(final Class<?> type) {
+    if (!type.isPrimitive() || type == void.class) {
+      return null;
+    }
+    if (type == boolean.class) {
+      return false;
+    }
+    if (type == long.class) {
+      return 0L;
+    }
+    if (type == double.class) {
+      return 0D;
+    }
+    if (type == float.class) {
+      return 0F;
+    }
+    if (type == char.class) {
+      return '\0';
+    }
+    if (type == byte.class) {
+      return (byte) 0;
+    }
+    if (type == short.class) {
+      return (short) 0;
+    }
+    return 0;
+  }
+}
@@ -7,8 +7,10 @@ import com.google.common.base.Strings;
 import com.rabbitmq.client.AMQP;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
@@ -303,8 +305,21 @@ abstract class AbstractExchangeClient implements ExchangeClient {
 
   public <T> void _publish(final T message, final String routingKey,
       final Consumer<MessageConfiguration> cfg) {
+    final MessageConfiguration conf = configure(routingKey, cfg);
+    client.basicPublish(binding.getExchange(), routingKey, wrap(message, conf), conf.getHeaders(),
+        conf.getTemplate());
+  }
+
+  /**
+   * Apply message configuration
+   *
+   * @param routingKey the routing key to associate the message with
+   * @param cfg        the configurations associated with the message
+   * @return the applied configuration
+   */
+  private MessageConfiguration configure(final String routingKey,
+      final Consumer<MessageConfiguration> cfg) {
 
-    Objects.requireNonNull(message);
     Objects.requireNonNull(routingKey);
     Objects.requireNonNull(cfg);
 
@@ -315,18 +330,28 @@ abstract class AbstractExchangeClient implements ExchangeClient {
     });
 
     composite.accept(conf);
-    Object val;
+    return conf;
+  }
+
+  /**
+   * Wrap the message when the native format is not requested
+   *
+   * @param message the message to publish
+   * @param conf    the applied configuration
+   * @param <T>     the type of the message to publish
+   * @return the value to publish
+   */
+  private <T> Object wrap(final T message, final MessageConfiguration conf) {
+    Objects.requireNonNull(message);
 
     if (conf.isNativeMessageFormat()) {
-      val = message;
-    } else {
-      // Wrap our message original message
-      final MessagePayload<T> payload = new MessagePayload<>(message);
-      payload.setType(message.getClass());
-      val = payload;
+      return message;
     }
 
-    client.basicPublish(binding.getExchange(), routingKey, val);
+    // Wrap our message original message
+    final MessagePayload<T> payload = new MessagePayload<>(message);
+    payload.setType(message.getClass());
+    return payload;
   }
 
   @Override
@@ -348,18 +373,30 @@ abstract class AbstractExchangeClient implements ExchangeClient {
   @Override
   public <T> CompletableFuture<Void> publishAsync(final T message, final String routingKey,
       final Consumer<MessageConfiguration> cfg) {
-    Objects.requireNonNull(message);
-    Objects.requireNonNull(routingKey);
-    Objects.requireNonNull(cfg);
+    final MessageConfiguration conf = configure(routingKey, cfg);
+    return client.basicPublishAsync(binding.getExchange(), routingKey, wrap(message, conf),
+        conf.getHeaders(), conf.getTemplate());
+  }
 
-    // FIXME : This is broken
-    final CompletableFuture<Void> promise = new CompletableFuture<>();
-    // Wrap our message original message
-    final MessagePayload<T> payload = new MessagePayload<>(message);
-    payload.setType(message.getClass());
-    client.basicPublish(binding.getExchange(), "", payload);
+  @Override
+  public <T> CompletableFuture<BatchPublishResult> publishBatch(final Iterable<T> messages,
+      final String routingKey) {
+    return publishBatch(messages, routingKey, createDefaultConfiguration());
+  }
 
-    return promise;
+  @Override
+  public <T> CompletableFuture<BatchPublishResult> publishBatch(final Iterable<T> messages,
+      final String routingKey, final Consumer<MessageConfiguration> cfg) {
+    Objects.requireNonNull(messages);
+
+    // messages of a batch share their configuration
+    final MessageConfiguration conf = configure(routingKey, cfg);
+    final List<Object> batch = new ArrayList<>();
+    for (final T message : messages) {
+      batch.add(wrap(message, conf));
+    }
+    return client.basicPublishBatchAsync(binding.getExchange(), routingKey, batch,
+        conf.getHeaders(), conf.getTemplate());
   }
 
   @Override
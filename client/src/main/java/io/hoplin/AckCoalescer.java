@@ -0,0 +1,176 @@
+package io.hoplin;
+
+import com.rabbitmq.client.Channel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces acknowledgements of a consumer into a single {@code basic.ack} with {@code multiple}
+ * set, instead of one frame per message.
+ * <p>
+ * Delivery tags are tracked in delivery order. A completed tag is only acknowledged once every tag
+ * delivered before it has completed too, so messages finishing out of order never acknowledge a
+ * message still being processed. The contiguous acknowledgements are sent when
+ * {@code batchSize} of them are pending or {@code flushInterval} after the first one completed.
+ * </p>
+ * <p>
+ * Nacks, rejects and other strategies are sent right away and only end the tracking of their tag,
+ * a later multiple ack never covers them since the broker already settled them. The channel must
+ * not carry deliveries of other manually acknowledging consumers.
+ * </p>
+ */
+final class AckCoalescer {
+
+  private static final Logger log = LoggerFactory.getLogger(AckCoalescer.class);
+
+  private static final AckStrategy BASIC_ACK = AcknowledgmentStrategies.BASIC_ACK.strategy();
+
+  private enum State {
+    PENDING, ACKED, SETTLED
+  }
+
+  private final Channel channel;
+
+  private final int batchSize;
+
+  private final long flushInterval;
+
+  private volatile ExecutorRegistry executors;
+
+  // fields below are guarded by this
+  // delivery tag -> state in delivery order
+  private final Map<Long, State> tags = new LinkedHashMap<>();
+
+  // highest tag of the contiguous completed prefix that needs an ack
+  private long ackTag;
+
+  private int pending;
+
+  private boolean flushScheduled;
+
+  /**
+   * Create new coalescer
+   *
+   * @param channel       the channel the deliveries were received on
+   * @param batchSize     the number of pending acknowledgements sent as one frame
+   * @param flushInterval the maximum time in milliseconds an acknowledgement is held back
+   * @param executors     the registry providing the scheduler for time based flushes
+   */
+  AckCoalescer(final Channel channel, final int batchSize, final long flushInterval,
+      final ExecutorRegistry executors) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("batchSize should be greater than 0 : " + batchSize);
+    }
+    if (flushInterval <= 0) {
+      throw new IllegalArgumentException(
+          "flushInterval should be greater than 0 : " + flushInterval);
+    }
+    this.channel = Objects.requireNonNull(channel);
+    this.batchSize = batchSize;
+    this.flushInterval = flushInterval;
+    this.executors = Objects.requireNonNull(executors);
+  }
+
+  void setExecutors(final ExecutorRegistry executors) {
+    this.executors = Objects.requireNonNull(executors);
+  }
+
+  /**
+   * Track delivery, must be called in delivery order before the message is processed
+   *
+   * @param deliveryTag the delivery tag
+   */
+  synchronized void delivered(final long deliveryTag) {
+    tags.put(deliveryTag, State.PENDING);
+  }
+
+  /**
+   * Complete delivery with the given strategy
+   *
+   * @param deliveryTag the delivery tag
+   * @param ack         the strategy, {@link AcknowledgmentStrategies#BASIC_ACK} is coalesced
+   * @throws Exception when the strategy failed to settle the delivery
+   */
+  synchronized void complete(final long deliveryTag, final AckStrategy ack) throws Exception {
+    if (tags.get(deliveryTag) != State.PENDING) {
+      // tracking was reset by a channel shutdown, the broker requeues the delivery
+      if (ack != BASIC_ACK) {
+        ack.accept(channel, deliveryTag);
+      }
+      return;
+    }
+
+    if (ack == BASIC_ACK) {
+      tags.put(deliveryTag, State.ACKED);
+    } else {
+      // sent before the tag can be covered by a multiple ack
+      ack.accept(channel, deliveryTag);
+      tags.put(deliveryTag, State.SETTLED);
+    }
+
+    final Iterator<Map.Entry<Long, State>> it = tags.entrySet().iterator();
+    while (it.hasNext()) {
+      final Map.Entry<Long, State> entry = it.next();
+      if (entry.getValue() == State.PENDING) {
+        break;
+      }
+      if (entry.getValue() == State.ACKED) {
+        ackTag = entry.getKey();
+        ++pending;
+      }
+      it.remove();
+    }
+
+    if (pending >= batchSize) {
+      send();
+    } else if (pending > 0 && !flushScheduled) {
+      schedule();
+    }
+  }
+
+  /**
+   * Send pending acknowledgements now
+   */
+  synchronized void flush() {
+    flushScheduled = false;
+    if (pending > 0) {
+      send();
+    }
+  }
+
+  /**
+   * Forget tracked deliveries after the channel shut down, their tags are not valid anymore
+   */
+  synchronized void reset() {
+    tags.clear();
+    pending = 0;
+    ackTag = 0;
+  }
+
+  private void send() {
+    final long tag = ackTag;
+    pending = 0;
+    ackTag = 0;
+    try {
+      channel.basicAck(tag, true);
+    } catch (final Exception e) {
+      log.error("Unable to ACK delivery tags up to : " + tag, e);
+    }
+  }
+
+  private void schedule() {
+    try {
+      executors.scheduler().schedule(this::flush, flushInterval, TimeUnit.MILLISECONDS);
+      flushScheduled = true;
+    } catch (final RejectedExecutionException e) {
+      // registry released, nothing left to flush later
+      send();
+    }
+  }
+}
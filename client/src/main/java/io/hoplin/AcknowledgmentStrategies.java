@@ -11,62 +11,45 @@ public enum AcknowledgmentStrategies {
   /**
    * NOOP strategy, should be used with AutoAck
    */
-  NOOP {
-    @Override
-    public AckStrategy strategy() {
-      return (channel, tag) -> {
-      };
-    }
-  },
+  NOOP((channel, tag) -> {
+  }),
 
   /**
    * Acknowledge one received messages.
    *
    * @see com.rabbitmq.client.AMQP.Basic.Ack
    */
-  BASIC_ACK {
-    @Override
-    public AckStrategy strategy() {
-      return (channel, tag) -> channel.basicAck(tag, false);
-    }
-  },
+  BASIC_ACK((channel, tag) -> channel.basicAck(tag, false)),
 
   /**
    * Reject one received messages with requeue.
    *
    * @see com.rabbitmq.client.AMQP.Basic.Nack
    */
-  NACK_WITH_REQUEUE {
-    @Override
-    public AckStrategy strategy() {
-      return (channel, tag) -> channel.basicNack(tag, false, true);
-    }
-  },
+  NACK_WITH_REQUEUE((channel, tag) -> channel.basicNack(tag, false, true)),
 
   /**
    * Reject one received messages without requeue.
    *
    * @see com.rabbitmq.client.AMQP.Basic.Nack
    */
-  NACK_WITHOUT_REQUEUE {
-    @Override
-    public AckStrategy strategy() {
-      return (channel, tag) -> channel.basicNack(tag, false, false);
-    }
-  },
+  NACK_WITHOUT_REQUEUE((channel, tag) -> channel.basicNack(tag, false, false)),
 
-  REJECT {
-    @Override
-    public AckStrategy strategy() {
-      return (channel, tag) -> channel.basicReject(tag, false);
-    }
-  };
+  REJECT((channel, tag) -> channel.basicReject(tag, false));
+
+  private final AckStrategy strategy;
+
+  AcknowledgmentStrategies(final AckStrategy strategy) {
+    this.strategy = strategy;
+  }
 
   /**
-   * The acknowledgement strategy
+   * The acknowledgement strategy, the same instance is returned on every call
    *
    * @return
    */
-  public abstract AckStrategy strategy();
+  public AckStrategy strategy() {
+    return strategy;
+  }
 
 }
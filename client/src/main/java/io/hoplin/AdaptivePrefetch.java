@@ -0,0 +1,267 @@
+package io.hoplin;
+
+import com.rabbitmq.client.Channel;
+import io.hoplin.metrics.QueueMetrics;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tunes the prefetch count of a consumer to the latency of its handlers.
+ * <p>
+ * Two latencies are measured: the service time of a message from dispatch until it is
+ * acknowledged, and the refill time from completing a message while all prefetched deliveries were
+ * taken until the broker delivers the next one. Keeping {@code concurrency} handlers busy needs
+ * {@code concurrency * (1 + refill / service)} deliveries in flight, fewer starve the handlers and
+ * more only wait in the dispatch queue. The target is recomputed every interval within the bounds
+ * and sent with {@code basic.qos} when it moved by more than a tenth. The target is computed on
+ * the shared scheduler, the blocking {@code basic.qos} round trip runs on the consumer executor so
+ * a slow broker does not hold up other scheduled work like ack flushes.
+ * </p>
+ * <p>
+ * A per consumer prefetch only applies to consumers started after it was set, so the count is set
+ * for the whole channel ({@code global}) which RabbitMQ changes immediately. The channel must not
+ * be shared with other consumers, and quorum queues do not support a channel prefetch.
+ * </p>
+ */
+final class AdaptivePrefetch {
+
+  private static final Logger log = LoggerFactory.getLogger(AdaptivePrefetch.class);
+
+  // weight of the newest interval in the smoothed latencies
+  private static final double SMOOTHING = 0.5;
+
+  private final Channel channel;
+
+  private final String queue;
+
+  private final int concurrency;
+
+  private final int min;
+
+  private final int max;
+
+  private final long interval;
+
+  private final QueueMetrics metrics;
+
+  private final Executor executor;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  // completion time while all prefetched deliveries were taken, 0 when not waiting for a refill
+  private final AtomicLong refillStart = new AtomicLong();
+
+  private final LongAdder serviceNanos = new LongAdder();
+
+  private final LongAdder serviceCount = new LongAdder();
+
+  private final LongAdder refillNanos = new LongAdder();
+
+  private final LongAdder refillCount = new LongAdder();
+
+  private volatile int prefetchCount;
+
+  private volatile ExecutorRegistry executors;
+
+  // fields below are guarded by this
+  private double service;
+
+  private double refill;
+
+  private ScheduledFuture<?> task;
+
+  // basic.qos sent by the consumer executor and not answered yet
+  private boolean updating;
+
+  /**
+   * Create new tuner
+   *
+   * @param channel   the channel of the consumer
+   * @param queue     the consumed queue
+   * @param options   the consumer options providing bounds, interval and concurrency
+   * @param metrics   the metrics the chosen prefetch count is added to
+   * @param executor  the consumer executor sending prefetch count changes
+   * @param executors the registry providing the scheduler for tuning
+   */
+  AdaptivePrefetch(final Channel channel, final String queue, final QueueOptions options,
+      final QueueMetrics metrics, final Executor executor, final ExecutorRegistry executors) {
+    Objects.requireNonNull(options);
+    this.channel = Objects.requireNonNull(channel);
+    this.queue = Objects.requireNonNull(queue);
+    this.metrics = Objects.requireNonNull(metrics);
+    this.executor = Objects.requireNonNull(executor);
+    this.executors = Objects.requireNonNull(executors);
+    this.concurrency = options.getConcurrency();
+    this.min = options.getMinPrefetchCount();
+    this.max = options.getMaxPrefetchCount();
+    this.interval = options.getPrefetchTuneInterval();
+    this.prefetchCount = Math.max(min, Math.min(max, options.getPrefetchCount()));
+  }
+
+  void setExecutors(final ExecutorRegistry executors) {
+    this.executors = Objects.requireNonNull(executors);
+  }
+
+  /**
+   * @return the prefetch count currently set on the channel
+   */
+  int getPrefetchCount() {
+    return prefetchCount;
+  }
+
+  /**
+   * Set the initial prefetch count and start tuning
+   *
+   * @throws IOException when the prefetch count could not be set
+   */
+  synchronized void start() throws IOException {
+    if (task != null) {
+      return;
+    }
+    channel.basicQos(prefetchCount, true);
+    metrics.addPrefetchCount(prefetchCount);
+    task = executors.scheduler()
+        .scheduleWithFixedDelay(this::tune, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop tuning and withdraw the prefetch count from the queue metrics, the prefetch count last set
+   * stays in effect on the channel
+   */
+  synchronized void stop() {
+    if (task != null) {
+      task.cancel(false);
+      task = null;
+      metrics.addPrefetchCount(-prefetchCount);
+    }
+  }
+
+  /**
+   * Message delivered by the broker
+   */
+  void delivered() {
+    inFlight.incrementAndGet();
+    final long start = refillStart.getAndSet(0);
+    if (start != 0) {
+      refillNanos.add(System.nanoTime() - start);
+      refillCount.increment();
+    }
+  }
+
+  /**
+   * Message acknowledged or rejected
+   *
+   * @param serviceTime nanoseconds from dispatch until completion
+   */
+  void completed(final long serviceTime) {
+    serviceNanos.add(serviceTime);
+    serviceCount.increment();
+    if (inFlight.getAndDecrement() >= prefetchCount) {
+      // the freed slot is refilled by the next delivery, unless an earlier completion waits
+      refillStart.compareAndSet(0, System.nanoTime());
+    }
+  }
+
+  /**
+   * Message discarded without being processed
+   */
+  void discarded() {
+    inFlight.decrementAndGet();
+  }
+
+  /**
+   * Forget deliveries after the channel shut down, the broker requeues them
+   */
+  void reset() {
+    inFlight.set(0);
+    refillStart.set(0);
+  }
+
+  /**
+   * Recompute the prefetch count from the latencies measured since the last call, a changed count
+   * is sent from the consumer executor
+   */
+  void tune() {
+    final int target;
+    final int current;
+    synchronized (this) {
+      if (task == null || updating) {
+        // stopped while this run waited for the lock, or the previous change is still in flight
+        return;
+      }
+      final long services = serviceCount.sumThenReset();
+      final long serviceSum = serviceNanos.sumThenReset();
+      final long refills = refillCount.sumThenReset();
+      final long refillSum = refillNanos.sumThenReset();
+      if (services == 0) {
+        // idle, keep the prefetch count until there is something to measure
+        return;
+      }
+
+      service = smooth(service, (double) serviceSum / services);
+      if (refills > 0) {
+        refill = smooth(refill, (double) refillSum / refills);
+      }
+
+      target = target();
+      current = prefetchCount;
+      if (Math.abs(target - current) <= current / 10 || !channel.isOpen()) {
+        return;
+      }
+      updating = true;
+    }
+
+    try {
+      executor.execute(() -> update(current, target));
+    } catch (final RuntimeException e) {
+      log.warn("Unable to set prefetch count of " + queue + " to " + target, e);
+      synchronized (this) {
+        updating = false;
+      }
+    }
+  }
+
+  private void update(final int current, final int target) {
+    try {
+      channel.basicQos(target, true);
+      synchronized (this) {
+        prefetchCount = target;
+        // stop already withdrew the count from the metrics
+        if (task != null) {
+          metrics.addPrefetchCount(target - current);
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("Prefetch count of {} changed from {} to {}, service {}ns, refill {}ns",
+              queue, current, target, (long) service, (long) refill);
+        }
+      }
+    } catch (final IOException | RuntimeException e) {
+      log.warn("Unable to set prefetch count of " + queue + " to " + target, e);
+    } finally {
+      synchronized (this) {
+        updating = false;
+      }
+    }
+  }
+
+  private int target() {
+    // handlers faster than the clock resolution, only the upper bound keeps up
+    if (service < 1) {
+      return max;
+    }
+    final double target = Math.ceil(concurrency * (1 + refill / service));
+    return (int) Math.max(min, Math.min(max, target));
+  }
+
+  private static double smooth(final double previous, final double sample) {
+    return previous == 0 ? sample : previous + SMOOTHING * (sample - previous);
+  }
+}
@@ -0,0 +1,25 @@
+package io.hoplin;
+
+/**
+ * How publishing reacts when the publish window is full or the broker blocked the connection
+ *
+ * @see PublishWindow
+ * @see RabbitMQOptions#setBackpressurePolicy(BackpressurePolicy)
+ */
+public enum BackpressurePolicy {
+
+  /**
+   * Block the publishing thread until the window has room
+   */
+  BLOCK,
+
+  /**
+   * Fail the publish immediately with {@link HoplinRuntimeException}
+   */
+  FAIL,
+
+  /**
+   * Return a pending future, the message is published once the window has room
+   */
+  DEFER
+}
@@ -0,0 +1,101 @@
+package io.hoplin;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Outcome of a batch publish, failures are keyed by the position of the message in the batch
+ *
+ * @see ExchangeClient#publishBatch(Iterable, String)
+ * @see BatchPublisher
+ */
+public final class BatchPublishResult {
+
+  private final int size;
+
+  private final SortedMap<Integer, Throwable> failures;
+
+  BatchPublishResult(final int size, final SortedMap<Integer, Throwable> failures) {
+    this.size = size;
+    this.failures = Collections.unmodifiableSortedMap(failures);
+  }
+
+  /**
+   * Create result from per message failures
+   *
+   * @param failures failure of each message, null for messages that were confirmed
+   * @return new result
+   */
+  static BatchPublishResult of(final Throwable[] failures) {
+    final SortedMap<Integer, Throwable> failed = new TreeMap<>();
+    for (int i = 0; i < failures.length; ++i) {
+      if (failures[i] != null) {
+        failed.put(i, failures[i]);
+      }
+    }
+    return new BatchPublishResult(failures.length, failed);
+  }
+
+  /**
+   * Combine results of consecutive batches, positions of later batches are offset by the size of
+   * the preceding ones
+   *
+   * @param results the results to combine in publish order
+   * @return combined result
+   */
+  static BatchPublishResult combine(final List<BatchPublishResult> results) {
+    final SortedMap<Integer, Throwable> failed = new TreeMap<>();
+    int offset = 0;
+    for (final BatchPublishResult result : results) {
+      for (final Map.Entry<Integer, Throwable> entry : result.failures.entrySet()) {
+        failed.put(offset + entry.getKey(), entry.getValue());
+      }
+      offset += result.size;
+    }
+    return new BatchPublishResult(offset, failed);
+  }
+
+  /**
+   * Get number of messages in the batch
+   *
+   * @return batch size
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Get number of messages confirmed by the broker
+   *
+   * @return count of published messages
+   */
+  public int getPublishedCount() {
+    return size - failures.size();
+  }
+
+  /**
+   * Get failures keyed by the position of the message in the batch
+   *
+   * @return failed messages and their causes
+   */
+  public SortedMap<Integer, Throwable> getFailures() {
+    return failures;
+  }
+
+  /**
+   * Check if all messages have been published
+   *
+   * @return true when no message failed
+   */
+  public boolean isSuccess() {
+    return failures.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("BatchPublishResult[size=%d, failed=%d]", size, failures.size());
+  }
+}
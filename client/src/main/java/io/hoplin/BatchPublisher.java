@@ -0,0 +1,100 @@
+package io.hoplin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Streaming handle for publishing large number of messages. Messages are buffered and published as
+ * a batch every {@code batchSize} messages, {@link #flush()} publishes the remainder and waits for
+ * all outstanding batches to be confirmed.
+ * <p>
+ * Instances are not thread safe, use one publisher per producing thread.
+ * </p>
+ *
+ * @param <T> the type of the messages
+ * @see ExchangeClient#batchPublisher(String)
+ */
+public class BatchPublisher<T> implements AutoCloseable {
+
+  /**
+   * Default number of messages published in a single batch
+   */
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  private final Function<List<T>, CompletableFuture<BatchPublishResult>> sink;
+
+  private final int batchSize;
+
+  private List<T> buffer;
+
+  private final List<CompletableFuture<BatchPublishResult>> pending = new ArrayList<>();
+
+  /**
+   * Create new publisher
+   *
+   * @param sink      function publishing a single batch
+   * @param batchSize number of messages per batch
+   */
+  public BatchPublisher(final Function<List<T>, CompletableFuture<BatchPublishResult>> sink,
+      final int batchSize) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("batchSize should be greater than 0 : " + batchSize);
+    }
+    this.sink = Objects.requireNonNull(sink);
+    this.batchSize = batchSize;
+    this.buffer = new ArrayList<>(batchSize);
+  }
+
+  /**
+   * Add message to the current batch, the batch is published once it is full
+   *
+   * @param message the message to publish
+   */
+  public void publish(final T message) {
+    Objects.requireNonNull(message);
+    buffer.add(message);
+    if (buffer.size() >= batchSize) {
+      send();
+    }
+  }
+
+  /**
+   * Publish buffered messages and wait asynchronously for all batches published since the last
+   * flush. Failure positions are counted from the first message published after the last flush.
+   *
+   * @return combined result of the flushed batches
+   */
+  public CompletableFuture<BatchPublishResult> flush() {
+    send();
+    final List<CompletableFuture<BatchPublishResult>> batches = new ArrayList<>(pending);
+    pending.clear();
+
+    return CompletableFuture.allOf(batches.toArray(new CompletableFuture[0]))
+        .thenApply(v -> {
+          final List<BatchPublishResult> results = new ArrayList<>(batches.size());
+          for (final CompletableFuture<BatchPublishResult> batch : batches) {
+            results.add(batch.join());
+          }
+          return BatchPublishResult.combine(results);
+        });
+  }
+
+  private void send() {
+    if (buffer.isEmpty()) {
+      return;
+    }
+    pending.add(sink.apply(buffer));
+    buffer = new ArrayList<>(batchSize);
+  }
+
+  /**
+   * Flush and block until all batches have been confirmed
+   */
+  @Override
+  public void close() {
+    flush().join();
+  }
+}
@@ -0,0 +1,265 @@
+package io.hoplin;
+
+import com.rabbitmq.client.Channel;
+import io.hoplin.metrics.ChannelPoolMetrics;
+import java.io.IOException;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pool of {@link Channel}s opened on a single connection. A {@link Channel} is not meant to
+ * be shared between threads that publish concurrently, every publish takes the channel's frame
+ * lock, so publishers lease a channel for the duration of a publish and return it afterwards.
+ * <p>
+ * Channels are opened lazily, idle channels are reused most recently used first and closed channels
+ * are discarded when they are leased or returned. When all channels are leased callers wait up to
+ * the configured timeout for one to be returned.
+ * </p>
+ * <p>
+ * A pool created with publisher confirms enabled puts each channel in confirm mode and attaches a
+ * {@link PublisherConfirms} tracker to it, see {@link #getConfirms(Channel)}.
+ * </p>
+ *
+ * @see ConnectionProvider#lease()
+ * @see ChannelPoolMetrics
+ */
+public class ChannelPool {
+
+  private static final Logger log = LoggerFactory.getLogger(ChannelPool.class);
+
+  private final ChannelFactory factory;
+
+  private final ChannelPoolMetrics metrics;
+
+  private final Semaphore permits;
+
+  private final Deque<Channel> idle = new ConcurrentLinkedDeque<>();
+
+  private final Map<Channel, PublisherConfirms> confirms = new ConcurrentHashMap<>();
+
+  // channels opened by this pool and not discarded yet, idle or leased
+  private final Set<Channel> channels = ConcurrentHashMap.newKeySet();
+
+  private final boolean publisherConfirms;
+
+  private final long timeoutMillis;
+
+  private final int capacity;
+
+  /**
+   * Create new pool
+   *
+   * @param capacity      maximum number of channels leased at the same time
+   * @param timeoutMillis time to wait for a channel when all are leased
+   * @param factory       the factory used to open channels
+   * @param metrics       the metrics to update
+   */
+  public ChannelPool(final int capacity, final long timeoutMillis, final ChannelFactory factory,
+      final ChannelPoolMetrics metrics) {
+    this(capacity, timeoutMillis, factory, metrics, false);
+  }
+
+  /**
+   * Create new pool
+   *
+   * @param capacity          maximum number of channels leased at the same time
+   * @param timeoutMillis     time to wait for a channel when all are leased
+   * @param factory           the factory used to open channels
+   * @param metrics           the metrics to update
+   * @param publisherConfirms true to put opened channels in confirm mode
+   */
+  public ChannelPool(final int capacity, final long timeoutMillis, final ChannelFactory factory,
+      final ChannelPoolMetrics metrics, final boolean publisherConfirms) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity should be greater than 0 : " + capacity);
+    }
+    this.capacity = capacity;
+    this.timeoutMillis = timeoutMillis;
+    this.factory = Objects.requireNonNull(factory);
+    this.metrics = Objects.requireNonNull(metrics);
+    this.permits = new Semaphore(capacity);
+    this.publisherConfirms = publisherConfirms;
+  }
+
+  /**
+   * Lease channel for exclusive use, the channel has to be returned via {@link #release(Channel)}
+   *
+   * @return open channel
+   * @throws HoplinRuntimeException when no channel becomes available in time or it can't be opened
+   */
+  public Channel lease() {
+    long waited = 0;
+    if (!permits.tryAcquire()) {
+      final long start = System.nanoTime();
+      try {
+        if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+          metrics.markLeaseTimeout();
+          throw new HoplinRuntimeException("Timed out waiting for channel",
+              new TimeoutException("No channel available after " + timeoutMillis + " ms"));
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new HoplinRuntimeException("Interrupted waiting for channel", e);
+      }
+      waited = System.nanoTime() - start;
+    }
+
+    try {
+      final Channel channel = nextChannel();
+      metrics.recordLease(waited);
+      return channel;
+    } catch (final IOException e) {
+      permits.release();
+      throw new HoplinRuntimeException("Unable to open channel", e);
+    } catch (final RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Return leased channel to the pool, closed channels are discarded
+   *
+   * @param channel the channel to return
+   */
+  public void release(final Channel channel) {
+    Objects.requireNonNull(channel);
+    try {
+      if (channel.isOpen()) {
+        idle.offerFirst(channel);
+      } else {
+        discard(channel);
+      }
+    } finally {
+      permits.release();
+    }
+  }
+
+  private Channel nextChannel() throws IOException {
+    Channel channel;
+    while ((channel = idle.pollFirst()) != null) {
+      if (channel.isOpen()) {
+        return channel;
+      }
+      discard(channel);
+    }
+
+    channel = factory.create();
+    if (publisherConfirms) {
+      enableConfirms(channel);
+    }
+    channels.add(channel);
+    metrics.markChannelCreated();
+    if (log.isDebugEnabled()) {
+      log.debug("Opened pooled channel #{}", channel.getChannelNumber());
+    }
+    return channel;
+  }
+
+  private void enableConfirms(final Channel channel) throws IOException {
+    try {
+      channel.confirmSelect();
+    } catch (final IOException | RuntimeException e) {
+      closeQuietly(channel);
+      throw e;
+    }
+    final PublisherConfirms tracker = new PublisherConfirms();
+    channel.addConfirmListener(tracker);
+    channel.addShutdownListener(tracker);
+    confirms.put(channel, tracker);
+  }
+
+  private void discard(final Channel channel) {
+    channels.remove(channel);
+    confirms.remove(channel);
+    metrics.markChannelClosed();
+  }
+
+  private static void closeQuietly(final Channel channel) {
+    if (!channel.isOpen()) {
+      return;
+    }
+    try {
+      channel.close();
+    } catch (final IOException | TimeoutException | RuntimeException e) {
+      log.warn("Unable to close pooled channel", e);
+    }
+  }
+
+  /**
+   * Check if a channel was opened by this pool and can be returned to it
+   *
+   * @param channel the leased channel
+   * @return true when the channel belongs to this pool
+   */
+  public boolean owns(final Channel channel) {
+    return channels.contains(channel);
+  }
+
+  /**
+   * Get the confirm tracker of a channel opened by this pool
+   *
+   * @param channel the leased channel
+   * @return confirm tracker or null when publisher confirms are disabled or the channel is unknown
+   */
+  public PublisherConfirms getConfirms(final Channel channel) {
+    return confirms.get(channel);
+  }
+
+  /**
+   * Close all idle channels. Leased channels are closed together with their connection, the pool
+   * itself stays usable and opens new channels on demand.
+   */
+  public void close() {
+    Channel channel;
+    while ((channel = idle.pollFirst()) != null) {
+      discard(channel);
+      closeQuietly(channel);
+    }
+  }
+
+  /**
+   * Get the maximum number of channels leased at the same time
+   *
+   * @return pool capacity
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Check if channels of this pool are in confirm mode
+   *
+   * @return true when publisher confirms are enabled
+   */
+  public boolean isPublisherConfirms() {
+    return publisherConfirms;
+  }
+
+  /**
+   * Get the number of idle channels
+   *
+   * @return count of idle channels
+   */
+  public int getIdleCount() {
+    return idle.size();
+  }
+
+  /**
+   * Opens new channels for the pool
+   */
+  @FunctionalInterface
+  public interface ChannelFactory {
+
+    Channel create() throws IOException;
+  }
+}
@@ -0,0 +1,121 @@
+package io.hoplin;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Normalized connection settings of {@link RabbitMQOptions}, options that produce equal keys can
+ * share a connection. Client properties are not part of the key, the properties of the first client
+ * are used for the shared connection.
+ */
+final class ConnectionKey {
+
+  private final String uri;
+
+  private final String user;
+
+  private final String password;
+
+  private final String host;
+
+  private final int port;
+
+  private final String virtualHost;
+
+  private final boolean tlsEnabled;
+
+  private final int connectionTimeout;
+
+  private final int requestedHeartbeat;
+
+  private final int handshakeTimeout;
+
+  private final int requestedChannelMax;
+
+  private final long networkRecoveryInterval;
+
+  private final boolean automaticRecoveryEnabled;
+
+  // identity of the owner when connection sharing is disabled
+  private final Object owner;
+
+  private ConnectionKey(final RabbitMQOptions options, final Object owner) {
+    this.uri = options.getUri() == null ? null : options.getUri().trim();
+    this.user = options.getUser();
+    this.password = options.getPassword();
+    this.host = options.getHost() == null ? null : options.getHost().toLowerCase(Locale.ROOT);
+    this.port = options.getPort();
+    this.virtualHost = options.getVirtualHost();
+    this.tlsEnabled = options.isTlsEnabled();
+    this.connectionTimeout = options.getConnectionTimeout();
+    this.requestedHeartbeat = options.getRequestedHeartbeat();
+    this.handshakeTimeout = options.getHandshakeTimeout();
+    this.requestedChannelMax = options.getRequestedChannelMax();
+    this.networkRecoveryInterval = options.getNetworkRecoveryInterval();
+    this.automaticRecoveryEnabled = options.isAutomaticRecoveryEnabled();
+    this.owner = owner;
+  }
+
+  /**
+   * Create key for the options
+   *
+   * @param options the options to create key for
+   * @param owner   the object requesting the connection, used when sharing is disabled
+   * @return new key
+   */
+  static ConnectionKey of(final RabbitMQOptions options, final Object owner) {
+    Objects.requireNonNull(options);
+    return new ConnectionKey(options, options.isSharedConnections() ? null : owner);
+  }
+
+  /**
+   * Name of the broker node, used as metrics key
+   *
+   * @return the node name
+   */
+  String getNodeName() {
+    if (uri != null) {
+      final int at = uri.lastIndexOf('@');
+      return at == -1 ? uri : uri.substring(at + 1);
+    }
+    return String.format("%s:%d%s", host, port, virtualHost);
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    final ConnectionKey that = (ConnectionKey) o;
+    return port == that.port
+        && tlsEnabled == that.tlsEnabled
+        && connectionTimeout == that.connectionTimeout
+        && requestedHeartbeat == that.requestedHeartbeat
+        && handshakeTimeout == that.handshakeTimeout
+        && requestedChannelMax == that.requestedChannelMax
+        && networkRecoveryInterval == that.networkRecoveryInterval
+        && automaticRecoveryEnabled == that.automaticRecoveryEnabled
+        && owner == that.owner
+        && Objects.equals(uri, that.uri)
+        && Objects.equals(user, that.user)
+        && Objects.equals(password, that.password)
+        && Objects.equals(host, that.host)
+        && Objects.equals(virtualHost, that.virtualHost);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(uri, user, password, host, port, virtualHost, tlsEnabled,
+        connectionTimeout, requestedHeartbeat, handshakeTimeout, requestedChannelMax,
+        networkRecoveryInterval, automaticRecoveryEnabled, System.identityHashCode(owner));
+  }
+
+  @Override
+  public String toString() {
+    // never expose the password
+    return String.format("%s@%s", user, getNodeName());
+  }
+}
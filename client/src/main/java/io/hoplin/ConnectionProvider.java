@@ -1,5 +1,6 @@
 package io.hoplin;
 
+import com.rabbitmq.client.BlockedListener;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.ShutdownListener;
 import java.io.IOException;
@@ -30,6 +31,7 @@ public interface ConnectionProvider extends ShutdownListener {
     try {
       final ConnectionProvider provider = create(options);
       if (!provider.connect()) {
+        provider.disconnect();
         throw new IllegalStateException("Unable to connect to broker : " + options);
       }
 
@@ -47,6 +49,83 @@ public interface ConnectionProvider extends ShutdownListener {
    */
   Channel acquire();
 
+  /**
+   * Open a new {@link Channel} owned by the caller, e.g. for a consumer. The caller closes it, it is
+   * not part of the channels handed out by {@link #acquire()} or {@link #lease()}.
+   *
+   * @return new channel
+   * @throws IOException when the channel could not be opened
+   */
+  default Channel openChannel() throws IOException {
+    final Channel channel = acquire().getConnection().createChannel();
+    if (channel == null) {
+      throw new IOException("No channel available, channel max reached");
+    }
+    return channel;
+  }
+
+  /**
+   * Lease a {@link Channel} for exclusive use by the calling thread, it has to be returned via
+   * {@link #release(Channel)}. Providers without a channel pool hand out the shared channel.
+   *
+   * @return leased channel
+   * @see ChannelPool
+   */
+  default Channel lease() {
+    return acquire();
+  }
+
+  /**
+   * Lease a {@link Channel} like {@link #lease()}, choosing whether it is in confirm mode. Publishes
+   * that don't wait for confirms lease a channel without confirm tracking. Providers without
+   * separate pools hand out the same channel as {@link #lease()}.
+   *
+   * @param publisherConfirms true for a channel in confirm mode
+   * @return leased channel
+   */
+  default Channel lease(final boolean publisherConfirms) {
+    return lease();
+  }
+
+  /**
+   * Return channel obtained from {@link #lease()}
+   *
+   * @param channel the channel to return
+   */
+  default void release(final Channel channel) {
+    // shared channel is not returned
+  }
+
+  /**
+   * Get the confirm tracker of a channel obtained from {@link #lease()}
+   *
+   * @param channel the leased channel
+   * @return confirm tracker or null when the channel is not in confirm mode
+   * @see PublisherConfirms
+   */
+  default PublisherConfirms confirms(final Channel channel) {
+    return null;
+  }
+
+  /**
+   * Register listener notified when the broker blocks or unblocks publishing on the connection
+   *
+   * @param listener the listener to register
+   * @see com.rabbitmq.client.Connection#addBlockedListener(BlockedListener)
+   */
+  default void addBlockedListener(final BlockedListener listener) {
+    acquire().getConnection().addBlockedListener(listener);
+  }
+
+  /**
+   * Get the registry of thread pools shared by clients of this provider
+   *
+   * @return executor registry
+   */
+  default ExecutorRegistry getExecutors() {
+    return ExecutorRegistry.getDefault();
+  }
+
   /**
    * Check if the have connection established
    *
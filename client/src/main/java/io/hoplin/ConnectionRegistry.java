@@ -0,0 +1,298 @@
+package io.hoplin;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import io.hoplin.metrics.ChannelPoolMetrics;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of reference counted connections shared by clients with equal connection settings.
+ * <p>
+ * Every client holds its own channels but multiplexes them over the connections of the registry,
+ * at most {@link RabbitMQOptions#getMaxConnectionsPerNode()} connections are opened per broker node
+ * and clients are spread over them by usage. A connection is closed when the last client releases
+ * it. Each connection owns the {@link ChannelPool}s its clients lease publishing channels from, one
+ * with channels in confirm mode and one for fire-and-forget publishes.
+ * </p>
+ *
+ * @see DefaultRabbitConnectionProvider
+ * @see RabbitMQOptions#setSharedConnections(boolean)
+ */
+public final class ConnectionRegistry {
+
+  private static final Logger log = LoggerFactory.getLogger(ConnectionRegistry.class);
+
+  private static final ConnectionRegistry DEFAULT = new ConnectionRegistry(
+      DefaultRabbitConnectionProvider::newConnection);
+
+  private final ConnectionOpener opener;
+
+  // guarded by this
+  private final Map<ConnectionKey, List<SharedConnection>> connections = new HashMap<>();
+
+  // connections being opened outside of the lock, at most one per key, guarded by this
+  private final Map<ConnectionKey, CompletableFuture<Void>> opening = new HashMap<>();
+
+  // read on every publish without locking, written while holding this
+  private final Map<Connection, SharedConnection> byConnection = new ConcurrentHashMap<>();
+
+  /**
+   * Create new registry
+   *
+   * @param opener the function used to open new connections
+   */
+  public ConnectionRegistry(final ConnectionOpener opener) {
+    this.opener = Objects.requireNonNull(opener);
+  }
+
+  /**
+   * Get the registry shared by all clients of this class loader
+   *
+   * @return default registry
+   */
+  public static ConnectionRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Acquire reference to a connection matching the options, the reference has to be returned via
+   * {@link #release(SharedConnection)}
+   *
+   * @param options the connection options
+   * @param owner   the client acquiring the connection
+   * @return shared connection
+   * @throws IOException      when connection can't be opened
+   * @throws TimeoutException when connection can't be opened in time
+   */
+  SharedConnection acquire(final RabbitMQOptions options, final Object owner)
+      throws IOException, TimeoutException {
+    Objects.requireNonNull(options);
+    final ConnectionKey key = ConnectionKey.of(options, owner);
+    final int max = Math.max(1, options.getMaxConnectionsPerNode());
+
+    while (true) {
+      final CompletableFuture<Void> pending;
+      final CompletableFuture<Void> opened;
+      synchronized (this) {
+        final List<SharedConnection> candidates = connections
+            .computeIfAbsent(key, k -> new ArrayList<>());
+
+        // connections that closed without recovery are never handed out again
+        candidates.removeIf(shared -> {
+          if (shared.isOpen()) {
+            return false;
+          }
+          byConnection.remove(shared.getConnection());
+          return true;
+        });
+
+        SharedConnection selected = null;
+        for (final SharedConnection candidate : candidates) {
+          if (selected == null || candidate.references < selected.references) {
+            selected = candidate;
+          }
+        }
+
+        pending = opening.get(key);
+        final boolean open = selected == null
+            || (selected.references > 0 && candidates.size() < max);
+        if (!open || (selected != null && pending != null)) {
+          // share an open connection rather than wait for the one being opened
+          ++selected.references;
+          return selected;
+        }
+        if (pending == null) {
+          opened = new CompletableFuture<>();
+          opening.put(key, opened);
+        } else {
+          opened = null;
+        }
+      }
+
+      if (opened != null) {
+        return open(options, key, opened);
+      }
+      // nothing to share yet, retry once the connection being opened is registered or failed
+      pending.join();
+    }
+  }
+
+  /**
+   * Open connection without holding the lock, so clients of other connections are not stalled by
+   * the handshake
+   */
+  private SharedConnection open(final RabbitMQOptions options, final ConnectionKey key,
+      final CompletableFuture<Void> opened) throws IOException, TimeoutException {
+    SharedConnection shared = null;
+    try {
+      final Connection connection = opener.open(options);
+      shared = createShared(options, key, connection);
+    } finally {
+      synchronized (this) {
+        opening.remove(key);
+        if (shared != null) {
+          final List<SharedConnection> candidates = connections
+              .computeIfAbsent(key, k -> new ArrayList<>());
+          candidates.add(shared);
+          byConnection.put(shared.getConnection(), shared);
+          ++shared.references;
+          log.info("Opened connection #{} to {}", candidates.size(), key);
+        }
+      }
+      opened.complete(null);
+    }
+    return shared;
+  }
+
+  /**
+   * Release reference obtained from {@link #acquire(RabbitMQOptions, Object)}, the connection is
+   * closed when no references remain
+   *
+   * @param shared the connection to release
+   */
+  void release(final SharedConnection shared) {
+    Objects.requireNonNull(shared);
+    synchronized (this) {
+      if (--shared.references > 0) {
+        return;
+      }
+      final List<SharedConnection> candidates = connections.get(shared.key);
+      if (candidates != null) {
+        candidates.remove(shared);
+        if (candidates.isEmpty()) {
+          connections.remove(shared.key);
+        }
+      }
+      byConnection.remove(shared.getConnection());
+    }
+
+    log.info("Closing connection to {}, no clients left", shared.key);
+    shared.close();
+  }
+
+  /**
+   * Find shared connection that owns the connection
+   *
+   * @param connection the connection to look up
+   * @return shared connection or null when the connection is not registered
+   */
+  SharedConnection find(final Connection connection) {
+    return byConnection.get(connection);
+  }
+
+  /**
+   * Get number of open connections held by the registry
+   *
+   * @return connection count
+   */
+  public int getConnectionCount() {
+    return byConnection.size();
+  }
+
+  private static SharedConnection createShared(final RabbitMQOptions options,
+      final ConnectionKey key, final Connection connection) {
+    // requested channel max of 0 means no limit, the client channels count against the limit too
+    final int channelMax = options.getRequestedChannelMax();
+    final int capacity = channelMax > 0 ? Math.max(1, channelMax - 1)
+        : ConnectionFactory.DEFAULT_CHANNEL_MAX - 1;
+    final long timeout = options.getConnectionTimeout() > 0 ? options.getConnectionTimeout()
+        : Long.MAX_VALUE;
+    final ChannelPoolMetrics metrics = ChannelPoolMetrics.Factory.getInstance(key.getNodeName());
+
+    // both pools share the channel limit of the connection
+    final ChannelPool confirming = new ChannelPool(Math.max(1, capacity - capacity / 2), timeout,
+        () -> openChannel(connection), metrics, true);
+    final ChannelPool plain = new ChannelPool(Math.max(1, capacity / 2), timeout,
+        () -> openChannel(connection), metrics, false);
+    return new SharedConnection(key, connection, confirming, plain);
+  }
+
+  private static Channel openChannel(final Connection connection) throws IOException {
+    final Channel channel = connection.createChannel();
+    if (channel == null) {
+      throw new IOException("No channel available, channel max reached");
+    }
+    return channel;
+  }
+
+  /**
+   * Opens new connections to the broker
+   */
+  @FunctionalInterface
+  public interface ConnectionOpener {
+
+    Connection open(RabbitMQOptions options) throws IOException, TimeoutException;
+  }
+
+  /**
+   * Connection with its channel pools and the number of clients referencing it
+   */
+  static final class SharedConnection {
+
+    private final ConnectionKey key;
+
+    private final Connection connection;
+
+    private final ChannelPool confirming;
+
+    private final ChannelPool plain;
+
+    // guarded by the registry
+    private int references;
+
+    private SharedConnection(final ConnectionKey key, final Connection connection,
+        final ChannelPool confirming, final ChannelPool plain) {
+      this.key = key;
+      this.connection = connection;
+      this.confirming = confirming;
+      this.plain = plain;
+    }
+
+    Connection getConnection() {
+      return connection;
+    }
+
+    ChannelPool getPool(final boolean publisherConfirms) {
+      return publisherConfirms ? confirming : plain;
+    }
+
+    /**
+     * Get the pool a leased channel belongs to
+     */
+    ChannelPool getPool(final Channel channel) {
+      return plain.owns(channel) ? plain : confirming;
+    }
+
+    boolean isOpen() {
+      return connection.isOpen();
+    }
+
+    Channel createChannel() throws IOException {
+      return openChannel(connection);
+    }
+
+    private void close() {
+      confirming.close();
+      plain.close();
+      if (!connection.isOpen()) {
+        return;
+      }
+      try {
+        connection.close();
+      } catch (final IOException | RuntimeException e) {
+        log.warn("Unable to close connection", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package io.hoplin;
+
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the executors consumers run message handlers on. Virtual threads are looked up at
+ * runtime so the client keeps running on Java 8.
+ *
+ * @see ExecutionMode
+ */
+public final class ConsumerExecutors {
+
+  private static final Logger log = LoggerFactory.getLogger(ConsumerExecutors.class);
+
+  // Executors.newVirtualThreadPerTaskExecutor on JDK 21+, null otherwise
+  private static final Method VIRTUAL_THREAD_FACTORY = lookupVirtualThreadFactory();
+
+  private ConsumerExecutors() {
+  }
+
+  private static Method lookupVirtualThreadFactory() {
+    try {
+      final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      // preview releases expose the method but fail when it is invoked
+      ((ExecutorService) method.invoke(null)).shutdown();
+      return method;
+    } catch (final ReflectiveOperationException | RuntimeException | LinkageError e) {
+      return null;
+    }
+  }
+
+  /**
+   * Check if the runtime supports virtual threads
+   *
+   * @return true on JDK 21 or newer
+   */
+  public static boolean isVirtualThreadsSupported() {
+    return VIRTUAL_THREAD_FACTORY != null;
+  }
+
+  /**
+   * Create executor for a consumer
+   *
+   * @param mode           the execution mode
+   * @param threads        pool size used by {@link ExecutionMode#POOLED}
+   * @param maxConcurrency handlers running at once with {@link ExecutionMode#VIRTUAL_THREADS}, ex.
+   *                       the prefetch count, 0 for no limit
+   * @return new executor
+   */
+  public static Executor create(final ExecutionMode mode, final int threads,
+      final int maxConcurrency) {
+    return create(ExecutorRegistry.getDefault(), mode, threads, maxConcurrency);
+  }
+
+  /**
+   * Create executor for a consumer, pooled executors are views of the registry dispatch pool
+   *
+   * @param registry       the registry providing the dispatch pool
+   * @param mode           the execution mode
+   * @param threads        concurrency used by {@link ExecutionMode#POOLED}
+   * @param maxConcurrency handlers running at once with {@link ExecutionMode#VIRTUAL_THREADS}, ex.
+   *                       the prefetch count, 0 for no limit
+   * @return new executor
+   */
+  public static Executor create(final ExecutorRegistry registry, final ExecutionMode mode,
+      final int threads, final int maxConcurrency) {
+    Objects.requireNonNull(registry);
+    Objects.requireNonNull(mode);
+    if (mode == ExecutionMode.VIRTUAL_THREADS) {
+      if (isVirtualThreadsSupported()) {
+        return bounded(newVirtualThreadPerTaskExecutor(), maxConcurrency);
+      }
+      log.warn("Virtual threads require JDK 21+, running on {}, falling back to {} threads",
+          System.getProperty("java.version"), threads);
+    }
+    return registry.dispatch(threads);
+  }
+
+  /**
+   * Create executor for the reply consumer of an RPC or batch client, pooled executors use the
+   * registry reply pool so replies are not queued behind the handlers waiting for them
+   *
+   * @param registry the registry providing the reply pool
+   * @param mode     the execution mode
+   * @return new executor
+   */
+  public static Executor createReply(final ExecutorRegistry registry, final ExecutionMode mode) {
+    Objects.requireNonNull(registry);
+    Objects.requireNonNull(mode);
+    if (mode == ExecutionMode.VIRTUAL_THREADS && isVirtualThreadsSupported()) {
+      return newVirtualThreadPerTaskExecutor();
+    }
+    return registry.reply();
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) VIRTUAL_THREAD_FACTORY.invoke(null);
+    } catch (final ReflectiveOperationException e) {
+      throw new HoplinRuntimeException("Unable to create virtual thread executor", e);
+    }
+  }
+
+  /**
+   * Limit the number of tasks running at once, tasks wait for a permit on their own thread so the
+   * submitting thread never blocks
+   */
+  private static Executor bounded(final Executor executor, final int maxConcurrency) {
+    if (maxConcurrency <= 0) {
+      return executor;
+    }
+
+    final Semaphore permits = new Semaphore(maxConcurrency);
+    return task -> executor.execute(() -> {
+      permits.acquireUninterruptibly();
+      try {
+        task.run();
+      } finally {
+        permits.release();
+      }
+    });
+  }
+}
@@ -68,6 +68,18 @@ public class DefaultClosableExchangeClient implements CloseableExchangeClient {
     return delegate.publishAsync(message, routingKey, cfg);
   }
 
+  @Override
+  public <T> CompletableFuture<BatchPublishResult> publishBatch(Iterable<T> messages,
+      String routingKey) {
+    return delegate.publishBatch(messages, routingKey);
+  }
+
+  @Override
+  public <T> CompletableFuture<BatchPublishResult> publishBatch(Iterable<T> messages,
+      String routingKey, Consumer<MessageConfiguration> cfg) {
+    return delegate.publishBatch(messages, routingKey, cfg);
+  }
+
   @Override
   public <T> SubscriptionResult subscribe(String subscriberId, Class<T> clazz,
       Consumer<T> handler) {
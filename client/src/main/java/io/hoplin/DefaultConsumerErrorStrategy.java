@@ -1,6 +1,6 @@
 package io.hoplin;
 
-import static io.hoplin.json.JsonMessagePayloadCodec.serializeWithDefaults;
+import static io.hoplin.json.JsonMessagePayloadCodec.serializePretty;
 
 import com.rabbitmq.client.AMQP.BasicProperties;
 import com.rabbitmq.client.Channel;
@@ -9,7 +9,7 @@ import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Objects;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,8 +28,18 @@ public class DefaultConsumerErrorStrategy implements ConsumerErrorStrategy {
   private final Publisher publisher;
 
   public DefaultConsumerErrorStrategy(final Channel channel) {
+    this(channel, ExecutorRegistry.getDefault().error());
+  }
+
+  /**
+   * Create error strategy publishing error messages on specific executor
+   *
+   * @param channel  the channel to publish on
+   * @param executor the executor to publish on
+   */
+  public DefaultConsumerErrorStrategy(final Channel channel, final Executor executor) {
     this.channel = Objects.requireNonNull(channel);
-    this.publisher = new Publisher(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+    this.publisher = new Publisher(executor);
   }
 
 
@@ -86,7 +96,7 @@ public class DefaultConsumerErrorStrategy implements ConsumerErrorStrategy {
         .setException(toString(throwable))
         .setProperties(context.getProperties());
 
-    return serializeWithDefaults(error);
+    return serializePretty(error);
   }
 
   private String toString(final Throwable throwable) {
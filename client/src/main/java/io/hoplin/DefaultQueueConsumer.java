@@ -1,21 +1,23 @@
 package io.hoplin;
 
-import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.DefaultConsumer;
 import com.rabbitmq.client.Envelope;
-import io.hoplin.json.JsonMessagePayloadCodec;
+import com.rabbitmq.client.ShutdownSignalException;
+import io.hoplin.json.Codec;
+import io.hoplin.json.CodecFactory;
+import io.hoplin.json.CodecRegistry;
 import io.hoplin.metrics.QueueMetrics;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
+import java.util.Set;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.function.BiFunction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,13 +37,35 @@ public class DefaultQueueConsumer extends DefaultConsumer {
 
   private final ConsumerErrorStrategy errorStrategy;
 
-  private final ArrayListMultimap<Class<?>, MethodReference<?>> handlers = ArrayListMultimap
-      .create();
+  // payload class -> handlers accepting it in registration order, replaced when handlers are added
+  private volatile Map<Class<?>, MethodReference<?>[]> handlers = ImmutableMap.of();
 
   private final Publisher publisher;
 
   private final Executor executor;
 
+  // serializes messages with equal ordering keys
+  private final StripedExecutor dispatcher;
+
+  // codecs for the current handler set, replaced only when handlers are added
+  private volatile CodecRegistry codecRegistry;
+
+  private volatile MessageTimingListener timingListener;
+
+  private volatile boolean traceContextPropagation;
+
+  // null when every message is acknowledged on its own
+  private final AckCoalescer acks;
+
+  // null when the prefetch count is fixed
+  private final AdaptivePrefetch prefetch;
+
+  // null when messages waiting for a handler are not bounded
+  private final DispatchQueue waiting;
+
+  // fixed prefetch count added to the queue metrics, guarded by this
+  private int appliedPrefetch;
+
   /**
    * Constructs a new instance and records its association to the passed-in channel.
    *
@@ -52,7 +76,7 @@ public class DefaultQueueConsumer extends DefaultConsumer {
   public DefaultQueueConsumer(String queue, final Channel channel,
       final QueueOptions queueOptions) {
     this(queue, channel, queueOptions,
-        Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+        ExecutorRegistry.getDefault().dispatch(queueOptions.getConcurrency()));
   }
 
   /**
@@ -64,14 +88,97 @@ public class DefaultQueueConsumer extends DefaultConsumer {
    */
   public DefaultQueueConsumer(final String queue, final Channel channel,
       final QueueOptions queueOptions, final Executor executor) {
+    this(queue, channel, queueOptions, executor, CodecFactory.json());
+  }
+
+  /**
+   * Construct a new instance of queue consumer
+   *
+   * @param channel      the channel bound to this consumer
+   * @param queueOptions the options for this consumer
+   * @param executor     the {@link Executor} to use for this consumer
+   * @param codec        the codec used for replies and for messages without known content type
+   */
+  public DefaultQueueConsumer(final String queue, final Channel channel,
+      final QueueOptions queueOptions, final Executor executor, final CodecFactory codec) {
     super(channel);
 
     this.queue = queue;
     this.queueOptions = Objects.requireNonNull(queueOptions);
     this.executor = Objects.requireNonNull(executor);
+    this.dispatcher = new StripedExecutor(executor, queueOptions.getConcurrency());
+    this.codecRegistry = CodecRegistry.create(codec);
     this.errorStrategy = new DefaultConsumerErrorStrategy(channel);
     this.metrics = QueueMetrics.Factory.getInstance(queue);
-    this.publisher = new Publisher(executor);
+    this.publisher = new Publisher(executor, codecRegistry.getCodec());
+    this.acks = queueOptions.isAutoAck() || queueOptions.getAckBatchSize() == 1 ? null
+        : new AckCoalescer(channel, queueOptions.getAckBatchSize(),
+            queueOptions.getAckFlushInterval(), ExecutorRegistry.getDefault());
+    this.prefetch = queueOptions.isAutoAck() || !queueOptions.isAdaptivePrefetch() ? null
+        : new AdaptivePrefetch(channel, queue, queueOptions, metrics, executor,
+            ExecutorRegistry.getDefault());
+    this.waiting = queueOptions.maxInternalQueueSize() == Integer.MAX_VALUE ? null
+        : new DispatchQueue(queueOptions.maxInternalQueueSize(),
+            queueOptions.isKeepMostRecent(), this::discard);
+  }
+
+  /**
+   * Set the registry scheduling flushes of coalesced acknowledgements and prefetch tuning
+   *
+   * @param executors the registry of the client owning this consumer
+   */
+  void setExecutors(final ExecutorRegistry executors) {
+    if (acks != null) {
+      acks.setExecutors(executors);
+    }
+    if (prefetch != null) {
+      prefetch.setExecutors(executors);
+    }
+  }
+
+  /**
+   * Set the prefetch count on the channel, must be called before consuming starts
+   *
+   * @throws IOException when the prefetch count could not be set
+   */
+  synchronized void applyPrefetch() throws IOException {
+    if (prefetch != null) {
+      prefetch.start();
+      return;
+    }
+    getChannel().basicQos(queueOptions.getPrefetchCount());
+    metrics.addPrefetchCount(queueOptions.getPrefetchCount() - appliedPrefetch);
+    appliedPrefetch = queueOptions.getPrefetchCount();
+  }
+
+  /**
+   * Stop adjusting the prefetch count, send acknowledgements held back for coalescing and remove
+   * the prefetch count from the queue metrics, called before the channel is closed
+   */
+  synchronized void release() {
+    if (prefetch != null) {
+      prefetch.stop();
+    }
+    if (acks != null) {
+      acks.flush();
+    }
+    metrics.addPrefetchCount(-appliedPrefetch);
+    appliedPrefetch = 0;
+  }
+
+  /**
+   * Enable per message tracing
+   *
+   * @param timingListener          the listener notified with the timings of processed messages,
+   *                                may be null
+   * @param traceContextPropagation true to continue the trace context of consumed messages and
+   *                                propagate it to replies
+   */
+  void setTracing(final MessageTimingListener timingListener,
+      final boolean traceContextPropagation) {
+    this.timingListener = timingListener;
+    this.traceContextPropagation = traceContextPropagation;
+    publisher.setTraceContextPropagation(traceContextPropagation);
   }
 
   /**
@@ -82,107 +189,203 @@ public class DefaultQueueConsumer extends DefaultConsumer {
    * Note: A message must be acknowledged only once;
    * </p>
    */
-  @SuppressWarnings("unchecked")
   @Override
   public void handleDelivery(final String consumerTag, final Envelope envelope,
       final AMQP.BasicProperties properties, byte[] body) {
 
     metrics.markMessageReceived();
     metrics.incrementReceived(body.length);
+    if (envelope.isRedeliver()) {
+      metrics.markMessageRedelivered();
+    }
+    if (acks != null) {
+      acks.delivered(envelope.getDeliveryTag());
+    }
+    if (prefetch != null) {
+      prefetch.delivered();
+    }
 
     final MessageContext context = MessageContext
         .create(queue, consumerTag, envelope, properties, body);
 
-    CompletableFuture.runAsync(() -> {
-      AckStrategy ack;
+    final OrderingKey orderingKey = queueOptions.getOrderingKey();
+    if (orderingKey == null) {
+      dispatcher.execute(admit(context, () -> process(context, null)));
+      return;
+    }
 
-      try {
-        ack = ackFromOptions(queueOptions);
-
-        final JsonMessagePayloadCodec codec = new JsonMessagePayloadCodec(handlers.keySet());
-        final MessagePayload message = codec.deserialize(body, MessagePayload.class);
-        final Object val = message.getPayload();
-        final Class<?> targetClass = message.getTypeAsClass();
-        final Collection<MethodReference<?>> consumers = handlers.get(targetClass);
-        final List<Throwable> exceptions = new ArrayList<>();
-        int invokedHandlers = 0;
-        final boolean batchRequest = isBatchedRequest(context);
-
-        Reply<?> reply = null;
-        for (final MethodReference reference : consumers) {
-          try {
-            final BiFunction<Object, MessageContext, Reply<?>> handler = reference.getHandler();
-            final Class<?> root = reference.getRootType();
-            reply = null;
-            if (root == targetClass) {
-              ++invokedHandlers;
-              reply = execute(context, val, handler);
-            } else { // Down cast if necessary
-              final Optional<?> castedValue = safeCast(val, targetClass);
-              if (castedValue.isPresent()) {
-                ++invokedHandlers;
-                reply = execute(context, castedValue.get(), handler);
-              }
-            }
-            if (log.isDebugEnabled()) {
-              log.debug("reply : {}", reply);
-            }
-
-            // can't have multiple handlers for batched requests
-            if (batchRequest) {
-              break;
-            }
-          } catch (final Exception e) {
-            exceptions.add(e);
-            log.error("Handler error for message  : " + message, e);
-          }
-        }
+    MessagePayload<?> decoded = null;
+    Object key = null;
+    try {
+      if (orderingKey.requiresPayload()) {
+        decoded = decode(context);
+        context.getTimings().mark(MessageTimings.Stage.DECODED);
+      }
+      key = orderingKey.keyOf(context, decoded == null ? null : decoded.getPayload());
+    } catch (final Exception e) {
+      // processing decodes again and hands the failure to the error strategy
+      log.warn("Unable to resolve ordering key, message is processed unordered", e);
+    }
 
-        // TODO : This should be handled better
-        if (invokedHandlers == 0) {
-          throw new HoplinRuntimeException("No handlers defined for type : " + targetClass);
-        }
+    final MessagePayload<?> message = decoded;
+    dispatcher.execute(key, admit(context, () -> process(context, message)));
+  }
 
-        if (batchRequest) {
-          final String replyTo = properties.getReplyTo();
-          final String correlationId = properties.getCorrelationId();
-          final Map<String, Object> headers = properties.getHeaders();
-          final Object batchId = headers.get("x-batch-id");
-          headers.put("x-batch-correlationId", correlationId);
+  /**
+   * Bound the messages waiting for a handler, blocks the delivery thread while the internal queue
+   * is full unless the oldest waiting message is discarded
+   */
+  private Runnable admit(final MessageContext context, final Runnable task) {
+    return waiting == null ? task : waiting.offer(context, task);
+  }
 
-          if (log.isDebugEnabled()) {
-            log.debug("BatchIncoming context        >  {}", context);
-            log.debug("BatchIncoming replyTo        >  {}", replyTo);
-            log.debug("BatchIncoming correlationId  >  {}", correlationId);
-            log.debug("BatchIncoming batchId        >  {}", batchId);
-          }
+  private void discard(final MessageContext context) {
+    metrics.markMessageDiscarded();
+    if (log.isDebugEnabled()) {
+      log.debug("Internal queue of {} full, discarding oldest message : {}", queue, context);
+    }
+    acknowledge(context, AcknowledgmentStrategies.NACK_WITHOUT_REQUEUE.strategy());
+    if (prefetch != null) {
+      prefetch.discarded();
+    }
+  }
+
+  private MessagePayload<?> decode(final MessageContext context) {
+    final Codec codec = codecRegistry.getCodec(context.getProperties().getContentType());
+    return codec.deserialize(context.getBody(), MessagePayload.class);
+  }
 
-          final JobExecutionInformation executionInfo = context.getExecutionInfo();
+  @SuppressWarnings("unchecked")
+  private void process(final MessageContext context, final MessagePayload<?> decoded) {
+    final MessageTimings timings = context.getTimings();
+    timings.mark(MessageTimings.Stage.DISPATCHED);
+    final AMQP.BasicProperties properties = context.getProperties();
+    AckStrategy ack;
+
+    TraceContext previous = null;
+    final boolean traced = traceContextPropagation;
+    if (traced) {
+      context.setTraceContext(TraceContext.continueFrom(properties.getHeaders()));
+      previous = TraceContext.attach(context.getTraceContext());
+    }
+
+    try {
+      ack = ackFromOptions(queueOptions);
+
+      final MessagePayload message;
+      if (decoded != null) {
+        message = decoded;
+      } else {
+        message = decode(context);
+        timings.mark(MessageTimings.Stage.DECODED);
+      }
+      final Object val = message.getPayload();
+      final Class<?> targetClass = message.getTypeAsClass();
+      // every handler of the entry accepts the payload class, no casts to check
+      final MethodReference<?>[] consumers = handlers.get(targetClass);
+      // TODO : This should be handled better
+      if (consumers == null) {
+        throw new HoplinRuntimeException("No handlers defined for type : " + targetClass);
+      }
+      final boolean batchRequest = isBatchedRequest(context);
+
+      Reply<?> reply = null;
+      for (final MethodReference reference : consumers) {
+        try {
+          final BiFunction<Object, MessageContext, Reply<?>> handler = reference.getHandler();
+          reply = null;
+          reply = execute(context, val, handler);
           if (log.isDebugEnabled()) {
-            log.debug("Handler time : {}", executionInfo.asElapsedMillis());
+            log.debug("reply : {}", reply);
           }
 
-          if (!reply.isExceptional()) {
-            publisher.basicPublish(getChannel(), "", replyTo, reply.getValue(), headers);
-            ack = AcknowledgmentStrategies.BASIC_ACK.strategy();
+          // can't have multiple handlers for batched requests
+          if (batchRequest) {
+            break;
           }
+        } catch (final Exception e) {
+          log.error("Handler error for message  : " + message, e);
         }
+      }
 
-        if (reply.isExceptional()) {
-          ack = errorStrategy.handleConsumerError(context, reply.getException());
+      if (batchRequest) {
+        final String replyTo = properties.getReplyTo();
+        final String correlationId = properties.getCorrelationId();
+        final Map<String, Object> headers = properties.getHeaders();
+        final Object batchId = headers.get("x-batch-id");
+        headers.put("x-batch-correlationId", correlationId);
+
+        if (log.isDebugEnabled()) {
+          log.debug("BatchIncoming context        >  {}", context);
+          log.debug("BatchIncoming replyTo        >  {}", replyTo);
+          log.debug("BatchIncoming correlationId  >  {}", correlationId);
+          log.debug("BatchIncoming batchId        >  {}", batchId);
         }
-      } catch (final Exception e) {
-        log.error("Unable to process message", e);
-        try {
-          ack = errorStrategy.handleConsumerError(context, e);
-        } catch (final Exception ex2) {
-          log.error("Exception in error strategy", ex2);
+
+        final JobExecutionInformation executionInfo = context.getExecutionInfo();
+        if (log.isDebugEnabled()) {
+          log.debug("Handler time : {}", executionInfo.asElapsedMillis());
+        }
+
+        if (!reply.isExceptional()) {
+          publisher.basicPublish(getChannel(), "", replyTo, reply.getValue(), headers);
+          timings.mark(MessageTimings.Stage.REPLY_PUBLISHED);
           ack = AcknowledgmentStrategies.BASIC_ACK.strategy();
         }
       }
 
+      if (reply.isExceptional()) {
+        ack = errorStrategy.handleConsumerError(context, reply.getException());
+      }
+    } catch (final Exception e) {
+      log.error("Unable to process message", e);
+      try {
+        ack = errorStrategy.handleConsumerError(context, e);
+      } catch (final Exception ex2) {
+        log.error("Exception in error strategy", ex2);
+        ack = AcknowledgmentStrategies.BASIC_ACK.strategy();
+      }
+    } finally {
+      if (traced) {
+        TraceContext.attach(previous);
+      }
+    }
+
+    acknowledge(context, ack);
+    timings.mark(MessageTimings.Stage.ACKED);
+    if (prefetch != null) {
+      prefetch.completed(timings.between(MessageTimings.Stage.DISPATCHED,
+          MessageTimings.Stage.ACKED));
+    }
+    notifyCompleted(context);
+  }
+
+  private void acknowledge(final MessageContext context, final AckStrategy ack) {
+    if (queueOptions.isAutoAck()) {
+      // settled by the broker on delivery, acknowledging again would close the channel
+      return;
+    }
+    if (acks == null) {
       AckStrategy.acknowledge(getChannel(), context, ack);
-    }, executor);
+      return;
+    }
+    try {
+      acks.complete(context.getReceivedInfo().getDeliveryTag(), ack);
+    } catch (final Exception e) {
+      log.error("Unable to ACK context : " + context, e);
+    }
+  }
+
+  private void notifyCompleted(final MessageContext context) {
+    final MessageTimingListener listener = timingListener;
+    if (listener == null) {
+      return;
+    }
+    try {
+      listener.onCompleted(context);
+    } catch (final Exception e) {
+      log.warn("Timing listener failed", e);
+    }
   }
 
   /**
@@ -206,21 +409,18 @@ public class DefaultQueueConsumer extends DefaultConsumer {
     final JobExecutionInformation exec = new JobExecutionInformation();
     context.setExecutionInfo(exec);
     exec.setStartTime(System.nanoTime());
+    context.getTimings().markFirst(MessageTimings.Stage.HANDLER_START);
     try {
       return handler.apply(val, context);
     } catch (final Exception e) {
       return Reply.exceptionally(e);
     } finally {
       exec.setEndTime(System.nanoTime());
+      context.getTimings().mark(MessageTimings.Stage.HANDLER_END);
+      metrics.getHandlerLatency().record(exec.asElapsedNanon());
     }
   }
 
-  private <S, T> Optional<T> safeCast(final S candidate, Class<T> targetClass) {
-    return targetClass.isInstance(candidate)
-        ? Optional.of(targetClass.cast(candidate))
-        : Optional.empty();
-  }
-
   private AckStrategy ackFromOptions(final QueueOptions queueOptions) {
     if (queueOptions.isAutoAck()) {
       return AcknowledgmentStrategies.NOOP.strategy();
@@ -239,14 +439,48 @@ public class DefaultQueueConsumer extends DefaultConsumer {
       final BiFunction<T, MessageContext, Reply<?>> handler) {
     Objects.requireNonNull(clazz);
     Objects.requireNonNull(handler);
-    Class<? super T> clz = clazz;
+    final MethodReference<?> reference = MethodReference.of(clazz, handler);
+    final Map<Class<?>, MethodReference<?>[]> table = new LinkedHashMap<>(handlers);
+    final MethodReference<?>[] existing = table.get(clazz);
+    if (existing == null) {
+      table.put(clazz, new MethodReference<?>[]{reference});
+    } else {
+      final MethodReference<?>[] extended = Arrays.copyOf(existing, existing.length + 1);
+      extended[existing.length] = reference;
+      table.put(clazz, extended);
+    }
 
+    // payloads are still decoded to the superclasses the handler is bound to
+    final Set<Class<?>> classes = new LinkedHashSet<>(codecRegistry.getHandlerClasses());
+    Class<? super T> clz = clazz;
     while (clz != Object.class) {
-      handlers.put(clz, MethodReference.of(clazz, handler));
+      classes.add(clz);
       clz = clz.getSuperclass();
     }
 
-    log.info("Adding handlers : {}", handlers);
+    // handlers first, a payload decoded by the new codecs must find its handler
+    handlers = ImmutableMap.copyOf(table);
+    codecRegistry = codecRegistry.withHandlerClasses(classes);
+
+    log.info("Adding handler for type : {}", clazz);
+  }
+
+  @Override
+  public void handleShutdownSignal(final String consumerTag, final ShutdownSignalException sig) {
+    if (acks != null) {
+      acks.reset();
+    }
+    if (prefetch != null) {
+      prefetch.reset();
+    }
+    if (waiting != null && !queueOptions.isAutoAck()) {
+      // the broker requeues unacknowledged messages, processing them would only fail to ack
+      final int dropped = waiting.clear();
+      if (dropped > 0) {
+        log.info("Dropped {} waiting messages of {} after channel shutdown", dropped, queue);
+      }
+    }
+    super.handleShutdownSignal(consumerTag, sig);
   }
 
   @Override
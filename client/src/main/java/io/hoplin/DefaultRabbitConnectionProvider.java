@@ -1,15 +1,18 @@
 package io.hoplin;
 
+import com.rabbitmq.client.BlockedListener;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.ShutdownSignalException;
+import io.hoplin.ConnectionRegistry.SharedConnection;
 import java.io.IOException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import org.slf4j.Logger;
@@ -23,20 +26,49 @@ public class DefaultRabbitConnectionProvider implements ConnectionProvider {
 
   private static final Logger log = LoggerFactory.getLogger(DefaultRabbitConnectionProvider.class);
 
-  private final ScheduledExecutorService executor;
+  private final ExecutorRegistry executors;
+
+  private volatile ScheduledFuture<?> pendingReconnect;
+
+  private boolean disconnected;
 
   private final RabbitMQOptions config;
 
-  private Connection connection;
+  private final ConnectionRegistry registry;
+
+  // connection shared with other clients using the same options
+  private volatile SharedConnection connection;
 
+  // channel owned by this client, used for topology and consumers
   private Channel channel;
 
+  // moved to every connection this client acquires
+  private final List<BlockedListener> blockedListeners = new CopyOnWriteArrayList<>();
+
   public DefaultRabbitConnectionProvider(final RabbitMQOptions config) {
+    this(config, config.getConnectionRegistry());
+  }
+
+  public DefaultRabbitConnectionProvider(final RabbitMQOptions config,
+      final ConnectionRegistry registry) {
+    this(config, registry, ExecutorRegistry.getDefault());
+  }
+
+  public DefaultRabbitConnectionProvider(final RabbitMQOptions config,
+      final ConnectionRegistry registry, final ExecutorRegistry executors) {
     this.config = Objects.requireNonNull(config);
-    this.executor = Executors.newSingleThreadScheduledExecutor();
+    this.registry = Objects.requireNonNull(registry);
+    this.executors = Objects.requireNonNull(executors);
+    // released on disconnect
+    executors.retain();
   }
 
-  private static Connection newConnection(final RabbitMQOptions config)
+  @Override
+  public ExecutorRegistry getExecutors() {
+    return executors;
+  }
+
+  static Connection newConnection(final RabbitMQOptions config)
       throws IOException, TimeoutException {
     final ConnectionFactory cf = new ConnectionFactory();
     final String uri = config.getUri();
@@ -80,13 +112,7 @@ public class DefaultRabbitConnectionProvider implements ConnectionProvider {
 
   @Override
   public Channel acquire() {
-    if (!isConnected()) {
-      log.info("Not connected to AMQP, attempting reconnect");
-      final boolean connected = connect();
-      if (!connected) {
-        throw new IllegalStateException("Client is not connected after reconnect attempt");
-      }
-    }
+    ensureConnected();
 
     if (!isOpenChannel()) {
       try {
@@ -101,6 +127,72 @@ public class DefaultRabbitConnectionProvider implements ConnectionProvider {
     return channel;
   }
 
+  @Override
+  public Channel openChannel() throws IOException {
+    ensureConnected();
+    return createChannel();
+  }
+
+  @Override
+  public Channel lease() {
+    return lease(true);
+  }
+
+  @Override
+  public Channel lease(final boolean publisherConfirms) {
+    ensureConnected();
+    final SharedConnection shared = connection;
+    if (shared == null) {
+      throw new IllegalStateException("Client is not connected");
+    }
+    return shared.getPool(publisherConfirms).lease();
+  }
+
+  @Override
+  public void release(final Channel channel) {
+    // return to the pool of the connection the channel was opened on, it may have been replaced
+    final SharedConnection owner = owner(channel);
+    if (owner != null) {
+      owner.getPool(channel).release(channel);
+    }
+  }
+
+  @Override
+  public synchronized void addBlockedListener(final BlockedListener listener) {
+    Objects.requireNonNull(listener);
+    blockedListeners.add(listener);
+    final SharedConnection shared = connection;
+    if (shared != null) {
+      shared.getConnection().addBlockedListener(listener);
+    }
+  }
+
+  @Override
+  public PublisherConfirms confirms(final Channel channel) {
+    final SharedConnection owner = owner(channel);
+    return owner == null ? null : owner.getPool(channel).getConfirms(channel);
+  }
+
+  private SharedConnection owner(final Channel channel) {
+    final SharedConnection shared = connection;
+    final Connection leasedFrom = channel.getConnection();
+    // channels are usually leased from the current connection, skip the registry lookup
+    if (shared != null && shared.getConnection() == leasedFrom) {
+      return shared;
+    }
+    return registry.find(leasedFrom);
+  }
+
+  private void ensureConnected() {
+    if (!isConnected()) {
+      log.info("Not connected to AMQP, attempting reconnect");
+      final boolean connected = connect();
+      if (!connected) {
+        throw new IllegalStateException("Client is not connected after reconnect attempt");
+      }
+    }
+  }
+
   @Override
   public boolean isConnected() {
     return connection != null && connection.isOpen();
@@ -176,7 +268,11 @@ public class DefaultRabbitConnectionProvider implements ConnectionProvider {
       log.debug("Connecting to rabbitmq...");
     }
     long s = System.currentTimeMillis();
-    connection = newConnection(config);
+    releaseConnection();
+    connection = registry.acquire(config, this);
+    for (final BlockedListener listener : blockedListeners) {
+      connection.getConnection().addBlockedListener(listener);
+    }
     channel = createChannel();
     long ms = System.currentTimeMillis() - s;
     if (log.isDebugEnabled()) {
@@ -205,13 +301,16 @@ public class DefaultRabbitConnectionProvider implements ConnectionProvider {
 
   @Override
   public void disconnect() {
-    this.executor.shutdownNow();
+    final ScheduledFuture<?> reconnect = pendingReconnect;
+    if (reconnect != null) {
+      reconnect.cancel(true);
+    }
     try {
       if (log.isDebugEnabled()) {
         log.debug("Disconnecting  rabbitmq...");
       }
 
-      if (channel != null) {
+      if (channel != null && channel.isOpen()) {
         try {
           log.info("Close Channel #{}...", channel.getChannelNumber());
           channel.close();
@@ -220,35 +319,37 @@ public class DefaultRabbitConnectionProvider implements ConnectionProvider {
         }
       }
 
-      if (connection != null) {
-        try {
-          log.info("Close Connection...");
-          connection.close();
-        } catch (final IOException e) {
-          log.error("Unable to close connection", e);
-        }
-      }
+      releaseConnection();
 
       if (log.isDebugEnabled()) {
         log.debug("Disconnected rabbitmq !");
       }
     } finally {
-      connection = null;
       channel = null;
+      releaseExecutors();
     }
   }
 
-  private synchronized void abortConnection() {
-    if (connection == null) {
-      return;
-    }
-    try {
-      connection.abort();
-    } catch (final Exception e) {
-      log.warn("Failed to abort connect due to " + e.getMessage());
+  private synchronized void releaseExecutors() {
+    if (!disconnected) {
+      disconnected = true;
+      executors.release();
     }
+  }
 
+  /**
+   * Release our reference to the shared connection, it is closed once no client uses it
+   */
+  private synchronized void releaseConnection() {
+    final SharedConnection shared = connection;
     connection = null;
+    if (shared != null) {
+      // the connection may outlive this client
+      for (final BlockedListener listener : blockedListeners) {
+        shared.getConnection().removeBlockedListener(listener);
+      }
+      registry.release(shared);
+    }
   }
 
   @Override
@@ -258,7 +359,7 @@ public class DefaultRabbitConnectionProvider implements ConnectionProvider {
       return;
     }
 
-    abortConnection();
+    releaseConnection();
     final long delay = config.getReconnectDelay();
     log.info(
         "RabbitMQ connection shutdown! The client will attempt to reconnect automatically in : {} sec, caused by : {}",
@@ -266,7 +367,10 @@ public class DefaultRabbitConnectionProvider implements ConnectionProvider {
     asyncWaitAndReconnect(delay);
   }
 
-  private void asyncWaitAndReconnect(final long delay) {
-    executor.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+  private synchronized void asyncWaitAndReconnect(final long delay) {
+    if (disconnected) {
+      return;
+    }
+    pendingReconnect = executors.reconnect().schedule(this::connect, delay, TimeUnit.MILLISECONDS);
   }
 }
@@ -2,13 +2,17 @@ package io.hoplin;
 
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeoutException;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -30,7 +34,11 @@ public class DefaultRabbitMQClient implements RabbitMQClient {
 
   private final ConnectionProvider provider;
 
-  private DefaultQueueConsumer consumer;
+  // consumers by queue, each on a channel of its own, guarded by this
+  private final Map<String, List<DefaultQueueConsumer>> consumers = new LinkedHashMap<>();
+
+  // options the consumers of a queue were started with, guarded by this
+  private final Map<String, QueueOptions> subscriptions = new HashMap<>();
 
   private final Publisher publisher;
 
@@ -38,7 +46,12 @@ public class DefaultRabbitMQClient implements RabbitMQClient {
     this.options = Objects.requireNonNull(options, "Options are required and can't be null");
     this.provider = ConnectionProvider.createAndConnect(options);
     this.channel = provider.acquire();
-    this.publisher = new Publisher(Executors.newWorkStealingPool(Runtime.getRuntime().availableProcessors()));
+    this.publisher = new Publisher(provider.getExecutors().publish(),
+        options.getCodec().create(Collections.emptySet()), PublishWindow.of(options),
+        options.getMessageIdGenerator());
+    publisher.setTraceContextPropagation(options.isTraceContextPropagation());
+
+    provider.addBlockedListener(publisher.getWindow());
 
     channel.addReturnListener(new UnroutableMessageReturnListener(options));
   }
@@ -67,38 +80,92 @@ public class DefaultRabbitMQClient implements RabbitMQClient {
     Objects.requireNonNull(handler);
     Objects.requireNonNull(options);
 
-    try {
-      if (consumer == null) {
-        //basic.qos method to allow you to limit the number of unacknowledged messages
-        final boolean autoAck = options.isAutoAck();
-        final int prefetchCount = options.getPrefetchCount();
-        final boolean publisherConfirms = options.isPublisherConfirms();
-
-        log.info("basicConsume autoAck : {} ", autoAck);
-        log.info("basicConsume prefetchCount : {} ", prefetchCount);
-        log.info("basicConsume publisherConfirms : {} ", publisherConfirms);
-
-        // Enables create acknowledgements on this channel
-        if (publisherConfirms) {
-          channel.confirmSelect();
-          channel.addConfirmListener(this::confirmedAck, this::confirmedNack);
-        }
+    final List<DefaultQueueConsumer> existing = consumers.get(queue);
+    if (existing != null) {
+      // later subscriptions add handlers to the running consumers, their options are ignored
+      final QueueOptions running = subscriptions.get(queue);
+      if (!options.equals(running)) {
+        log.warn("basicConsume queue : {} is already consumed with {}, ignoring options {} of "
+            + "handler for {}", queue, running, options, clazz.getName());
+      }
+      for (final DefaultQueueConsumer consumer : existing) {
+        consumer.addHandler(clazz, handler);
+      }
+      return;
+    }
 
-        consumer = new DefaultQueueConsumer(queue, channel, options);
-        channel.basicQos(prefetchCount);
+    log.info("basicConsume queue : {} ", queue);
+    log.info("basicConsume autoAck : {} ", options.isAutoAck());
+    log.info("basicConsume prefetchCount : {} ", options.getPrefetchCount());
+    log.info("basicConsume adaptivePrefetch : {} ", options.isAdaptivePrefetch());
+    log.info("basicConsume consumerCount : {} ", options.getConsumerCount());
 
-        final String consumerTag = channel.basicConsume(queue, autoAck, consumer);
+    final List<DefaultQueueConsumer> started = new ArrayList<>();
+    try {
+      for (int i = 0; i < options.getConsumerCount(); ++i) {
+        final DefaultQueueConsumer consumer = newConsumer(queue, options);
+        started.add(consumer);
+        // handler is added before the first delivery can arrive
+        consumer.addHandler(clazz, handler);
+        final String consumerTag = consumer.getChannel()
+            .basicConsume(queue, options.isAutoAck(), consumer);
         if (log.isDebugEnabled()) {
           log.debug("Assigned consumer tag : {}", consumerTag);
         }
       }
-
-      // add the handler
-      consumer.addHandler(clazz, handler);
-    } catch (final IOException e) {
+    } catch (final IOException | RuntimeException e) {
       log.error("Unable to subscribe messages", e);
+      started.forEach(this::close);
       throw new HoplinRuntimeException("Unable to subscribe messages", e);
     }
+    consumers.put(queue, started);
+    subscriptions.put(queue, options);
+  }
+
+  /**
+   * Create consumer on a channel of its own
+   */
+  private DefaultQueueConsumer newConsumer(final String queue, final QueueOptions options)
+      throws IOException {
+    final Channel consumerChannel = provider.openChannel();
+    try {
+      // replies are published without waiting for confirms, so the channel is not in confirm mode
+      consumerChannel.addReturnListener(new UnroutableMessageReturnListener(this.options));
+
+      final ExecutionMode mode = options.getExecutionMode() != null
+          ? options.getExecutionMode() : this.options.getExecutionMode();
+      // virtual threads are bounded by the highest prefetch count the consumer may use
+      final int prefetchCount = options.isAdaptivePrefetch()
+          ? options.getMaxPrefetchCount() : options.getPrefetchCount();
+
+      final DefaultQueueConsumer consumer = new DefaultQueueConsumer(queue, consumerChannel,
+          options, ConsumerExecutors.create(provider.getExecutors(), mode,
+          options.getConcurrency(), prefetchCount), this.options.getCodec());
+      consumer.setTracing(this.options.getTimingListener(),
+          this.options.isTraceContextPropagation());
+      consumer.setExecutors(provider.getExecutors());
+      //basic.qos method to allow you to limit the number of unacknowledged messages
+      consumer.applyPrefetch();
+      return consumer;
+    } catch (final IOException | RuntimeException e) {
+      close(consumerChannel);
+      throw e;
+    }
+  }
+
+  private void close(final DefaultQueueConsumer consumer) {
+    consumer.release();
+    close(consumer.getChannel());
+  }
+
+  private void close(final Channel consumerChannel) {
+    try {
+      if (consumerChannel.isOpen()) {
+        consumerChannel.close();
+      }
+    } catch (final IOException | TimeoutException | ShutdownSignalException e) {
+      log.warn("Unable to close consumer channel", e);
+    }
   }
 
   @Override
@@ -116,15 +183,6 @@ public class DefaultRabbitMQClient implements RabbitMQClient {
     basicConsume(queue, options, clazz, consumer);
   }
 
-
-  private void confirmedAck(long deliveryTag, boolean multiple) {
-    log.info("PublisherConfirmed ACK(deliveryTag, multiple) :: {}, {}", deliveryTag, multiple);
-  }
-
-  private void confirmedNack(long deliveryTag, boolean multiple) {
-    log.info("PublisherConfirmed NACK(deliveryTag, multiple) :: {}, {}", deliveryTag, multiple);
-  }
-
   @Override
   public void exchangeDeclare(final String exchange,
       final String type,
@@ -177,7 +235,12 @@ public class DefaultRabbitMQClient implements RabbitMQClient {
   }
 
   @Override
-  public void disconnect() throws IOException {
+  public synchronized void disconnect() throws IOException {
+    for (final List<DefaultQueueConsumer> queueConsumers : consumers.values()) {
+      queueConsumers.forEach(this::close);
+    }
+    consumers.clear();
+    subscriptions.clear();
     if (provider != null) {
       provider.disconnect();
     }
@@ -227,10 +290,48 @@ public class DefaultRabbitMQClient implements RabbitMQClient {
   public <T> void basicPublish(final String exchange, final String routingKey, final T message,
       final Map<String, Object> headers) {
 
-    with(channel -> {
-      publisher.basicPublishAsync(channel, exchange, routingKey, message, headers);
-      return null;
-    });
+    publisher.basicPublishAsync(provider, exchange, routingKey, message, headers);
+  }
+
+  @Override
+  public <T> void basicPublish(final String exchange, final String routingKey, final T message,
+      final Map<String, Object> headers, final PropertiesTemplate template) {
+    publisher.basicPublishAsync(provider, exchange, routingKey, message, headers, template);
+  }
+
+  @Override
+  public <T> CompletableFuture<Void> basicPublishAsync(final String exchange,
+      final String routingKey, final T message) {
+    return basicPublishAsync(exchange, routingKey, message, Collections.emptyMap());
+  }
+
+  @Override
+  public <T> CompletableFuture<Void> basicPublishAsync(final String exchange,
+      final String routingKey, final T message, final Map<String, Object> headers) {
+    return publisher.basicPublishConfirmAsync(provider, exchange, routingKey, message, headers);
+  }
+
+  @Override
+  public <T> CompletableFuture<Void> basicPublishAsync(final String exchange,
+      final String routingKey, final T message, final Map<String, Object> headers,
+      final PropertiesTemplate template) {
+    return publisher
+        .basicPublishConfirmAsync(provider, exchange, routingKey, message, headers, template);
+  }
+
+  @Override
+  public <T> CompletableFuture<BatchPublishResult> basicPublishBatchAsync(final String exchange,
+      final String routingKey, final List<T> messages) {
+    return publisher.basicPublishBatchAsync(provider, exchange, routingKey, messages,
+        Collections.emptyMap());
+  }
+
+  @Override
+  public <T> CompletableFuture<BatchPublishResult> basicPublishBatchAsync(final String exchange,
+      final String routingKey, final List<T> messages, final Map<String, Object> headers,
+      final PropertiesTemplate template) {
+    return publisher
+        .basicPublishBatchAsync(provider, exchange, routingKey, messages, headers, template);
   }
 
   @Override
@@ -0,0 +1,152 @@
+package io.hoplin;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounds the deliveries a consumer accepted but did not start processing yet, between the delivery
+ * thread of the channel and the dispatch executor. When it is full the delivery thread either waits
+ * until a message starts, which pauses consumption of the channel until the handlers catch up, or
+ * discards the oldest waiting message to make room for the new one.
+ * <p>
+ * Waiting messages are kept in arrival order. Messages with an ordering key may start out of order,
+ * so they are removed from anywhere in the queue rather than only from its head.
+ * </p>
+ *
+ * @see QueueOptions#setMaxInternalQueueSize(int)
+ * @see QueueOptions#setKeepMostRecent(boolean)
+ */
+final class DispatchQueue {
+
+  private static final Logger log = LoggerFactory.getLogger(DispatchQueue.class);
+
+  private final int capacity;
+
+  private final boolean keepMostRecent;
+
+  private final Consumer<MessageContext> discarded;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition available = lock.newCondition();
+
+  // guarded by lock
+  private final Set<Entry> waiting = new LinkedHashSet<>();
+
+  /**
+   * Create new queue
+   *
+   * @param capacity       the maximum number of waiting messages
+   * @param keepMostRecent true to discard the oldest waiting message when full, false to wait
+   * @param discarded      called with messages discarded to make room, outside of any lock
+   */
+  DispatchQueue(final int capacity, final boolean keepMostRecent,
+      final Consumer<MessageContext> discarded) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity should be greater than 0 : " + capacity);
+    }
+    this.capacity = capacity;
+    this.keepMostRecent = keepMostRecent;
+    this.discarded = Objects.requireNonNull(discarded);
+  }
+
+  /**
+   * Accept message, blocks while the queue is full unless the oldest message is discarded
+   *
+   * @param context the delivered message
+   * @param task    the processing of the message
+   * @return task to hand to the executor, it skips processing when the message was discarded
+   * before it started
+   */
+  Runnable offer(final MessageContext context, final Runnable task) {
+    final Entry entry = new Entry(context, task);
+    Entry evicted = null;
+    lock.lock();
+    try {
+      while (waiting.size() >= capacity) {
+        if (keepMostRecent) {
+          final Iterator<Entry> it = waiting.iterator();
+          evicted = it.next();
+          it.remove();
+          break;
+        }
+        available.await();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted waiting for dispatch queue, accepting message over capacity");
+    } finally {
+      waiting.add(entry);
+      lock.unlock();
+    }
+
+    if (evicted != null) {
+      discarded.accept(evicted.context);
+    }
+    return entry;
+  }
+
+  /**
+   * Drop all waiting messages without processing them, e.g. after the channel shut down and the
+   * broker requeued them
+   *
+   * @return number of dropped messages
+   */
+  int clear() {
+    lock.lock();
+    try {
+      final int size = waiting.size();
+      waiting.clear();
+      available.signalAll();
+      return size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return number of messages waiting to be processed
+   */
+  int size() {
+    lock.lock();
+    try {
+      return waiting.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private final class Entry implements Runnable {
+
+    private final MessageContext context;
+
+    private final Runnable task;
+
+    Entry(final MessageContext context, final Runnable task) {
+      this.context = context;
+      this.task = task;
+    }
+
+    @Override
+    public void run() {
+      lock.lock();
+      try {
+        if (!waiting.remove(this)) {
+          // discarded or dropped before it started
+          return;
+        }
+        available.signal();
+      } finally {
+        lock.unlock();
+      }
+      task.run();
+    }
+  }
+}
@@ -265,6 +265,55 @@ public interface ExchangeClient {
   <T> CompletableFuture<Void> publishAsync(final T message, final String routingKey,
       final Consumer<MessageConfiguration> cfg);
 
+  /**
+   * Publish batch of messages with defined routingKey. Messages are written back-to-back on a single
+   * channel and the broker confirms of the whole batch are awaited once.
+   *
+   * @param messages   the messages to publish
+   * @param routingKey the routing key to associate the messages with
+   * @param <T>        the type of the messages to publish
+   * @return future completed when all messages have been confirmed or failed
+   */
+  <T> CompletableFuture<BatchPublishResult> publishBatch(final Iterable<T> messages,
+      final String routingKey);
+
+  /**
+   * Publish batch of messages with defined routingKey and supplied {@link MessageConfiguration}
+   *
+   * @param messages   the messages to publish
+   * @param routingKey the routing key to associate the messages with
+   * @param cfg        the configuration applied once and shared by all messages of the batch
+   * @param <T>        the type of the messages to publish
+   * @return future completed when all messages have been confirmed or failed
+   */
+  <T> CompletableFuture<BatchPublishResult> publishBatch(final Iterable<T> messages,
+      final String routingKey, final Consumer<MessageConfiguration> cfg);
+
+  /**
+   * Create streaming publisher that publishes messages in batches of {@link
+   * BatchPublisher#DEFAULT_BATCH_SIZE}
+   *
+   * @param routingKey the routing key to associate the messages with
+   * @param <T>        the type of the messages to publish
+   * @return new batch publisher
+   */
+  default <T> BatchPublisher<T> batchPublisher(final String routingKey) {
+    return batchPublisher(routingKey, BatchPublisher.DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Create streaming publisher that publishes messages in batches
+   *
+   * @param routingKey the routing key to associate the messages with
+   * @param batchSize  number of messages per batch
+   * @param <T>        the type of the messages to publish
+   * @return new batch publisher
+   */
+  default <T> BatchPublisher<T> batchPublisher(final String routingKey, final int batchSize) {
+    Objects.requireNonNull(routingKey);
+    return new BatchPublisher<>(batch -> publishBatch(batch, routingKey), batchSize);
+  }
+
   /**
    * Add subscription and consume messages from the queue Calling this method repeatably will only
    * initialize consumer once to make sure that the Consumer is setup. After that this method  will
@@ -0,0 +1,22 @@
+package io.hoplin;
+
+/**
+ * How consumers run message handlers
+ *
+ * @see RabbitMQOptions#setExecutionMode(ExecutionMode)
+ * @see QueueOptions#setExecutionMode(ExecutionMode)
+ */
+public enum ExecutionMode {
+
+  /**
+   * Run handlers on a fixed pool of platform threads sized by the consumer concurrency
+   */
+  POOLED,
+
+  /**
+   * Run each delivery on its own virtual thread, for handlers that block on I/O. Concurrency is
+   * bounded by the prefetch count instead of a pool size. Requires JDK 21 or newer, older runtimes
+   * fall back to {@link #POOLED}.
+   */
+  VIRTUAL_THREADS
+}
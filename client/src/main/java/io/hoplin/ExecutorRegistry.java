@@ -0,0 +1,340 @@
+package io.hoplin;
+
+import io.hoplin.metrics.ExecutorMetrics;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the thread pools shared by clients, instead of every consumer, publisher and
+ * connection owning its own pool.
+ * <p>
+ * Pools are bounded, named after their purpose and created on first use. Idle threads time out so
+ * a quiet process does not hold on to them, and threads are daemons so a process that never closes
+ * its clients can still exit. Clients retain the registry while they are open and release it on
+ * close, the pools of a registry created by the application are shut down when the last client
+ * releases it. The pools of the {@link #getDefault() default} registry are used by consumers
+ * without a client too, so they are never shut down.
+ * </p>
+ *
+ * <ul>
+ *  <li>{@link #dispatch(int)} runs message handlers of consumers</li>
+ *  <li>{@link #reply()} completes replies of RPC and batch clients</li>
+ *  <li>{@link #publish()} serializes and writes published messages</li>
+ *  <li>{@link #error()} runs consumer error strategies</li>
+ *  <li>{@link #reconnect()} schedules reconnect attempts</li>
+ *  <li>{@link #scheduler()} runs delayed client work like flushing coalesced acknowledgements</li>
+ * </ul>
+ *
+ * @see ExecutorMetrics
+ */
+public final class ExecutorRegistry {
+
+  private static final Logger log = LoggerFactory.getLogger(ExecutorRegistry.class);
+
+  private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+  private static final ExecutorRegistry DEFAULT = new ExecutorRegistry("hoplin",
+      Math.max(16, PROCESSORS * 4), PROCESSORS, Math.max(2, PROCESSORS / 2), false);
+
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private static final int REPLY_THREADS = Math.max(2, PROCESSORS / 2);
+
+  private final String name;
+
+  private final int dispatchThreads;
+
+  private final int publishThreads;
+
+  private final int errorThreads;
+
+  // false for the default registry, its pools are handed out without being retained
+  private final boolean shutdownOnRelease;
+
+  // fields below are guarded by this
+  private int references;
+
+  private ThreadPoolExecutor dispatch;
+
+  private ThreadPoolExecutor publish;
+
+  private ThreadPoolExecutor error;
+
+  private ThreadPoolExecutor reply;
+
+  private ScheduledThreadPoolExecutor reconnect;
+
+  private ScheduledThreadPoolExecutor scheduler;
+
+  /**
+   * Create new registry
+   *
+   * @param name            prefix of pool and thread names
+   * @param dispatchThreads threads shared by all consumers
+   * @param publishThreads  threads shared by all publishers
+   * @param errorThreads    threads shared by all error strategies
+   */
+  public ExecutorRegistry(final String name, final int dispatchThreads, final int publishThreads,
+      final int errorThreads) {
+    this(name, dispatchThreads, publishThreads, errorThreads, true);
+  }
+
+  private ExecutorRegistry(final String name, final int dispatchThreads, final int publishThreads,
+      final int errorThreads, final boolean shutdownOnRelease) {
+    if (dispatchThreads <= 0 || publishThreads <= 0 || errorThreads <= 0) {
+      throw new IllegalArgumentException("thread counts should be greater than 0");
+    }
+    this.name = Objects.requireNonNull(name);
+    this.dispatchThreads = dispatchThreads;
+    this.publishThreads = publishThreads;
+    this.errorThreads = errorThreads;
+    this.shutdownOnRelease = shutdownOnRelease;
+  }
+
+  /**
+   * Get the registry shared by all clients of this class loader
+   *
+   * @return default registry
+   */
+  public static ExecutorRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Retain the registry, the pools stay alive until every retain is matched by {@link #release()}
+   */
+  public synchronized void retain() {
+    ++references;
+  }
+
+  /**
+   * Release the registry, the pools are shut down when no client retains it unless this is the
+   * default registry. Pools used afterwards are created again.
+   */
+  public void release() {
+    final ExecutorService[] pools;
+    synchronized (this) {
+      if (references == 0 || --references > 0 || !shutdownOnRelease) {
+        return;
+      }
+      pools = new ExecutorService[]{dispatch, publish, error, reply, reconnect, scheduler};
+      dispatch = null;
+      publish = null;
+      error = null;
+      reply = null;
+      reconnect = null;
+      scheduler = null;
+    }
+
+    log.info("Shutting down {} executors, no clients left", name);
+    for (final ExecutorService pool : pools) {
+      if (pool != null) {
+        pool.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Get the pool running message handlers. Handlers of all consumers share it, including RPC
+   * responders, so a handler blocking on work that needs another handler to run, like an RPC
+   * request served in the same process, can starve the pool. Replies of RPC and batch clients are
+   * completed on {@link #reply()} so handlers waiting for them do not.
+   *
+   * @return dispatch pool
+   */
+  public synchronized Executor dispatch() {
+    if (dispatch == null) {
+      dispatch = newPool("dispatch", dispatchThreads);
+    }
+    return dispatch;
+  }
+
+  /**
+   * Get view of the dispatch pool that runs at most {@code concurrency} tasks at once, tasks
+   * beyond the limit wait in the view. The dispatch pool size bounds the concurrency of all views.
+   *
+   * @param concurrency maximum tasks running at once
+   * @return bounded view of the dispatch pool
+   */
+  public Executor dispatch(final int concurrency) {
+    return new LimitedExecutor(dispatch(), concurrency);
+  }
+
+  /**
+   * Get the pool completing replies of RPC callers and batch clients, separate from the dispatch
+   * pool so a reply is never waiting behind the handlers blocked on it
+   *
+   * @return reply pool
+   */
+  public synchronized Executor reply() {
+    if (reply == null) {
+      reply = newPool("reply", REPLY_THREADS);
+    }
+    return reply;
+  }
+
+  /**
+   * Get the pool publishing messages
+   *
+   * @return publish pool
+   */
+  public synchronized Executor publish() {
+    if (publish == null) {
+      publish = newPool("publish", publishThreads);
+    }
+    return publish;
+  }
+
+  /**
+   * Get the pool running consumer error strategies
+   *
+   * @return error pool
+   */
+  public synchronized Executor error() {
+    if (error == null) {
+      error = newPool("error", errorThreads);
+    }
+    return error;
+  }
+
+  /**
+   * Get the scheduler for reconnect attempts
+   *
+   * @return reconnect scheduler
+   */
+  public synchronized ScheduledExecutorService reconnect() {
+    if (reconnect == null) {
+      reconnect = new ScheduledThreadPoolExecutor(1, newThreadFactory("reconnect"));
+      reconnect.setRemoveOnCancelPolicy(true);
+      register("reconnect", reconnect);
+    }
+    return reconnect;
+  }
+
+  /**
+   * Get the scheduler for short delayed tasks of clients
+   *
+   * @return scheduler
+   */
+  public synchronized ScheduledExecutorService scheduler() {
+    if (scheduler == null) {
+      scheduler = new ScheduledThreadPoolExecutor(1, newThreadFactory("scheduler"));
+      scheduler.setRemoveOnCancelPolicy(true);
+      register("scheduler", scheduler);
+    }
+    return scheduler;
+  }
+
+  /**
+   * Get number of clients retaining the registry
+   *
+   * @return reference count
+   */
+  public synchronized int getReferenceCount() {
+    return references;
+  }
+
+  private ThreadPoolExecutor newPool(final String purpose, final int threads) {
+    final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+        KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        newThreadFactory(purpose));
+    pool.allowCoreThreadTimeOut(true);
+    register(purpose, pool);
+    return pool;
+  }
+
+  private void register(final String purpose, final ThreadPoolExecutor pool) {
+    final String key = name + "-" + purpose;
+    final ExecutorMetrics metrics = ExecutorMetrics.of(pool);
+    // pools created again after a shutdown replace the metrics of their predecessor
+    ExecutorMetrics.Factory.register(key, metrics);
+  }
+
+  private ThreadFactory newThreadFactory(final String purpose) {
+    final AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      final Thread thread = new Thread(runnable,
+          String.format("%s-%s-%d", name, purpose, counter.incrementAndGet()));
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Runs at most a fixed number of tasks at once on a shared executor
+   */
+  private static final class LimitedExecutor implements Executor {
+
+    private final Executor executor;
+
+    private final int limit;
+
+    private final ConcurrentLinkedDeque<Runnable> tasks = new ConcurrentLinkedDeque<>();
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private LimitedExecutor(final Executor executor, final int limit) {
+      if (limit <= 0) {
+        throw new IllegalArgumentException("limit should be greater than 0 : " + limit);
+      }
+      this.executor = executor;
+      this.limit = limit;
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+      tasks.add(Objects.requireNonNull(task));
+      try {
+        schedule();
+      } catch (final RejectedExecutionException e) {
+        // a rejected task never runs, tasks accepted earlier stay queued
+        tasks.removeLastOccurrence(task);
+        throw e;
+      }
+    }
+
+    private void schedule() {
+      for (; ; ) {
+        final int running = active.get();
+        if (running >= limit || tasks.isEmpty()) {
+          return;
+        }
+        if (!active.compareAndSet(running, running + 1)) {
+          continue;
+        }
+
+        final Runnable task = tasks.poll();
+        if (task == null) {
+          active.decrementAndGet();
+          continue;
+        }
+        try {
+          executor.execute(() -> {
+            try {
+              task.run();
+            } finally {
+              active.decrementAndGet();
+              schedule();
+            }
+          });
+        } catch (final RejectedExecutionException e) {
+          tasks.addFirst(task);
+          active.decrementAndGet();
+          throw e;
+        }
+      }
+    }
+  }
+}
@@ -16,6 +16,8 @@ public class MessageConfiguration {
 
   private final Map<String, Object> headers = new HashMap<>();
 
+  private PropertiesTemplate template = PropertiesTemplate.persistent();
+
   public Map<String, Object> getHeaders() {
     return headers;
   }
@@ -42,6 +44,69 @@ public class MessageConfiguration {
     return this;
   }
 
+  /**
+   * Set template the properties of the message are derived from, replaces the delivery mode,
+   * priority, expiration and content type set so far
+   *
+   * @param template the template
+   * @return this configuration
+   */
+  public MessageConfiguration setTemplate(final PropertiesTemplate template) {
+    this.template = Objects.requireNonNull(template, "template can't be null");
+    return this;
+  }
+
+  /**
+   * Set if the broker should write the message to disk, transient messages skip the write but are
+   * lost when the broker restarts. Messages are persistent by default.
+   *
+   * @param persistent true for persistent messages
+   * @return this configuration
+   */
+  public MessageConfiguration setPersistent(final boolean persistent) {
+    template = template.withPersistent(persistent);
+    return this;
+  }
+
+  /**
+   * Set message priority
+   *
+   * @param priority the priority, null for none
+   * @return this configuration
+   */
+  public MessageConfiguration setPriority(final Integer priority) {
+    template = template.withPriority(priority);
+    return this;
+  }
+
+  /**
+   * Set per message TTL
+   *
+   * @param expiration the TTL in milliseconds, null for none
+   * @return this configuration
+   */
+  public MessageConfiguration setExpiration(final String expiration) {
+    template = template.withExpiration(expiration);
+    return this;
+  }
+
+  /**
+   * Set content type, by default the content type of the client codec is used. Messages are
+   * serialized by the codec writing this content type, JSON or CBOR, publishing fails for content
+   * types no codec writes.
+   *
+   * @param contentType the content type
+   * @return this configuration
+   */
+  public MessageConfiguration setContentType(final String contentType) {
+    template = template.withContentType(contentType);
+    return this;
+  }
+
+  public PropertiesTemplate getTemplate() {
+    return template;
+  }
+
   public BasicProperties getProperties() {
     return properties;
   }
@@ -55,6 +120,7 @@ public class MessageConfiguration {
     return "MessageConfiguration{" +
         "nativeMessageFormat=" + nativeMessageFormat +
         ", properties=" + properties +
+        ", template=" + template +
         ", headers=" + headers +
         '}';
   }
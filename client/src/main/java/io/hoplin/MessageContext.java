@@ -18,6 +18,10 @@ public class MessageContext {
 
   private JobExecutionInformation executionInfo;
 
+  private final MessageTimings timings = new MessageTimings();
+
+  private TraceContext traceContext;
+
   /**
    * Create new message context
    *
@@ -43,6 +47,7 @@ public class MessageContext {
     );
 
     final MessageContext context = new MessageContext();
+    context.timings.mark(MessageTimings.Stage.RECEIVED);
     context.setBody(body);
     context.setReceivedInfo(receivedInfo);
     context.setProperties(properties);
@@ -99,12 +104,35 @@ public class MessageContext {
     this.executionInfo = Objects.requireNonNull(executionInfo);
   }
 
+  /**
+   * Get timestamps of the processing stages of this message
+   *
+   * @return stage timings
+   */
+  public MessageTimings getTimings() {
+    return timings;
+  }
+
+  /**
+   * Get trace context of this message, only set when trace context propagation is enabled
+   *
+   * @return trace context or null
+   */
+  public TraceContext getTraceContext() {
+    return traceContext;
+  }
+
+  public MessageContext setTraceContext(final TraceContext traceContext) {
+    this.traceContext = traceContext;
+    return this;
+  }
 
   public String toString() {
     return "MessageContext{" +
         "receivedInfo=" + receivedInfo +
         ", properties=" + properties +
         ", executionInfo=" + executionInfo +
+        ", timings=" + timings +
         ", body=" + new String(body) +
         '}';
   }
@@ -0,0 +1,39 @@
+package io.hoplin;
+
+import java.util.UUID;
+
+/**
+ * Generates the message and correlation ids of published messages
+ *
+ * @see RabbitMQOptions#setMessageIdGenerator(MessageIdGenerator)
+ */
+@FunctionalInterface
+public interface MessageIdGenerator {
+
+  /**
+   * Generate next id, ids have to be unique across processes publishing to the same broker
+   *
+   * @return new id
+   */
+  String nextId();
+
+  /**
+   * Generator of sequential ids in UUID format that does not touch {@link java.security.SecureRandom}
+   * after it has been created, this is the default
+   *
+   * @return shared sequential generator
+   */
+  static MessageIdGenerator sequential() {
+    return SequentialMessageIdGenerator.getDefault();
+  }
+
+  /**
+   * Generator of random UUIDs, every id is drawn from {@link java.security.SecureRandom} which is
+   * slow and contended when many threads publish
+   *
+   * @return random generator
+   */
+  static MessageIdGenerator random() {
+    return () -> UUID.randomUUID().toString();
+  }
+}
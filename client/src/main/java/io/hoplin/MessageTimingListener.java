@@ -0,0 +1,19 @@
+package io.hoplin;
+
+/**
+ * Notified when a consumer finished processing a message, the context carries the
+ * {@link MessageTimings} of every stage the message passed through. Listeners run on the dispatch
+ * thread and should return quickly, exceptions they throw are logged and ignored.
+ *
+ * @see RabbitMQOptions#setTimingListener(MessageTimingListener)
+ */
+@FunctionalInterface
+public interface MessageTimingListener {
+
+  /**
+   * Message has been processed and acknowledged
+   *
+   * @param context the context of the processed message
+   */
+  void onCompleted(MessageContext context);
+}
@@ -0,0 +1,130 @@
+package io.hoplin;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nanosecond timestamps of the stages a delivered message passes through, taken with
+ * {@link System#nanoTime()}. Stages that were not reached have no timestamp.
+ *
+ * @see MessageContext#getTimings()
+ * @see MessageTimingListener
+ */
+public class MessageTimings {
+
+  /**
+   * Processing stage of a delivered message
+   */
+  public enum Stage {
+    /**
+     * Delivery handed to the consumer by the client library
+     */
+    RECEIVED,
+
+    /**
+     * Picked up by a dispatch thread, the time since {@link #RECEIVED} was spent queued
+     */
+    DISPATCHED,
+
+    /**
+     * Payload deserialized
+     */
+    DECODED,
+
+    /**
+     * First handler invoked
+     */
+    HANDLER_START,
+
+    /**
+     * Last handler returned
+     */
+    HANDLER_END,
+
+    /**
+     * Reply written to the channel
+     */
+    REPLY_PUBLISHED,
+
+    /**
+     * Acknowledgement sent to the broker
+     */
+    ACKED
+  }
+
+  private static final Stage[] STAGES = Stage.values();
+
+  private final long[] timestamps = new long[STAGES.length];
+
+  /**
+   * Record that a stage has been reached now
+   *
+   * @param stage the reached stage
+   */
+  public void mark(final Stage stage) {
+    timestamps[stage.ordinal()] = System.nanoTime();
+  }
+
+  /**
+   * Record that a stage has been reached now unless it was reached before
+   *
+   * @param stage the reached stage
+   */
+  public void markFirst(final Stage stage) {
+    if (timestamps[stage.ordinal()] == 0) {
+      mark(stage);
+    }
+  }
+
+  /**
+   * Get timestamp of a stage
+   *
+   * @param stage the stage
+   * @return nanosecond timestamp or 0 when the stage was not reached
+   */
+  public long get(final Stage stage) {
+    return timestamps[stage.ordinal()];
+  }
+
+  /**
+   * Check if stage was reached
+   *
+   * @param stage the stage
+   * @return true when the stage has a timestamp
+   */
+  public boolean isReached(final Stage stage) {
+    return timestamps[stage.ordinal()] != 0;
+  }
+
+  /**
+   * Get time elapsed between two stages
+   *
+   * @param from the earlier stage
+   * @param to   the later stage
+   * @return elapsed nanoseconds or -1 when either stage was not reached
+   */
+  public long between(final Stage from, final Stage to) {
+    if (!isReached(from) || !isReached(to)) {
+      return -1;
+    }
+    return get(to) - get(from);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("MessageTimings{");
+    final long start = get(Stage.RECEIVED);
+    boolean first = true;
+    for (final Stage stage : STAGES) {
+      if (stage == Stage.RECEIVED || !isReached(stage)) {
+        continue;
+      }
+      if (!first) {
+        sb.append(", ");
+      }
+      first = false;
+      sb.append(stage).append("=+")
+          .append(TimeUnit.NANOSECONDS.toMicros(get(stage) - start)).append("us");
+    }
+    return sb.append('}').toString();
+  }
+}
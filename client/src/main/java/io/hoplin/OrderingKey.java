@@ -0,0 +1,83 @@
+package io.hoplin;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Resolves the key used to order message processing of a queue consumer. Messages with equal keys
+ * are processed one after another in delivery order, messages with different keys are processed in
+ * parallel. Messages without a key are processed without ordering.
+ *
+ * @see QueueOptions#setOrderingKey(OrderingKey)
+ */
+@FunctionalInterface
+public interface OrderingKey {
+
+  /**
+   * Resolve ordering key of a message
+   *
+   * @param context the context of the delivered message
+   * @param payload the decoded payload when {@link #requiresPayload()}, otherwise null
+   * @return the ordering key or null when the message is not ordered
+   */
+  Object keyOf(MessageContext context, Object payload);
+
+  /**
+   * Check if the key is resolved from the payload, the message is then decoded on the delivery
+   * thread
+   *
+   * @return true when the payload is required
+   */
+  default boolean requiresPayload() {
+    return false;
+  }
+
+  /**
+   * Order messages by value of a header
+   *
+   * @param name the header name
+   * @return ordering key
+   */
+  static OrderingKey header(final String name) {
+    Objects.requireNonNull(name);
+    return (context, payload) -> {
+      final Map<String, Object> headers = context.getProperties().getHeaders();
+      // LongString values do not implement equals across instances
+      return headers == null || headers.get(name) == null ? null : headers.get(name).toString();
+    };
+  }
+
+  /**
+   * Order messages by their routing key
+   *
+   * @return ordering key
+   */
+  static OrderingKey routingKey() {
+    return (context, payload) -> context.getReceivedInfo().getRoutingKey();
+  }
+
+  /**
+   * Order messages by a value extracted from the payload, payloads of other types are not ordered
+   *
+   * @param type      the payload type
+   * @param extractor the function extracting the key
+   * @param <T>       the payload type
+   * @return ordering key
+   */
+  static <T> OrderingKey payload(final Class<T> type, final Function<? super T, ?> extractor) {
+    Objects.requireNonNull(type);
+    Objects.requireNonNull(extractor);
+    return new OrderingKey() {
+      @Override
+      public Object keyOf(final MessageContext context, final Object payload) {
+        return type.isInstance(payload) ? extractor.apply(type.cast(payload)) : null;
+      }
+
+      @Override
+      public boolean requiresPayload() {
+        return true;
+      }
+    };
+  }
+}
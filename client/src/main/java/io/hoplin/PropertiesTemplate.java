@@ -0,0 +1,178 @@
+package io.hoplin;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable set of message properties shared by many messages. Properties of a message are derived
+ * from the template with a single constructor call, only the per message values are supplied.
+ *
+ * @see MessageConfiguration
+ */
+public final class PropertiesTemplate {
+
+  /**
+   * AMQP delivery mode of transient messages
+   */
+  public static final int TRANSIENT = 1;
+
+  /**
+   * AMQP delivery mode of persistent messages
+   */
+  public static final int PERSISTENT = 2;
+
+  private static final PropertiesTemplate PERSISTENT_TEMPLATE = new PropertiesTemplate(null,
+      PERSISTENT, null, null);
+
+  private static final PropertiesTemplate TRANSIENT_TEMPLATE = new PropertiesTemplate(null,
+      TRANSIENT, null, null);
+
+  private static final String CONTENT_ENCODING = "UTF-8";
+
+  private final String contentType;
+
+  private final int deliveryMode;
+
+  private final Integer priority;
+
+  private final String expiration;
+
+  private PropertiesTemplate(final String contentType, final int deliveryMode,
+      final Integer priority, final String expiration) {
+    if (deliveryMode != TRANSIENT && deliveryMode != PERSISTENT) {
+      throw new IllegalArgumentException("Invalid delivery mode : " + deliveryMode);
+    }
+    this.contentType = contentType;
+    this.deliveryMode = deliveryMode;
+    this.priority = priority;
+    this.expiration = expiration;
+  }
+
+  /**
+   * Template of messages that survive a broker restart, this is the default
+   *
+   * @return persistent template
+   */
+  public static PropertiesTemplate persistent() {
+    return PERSISTENT_TEMPLATE;
+  }
+
+  /**
+   * Template of messages the broker does not write to disk, for fire-and-forget streams that can
+   * tolerate loss
+   *
+   * @return transient template
+   */
+  public static PropertiesTemplate transientMessages() {
+    return TRANSIENT_TEMPLATE;
+  }
+
+  /**
+   * Copy of this template with content type, null uses the content type of the codec. Publishers
+   * serialize messages of the template with the codec writing the content type.
+   *
+   * @param contentType the content type
+   * @return new template
+   */
+  public PropertiesTemplate withContentType(final String contentType) {
+    return new PropertiesTemplate(contentType, deliveryMode, priority, expiration);
+  }
+
+  /**
+   * Copy of this template with priority
+   *
+   * @param priority the priority, null for none
+   * @return new template
+   */
+  public PropertiesTemplate withPriority(final Integer priority) {
+    return new PropertiesTemplate(contentType, deliveryMode, priority, expiration);
+  }
+
+  /**
+   * Copy of this template with per message TTL
+   *
+   * @param expiration the TTL in milliseconds, null for none
+   * @return new template
+   */
+  public PropertiesTemplate withExpiration(final String expiration) {
+    return new PropertiesTemplate(contentType, deliveryMode, priority, expiration);
+  }
+
+  /**
+   * Copy of this template with delivery mode
+   *
+   * @param persistent true for {@link #PERSISTENT}, false for {@link #TRANSIENT}
+   * @return new template
+   */
+  public PropertiesTemplate withPersistent(final boolean persistent) {
+    return new PropertiesTemplate(contentType, persistent ? PERSISTENT : TRANSIENT, priority,
+        expiration);
+  }
+
+  /**
+   * Derive properties of a single message
+   *
+   * @param messageId     the message id
+   * @param correlationId the correlation id, may be null
+   * @param headers       the message headers, may be null
+   * @return message properties
+   */
+  public BasicProperties derive(final String messageId, final String correlationId,
+      final Map<String, Object> headers) {
+    return derive(null, messageId, correlationId, headers);
+  }
+
+  BasicProperties derive(final String defaultContentType, final String messageId,
+      final String correlationId, final Map<String, Object> headers) {
+    return new BasicProperties(contentType != null ? contentType : defaultContentType,
+        CONTENT_ENCODING, headers, deliveryMode, priority, correlationId, null, expiration,
+        messageId, null, null, null, null, null);
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public int getDeliveryMode() {
+    return deliveryMode;
+  }
+
+  public Integer getPriority() {
+    return priority;
+  }
+
+  public String getExpiration() {
+    return expiration;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    final PropertiesTemplate that = (PropertiesTemplate) o;
+    return deliveryMode == that.deliveryMode
+        && Objects.equals(contentType, that.contentType)
+        && Objects.equals(priority, that.priority)
+        && Objects.equals(expiration, that.expiration);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(contentType, deliveryMode, priority, expiration);
+  }
+
+  @Override
+  public String toString() {
+    return "PropertiesTemplate{" +
+        "contentType='" + contentType + '\'' +
+        ", deliveryMode=" + deliveryMode +
+        ", priority=" + priority +
+        ", expiration='" + expiration + '\'' +
+        '}';
+  }
+}
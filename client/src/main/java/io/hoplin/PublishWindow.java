@@ -0,0 +1,265 @@
+package io.hoplin;
+
+import com.rabbitmq.client.BlockedListener;
+import io.hoplin.metrics.QueueMetrics;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounds the messages a publisher has in flight, from the moment a publish is accepted until it is
+ * confirmed or failed. The window is counted in messages and in bytes of serialized bodies, when it
+ * is full or the broker blocked the connection new publishes are handled according to the {@link
+ * BackpressurePolicy}.
+ * <p>
+ * Message bodies are counted once they are serialized, so the byte limit may be exceeded by the
+ * messages that were accepted while the window still had room.
+ * </p>
+ *
+ * @see RabbitMQOptions#setMaxInFlightMessages(long)
+ * @see RabbitMQOptions#setMaxInFlightBytes(long)
+ */
+public class PublishWindow implements BlockedListener {
+
+  private static final Logger log = LoggerFactory.getLogger(PublishWindow.class);
+
+  private final long maxMessages;
+
+  private final long maxBytes;
+
+  private final BackpressurePolicy policy;
+
+  private final AtomicLong messages = new AtomicLong();
+
+  private final AtomicLong bytes = new AtomicLong();
+
+  // callers blocked or deferred, checked by releases before taking the lock
+  private final AtomicInteger waiting = new AtomicInteger();
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition available = lock.newCondition();
+
+  // guarded by lock
+  private final Queue<CompletableFuture<Permit>> deferred = new ArrayDeque<>();
+
+  private volatile boolean blocked;
+
+  /**
+   * Create new window
+   *
+   * @param maxMessages maximum messages in flight, 0 for no limit
+   * @param maxBytes    maximum bytes in flight, 0 for no limit
+   * @param policy      the policy applied when the window is full
+   */
+  public PublishWindow(final long maxMessages, final long maxBytes,
+      final BackpressurePolicy policy) {
+    this.maxMessages = maxMessages > 0 ? maxMessages : Long.MAX_VALUE;
+    this.maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+    this.policy = Objects.requireNonNull(policy);
+  }
+
+  /**
+   * Create window configured by the options
+   *
+   * @param options the options to read the limits from
+   * @return new window
+   */
+  public static PublishWindow of(final RabbitMQOptions options) {
+    Objects.requireNonNull(options);
+    return new PublishWindow(options.getMaxInFlightMessages(), options.getMaxInFlightBytes(),
+        options.getBackpressurePolicy());
+  }
+
+  /**
+   * Create window without limits, it only tracks messages in flight
+   *
+   * @return new window
+   */
+  public static PublishWindow unbounded() {
+    return new PublishWindow(0, 0, BackpressurePolicy.BLOCK);
+  }
+
+  /**
+   * Acquire a permit to publish a single message. Depending on the policy a full window blocks the
+   * caller, returns a failed future or a future completed once the window has room.
+   *
+   * @return future of the permit that has to be released once the message is no longer in flight
+   */
+  public CompletableFuture<Permit> acquire() {
+    if (tryAcquire()) {
+      return CompletableFuture.completedFuture(new Permit());
+    }
+
+    switch (policy) {
+      case FAIL:
+        final CompletableFuture<Permit> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new HoplinRuntimeException(
+            blocked ? "Connection blocked by broker" : "Publish window full"));
+        return failed;
+      case DEFER:
+        return defer();
+      default:
+        await();
+        return CompletableFuture.completedFuture(new Permit());
+    }
+  }
+
+  private boolean tryAcquire() {
+    if (blocked || bytes.get() >= maxBytes) {
+      return false;
+    }
+
+    long current;
+    do {
+      current = messages.get();
+      if (current >= maxMessages) {
+        return false;
+      }
+    } while (!messages.compareAndSet(current, current + 1));
+    return true;
+  }
+
+  private void await() {
+    lock.lock();
+    // register before checking again so a concurrent release signals us
+    waiting.incrementAndGet();
+    try {
+      while (!tryAcquire()) {
+        available.await();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new HoplinRuntimeException("Interrupted waiting for publish window", e);
+    } finally {
+      waiting.decrementAndGet();
+      lock.unlock();
+    }
+  }
+
+  private CompletableFuture<Permit> defer() {
+    lock.lock();
+    try {
+      waiting.incrementAndGet();
+      if (deferred.isEmpty() && tryAcquire()) {
+        waiting.decrementAndGet();
+        return CompletableFuture.completedFuture(new Permit());
+      }
+      final CompletableFuture<Permit> pending = new CompletableFuture<>();
+      deferred.add(pending);
+      return pending;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void signal() {
+    if (waiting.get() == 0) {
+      return;
+    }
+
+    final List<CompletableFuture<Permit>> granted = new ArrayList<>();
+    lock.lock();
+    try {
+      while (!deferred.isEmpty() && tryAcquire()) {
+        granted.add(deferred.poll());
+        waiting.decrementAndGet();
+      }
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+
+    // deferred publishes continue outside of the lock
+    for (final CompletableFuture<Permit> permit : granted) {
+      permit.complete(new Permit());
+    }
+  }
+
+  @Override
+  public void handleBlocked(final String reason) {
+    log.warn("Connection blocked by broker, publishing paused : {}", reason);
+    blocked = true;
+  }
+
+  @Override
+  public void handleUnblocked() {
+    log.info("Connection unblocked by broker, publishing resumed");
+    blocked = false;
+    signal();
+  }
+
+  /**
+   * Check if the broker blocked the connection
+   *
+   * @return true when publishing is paused by the broker
+   */
+  public boolean isBlocked() {
+    return blocked;
+  }
+
+  /**
+   * Get number of messages in flight
+   *
+   * @return message count
+   */
+  public long getInFlightMessages() {
+    return messages.get();
+  }
+
+  /**
+   * Get size of the message bodies in flight
+   *
+   * @return size in bytes
+   */
+  public long getInFlightBytes() {
+    return bytes.get();
+  }
+
+  /**
+   * Permission to publish a single message
+   */
+  public final class Permit {
+
+    private long size;
+
+    private QueueMetrics metrics;
+
+    private Permit() {
+    }
+
+    /**
+     * Record the serialized size of the message
+     *
+     * @param size    the body size in bytes
+     * @param metrics the metrics of the destination
+     */
+    public void record(final long size, final QueueMetrics metrics) {
+      this.size = size;
+      this.metrics = metrics;
+      bytes.addAndGet(size);
+      metrics.incrementInFlight(size);
+    }
+
+    /**
+     * Release the permit once the message is confirmed or failed
+     */
+    public void release() {
+      if (metrics != null) {
+        metrics.decrementInFlight(size);
+      }
+      bytes.addAndGet(-size);
+      messages.decrementAndGet();
+      signal();
+    }
+  }
+}
@@ -1,19 +1,24 @@
 package io.hoplin;
 
-import static io.hoplin.json.JsonMessagePayloadCodec.serializeWithDefaults;
 import static io.hoplin.metrics.QueueMetrics.Factory.getInstance;
-import static io.hoplin.metrics.QueueMetrics.getKey;
 
 import com.rabbitmq.client.AMQP.BasicProperties;
 import com.rabbitmq.client.Channel;
+import io.hoplin.json.Codec;
+import io.hoplin.json.CodecRegistry;
+import io.hoplin.json.JsonMessagePayloadCodec;
 import io.hoplin.metrics.QueueMetrics;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,10 +33,106 @@ public class Publisher {
 
   private static final Logger log = LoggerFactory.getLogger(Publisher.class);
 
+  // smaller batches are serialized on the publishing thread
+  private static final int PARALLEL_SERIALIZATION_THRESHOLD = 64;
+
   private final Executor executor;
 
+  private final Codec codec;
+
+  // codecs of template content types other than the one of the publisher codec
+  private final ConcurrentHashMap<String, Codec> templateCodecs = new ConcurrentHashMap<>();
+
+  private final PublishWindow window;
+
+  private final MessageIdGenerator idGenerator;
+
+  private volatile boolean traceContextPropagation;
+
   public Publisher(final Executor executor) {
+    this(executor, new JsonMessagePayloadCodec());
+  }
+
+  /**
+   * Create publisher serializing messages with specific codec
+   *
+   * @param executor the executor to publish on
+   * @param codec    the codec used to serialize messages, its content type is set on each message
+   */
+  public Publisher(final Executor executor, final Codec codec) {
+    this(executor, codec, PublishWindow.unbounded());
+  }
+
+  /**
+   * Create publisher bounding the messages it has in flight
+   *
+   * @param executor the executor to publish on
+   * @param codec    the codec used to serialize messages, its content type is set on each message
+   * @param window   the window every published message has to acquire a permit from
+   */
+  public Publisher(final Executor executor, final Codec codec, final PublishWindow window) {
+    this(executor, codec, window, MessageIdGenerator.sequential());
+  }
+
+  /**
+   * Create publisher with specific message id generator
+   *
+   * @param executor    the executor to publish on
+   * @param codec       the codec used to serialize messages, its content type is set on each message
+   * @param window      the window every published message has to acquire a permit from
+   * @param idGenerator the generator of message ids
+   */
+  public Publisher(final Executor executor, final Codec codec, final PublishWindow window,
+      final MessageIdGenerator idGenerator) {
     this.executor = Objects.requireNonNull(executor);
+    this.codec = Objects.requireNonNull(codec);
+    this.window = Objects.requireNonNull(window);
+    this.idGenerator = Objects.requireNonNull(idGenerator);
+  }
+
+  /**
+   * Get the window bounding messages in flight
+   *
+   * @return publish window
+   */
+  public PublishWindow getWindow() {
+    return window;
+  }
+
+  /**
+   * Set whether published messages carry the W3C trace context of the calling thread
+   *
+   * @param traceContextPropagation true to propagate
+   * @see TraceContext
+   */
+  public void setTraceContextPropagation(final boolean traceContextPropagation) {
+    this.traceContextPropagation = traceContextPropagation;
+  }
+
+  /**
+   * Add trace context of the calling thread to headers when propagation is enabled, must run
+   * before the publish is handed to the executor
+   */
+  private Map<String, Object> traced(final Map<String, Object> headers) {
+    return traceContextPropagation ? TraceContext.inject(headers) : headers;
+  }
+
+  /**
+   * Run publish task once the window grants a permit, the permit is released when the task
+   * completes
+   */
+  private <R> CompletableFuture<R> windowed(
+      final Function<PublishWindow.Permit, CompletableFuture<R>> task) {
+    return window.acquire().thenCompose(permit -> {
+      final CompletableFuture<R> result;
+      try {
+        result = task.apply(permit);
+      } catch (final RuntimeException e) {
+        permit.release();
+        throw e;
+      }
+      return result.whenComplete((v, e) -> permit.release());
+    });
   }
 
   /***
@@ -51,31 +152,338 @@ public class Publisher {
     Objects.requireNonNull(channel);
     Objects.requireNonNull(exchange);
 
-    return CompletableFuture.runAsync(() -> {
-      final QueueMetrics metrics = getInstance(getKey(exchange, routingKey));
+    final Map<String, Object> traced = traced(headers);
+    return windowed(permit -> CompletableFuture
+        .runAsync(() -> publish(channel, exchange, routingKey, message, traced,
+            PropertiesTemplate.persistent(), permit), executor));
+  }
 
+  /***
+   * Publish message to a specific exchange on a channel leased from the provider. The channel is
+   * held only while the message is written so concurrent publishers don't contend on a single
+   * channel.
+   *
+   * @param <T>
+   * @param provider the provider to lease channel from
+   * @param exchange
+   * @param routingKey
+   * @param message
+   * @param headers
+   * @return
+   * @see ConnectionProvider#lease(boolean)
+   */
+  public <T> CompletableFuture<Void> basicPublishAsync(final ConnectionProvider provider,
+      final String exchange, final String routingKey, final T message,
+      final Map<String, Object> headers) {
+    return basicPublishAsync(provider, exchange, routingKey, message, headers,
+        PropertiesTemplate.persistent());
+  }
+
+  /***
+   * Publish message with properties derived from a template on a channel leased from the provider.
+   *
+   * @param <T>
+   * @param provider the provider to lease channel from
+   * @param exchange
+   * @param routingKey
+   * @param message
+   * @param headers
+   * @param template the template of the message properties
+   * @return
+   * @see #basicPublishAsync(ConnectionProvider, String, String, Object, Map)
+   */
+  public <T> CompletableFuture<Void> basicPublishAsync(final ConnectionProvider provider,
+      final String exchange, final String routingKey, final T message,
+      final Map<String, Object> headers, final PropertiesTemplate template) {
+    Objects.requireNonNull(provider);
+    Objects.requireNonNull(exchange);
+    Objects.requireNonNull(template);
+
+    final Map<String, Object> traced = traced(headers);
+    return windowed(permit -> CompletableFuture.runAsync(() -> {
+      // nobody waits for the confirm, skip the confirm tracking
+      final Channel channel = provider.lease(false);
       try {
-        final BasicProperties props = createBasisProperties(headers);
-        final String messageId = props.getMessageId();
+        publish(channel, exchange, routingKey, message, traced, template, permit);
+      } finally {
+        provider.release(channel);
+      }
+    }, executor));
+  }
 
-        if (log.isDebugEnabled()) {
-          log.debug("Publishing [exchange, routingKey, id] : {}, {}, {}", exchange, routingKey,
-              messageId);
+  /***
+   * Publish message to a specific exchange on a channel leased from the provider and wait for the
+   * broker to confirm it. The returned future completes when the broker acks the message and fails
+   * when it is nacked or the channel closes first. Channels that are not in confirm mode complete
+   * the future as soon as the message is written.
+   *
+   * @param <T>
+   * @param provider the provider to lease channel from
+   * @param exchange
+   * @param routingKey
+   * @param message
+   * @param headers
+   * @return future completed by the publisher confirm
+   * @see ConnectionProvider#confirms(Channel)
+   */
+  public <T> CompletableFuture<Void> basicPublishConfirmAsync(final ConnectionProvider provider,
+      final String exchange, final String routingKey, final T message,
+      final Map<String, Object> headers) {
+    return basicPublishConfirmAsync(provider, exchange, routingKey, message, headers,
+        PropertiesTemplate.persistent());
+  }
+
+  /***
+   * Publish message with properties derived from a template and wait for the broker to confirm it.
+   *
+   * @param <T>
+   * @param provider the provider to lease channel from
+   * @param exchange
+   * @param routingKey
+   * @param message
+   * @param headers
+   * @param template the template of the message properties
+   * @return future completed by the publisher confirm
+   * @see #basicPublishConfirmAsync(ConnectionProvider, String, String, Object, Map)
+   */
+  public <T> CompletableFuture<Void> basicPublishConfirmAsync(final ConnectionProvider provider,
+      final String exchange, final String routingKey, final T message,
+      final Map<String, Object> headers, final PropertiesTemplate template) {
+    Objects.requireNonNull(provider);
+    Objects.requireNonNull(exchange);
+    Objects.requireNonNull(template);
+
+    final Map<String, Object> traced = traced(headers);
+    return windowed(permit -> CompletableFuture
+        .supplyAsync(() -> publishConfirm(provider, exchange, routingKey, message, traced,
+            template, permit), executor)
+        .thenCompose(Function.identity()));
+  }
+
+  private <T> CompletableFuture<Void> publishConfirm(final ConnectionProvider provider,
+      final String exchange, final String routingKey, final T message,
+      final Map<String, Object> headers, final PropertiesTemplate template,
+      final PublishWindow.Permit permit) {
+    final Channel channel = provider.lease();
+    try {
+      final PublisherConfirms confirms = provider.confirms(channel);
+      if (confirms == null) {
+        publish(channel, exchange, routingKey, message, headers, template, permit);
+        return CompletableFuture.completedFuture(null);
+      }
+
+      // the lease keeps the sequence number and the publish consistent
+      final long seqNo = channel.getNextPublishSeqNo();
+      final long start = System.nanoTime();
+      final CompletableFuture<Void> confirm = confirms.register(seqNo);
+      try {
+        publish(channel, exchange, routingKey, message, headers, template, permit);
+      } catch (final RuntimeException e) {
+        confirms.fail(seqNo, e);
+        return confirm;
+      }
+      final QueueMetrics metrics = getInstance(exchange, routingKey);
+      return confirm.whenComplete((v, e) -> metrics.getConfirmLatency().recordSince(start));
+    } finally {
+      provider.release(channel);
+    }
+  }
+
+  /***
+   * Publish batch of messages to a specific exchange on a single leased channel. Messages are
+   * serialized in parallel, written back-to-back and the confirms of the whole batch are awaited
+   * once. Every message acquires a permit of the publish window before it is written, a full
+   * window blocks the batch or fails the messages depending on the policy. The returned future
+   * always completes normally, messages that could not be serialized, admitted, written or were not
+   * confirmed are reported by their position in the batch.
+   *
+   * @param <T>
+   * @param provider the provider to lease channel from
+   * @param exchange
+   * @param routingKey
+   * @param messages the messages to publish
+   * @param headers
+   * @return future completed when every message has been confirmed or failed
+   */
+  public <T> CompletableFuture<BatchPublishResult> basicPublishBatchAsync(
+      final ConnectionProvider provider, final String exchange, final String routingKey,
+      final List<T> messages, final Map<String, Object> headers) {
+    return basicPublishBatchAsync(provider, exchange, routingKey, messages, headers,
+        PropertiesTemplate.persistent());
+  }
+
+  /***
+   * Publish batch of messages with properties derived from a template.
+   *
+   * @param <T>
+   * @param provider the provider to lease channel from
+   * @param exchange
+   * @param routingKey
+   * @param messages the messages to publish
+   * @param headers
+   * @param template the template of the message properties
+   * @return future completed when every message has been confirmed or failed
+   * @see #basicPublishBatchAsync(ConnectionProvider, String, String, List, Map)
+   */
+  public <T> CompletableFuture<BatchPublishResult> basicPublishBatchAsync(
+      final ConnectionProvider provider, final String exchange, final String routingKey,
+      final List<T> messages, final Map<String, Object> headers,
+      final PropertiesTemplate template) {
+    Objects.requireNonNull(provider);
+    Objects.requireNonNull(exchange);
+    Objects.requireNonNull(messages);
+    Objects.requireNonNull(template);
+
+    // every message of the batch shares one span
+    final Map<String, Object> traced = traced(headers);
+    return CompletableFuture
+        .supplyAsync(
+            () -> publishBatch(provider, exchange, routingKey, messages, traced, template),
+            executor)
+        .thenCompose(Function.identity());
+  }
+
+  private <T> CompletableFuture<BatchPublishResult> publishBatch(
+      final ConnectionProvider provider, final String exchange, final String routingKey,
+      final List<T> messages, final Map<String, Object> headers,
+      final PropertiesTemplate template) {
+    final int size = messages.size();
+    final Throwable[] failures = new Throwable[size];
+    final Codec batchCodec;
+    try {
+      batchCodec = getCodec(template);
+    } catch (final IllegalArgumentException e) {
+      failRemaining(failures, 0, e);
+      return CompletableFuture.completedFuture(BatchPublishResult.of(failures));
+    }
+    final byte[][] bodies = serialize(batchCodec, messages, failures);
+    final List<CompletableFuture<Void>> confirms = new ArrayList<>(size);
+
+    final Channel channel;
+    try {
+      channel = provider.lease();
+    } catch (final RuntimeException e) {
+      failRemaining(failures, 0, e);
+      return CompletableFuture.completedFuture(BatchPublishResult.of(failures));
+    }
+
+    final QueueMetrics metrics = getInstance(exchange, routingKey);
+    try {
+      final PublisherConfirms tracker = provider.confirms(channel);
+      for (int i = 0; i < size; ++i) {
+        if (failures[i] != null) {
+          continue;
+        }
+        // each message holds a permit of the window until it is confirmed or failed
+        final PublishWindow.Permit permit;
+        try {
+          permit = acquirePermit();
+        } catch (final HoplinRuntimeException e) {
+          failures[i] = e;
+          continue;
         }
+        permit.record(bodies[i].length, metrics);
 
-        final byte[] body = serializeWithDefaults(message);
-        channel.basicPublish(exchange, routingKey, props, body);
-        metrics.markMessageSent();
-        metrics.incrementSend(body.length);
-      } catch (final IOException e) {
-        metrics.markMessagePublishFailed();
-        throw new HoplinRuntimeException("Unable to publish message", e);
+        final int index = i;
+        final long seqNo = tracker == null ? -1 : channel.getNextPublishSeqNo();
+        if (tracker != null) {
+          final long start = System.nanoTime();
+          confirms.add(tracker.register(seqNo).whenComplete((v, e) -> {
+            permit.release();
+            if (e != null) {
+              failures[index] = e;
+            }
+            metrics.getConfirmLatency().recordSince(start);
+          }));
+        }
+
+        try {
+          write(channel, exchange, routingKey, headers, template, bodies[i], metrics);
+        } catch (final RuntimeException e) {
+          failures[i] = e;
+          if (tracker != null) {
+            tracker.fail(seqNo, e);
+          }
+          if (!channel.isOpen()) {
+            failRemaining(failures, i + 1, e);
+            break;
+          }
+        } finally {
+          if (tracker == null) {
+            permit.release();
+          }
+        }
+      }
+    } finally {
+      provider.release(channel);
+    }
+
+    // single barrier for the whole batch, failed confirms are recorded by their callbacks
+    return CompletableFuture.allOf(confirms.toArray(new CompletableFuture[0]))
+        .handle((v, e) -> BatchPublishResult.of(failures));
+  }
+
+  private static <T> byte[][] serialize(final Codec codec, final List<T> messages,
+      final Throwable[] failures) {
+    final byte[][] bodies = new byte[messages.size()][];
+    IntStream indexes = IntStream.range(0, bodies.length);
+    if (bodies.length >= PARALLEL_SERIALIZATION_THRESHOLD) {
+      indexes = indexes.parallel();
+    }
+
+    indexes.forEach(i -> {
+      try {
+        bodies[i] = codec.serialize(messages.get(i));
+      } catch (final RuntimeException e) {
+        failures[i] = e;
+      }
+    });
+    return bodies;
+  }
+
+  private static void failRemaining(final Throwable[] failures, final int from,
+      final Throwable cause) {
+    for (int i = from; i < failures.length; ++i) {
+      if (failures[i] == null) {
+        failures[i] = cause;
+      }
+    }
+  }
+
+  private <T> void publish(final Channel channel, final String exchange,
+      final String routingKey, final T message, final Map<String, Object> headers,
+      final PropertiesTemplate template, final PublishWindow.Permit permit) {
+    final QueueMetrics metrics = getInstance(exchange, routingKey);
+    final byte[] body = getCodec(template).serialize(message);
+    permit.record(body.length, metrics);
+    write(channel, exchange, routingKey, headers, template, body, metrics);
+  }
+
+  private void write(final Channel channel, final String exchange, final String routingKey,
+      final Map<String, Object> headers, final PropertiesTemplate template, final byte[] body,
+      final QueueMetrics metrics) {
+    try {
+      final BasicProperties props = template
+          .derive(codec.getContentType(), idGenerator.nextId(), null, headers);
+      final String messageId = props.getMessageId();
+
+      if (log.isDebugEnabled()) {
+        log.debug("Publishing [exchange, routingKey, id] : {}, {}, {}", exchange, routingKey,
+            messageId);
       }
-    }, executor);
+
+      channel.basicPublish(exchange, routingKey, props, body);
+      metrics.markMessageSent();
+      metrics.incrementSend(body.length);
+    } catch (final IOException e) {
+      metrics.markMessagePublishFailed();
+      throw new HoplinRuntimeException("Unable to publish message", e);
+    }
   }
 
   /**
-   * Publish message on specific channel. This method blocks
+   * Publish message on specific channel. This method blocks, the message is serialized and written
+   * on the calling thread instead of being handed to the executor.
    *
    * @param channel
    * @param exchange
@@ -87,12 +495,36 @@ public class Publisher {
   public <T> void basicPublish(final Channel channel, final String exchange,
       final String routingKey, final T message,
       final Map<String, Object> headers) {
-    final CompletableFuture<Void> completable = basicPublishAsync(channel, exchange,
-        routingKey, message, headers);
+    Objects.requireNonNull(channel);
+    Objects.requireNonNull(exchange);
+
+    final PublishWindow.Permit permit = acquirePermit();
+    try {
+      publish(channel, exchange, routingKey, message, traced(headers),
+          PropertiesTemplate.persistent(), permit);
+    } finally {
+      permit.release();
+    }
+  }
+
+  /**
+   * Acquire a window permit on the calling thread, deferred permits are waited for
+   */
+  private PublishWindow.Permit acquirePermit() {
+    final CompletableFuture<PublishWindow.Permit> pending = window.acquire();
     try {
-      completable.get();
-    } catch (final InterruptedException | ExecutionException e) {
-      throw new HoplinRuntimeException("Publishing exception ", e);
+      return pending.get();
+    } catch (final InterruptedException e) {
+      // a permit granted after we gave up must not stay in flight
+      pending.thenAccept(PublishWindow.Permit::release);
+      Thread.currentThread().interrupt();
+      throw new HoplinRuntimeException("Interrupted while waiting for publish window", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof HoplinRuntimeException) {
+        throw (HoplinRuntimeException) cause;
+      }
+      throw new HoplinRuntimeException("Publishing exception ", cause);
     }
   }
 
@@ -114,8 +546,9 @@ public class Publisher {
     Objects.requireNonNull(exchange);
     Objects.requireNonNull(body);
 
-    return CompletableFuture.runAsync(() -> {
-      final QueueMetrics metrics = getInstance(getKey(exchange, routingKey));
+    return windowed(permit -> CompletableFuture.runAsync(() -> {
+      final QueueMetrics metrics = getInstance(exchange, routingKey);
+      permit.record(body.length, metrics);
       try {
         if (log.isDebugEnabled()) {
           log.debug("Publishing [exchange, routingKey, id] : {}, {}, {}", exchange, routingKey,
@@ -128,7 +561,36 @@ public class Publisher {
         metrics.markMessagePublishFailed();
         throw new HoplinRuntimeException("Unable to publish message", e);
       }
-    }, executor);
+    }, executor));
+  }
+
+  /**
+   * Get codec writing the content type of a template, so the body always matches the content type
+   * it is labelled with
+   *
+   * @param template the template of the message properties
+   * @return the publisher codec unless the template names another content type
+   * @throws IllegalArgumentException when no codec writes the content type of the template
+   */
+  private Codec getCodec(final PropertiesTemplate template) {
+    final String contentType = template.getContentType();
+    if (contentType == null || contentType.equals(codec.getContentType())) {
+      return codec;
+    }
+    return templateCodecs.computeIfAbsent(contentType, this::resolveCodec);
+  }
+
+  private Codec resolveCodec(final String contentType) {
+    final CodecRegistry registry = CodecRegistry.empty();
+    final Codec resolved = registry.findCodec(contentType);
+    if (resolved == null) {
+      throw new IllegalArgumentException(
+          "No codec writes content type " + contentType + " of the template, publisher codec "
+              + "writes " + codec.getContentType());
+    }
+    // aliases of the publisher format, like 'application/json', keep the configured codec
+    final Codec own = registry.findCodec(codec.getContentType());
+    return own != null && own.getClass() == resolved.getClass() ? codec : resolved;
   }
 
   /**
@@ -139,12 +601,8 @@ public class Publisher {
    */
   public BasicProperties createBasisProperties(
       final Map<String, Object> headers) {
-    return new BasicProperties.Builder()
-        .contentType("text/json")
-        .contentEncoding("UTF-8")
-        .messageId(UUID.randomUUID().toString())
-        .deliveryMode(2)
-        .headers(headers)
-        .build();
+    return PropertiesTemplate.persistent()
+        .derive(codec.getContentType(), idGenerator.nextId(), null, headers);
   }
+
 }
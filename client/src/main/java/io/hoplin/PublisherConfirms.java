@@ -0,0 +1,113 @@
+package io.hoplin;
+
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks publisher confirms of a single channel in confirm mode. Each published message registers
+ * its publish sequence number and gets a future that completes when the broker acks the message and
+ * fails when the broker nacks it or the channel shuts down before the confirm arrives.
+ * <p>
+ * Outstanding sequence numbers are kept sorted so a confirm with the multiple flag set completes
+ * the whole range up to the delivery tag.
+ * </p>
+ *
+ * @see com.rabbitmq.client.Channel#confirmSelect()
+ * @see ChannelPool
+ */
+public class PublisherConfirms implements ConfirmListener, ShutdownListener {
+
+  private static final Logger log = LoggerFactory.getLogger(PublisherConfirms.class);
+
+  private final NavigableMap<Long, CompletableFuture<Void>> outstanding = new ConcurrentSkipListMap<>();
+
+  /**
+   * Register message about to be published, must be called with the sequence number obtained from
+   * {@link com.rabbitmq.client.Channel#getNextPublishSeqNo()} before the message is published
+   *
+   * @param seqNo the publish sequence number of the message
+   * @return future completed when the message is confirmed
+   */
+  public CompletableFuture<Void> register(final long seqNo) {
+    final CompletableFuture<Void> confirm = new CompletableFuture<>();
+    outstanding.put(seqNo, confirm);
+    return confirm;
+  }
+
+  /**
+   * Fail message that could not be published
+   *
+   * @param seqNo the publish sequence number of the message
+   * @param cause the reason the message was not published
+   */
+  public void fail(final long seqNo, final Throwable cause) {
+    final CompletableFuture<Void> confirm = outstanding.remove(seqNo);
+    if (confirm != null) {
+      confirm.completeExceptionally(cause);
+    }
+  }
+
+  /**
+   * Get number of messages waiting for confirm
+   *
+   * @return count of outstanding confirms
+   */
+  public int getOutstandingCount() {
+    return outstanding.size();
+  }
+
+  @Override
+  public void handleAck(final long deliveryTag, final boolean multiple) {
+    if (multiple) {
+      final Map<Long, CompletableFuture<Void>> confirmed = outstanding.headMap(deliveryTag, true);
+      for (final CompletableFuture<Void> confirm : confirmed.values()) {
+        confirm.complete(null);
+      }
+      confirmed.clear();
+      return;
+    }
+
+    final CompletableFuture<Void> confirm = outstanding.remove(deliveryTag);
+    if (confirm != null) {
+      confirm.complete(null);
+    }
+  }
+
+  @Override
+  public void handleNack(final long deliveryTag, final boolean multiple) {
+    log.warn("Publish nacked by broker [deliveryTag, multiple] : {}, {}", deliveryTag, multiple);
+    if (multiple) {
+      final Map<Long, CompletableFuture<Void>> rejected = outstanding.headMap(deliveryTag, true);
+      for (final Map.Entry<Long, CompletableFuture<Void>> entry : rejected.entrySet()) {
+        entry.getValue().completeExceptionally(nacked(entry.getKey()));
+      }
+      rejected.clear();
+      return;
+    }
+
+    fail(deliveryTag, nacked(deliveryTag));
+  }
+
+  @Override
+  public void shutdownCompleted(final ShutdownSignalException cause) {
+    // sequence numbers restart on a recovered channel, unconfirmed messages are lost to us
+    final HoplinRuntimeException failure = new HoplinRuntimeException(
+        "Channel closed before publish was confirmed", cause);
+
+    Map.Entry<Long, CompletableFuture<Void>> entry;
+    while ((entry = outstanding.pollFirstEntry()) != null) {
+      entry.getValue().completeExceptionally(failure);
+    }
+  }
+
+  private static HoplinRuntimeException nacked(final long seqNo) {
+    return new HoplinRuntimeException("Publish nacked by broker, sequence number : " + seqNo);
+  }
+}
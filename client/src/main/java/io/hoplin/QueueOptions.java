@@ -1,5 +1,6 @@
 package io.hoplin;
 
+import java.util.Objects;
 import java.util.function.Consumer;
 
 /**
@@ -11,7 +12,15 @@ import java.util.function.Consumer;
  * <pre>
  *  AutoAck = False
  *  Prefetch Count = 1
- *  Publisher Confirm = true
+ *  Concurrency = available processors
+ *  Consumer Count = 1
+ *  Ordering Key = none
+ *  Max Internal Queue Size = unbounded
+ *  Keep Most Recent = false
+ *  Ack Batch Size = 1 (every message acknowledged on its own)
+ *  Ack Flush Interval = 100ms
+ *  Adaptive Prefetch = disabled
+ *  Prefetch Tune Interval = 1s
  * </pre>
  * <p>
  * https://www.rabbitmq.com/confirms.html#acknowledgement-modes
@@ -31,6 +40,28 @@ public class QueueOptions {
 
   private int prefetchCount = 1;
 
+  // 0 resolves to the number of available processors
+  private int concurrency = 0;
+
+  private int consumerCount = 1;
+
+  private OrderingKey orderingKey;
+
+  // null inherits the mode of the client options
+  private ExecutionMode executionMode;
+
+  // acknowledgements sent as one multiple ack, 1 disables coalescing
+  private int ackBatchSize = 1;
+
+  private long ackFlushInterval = 100;
+
+  // bounds of the adaptive prefetch count, 0 keeps the prefetch count fixed
+  private int minPrefetchCount = 0;
+
+  private int maxPrefetchCount = 0;
+
+  private long prefetchTuneInterval = 1000;
+
   public static QueueOptions of(boolean autoAck, boolean keepMostRecent, int maxInternalQueueSize) {
     return new QueueOptions()
         .setAutoAck(autoAck)
@@ -44,9 +75,17 @@ public class QueueOptions {
   }
 
   /**
-   * @param maxInternalQueueSize the size of internal queue
+   * Bound the messages waiting for a handler thread. When the queue is full the consumer either
+   * stops taking deliveries from the channel until a message starts or, with {@link
+   * #setKeepMostRecent(boolean)}, discards the oldest waiting message with a nack without requeue.
+   *
+   * @param maxInternalQueueSize the size of internal queue, {@link Integer#MAX_VALUE} for no limit
    */
   public QueueOptions setMaxInternalQueueSize(int maxInternalQueueSize) {
+    if (maxInternalQueueSize <= 0) {
+      throw new IllegalArgumentException(
+          "maxInternalQueueSize should be greater than 0 : " + maxInternalQueueSize);
+    }
     this.maxInternalQueueSize = maxInternalQueueSize;
     return this;
   }
@@ -87,18 +126,38 @@ public class QueueOptions {
   }
 
   /**
+   * Discard the oldest waiting message when the internal queue is full instead of pausing
+   * consumption. Discarded messages are rejected without requeue, so they are dead lettered when
+   * the queue has a dead letter exchange.
+   *
    * @param keepMostRecent {@code true} for discarding old messages instead of recent ones,
    *                       otherwise use {@code false}
+   * @see #setMaxInternalQueueSize(int)
    */
   public QueueOptions setKeepMostRecent(boolean keepMostRecent) {
     this.keepMostRecent = keepMostRecent;
     return this;
   }
 
+  /**
+   * Has no effect, consumer channels only publish replies and are never put in confirm mode.
+   * Publishes awaiting confirms use the confirming channel pool of the connection.
+   *
+   * @return the configured value
+   * @deprecated the option is ignored and will be removed
+   */
+  @Deprecated
   public boolean isPublisherConfirms() {
     return publisherConfirms;
   }
 
+  /**
+   * Has no effect, consumer channels only publish replies and are never put in confirm mode.
+   *
+   * @param publisherConfirms ignored
+   * @deprecated the option is ignored and will be removed
+   */
+  @Deprecated
   public void setPublisherConfirms(boolean publisherConfirms) {
     this.publisherConfirms = publisherConfirms;
   }
@@ -110,4 +169,244 @@ public class QueueOptions {
   public void setPrefetchCount(int prefetchCount) {
     this.prefetchCount = prefetchCount;
   }
+
+  /**
+   * @return number of messages processed in parallel
+   */
+  public int getConcurrency() {
+    return concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Set the number of threads processing messages of the queue
+   *
+   * @param concurrency the concurrency level, {@code 0} for the number of available processors
+   */
+  public QueueOptions setConcurrency(int concurrency) {
+    if (concurrency < 0) {
+      throw new IllegalArgumentException("concurrency should not be negative : " + concurrency);
+    }
+    this.concurrency = concurrency;
+    return this;
+  }
+
+  /**
+   * @return number of consumers started for the queue
+   */
+  public int getConsumerCount() {
+    return consumerCount;
+  }
+
+  /**
+   * Set the number of consumers started for the queue, each on its own channel with its own
+   * consumer tag, prefetch count and {@link #getConcurrency()} handler threads. The broker delivers
+   * to the consumers round-robin, so messages are processed in parallel by all of them and ordering
+   * keys only order the messages of one consumer.
+   *
+   * @param consumerCount the number of consumers, greater than 0
+   */
+  public QueueOptions setConsumerCount(int consumerCount) {
+    if (consumerCount <= 0) {
+      throw new IllegalArgumentException(
+          "consumerCount should be greater than 0 : " + consumerCount);
+    }
+    this.consumerCount = consumerCount;
+    return this;
+  }
+
+  /**
+   * @return the ordering key or null when messages are processed without ordering
+   */
+  public OrderingKey getOrderingKey() {
+    return orderingKey;
+  }
+
+  /**
+   * Process messages with equal keys serially in delivery order, messages with different keys are
+   * still processed in parallel
+   *
+   * @param orderingKey the key resolver, ex. {@link OrderingKey#header(String)}
+   */
+  public QueueOptions setOrderingKey(OrderingKey orderingKey) {
+    this.orderingKey = orderingKey;
+    return this;
+  }
+
+  /**
+   * @return the execution mode or null to use {@link RabbitMQOptions#getExecutionMode()}
+   */
+  public ExecutionMode getExecutionMode() {
+    return executionMode;
+  }
+
+  /**
+   * Set how message handlers of this queue are run, {@link ExecutionMode#VIRTUAL_THREADS} bounds
+   * concurrency by the prefetch count
+   *
+   * @param executionMode the mode, null to use the mode of the client options
+   */
+  public QueueOptions setExecutionMode(ExecutionMode executionMode) {
+    this.executionMode = executionMode;
+    return this;
+  }
+
+  /**
+   * @return number of acknowledgements coalesced into one {@code basic.ack}
+   */
+  public int getAckBatchSize() {
+    return ackBatchSize;
+  }
+
+  /**
+   * Acknowledge processed messages in batches with a single {@code basic.ack} that has {@code
+   * multiple} set. A message is only acknowledged once all messages delivered before it completed,
+   * nacks and rejects are still sent right away. Keep the batch size below the prefetch count,
+   * otherwise batches are only sent by the flush interval.
+   *
+   * @param ackBatchSize the number of acknowledgements per frame, {@code 1} to acknowledge every
+   *                     message on its own
+   * @see #setAckFlushInterval(long)
+   */
+  public QueueOptions setAckBatchSize(int ackBatchSize) {
+    if (ackBatchSize <= 0) {
+      throw new IllegalArgumentException("ackBatchSize should be greater than 0 : " + ackBatchSize);
+    }
+    this.ackBatchSize = ackBatchSize;
+    return this;
+  }
+
+  /**
+   * @return maximum time in milliseconds a coalesced acknowledgement is held back
+   */
+  public long getAckFlushInterval() {
+    return ackFlushInterval;
+  }
+
+  /**
+   * Set the maximum time an acknowledgement waits for its batch to fill up
+   *
+   * @param ackFlushInterval the interval in milliseconds
+   * @see #setAckBatchSize(int)
+   */
+  public QueueOptions setAckFlushInterval(long ackFlushInterval) {
+    if (ackFlushInterval <= 0) {
+      throw new IllegalArgumentException(
+          "ackFlushInterval should be greater than 0 : " + ackFlushInterval);
+    }
+    this.ackFlushInterval = ackFlushInterval;
+    return this;
+  }
+
+  /**
+   * @return {@code true} when the prefetch count is tuned while consuming
+   */
+  public boolean isAdaptivePrefetch() {
+    return maxPrefetchCount > 0;
+  }
+
+  /**
+   * @return lower bound of the adaptive prefetch count
+   */
+  public int getMinPrefetchCount() {
+    return minPrefetchCount;
+  }
+
+  /**
+   * @return upper bound of the adaptive prefetch count, {@code 0} when adaptive prefetch is off
+   */
+  public int getMaxPrefetchCount() {
+    return maxPrefetchCount;
+  }
+
+  /**
+   * Tune the prefetch count to the measured handler and broker latencies, keeping enough messages
+   * in flight for all handlers without building up a backlog in the dispatch queue. The prefetch
+   * count starts at {@link #getPrefetchCount()} within the bounds and is set for the whole channel,
+   * which quorum queues do not support.
+   *
+   * @param minPrefetchCount the lower bound, greater than 0
+   * @param maxPrefetchCount the upper bound, not less than the lower bound
+   * @see #setPrefetchTuneInterval(long)
+   */
+  public QueueOptions setAdaptivePrefetch(int minPrefetchCount, int maxPrefetchCount) {
+    if (minPrefetchCount <= 0 || maxPrefetchCount < minPrefetchCount) {
+      throw new IllegalArgumentException(
+          "invalid prefetch bounds : " + minPrefetchCount + ", " + maxPrefetchCount);
+    }
+    this.minPrefetchCount = minPrefetchCount;
+    this.maxPrefetchCount = maxPrefetchCount;
+    return this;
+  }
+
+  /**
+   * @return time in milliseconds between adjustments of the adaptive prefetch count
+   */
+  public long getPrefetchTuneInterval() {
+    return prefetchTuneInterval;
+  }
+
+  /**
+   * Set how often the adaptive prefetch count is recomputed
+   *
+   * @param prefetchTuneInterval the interval in milliseconds
+   * @see #setAdaptivePrefetch(int, int)
+   */
+  public QueueOptions setPrefetchTuneInterval(long prefetchTuneInterval) {
+    if (prefetchTuneInterval <= 0) {
+      throw new IllegalArgumentException(
+          "prefetchTuneInterval should be greater than 0 : " + prefetchTuneInterval);
+    }
+    this.prefetchTuneInterval = prefetchTuneInterval;
+    return this;
+  }
+
+  // publisherConfirms is ignored by consumers and left out below
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    final QueueOptions that = (QueueOptions) o;
+    return autoAck == that.autoAck
+        && keepMostRecent == that.keepMostRecent
+        && maxInternalQueueSize == that.maxInternalQueueSize
+        && prefetchCount == that.prefetchCount
+        && concurrency == that.concurrency
+        && consumerCount == that.consumerCount
+        && ackBatchSize == that.ackBatchSize
+        && ackFlushInterval == that.ackFlushInterval
+        && minPrefetchCount == that.minPrefetchCount
+        && maxPrefetchCount == that.maxPrefetchCount
+        && prefetchTuneInterval == that.prefetchTuneInterval
+        && executionMode == that.executionMode
+        && Objects.equals(orderingKey, that.orderingKey);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(autoAck, keepMostRecent, maxInternalQueueSize, prefetchCount, concurrency,
+        consumerCount, ackBatchSize, ackFlushInterval, minPrefetchCount, maxPrefetchCount,
+        prefetchTuneInterval, executionMode, orderingKey);
+  }
+
+  @Override
+  public String toString() {
+    return "QueueOptions{" +
+        "autoAck=" + autoAck +
+        ", prefetchCount=" + prefetchCount +
+        ", minPrefetchCount=" + minPrefetchCount +
+        ", maxPrefetchCount=" + maxPrefetchCount +
+        ", concurrency=" + concurrency +
+        ", consumerCount=" + consumerCount +
+        ", executionMode=" + executionMode +
+        ", orderingKey=" + orderingKey +
+        ", maxInternalQueueSize=" + maxInternalQueueSize +
+        ", keepMostRecent=" + keepMostRecent +
+        ", ackBatchSize=" + ackBatchSize +
+        '}';
+  }
 }
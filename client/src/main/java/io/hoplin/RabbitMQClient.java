@@ -3,6 +3,7 @@ package io.hoplin;
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
@@ -84,6 +85,63 @@ public interface RabbitMQClient {
   <T> void basicPublish(final String exchange, final String routingKey, final T message,
       final Map<String, Object> headers);
 
+  /**
+   * Publish a message with properties derived from a template
+   *
+   * @see #basicPublish(String, String, Object, Map)
+   * @see MessageConfiguration
+   */
+  <T> void basicPublish(final String exchange, final String routingKey, final T message,
+      final Map<String, Object> headers, final PropertiesTemplate template);
+
+  /**
+   * Publish a message and wait asynchronously for the broker to confirm it. The returned future
+   * completes when the broker acks the message and completes exceptionally when the broker nacks
+   * it, the publish fails or the channel closes before the confirm arrives.
+   *
+   * @see #basicPublish(String, String, Object)
+   * @see PublisherConfirms
+   */
+  <T> CompletableFuture<Void> basicPublishAsync(final String exchange, final String routingKey,
+      final T message);
+
+  /**
+   * Publish a message with headers and wait asynchronously for the broker to confirm it.
+   *
+   * @see #basicPublishAsync(String, String, Object)
+   */
+  <T> CompletableFuture<Void> basicPublishAsync(final String exchange, final String routingKey,
+      final T message, final Map<String, Object> headers);
+
+  /**
+   * Publish a message with properties derived from a template and wait asynchronously for the
+   * broker to confirm it.
+   *
+   * @see #basicPublishAsync(String, String, Object)
+   * @see MessageConfiguration
+   */
+  <T> CompletableFuture<Void> basicPublishAsync(final String exchange, final String routingKey,
+      final T message, final Map<String, Object> headers, final PropertiesTemplate template);
+
+  /**
+   * Publish a batch of messages on a single channel and wait asynchronously for the broker to
+   * confirm all of them. The returned future completes once every message has been confirmed or
+   * failed, failures are reported by the position of the message in the batch.
+   *
+   * @see BatchPublishResult
+   */
+  <T> CompletableFuture<BatchPublishResult> basicPublishBatchAsync(final String exchange,
+      final String routingKey, final List<T> messages);
+
+  /**
+   * Publish a batch of messages sharing headers and properties derived from a template
+   *
+   * @see #basicPublishBatchAsync(String, String, List)
+   */
+  <T> CompletableFuture<BatchPublishResult> basicPublishBatchAsync(final String exchange,
+      final String routingKey, final List<T> messages, final Map<String, Object> headers,
+      final PropertiesTemplate template);
+
   /**
    * Acknowledge one or several received messages. Supply the deliveryTag create the
    * AMQP.Basic.GetOk or AMQP.Basic.Deliver method containing the received message being
@@ -129,7 +187,9 @@ public interface RabbitMQClient {
    * Consume message create the queue
    *
    * @param queue   the queue to consumer messages create
-   * @param options the queue options on how messages will be consumed create the queue
+   * @param options the queue options on how messages will be consumed create the queue, when the
+   *                queue is already consumed the handler is added to the running consumers and
+   *                differing options are ignored with a warning
    * @param clazz   the class of dematerialized message
    * @param handler the handler to call when message have been consumed
    * @param <T>     the message type
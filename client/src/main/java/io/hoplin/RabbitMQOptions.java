@@ -1,6 +1,7 @@
 package io.hoplin;
 
 import com.rabbitmq.client.ConnectionFactory;
+import io.hoplin.json.CodecFactory;
 import io.hoplin.util.OsUtil;
 import java.io.File;
 import java.net.InetAddress;
@@ -88,6 +89,11 @@ public class RabbitMQOptions {
    */
   public static final Integer DEFAULT_CONNECTION_RETRIES = null;
 
+  /**
+   * The default maximum of shared connections per broker node = {@code 1}
+   */
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_NODE = 1;
+
   private Integer connectionRetries = DEFAULT_CONNECTION_RETRIES;
   private long connectionRetryDelay = DEFAULT_CONNECTION_RETRY_DELAY;
   private String uri = null;
@@ -115,6 +121,29 @@ public class RabbitMQOptions {
   private boolean keepUnroutableMessages = true;
   private boolean tlsEnabled;
 
+  // codec used for publishing, consumers decode by the message content type
+  private CodecFactory codec = CodecFactory.json();
+
+  private boolean sharedConnections = true;
+
+  private ConnectionRegistry connectionRegistry = ConnectionRegistry.getDefault();
+
+  private int maxConnectionsPerNode = DEFAULT_MAX_CONNECTIONS_PER_NODE;
+
+  private long maxInFlightMessages = 0;
+
+  private long maxInFlightBytes = 0;
+
+  private BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+
+  private ExecutionMode executionMode = ExecutionMode.POOLED;
+
+  private MessageIdGenerator messageIdGenerator = MessageIdGenerator.sequential();
+
+  private MessageTimingListener timingListener;
+
+  private boolean traceContextPropagation;
+
   public RabbitMQOptions() {
     this.clientProperties = createDefaultClientProperties();
   }
@@ -151,6 +180,17 @@ public class RabbitMQOptions {
     keepUnroutableMessages = that.keepUnroutableMessages;
     unroutableDirectory = that.unroutableDirectory;
     tlsEnabled = that.tlsEnabled;
+    codec = that.codec;
+    sharedConnections = that.sharedConnections;
+    connectionRegistry = that.connectionRegistry;
+    maxConnectionsPerNode = that.maxConnectionsPerNode;
+    maxInFlightMessages = that.maxInFlightMessages;
+    maxInFlightBytes = that.maxInFlightBytes;
+    backpressurePolicy = that.backpressurePolicy;
+    executionMode = that.executionMode;
+    messageIdGenerator = that.messageIdGenerator;
+    timingListener = that.timingListener;
+    traceContextPropagation = that.traceContextPropagation;
   }
 
   /**
@@ -430,4 +470,192 @@ public class RabbitMQOptions {
   public long getReconnectDelay() {
     return reconnectDelay;
   }
+
+  public boolean isSharedConnections() {
+    return sharedConnections;
+  }
+
+  /**
+   * Share connections between clients created with equal connection settings, enabled by default.
+   * When disabled every client opens its own connection.
+   *
+   * @param sharedConnections {@code true} to share connections
+   * @return this options
+   * @see ConnectionRegistry
+   */
+  public RabbitMQOptions setSharedConnections(final boolean sharedConnections) {
+    this.sharedConnections = sharedConnections;
+    return this;
+  }
+
+  public ConnectionRegistry getConnectionRegistry() {
+    return connectionRegistry;
+  }
+
+  /**
+   * Set registry clients acquire their connections from, the registry decides how connections are
+   * opened so clients can be pointed at a broker other than a RabbitMQ node, e.g. an in-memory one
+   *
+   * @param connectionRegistry the registry, defaults to {@link ConnectionRegistry#getDefault()}
+   * @return this options
+   */
+  public RabbitMQOptions setConnectionRegistry(final ConnectionRegistry connectionRegistry) {
+    this.connectionRegistry = Objects.requireNonNull(connectionRegistry);
+    return this;
+  }
+
+  public int getMaxConnectionsPerNode() {
+    return maxConnectionsPerNode;
+  }
+
+  /**
+   * Set the maximum number of shared connections opened to a broker node, clients are spread over
+   * them by usage
+   *
+   * @param maxConnectionsPerNode the connection limit, at least 1
+   * @return this options
+   */
+  public RabbitMQOptions setMaxConnectionsPerNode(final int maxConnectionsPerNode) {
+    if (maxConnectionsPerNode < 1) {
+      throw new IllegalArgumentException(
+          "maxConnectionsPerNode should be at least 1 : " + maxConnectionsPerNode);
+    }
+    this.maxConnectionsPerNode = maxConnectionsPerNode;
+    return this;
+  }
+
+  public long getMaxInFlightMessages() {
+    return maxInFlightMessages;
+  }
+
+  /**
+   * Set the maximum number of published messages that are queued, being written or waiting for a
+   * confirm, {@code 0} means no limit
+   *
+   * @param maxInFlightMessages the message limit of the publish window
+   * @return this options
+   * @see #setBackpressurePolicy(BackpressurePolicy)
+   */
+  public RabbitMQOptions setMaxInFlightMessages(final long maxInFlightMessages) {
+    if (maxInFlightMessages < 0) {
+      throw new IllegalArgumentException(
+          "maxInFlightMessages should not be negative : " + maxInFlightMessages);
+    }
+    this.maxInFlightMessages = maxInFlightMessages;
+    return this;
+  }
+
+  public long getMaxInFlightBytes() {
+    return maxInFlightBytes;
+  }
+
+  /**
+   * Set the maximum size of published message bodies that are being written or waiting for a
+   * confirm, {@code 0} means no limit
+   *
+   * @param maxInFlightBytes the byte limit of the publish window
+   * @return this options
+   * @see #setBackpressurePolicy(BackpressurePolicy)
+   */
+  public RabbitMQOptions setMaxInFlightBytes(final long maxInFlightBytes) {
+    if (maxInFlightBytes < 0) {
+      throw new IllegalArgumentException(
+          "maxInFlightBytes should not be negative : " + maxInFlightBytes);
+    }
+    this.maxInFlightBytes = maxInFlightBytes;
+    return this;
+  }
+
+  public BackpressurePolicy getBackpressurePolicy() {
+    return backpressurePolicy;
+  }
+
+  /**
+   * Set how publishing reacts when the publish window is full or the broker blocked the connection
+   *
+   * @param backpressurePolicy the policy, defaults to {@link BackpressurePolicy#BLOCK}
+   * @return this options
+   */
+  public RabbitMQOptions setBackpressurePolicy(final BackpressurePolicy backpressurePolicy) {
+    this.backpressurePolicy = Objects.requireNonNull(backpressurePolicy);
+    return this;
+  }
+
+  public ExecutionMode getExecutionMode() {
+    return executionMode;
+  }
+
+  /**
+   * Set how consumers run message handlers, {@link ExecutionMode#VIRTUAL_THREADS} suits handlers
+   * that block on I/O. Queues can override the mode with {@link QueueOptions#setExecutionMode}.
+   *
+   * @param executionMode the mode, defaults to {@link ExecutionMode#POOLED}
+   * @return this options
+   */
+  public RabbitMQOptions setExecutionMode(final ExecutionMode executionMode) {
+    this.executionMode = Objects.requireNonNull(executionMode);
+    return this;
+  }
+
+  public MessageIdGenerator getMessageIdGenerator() {
+    return messageIdGenerator;
+  }
+
+  /**
+   * Set the generator of message ids and RPC correlation ids
+   *
+   * @param messageIdGenerator the generator, defaults to {@link MessageIdGenerator#sequential()}
+   * @return this options
+   */
+  public RabbitMQOptions setMessageIdGenerator(final MessageIdGenerator messageIdGenerator) {
+    this.messageIdGenerator = Objects.requireNonNull(messageIdGenerator);
+    return this;
+  }
+
+  public MessageTimingListener getTimingListener() {
+    return timingListener;
+  }
+
+  /**
+   * Set listener notified with the stage timings of every consumed message once it is acknowledged
+   *
+   * @param timingListener the listener, null to disable
+   * @return current options
+   */
+  public RabbitMQOptions setTimingListener(final MessageTimingListener timingListener) {
+    this.timingListener = timingListener;
+    return this;
+  }
+
+  public boolean isTraceContextPropagation() {
+    return traceContextPropagation;
+  }
+
+  /**
+   * Set whether W3C trace context is carried in message headers, disabled by default
+   *
+   * @param traceContextPropagation true to propagate
+   * @return current options
+   * @see TraceContext
+   */
+  public RabbitMQOptions setTraceContextPropagation(final boolean traceContextPropagation) {
+    this.traceContextPropagation = traceContextPropagation;
+    return this;
+  }
+
+  public CodecFactory getCodec() {
+    return codec;
+  }
+
+  /**
+   * Set the codec used to serialize published messages, defaults to JSON. Consumers select the
+   * decoder by message content type so clients using different codecs can share a queue.
+   *
+   * @param codec the codec factory, ex. {@link CodecFactory#cbor()}
+   * @return this options
+   */
+  public RabbitMQOptions setCodec(final CodecFactory codec) {
+    this.codec = Objects.requireNonNull(codec);
+    return this;
+  }
 }
@@ -0,0 +1,75 @@
+package io.hoplin;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates ids from a random 64 bit prefix drawn once and a 64 bit sequence. Prefixes make ids of
+ * different processes distinct, the sequence makes ids of one process distinct.
+ * <p>
+ * Threads reserve blocks of the sequence so the shared counter is touched once per block instead of
+ * once per id. Ids are unique but only monotonic per thread.
+ * </p>
+ */
+public final class SequentialMessageIdGenerator implements MessageIdGenerator {
+
+  private static final SequentialMessageIdGenerator DEFAULT = new SequentialMessageIdGenerator();
+
+  // ids reserved by a thread at once
+  private static final int BLOCK_SIZE = 1024;
+
+  private final long prefix;
+
+  private final AtomicLong sequence = new AtomicLong();
+
+  private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+  public SequentialMessageIdGenerator() {
+    this(new SecureRandom().nextLong());
+  }
+
+  /**
+   * Create generator with a specific prefix
+   *
+   * @param prefix the most significant bits of every id
+   */
+  public SequentialMessageIdGenerator(final long prefix) {
+    this.prefix = prefix;
+  }
+
+  /**
+   * Get the generator shared by this process
+   *
+   * @return default generator
+   */
+  public static SequentialMessageIdGenerator getDefault() {
+    return DEFAULT;
+  }
+
+  @Override
+  public String nextId() {
+    return nextUuid().toString();
+  }
+
+  /**
+   * Generate next id as {@link UUID}, for callers keying on UUIDs
+   *
+   * @return new id
+   */
+  public UUID nextUuid() {
+    final Block block = blocks.get();
+    if (block.next == block.limit) {
+      block.next = sequence.getAndAdd(BLOCK_SIZE);
+      block.limit = block.next + BLOCK_SIZE;
+    }
+    return new UUID(prefix, block.next++);
+  }
+
+  private static final class Block {
+
+    private long next;
+
+    private long limit;
+  }
+}
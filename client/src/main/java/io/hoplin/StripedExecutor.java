@@ -0,0 +1,129 @@
+package io.hoplin;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executor that runs tasks with equal keys serially, in submission order, while tasks with
+ * different keys run in parallel on the underlying executor. Keys are hashed onto a fixed number of
+ * lanes, keys sharing a lane are serialized as well.
+ *
+ * @see OrderingKey
+ */
+public class StripedExecutor implements Executor {
+
+  private static final Logger log = LoggerFactory.getLogger(StripedExecutor.class);
+
+  // tasks a lane runs before yielding its thread to other lanes
+  private static final int DRAIN_LIMIT = 64;
+
+  private final Executor executor;
+
+  private final Lane[] lanes;
+
+  /**
+   * Create new striped executor
+   *
+   * @param executor the executor running the lanes
+   * @param stripes  number of lanes
+   */
+  public StripedExecutor(final Executor executor, final int stripes) {
+    if (stripes <= 0) {
+      throw new IllegalArgumentException("stripes should be greater than 0 : " + stripes);
+    }
+    this.executor = Objects.requireNonNull(executor);
+    this.lanes = new Lane[stripes];
+    for (int i = 0; i < stripes; ++i) {
+      lanes[i] = new Lane();
+    }
+  }
+
+  /**
+   * Run task without ordering
+   *
+   * @param task the task to run
+   */
+  @Override
+  public void execute(final Runnable task) {
+    executor.execute(task);
+  }
+
+  /**
+   * Run task after all tasks previously submitted with an equal key
+   *
+   * @param key  the ordering key, null to run without ordering
+   * @param task the task to run
+   */
+  public void execute(final Object key, final Runnable task) {
+    Objects.requireNonNull(task);
+    if (key == null) {
+      executor.execute(task);
+      return;
+    }
+    lanes[indexOf(key)].execute(task);
+  }
+
+  private int indexOf(final Object key) {
+    final int h = key.hashCode();
+    return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % lanes.length;
+  }
+
+  /**
+   * Get number of lanes
+   *
+   * @return lane count
+   */
+  public int getStripes() {
+    return lanes.length;
+  }
+
+  private final class Lane implements Runnable {
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    void execute(final Runnable task) {
+      tasks.add(task);
+      schedule();
+    }
+
+    private void schedule() {
+      if (!scheduled.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        executor.execute(this);
+      } catch (final RejectedExecutionException e) {
+        scheduled.set(false);
+        throw e;
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        Runnable task;
+        for (int i = 0; i < DRAIN_LIMIT && (task = tasks.poll()) != null; ++i) {
+          try {
+            task.run();
+          } catch (final RuntimeException e) {
+            log.error("Unhandled exception in ordered task", e);
+          }
+        }
+      } finally {
+        scheduled.set(false);
+        // tasks added while draining, or left over after the drain limit
+        if (!tasks.isEmpty()) {
+          schedule();
+        }
+      }
+    }
+  }
+}
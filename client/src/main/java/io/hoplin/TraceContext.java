@@ -0,0 +1,227 @@
+package io.hoplin;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * W3C trace context carried in the {@code traceparent} and {@code tracestate} message headers.
+ * Consumers continue the trace of a delivered message while its handler runs, messages published
+ * from the handler carry a child span of it.
+ * <p>
+ * Propagation is off unless enabled with
+ * {@link RabbitMQOptions#setTraceContextPropagation(boolean)}, disabled clients never touch headers.
+ * </p>
+ *
+ * @see <a href="https://www.w3.org/TR/trace-context/">Trace Context</a>
+ */
+public final class TraceContext {
+
+  public static final String TRACEPARENT = "traceparent";
+
+  public static final String TRACESTATE = "tracestate";
+
+  private static final String VERSION = "00";
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+
+  private final String traceId;
+
+  private final String spanId;
+
+  private final String flags;
+
+  private final String traceState;
+
+  private TraceContext(final String traceId, final String spanId, final String flags,
+      final String traceState) {
+    this.traceId = traceId;
+    this.spanId = spanId;
+    this.flags = flags;
+    this.traceState = traceState;
+  }
+
+  /**
+   * Start a new trace
+   *
+   * @return sampled root context
+   */
+  public static TraceContext newRoot() {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    return new TraceContext(hex(random.nextLong(), random.nextLong()), hex(random.nextLong()), "01",
+        null);
+  }
+
+  /**
+   * Continue the trace in message headers with a new span
+   *
+   * @param headers the message headers, may be null
+   * @return child of the propagated context or a new root when the headers carry none or an invalid
+   * one
+   */
+  public static TraceContext continueFrom(final Map<String, Object> headers) {
+    final TraceContext parent = headers == null ? null : parse(headers.get(TRACEPARENT),
+        headers.get(TRACESTATE));
+    return parent == null ? newRoot() : parent.newChild();
+  }
+
+  private static TraceContext parse(final Object traceparent, final Object tracestate) {
+    if (traceparent == null) {
+      return null;
+    }
+    // values arrive as LongString
+    final String value = traceparent.toString();
+    if (value.length() < 55 || value.charAt(2) != '-' || value.charAt(35) != '-'
+        || value.charAt(52) != '-') {
+      return null;
+    }
+    final String traceId = value.substring(3, 35);
+    final String spanId = value.substring(36, 52);
+    final String flags = value.substring(53, 55);
+    if (!isHex(traceId) || !isHex(spanId) || !isHex(flags) || isZero(traceId) || isZero(spanId)) {
+      return null;
+    }
+    return new TraceContext(traceId, spanId, flags,
+        tracestate == null ? null : tracestate.toString());
+  }
+
+  /**
+   * Get context of the message handled by the current thread
+   *
+   * @return current context or null when no traced message is handled
+   */
+  public static TraceContext current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Make context current for the calling thread, consumers attach the context of a message while
+   * its handler runs and restore the previous one afterwards
+   *
+   * @param context the context, null to clear
+   * @return previously current context
+   */
+  public static TraceContext attach(final TraceContext context) {
+    final TraceContext previous = CURRENT.get();
+    if (context == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(context);
+    }
+    return previous;
+  }
+
+  /**
+   * Copy headers adding a child span of the current context or a new trace when there is none
+   *
+   * @param headers the message headers, may be null
+   * @return new headers carrying the trace context
+   */
+  public static Map<String, Object> inject(final Map<String, Object> headers) {
+    final TraceContext current = CURRENT.get();
+    return (current == null ? newRoot() : current.newChild()).injectInto(headers);
+  }
+
+  /**
+   * Copy headers adding this context
+   *
+   * @param headers the message headers, may be null
+   * @return new headers carrying this context
+   */
+  public Map<String, Object> injectInto(final Map<String, Object> headers) {
+    final Map<String, Object> traced = headers == null ? new HashMap<>() : new HashMap<>(headers);
+    traced.put(TRACEPARENT, toTraceparent());
+    if (traceState != null) {
+      traced.put(TRACESTATE, traceState);
+    }
+    return traced;
+  }
+
+  /**
+   * Create context of a new span in the same trace
+   *
+   * @return child context
+   */
+  public TraceContext newChild() {
+    return new TraceContext(traceId, hex(ThreadLocalRandom.current().nextLong()), flags,
+        traceState);
+  }
+
+  /**
+   * Format as {@code traceparent} header value
+   *
+   * @return header value
+   */
+  public String toTraceparent() {
+    return VERSION + '-' + traceId + '-' + spanId + '-' + flags;
+  }
+
+  public String getTraceId() {
+    return traceId;
+  }
+
+  public String getSpanId() {
+    return spanId;
+  }
+
+  public boolean isSampled() {
+    return (Character.digit(flags.charAt(1), 16) & 1) == 1;
+  }
+
+  private static String hex(final long... values) {
+    final char[] chars = new char[values.length * 16];
+    int pos = 0;
+    for (final long value : values) {
+      for (int shift = 60; shift >= 0; shift -= 4) {
+        chars[pos++] = HEX[(int) (value >>> shift) & 0xF];
+      }
+    }
+    final String hex = new String(chars);
+    // all zero ids are invalid
+    return isZero(hex) ? hex.substring(0, hex.length() - 1) + '1' : hex;
+  }
+
+  private static boolean isHex(final String value) {
+    for (int i = 0; i < value.length(); ++i) {
+      final char c = value.charAt(i);
+      if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isZero(final String value) {
+    for (int i = 0; i < value.length(); ++i) {
+      if (value.charAt(i) != '0') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    final TraceContext that = (TraceContext) o;
+    return traceId.equals(that.traceId) && spanId.equals(that.spanId);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(traceId, spanId);
+  }
+
+  @Override
+  public String toString() {
+    return toTraceparent();
+  }
+}
@@ -1,5 +1,6 @@
 package io.hoplin.batch;
 
+import io.hoplin.SequentialMessageIdGenerator;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Date;
@@ -18,7 +19,7 @@ public class BatchContext implements Iterable<BatchContextTask> {
   /**
    * Unique Batch Id
    */
-  private final UUID batchId = UUID.randomUUID();
+  private final UUID batchId = SequentialMessageIdGenerator.getDefault().nextUuid();
 
   /**
    * Task associated with this batch
@@ -1,5 +1,6 @@
 package io.hoplin.batch;
 
+import io.hoplin.SequentialMessageIdGenerator;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.UUID;
@@ -22,7 +23,7 @@ public class BatchContextTask {
 
   public <T> BatchContextTask(final T message) {
     this.message = message;
-    this.taskId = UUID.randomUUID();
+    this.taskId = SequentialMessageIdGenerator.getDefault().nextUuid();
   }
 
   public Object getMessage() {
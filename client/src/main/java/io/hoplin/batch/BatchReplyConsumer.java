@@ -4,8 +4,9 @@ import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.DefaultConsumer;
 import com.rabbitmq.client.Envelope;
+import io.hoplin.ExecutorRegistry;
 import io.hoplin.MessagePayload;
-import io.hoplin.json.JsonMessagePayloadCodec;
+import io.hoplin.json.CodecRegistry;
 
 import java.util.Map;
 import java.util.Objects;
@@ -13,7 +14,6 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,7 +32,7 @@ public class BatchReplyConsumer extends DefaultConsumer {
 
     private final Executor executor;
 
-    private final JsonMessagePayloadCodec codec;
+    private final CodecRegistry codecs;
 
     /**
      * Constructs a new instance and records its association to the passed-in channel.
@@ -42,16 +42,34 @@ public class BatchReplyConsumer extends DefaultConsumer {
     public BatchReplyConsumer(final Channel channel,
                               final ConcurrentHashMap<UUID, CompletableFutureWrapperBatchContext> batches,
                               final Executor executor) {
+        this(channel, batches, executor, CodecRegistry.empty());
+    }
+
+    /**
+     * Constructs a new instance decoding replies by their content type
+     *
+     * @param channel the channel to which this consumer is attached
+     * @param codecs  the codecs used to decode replies
+     */
+    public BatchReplyConsumer(final Channel channel,
+                              final ConcurrentHashMap<UUID, CompletableFutureWrapperBatchContext> batches,
+                              final Executor executor,
+                              final CodecRegistry codecs) {
         super(channel);
         this.executor = Objects.requireNonNull(executor);
         this.batches = Objects.requireNonNull(batches);
-        this.codec = new JsonMessagePayloadCodec();
+        this.codecs = Objects.requireNonNull(codecs);
+    }
+
+    public BatchReplyConsumer(final Channel channel,
+                              final ConcurrentHashMap<UUID, CompletableFutureWrapperBatchContext> batches,
+                              final CodecRegistry codecs) {
+        this(channel, batches, ExecutorRegistry.getDefault().reply(), codecs);
     }
 
     public BatchReplyConsumer(final Channel channel,
                               final ConcurrentHashMap<UUID, CompletableFutureWrapperBatchContext> batches) {
-        this(channel, batches,
-                Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+        this(channel, batches, ExecutorRegistry.getDefault().reply());
     }
 
     @SuppressWarnings("unchecked")
@@ -99,12 +117,12 @@ public class BatchReplyConsumer extends DefaultConsumer {
         }
     }
 
-    private MessagePayload<?> handleReply(final byte[] body) {
+    private MessagePayload<?> handleReply(final String contentType, final byte[] body) {
         if (log.isDebugEnabled()) {
             log.debug("reply body : {}", new String(body));
         }
         try {
-            return codec.deserialize(body, MessagePayload.class);
+            return codecs.getCodec(contentType).deserialize(body, MessagePayload.class);
         } catch (final Exception e) {
             log.error("Unable to complete reply action", e);
         }
@@ -4,11 +4,15 @@ import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import io.hoplin.Binding;
 import io.hoplin.ConnectionProvider;
+import io.hoplin.ConsumerExecutors;
+import io.hoplin.ExecutionMode;
 import io.hoplin.HoplinRuntimeException;
+import io.hoplin.MessageIdGenerator;
 import io.hoplin.MessagePayload;
 import io.hoplin.RabbitMQClient;
 import io.hoplin.RabbitMQOptions;
-import io.hoplin.json.JsonMessagePayloadCodec;
+import io.hoplin.json.Codec;
+import io.hoplin.json.CodecRegistry;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -41,7 +45,8 @@ public class DefaultBatchClient implements BatchClient {
    * Exchange to send requests to
    */
   private final String exchange;
-  private final JsonMessagePayloadCodec codec;
+  private final CodecRegistry codecs;
+  private final Codec codec;
   /**
    * Queue where we will listen for our Batch-RPC replies
    */
@@ -53,13 +58,20 @@ public class DefaultBatchClient implements BatchClient {
 
   private BatchReplyConsumer consumer;
 
+  private final ExecutionMode executionMode;
+
+  private final MessageIdGenerator idGenerator;
+
   public DefaultBatchClient(final RabbitMQOptions options, final Binding binding) {
     Objects.requireNonNull(options);
     Objects.requireNonNull(binding);
 
     this.provider = ConnectionProvider.createAndConnect(options);
     this.channel = provider.acquire();
-    this.codec = new JsonMessagePayloadCodec();
+    this.codecs = CodecRegistry.create(options.getCodec());
+    this.codec = codecs.getCodec();
+    this.executionMode = options.getExecutionMode();
+    this.idGenerator = options.getMessageIdGenerator();
 
     this.exchange = binding.getExchange();
     this.replyToQueueName = binding.getQueue();
@@ -149,8 +161,10 @@ public class DefaultBatchClient implements BatchClient {
 
       final AMQP.BasicProperties props = new AMQP.BasicProperties
           .Builder()
+          .messageId(idGenerator.nextId())
           .correlationId(taskId.toString())
           .replyTo(replyToQueueName)
+          .contentType(codec.getContentType())
           .headers(headers)
           .build();
 
@@ -176,7 +190,8 @@ public class DefaultBatchClient implements BatchClient {
 
   private void consumeReply() {
     try {
-      consumer = new BatchReplyConsumer(channel, batches);
+      consumer = new BatchReplyConsumer(channel, batches,
+          ConsumerExecutors.createReply(provider.getExecutors(), executionMode), codecs);
       channel.basicConsume(replyToQueueName, true, consumer);
     } catch (final Exception e) {
       throw new HoplinRuntimeException("Unable to create batch consumer", e);
@@ -0,0 +1,82 @@
+package io.hoplin.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.hoplin.MessagePayload;
+import io.hoplin.json.JsonMessagePayloadCodec.DecodeMode;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A compact binary {@code Codec} that encodes the same document model as {@link
+ * JsonMessagePayloadCodec} using CBOR (RFC 7049). All the Gson adapters and the {@link
+ * MessagePayload} type tagging are shared with the JSON codec so both formats decode to the same
+ * objects.
+ *
+ * @see MessagePayloadSerializer
+ * @see MessagePayload
+ */
+public class CborMessagePayloadCodec implements Codec {
+
+  /**
+   * Content type published with CBOR encoded messages
+   */
+  public static final String CONTENT_TYPE = "application/cbor";
+
+  private static final Logger log = LoggerFactory.getLogger(CborMessagePayloadCodec.class);
+
+  private final Gson gson;
+
+  public CborMessagePayloadCodec() {
+    this(Collections.emptySet());
+  }
+
+  public CborMessagePayloadCodec(final Set<Class<?>> handlerClasses) {
+    this(handlerClasses, builder -> {
+    });
+  }
+
+  public CborMessagePayloadCodec(final Set<Class<?>> handlerClasses,
+      final Consumer<GsonBuilder> consumer) {
+    Objects.requireNonNull(handlerClasses);
+    this.gson = new JsonMessagePayloadCodec(handlerClasses, consumer, DecodeMode.TREE).getGson();
+  }
+
+  @Override
+  public String getContentType() {
+    return CONTENT_TYPE;
+  }
+
+  @Override
+  public byte[] serialize(final Object value) {
+    Objects.requireNonNull(value);
+    return CborWriter.write(gson.toJsonTree(value));
+  }
+
+  @Override
+  public byte[] serialize(final Object value, final Class<?> clazz) {
+    Objects.requireNonNull(value);
+    Objects.requireNonNull(clazz);
+    return CborWriter.write(gson.toJsonTree(value, clazz));
+  }
+
+  @Override
+  public <E> E deserialize(final byte[] data, final Class<? extends E> clazz) {
+    return deserialize(data, (Type) clazz);
+  }
+
+  @Override
+  public <E> E deserialize(final byte[] data, final Type type) {
+    try {
+      return gson.fromJson(CborReader.read(data), type);
+    } catch (final Exception t) {
+      log.error("Unable to deserialize", t);
+    }
+    return null;
+  }
+}
@@ -0,0 +1,200 @@
+package io.hoplin.json;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Reads CBOR (RFC 7049) data into {@link JsonElement} tree. Supports the subset of CBOR that maps
+ * to JSON, byte strings are returned as Base64 strings and semantic tags are ignored.
+ * <p>
+ * Input is untrusted, declared lengths are checked against the remaining data before anything is
+ * allocated and nesting is limited to {@link #MAX_DEPTH} levels.
+ * </p>
+ */
+final class CborReader {
+
+  /**
+   * Maximum nesting of arrays, maps and tags
+   */
+  static final int MAX_DEPTH = 256;
+
+  private final byte[] data;
+
+  private int position;
+
+  private CborReader(final byte[] data) {
+    this.data = Objects.requireNonNull(data);
+  }
+
+  /**
+   * Decode CBOR data
+   *
+   * @param data the data to decode
+   * @return decoded element
+   * @throws JsonParseException when data is malformed or uses unsupported features
+   */
+  static JsonElement read(final byte[] data) {
+    final CborReader reader = new CborReader(data);
+    final JsonElement element = reader.readElement(0);
+    if (reader.position != data.length) {
+      throw new JsonParseException("Trailing data after CBOR item at : " + reader.position);
+    }
+    return element;
+  }
+
+  private JsonElement readElement(final int depth) {
+    if (depth > MAX_DEPTH) {
+      throw new JsonParseException("CBOR nesting deeper than " + MAX_DEPTH + " at : " + position);
+    }
+    final int initial = readByte();
+    final int major = initial >>> 5;
+    final int info = initial & 0x1F;
+
+    switch (major) {
+      case 0:
+        return new JsonPrimitive(readLength(info));
+      case 1:
+        return new JsonPrimitive(-1 - readLength(info));
+      case 2: {
+        final int length = toInt(readLength(info));
+        final int offset = require(length);
+        return new JsonPrimitive(Base64.getEncoder()
+            .encodeToString(Arrays.copyOfRange(data, offset, offset + length)));
+      }
+      case 3: {
+        final int length = toInt(readLength(info));
+        return new JsonPrimitive(new String(data, require(length), length, StandardCharsets.UTF_8));
+      }
+      case 4: {
+        // every element takes at least one byte
+        final int length = remaining(readLength(info), 1);
+        final JsonArray array = new JsonArray();
+        for (int i = 0; i < length; ++i) {
+          array.add(readElement(depth + 1));
+        }
+        return array;
+      }
+      case 5: {
+        // every entry takes at least a key and a value byte
+        final int length = remaining(readLength(info), 2);
+        final JsonObject object = new JsonObject();
+        for (int i = 0; i < length; ++i) {
+          final JsonElement key = readElement(depth + 1);
+          if (!key.isJsonPrimitive()) {
+            throw new JsonParseException("Unsupported CBOR map key : " + key);
+          }
+          object.add(key.getAsString(), readElement(depth + 1));
+        }
+        return object;
+      }
+      case 6:
+        readLength(info);
+        return readElement(depth + 1);
+      default:
+        return readSimple(info);
+    }
+  }
+
+  private JsonElement readSimple(final int info) {
+    switch (info) {
+      case 20:
+        return new JsonPrimitive(false);
+      case 21:
+        return new JsonPrimitive(true);
+      case 22:
+      case 23:
+        return JsonNull.INSTANCE;
+      case 25:
+        return new JsonPrimitive((double) halfToFloat((int) readBytes(2)));
+      case 26:
+        return new JsonPrimitive((double) Float.intBitsToFloat((int) readBytes(4)));
+      case 27:
+        return new JsonPrimitive(Double.longBitsToDouble(readBytes(8)));
+      default:
+        throw new JsonParseException("Unsupported CBOR simple value : " + info);
+    }
+  }
+
+  private long readLength(final int info) {
+    if (info < 24) {
+      return info;
+    }
+    switch (info) {
+      case 24:
+        return readBytes(1);
+      case 25:
+        return readBytes(2);
+      case 26:
+        return readBytes(4);
+      case 27:
+        return readBytes(8);
+      default:
+        throw new JsonParseException("Unsupported CBOR length encoding : " + info);
+    }
+  }
+
+  private int readByte() {
+    return data[require(1)] & 0xFF;
+  }
+
+  private long readBytes(final int count) {
+    final int start = require(count);
+    long value = 0;
+    for (int i = 0; i < count; ++i) {
+      value = (value << 8) | (data[start + i] & 0xFF);
+    }
+    return value;
+  }
+
+  /**
+   * Reserve count bytes and return the offset of the first one
+   */
+  private int require(final int count) {
+    if (count < 0 || position + count > data.length) {
+      throw new JsonParseException("Unexpected end of CBOR data at : " + position);
+    }
+    final int start = position;
+    position += count;
+    return start;
+  }
+
+  /**
+   * Check that count items of at least size bytes each fit in the remaining data
+   */
+  private int remaining(final long count, final int size) {
+    if (count < 0 || count > (data.length - position) / size) {
+      throw new JsonParseException("CBOR item count exceeds remaining data : " + count);
+    }
+    return (int) count;
+  }
+
+  private static int toInt(final long length) {
+    // 8 byte lengths above Long.MAX_VALUE read as negative
+    if (length < 0 || length > Integer.MAX_VALUE) {
+      throw new JsonParseException("CBOR item too large : " + length);
+    }
+    return (int) length;
+  }
+
+  private static float halfToFloat(final int half) {
+    final int exponent = (half >>> 10) & 0x1F;
+    final int mantissa = half & 0x3FF;
+    final float value;
+    if (exponent == 0) {
+      value = mantissa * (float) Math.pow(2, -24);
+    } else if (exponent == 31) {
+      value = mantissa == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+    } else {
+      value = (float) Math.pow(2, exponent - 15) * (1 + mantissa / 1024f);
+    }
+    return (half & 0x8000) == 0 ? value : -value;
+  }
+}
@@ -0,0 +1,158 @@
+package io.hoplin.json;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Writes {@link JsonElement} tree as CBOR (RFC 7049). Only definite length items are produced.
+ */
+final class CborWriter {
+
+  private static final int MAJOR_UNSIGNED = 0;
+
+  private static final int MAJOR_NEGATIVE = 1;
+
+  private static final int MAJOR_TEXT = 3;
+
+  private static final int MAJOR_ARRAY = 4;
+
+  private static final int MAJOR_MAP = 5;
+
+  private static final int FALSE = 0xF4;
+
+  private static final int TRUE = 0xF5;
+
+  private static final int NULL = 0xF6;
+
+  private static final int FLOAT32 = 0xFA;
+
+  private static final int FLOAT64 = 0xFB;
+
+  private final ByteArrayOutputStream out;
+
+  CborWriter(final int initialSize) {
+    this.out = new ByteArrayOutputStream(initialSize);
+  }
+
+  /**
+   * Encode element as CBOR
+   *
+   * @param element the element to encode
+   * @return encoded bytes
+   */
+  static byte[] write(final JsonElement element) {
+    final CborWriter writer = new CborWriter(256);
+    writer.writeElement(element);
+    return writer.out.toByteArray();
+  }
+
+  private void writeElement(final JsonElement element) {
+    if (element == null || element.isJsonNull()) {
+      out.write(NULL);
+    } else if (element.isJsonObject()) {
+      final JsonObject object = element.getAsJsonObject();
+      writeHead(MAJOR_MAP, object.size());
+      for (final Map.Entry<String, JsonElement> entry : object.entrySet()) {
+        writeText(entry.getKey());
+        writeElement(entry.getValue());
+      }
+    } else if (element.isJsonArray()) {
+      final JsonArray array = element.getAsJsonArray();
+      writeHead(MAJOR_ARRAY, array.size());
+      for (final JsonElement item : array) {
+        writeElement(item);
+      }
+    } else {
+      writePrimitive(element.getAsJsonPrimitive());
+    }
+  }
+
+  private void writePrimitive(final JsonPrimitive primitive) {
+    if (primitive.isBoolean()) {
+      out.write(primitive.getAsBoolean() ? TRUE : FALSE);
+    } else if (primitive.isString()) {
+      writeText(primitive.getAsString());
+    } else {
+      writeNumber(primitive.getAsNumber());
+    }
+  }
+
+  private void writeNumber(final Number number) {
+    if (number instanceof Long || number instanceof Integer
+        || number instanceof Short || number instanceof Byte) {
+      writeLong(number.longValue());
+    } else if (number instanceof Double || number instanceof Float) {
+      writeDouble(number.doubleValue());
+    } else if (number instanceof BigInteger && ((BigInteger) number).bitLength() < 64) {
+      writeLong(number.longValue());
+    } else {
+      // BigDecimal, LazilyParsedNumber etc, keep integral values integral like the JSON output
+      final String text = number.toString();
+      if (text.indexOf('.') == -1 && text.indexOf('e') == -1 && text.indexOf('E') == -1) {
+        try {
+          writeLong(Long.parseLong(text));
+          return;
+        } catch (final NumberFormatException e) {
+          // out of range, fall through to double
+        }
+      }
+      writeDouble(number.doubleValue());
+    }
+  }
+
+  private void writeLong(final long value) {
+    if (value >= 0) {
+      writeHead(MAJOR_UNSIGNED, value);
+    } else {
+      writeHead(MAJOR_NEGATIVE, -1 - value);
+    }
+  }
+
+  private void writeDouble(final double value) {
+    final float single = (float) value;
+    if (single == value || Double.isNaN(value)) {
+      out.write(FLOAT32);
+      writeBytes(Float.floatToIntBits(single), 4);
+    } else {
+      out.write(FLOAT64);
+      writeBytes(Double.doubleToLongBits(value), 8);
+    }
+  }
+
+  private void writeText(final String value) {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeHead(MAJOR_TEXT, bytes.length);
+    out.write(bytes, 0, bytes.length);
+  }
+
+  private void writeHead(final int major, final long length) {
+    final int type = major << 5;
+    if (length < 24) {
+      out.write(type | (int) length);
+    } else if (length < 0x100) {
+      out.write(type | 24);
+      out.write((int) length);
+    } else if (length < 0x10000) {
+      out.write(type | 25);
+      writeBytes(length, 2);
+    } else if (length < 0x100000000L) {
+      out.write(type | 26);
+      writeBytes(length, 4);
+    } else {
+      out.write(type | 27);
+      writeBytes(length, 8);
+    }
+  }
+
+  private void writeBytes(final long value, final int count) {
+    for (int i = count - 1; i >= 0; --i) {
+      out.write((int) (value >>> (i * 8)));
+    }
+  }
+}
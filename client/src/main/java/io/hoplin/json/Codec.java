@@ -7,6 +7,17 @@ import java.lang.reflect.Type;
  */
 public interface Codec {
 
+  /**
+   * Content type of the serialized data, published as the AMQP {@code content_type} so consumers
+   * can select matching codec. Defaults to the JSON content type, codecs writing another format
+   * should override it.
+   *
+   * @return the content type
+   */
+  default String getContentType() {
+    return JsonMessagePayloadCodec.CONTENT_TYPE;
+  }
+
   /**
    * Serialize object to <code>byte[]</code>
    *
@@ -0,0 +1,78 @@
+package io.hoplin.json;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Creates {@link Codec} instances for a given content type. Consumers create a codec per handler
+ * set so that messages without type information can still be resolved.
+ *
+ * @see CodecRegistry
+ * @see io.hoplin.RabbitMQOptions#setCodec(CodecFactory)
+ */
+public interface CodecFactory {
+
+  /**
+   * Factory for {@link JsonMessagePayloadCodec}
+   *
+   * @return JSON codec factory
+   */
+  static CodecFactory json() {
+    return of(JsonMessagePayloadCodec.CONTENT_TYPE, JsonMessagePayloadCodec::new);
+  }
+
+  /**
+   * Factory for {@link CborMessagePayloadCodec}
+   *
+   * @return CBOR codec factory
+   */
+  static CodecFactory cbor() {
+    return of(CborMessagePayloadCodec.CONTENT_TYPE, CborMessagePayloadCodec::new);
+  }
+
+  /**
+   * Create factory from a function
+   *
+   * @param contentType the content type the codecs produce
+   * @param creator     function creating codec for a set of handler classes
+   * @return new factory
+   */
+  static CodecFactory of(final String contentType,
+      final Function<Set<Class<?>>, Codec> creator) {
+    Objects.requireNonNull(contentType);
+    Objects.requireNonNull(creator);
+
+    return new CodecFactory() {
+      @Override
+      public String getContentType() {
+        return contentType;
+      }
+
+      @Override
+      public Codec create(final Set<Class<?>> handlerClasses) {
+        return creator.apply(handlerClasses);
+      }
+
+      @Override
+      public String toString() {
+        return "CodecFactory{" + contentType + "}";
+      }
+    };
+  }
+
+  /**
+   * Content type of the codecs created by this factory
+   *
+   * @return the content type, ex. 'text/json'
+   */
+  String getContentType();
+
+  /**
+   * Create new codec
+   *
+   * @param handlerClasses the handler classes used to resolve messages without type information
+   * @return new codec
+   */
+  Codec create(final Set<Class<?>> handlerClasses);
+}
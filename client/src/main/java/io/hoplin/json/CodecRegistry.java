@@ -0,0 +1,144 @@
+package io.hoplin.json;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the handler classes known to a consumer together with the {@link Codec}s
+ * built for them, one per supported content type.
+ * <p>
+ * Building a codec is expensive (new {@code GsonBuilder}, reflection over every handler class and
+ * adapter registration) so consumers keep a registry and only derive a new one when the handler set
+ * actually changes. Instances are safe to share between threads.
+ * </p>
+ * <p>
+ * Incoming messages select their decoder by the AMQP {@code content_type}, the configured default
+ * codec is used when the content type is missing or unknown.
+ * </p>
+ *
+ * @see JsonMessagePayloadCodec
+ * @see CborMessagePayloadCodec
+ */
+public final class CodecRegistry {
+
+  private static final CodecRegistry EMPTY = create(CodecFactory.json());
+
+  private final CodecFactory defaultFactory;
+
+  private final Set<Class<?>> handlerClasses;
+
+  private final Map<String, Codec> codecs;
+
+  private final Codec defaultCodec;
+
+  private CodecRegistry(final CodecFactory defaultFactory,
+      final ImmutableSet<Class<?>> handlerClasses) {
+    this.defaultFactory = defaultFactory;
+    this.handlerClasses = handlerClasses;
+    this.defaultCodec = defaultFactory.create(handlerClasses);
+
+    final Map<String, Codec> codecs = new HashMap<>();
+    codecs.put(defaultFactory.getContentType(), defaultCodec);
+    for (final CodecFactory factory : new CodecFactory[]{CodecFactory.json(),
+        CodecFactory.cbor()}) {
+      if (!codecs.containsKey(factory.getContentType())) {
+        codecs.put(factory.getContentType(), factory.create(handlerClasses));
+      }
+    }
+    // JSON published by other clients usually uses the registered media type
+    codecs.putIfAbsent("application/json", codecs.get(JsonMessagePayloadCodec.CONTENT_TYPE));
+    this.codecs = ImmutableMap.copyOf(codecs);
+  }
+
+  /**
+   * Registry without any handler classes using JSON as the default codec
+   *
+   * @return empty registry
+   */
+  public static CodecRegistry empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Registry without any handler classes
+   *
+   * @param defaultFactory the factory for the default codec
+   * @return new registry
+   */
+  public static CodecRegistry create(final CodecFactory defaultFactory) {
+    Objects.requireNonNull(defaultFactory);
+    return new CodecRegistry(defaultFactory, ImmutableSet.of());
+  }
+
+  /**
+   * Derive registry for the given handler classes, if the set is unchanged this registry is
+   * returned and no new codecs are built.
+   *
+   * @param classes the handler classes that the codecs should be able to resolve
+   * @return registry covering the supplied classes
+   */
+  public CodecRegistry withHandlerClasses(final Set<Class<?>> classes) {
+    Objects.requireNonNull(classes);
+    if (handlerClasses.equals(classes)) {
+      return this;
+    }
+    return new CodecRegistry(defaultFactory, ImmutableSet.copyOf(classes));
+  }
+
+  /**
+   * Get the handler classes this registry was built for
+   *
+   * @return immutable set of handler classes
+   */
+  public Set<Class<?>> getHandlerClasses() {
+    return handlerClasses;
+  }
+
+  /**
+   * Get the default codec bound to the handler classes
+   *
+   * @return the codec
+   */
+  public Codec getCodec() {
+    return defaultCodec;
+  }
+
+  /**
+   * Get codec for specific content type
+   *
+   * @param contentType the AMQP content type, parameters like 'charset' are ignored
+   * @return matching codec or the default codec when content type is missing or unknown
+   */
+  public Codec getCodec(final String contentType) {
+    final Codec codec = findCodec(contentType);
+    return codec != null ? codec : defaultCodec;
+  }
+
+  /**
+   * Find codec for specific content type
+   *
+   * @param contentType the AMQP content type, parameters like 'charset' are ignored
+   * @return matching codec, null when content type is missing or unknown
+   */
+  public Codec findCodec(final String contentType) {
+    if (contentType == null) {
+      return null;
+    }
+
+    final Codec codec = codecs.get(contentType);
+    if (codec != null) {
+      return codec;
+    }
+
+    final int idx = contentType.indexOf(';');
+    final String mediaType = (idx == -1 ? contentType : contentType.substring(0, idx))
+        .trim()
+        .toLowerCase(Locale.ROOT);
+    return codecs.get(mediaType);
+  }
+}
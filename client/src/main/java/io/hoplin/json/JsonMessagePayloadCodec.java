@@ -2,7 +2,11 @@ package io.hoplin.json;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import io.hoplin.MessagePayload;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
@@ -18,18 +22,34 @@ import org.slf4j.LoggerFactory;
 
 /**
  * A {@code Codec} that can encode and decode objects
+ * <p>
+ * Messages are written as compact UTF-8 JSON, indented output can be enabled by passing {@code
+ * GsonBuilder::setPrettyPrinting} as the builder consumer or via {@link #serializePretty(Object)}.
+ * </p>
  *
  * @see MessagePayloadSerializer
  * @see MessagePayload
  */
 public class JsonMessagePayloadCodec implements Codec {
 
+  /**
+   * Content type published with JSON encoded messages
+   */
+  public static final String CONTENT_TYPE = "text/json";
+
   private static final JsonMessagePayloadCodec SERIALIZER = new JsonMessagePayloadCodec();
 
+  private static final JsonMessagePayloadCodec PRETTY_SERIALIZER = new JsonMessagePayloadCodec(
+      Collections.emptySet(), GsonBuilder::setPrettyPrinting);
+
   private static final Logger log = LoggerFactory.getLogger(JsonMessagePayloadCodec.class);
 
   private final Gson gson;
 
+  private final MessagePayloadSerializer payloadSerializer;
+
+  private final DecodeMode decodeMode;
+
   public JsonMessagePayloadCodec() {
     this(Collections.emptySet());
   }
@@ -41,9 +61,14 @@ public class JsonMessagePayloadCodec implements Codec {
 
   public JsonMessagePayloadCodec(final Set<Class<?>> handlerClasses,
       final Consumer<GsonBuilder> consumer) {
+    this(handlerClasses, consumer, DecodeMode.STREAMING);
+  }
+
+  public JsonMessagePayloadCodec(final Set<Class<?>> handlerClasses,
+      final Consumer<GsonBuilder> consumer, final DecodeMode decodeMode) {
     Objects.requireNonNull(handlerClasses);
+    this.decodeMode = Objects.requireNonNull(decodeMode);
     final GsonBuilder builder = new GsonBuilder();
-    builder.setPrettyPrinting();
 
     if (consumer != null) {
       consumer.accept(builder);
@@ -51,8 +76,8 @@ public class JsonMessagePayloadCodec implements Codec {
 
     builder.registerTypeAdapter(byte[].class, new ByteArrayToBase64TypeAdapter());
     builder.registerTypeAdapter(Double.class, new DoubleJsonSerializer());
-    builder.registerTypeAdapter(MessagePayload.class,
-        new MessagePayloadSerializer(buildMappings(handlerClasses)));
+    payloadSerializer = new MessagePayloadSerializer(buildMappings(handlerClasses));
+    builder.registerTypeAdapter(MessagePayload.class, payloadSerializer);
 
     gson = builder.create();
   }
@@ -68,6 +93,27 @@ public class JsonMessagePayloadCodec implements Codec {
     return SERIALIZER.serialize(value);
   }
 
+  /**
+   * Serialize data as indented JSON, intended for messages read by people like {@code
+   * ErrorMessage}. Messages on the wire should use the compact {@link #serializeWithDefaults}.
+   *
+   * @param value
+   * @return
+   */
+  public static byte[] serializePretty(final Object value) {
+    Objects.requireNonNull(value);
+    return PRETTY_SERIALIZER.serialize(value);
+  }
+
+  @Override
+  public String getContentType() {
+    return CONTENT_TYPE;
+  }
+
+  Gson getGson() {
+    return gson;
+  }
+
   private Map<Class<?>, Set<String>> buildMappings(final Set<Class<?>> handlerClasses) {
     Objects.requireNonNull(handlerClasses);
 
@@ -88,7 +134,7 @@ public class JsonMessagePayloadCodec implements Codec {
     Objects.requireNonNull(value);
     final long s = System.currentTimeMillis();
     try {
-      return gson.toJson(value).getBytes();
+      return write(value, value.getClass());
     } finally {
       if (log.isTraceEnabled()) {
         log.trace("serialize time (ms) {}", (System.currentTimeMillis() - s));
@@ -103,7 +149,7 @@ public class JsonMessagePayloadCodec implements Codec {
 
     final long s = System.currentTimeMillis();
     try {
-      return gson.toJson(value, clazz).getBytes();
+      return write(value, clazz);
     } finally {
       if (log.isTraceEnabled()) {
         log.trace("serialize time (ms) {}", (System.currentTimeMillis() - s));
@@ -111,16 +157,42 @@ public class JsonMessagePayloadCodec implements Codec {
     }
   }
 
+  /**
+   * Write value as UTF-8 into a writer taken from the bounded pool shared by all threads, when
+   * every pooled writer is in use a temporary one is allocated and dropped afterwards
+   */
+  private byte[] write(final Object value, final Type type) {
+    final Utf8ByteArrayWriter out = Utf8ByteArrayWriter.acquire();
+    try {
+      final JsonWriter writer = gson.newJsonWriter(out);
+      if (value instanceof MessagePayload) {
+        payloadSerializer.write(writer, (MessagePayload) value);
+      } else {
+        gson.toJson(value, type, writer);
+      }
+      writer.flush();
+      return out.toByteArray();
+    } catch (final IOException e) {
+      throw new JsonIOException(e);
+    } finally {
+      out.release();
+    }
+  }
+
   @Override
   public <E> E deserialize(final byte[] data, final Class<? extends E> clazz) {
     return deserialize(data, (Type) clazz);
   }
 
+  @SuppressWarnings("unchecked")
   @Override
   public <E> E deserialize(final byte[] data, final Type type) {
     final long s = System.currentTimeMillis();
 
     try {
+      if (decodeMode == DecodeMode.STREAMING && type == MessagePayload.class) {
+        return (E) readMessagePayload(data);
+      }
       return gson.fromJson(new String(data, StandardCharsets.UTF_8), type);
     } catch (final Exception t) {
       log.error("Unable to deserialize", t);
@@ -131,4 +203,27 @@ public class JsonMessagePayloadCodec implements Codec {
     }
     return null;
   }
+
+  private MessagePayload readMessagePayload(final byte[] data) throws IOException {
+    try (final JsonReader reader = new JsonReader(new Utf8ByteArrayReader(data))) {
+      reader.setLenient(true);
+      return payloadSerializer.read(reader);
+    }
+  }
+
+  /**
+   * How {@link MessagePayload} messages are decoded
+   */
+  public enum DecodeMode {
+    /**
+     * Decode the whole message into {@code JsonElement} tree before binding to the target type
+     */
+    TREE,
+
+    /**
+     * Read the message with streaming {@link JsonReader} binding the payload straight to the
+     * target type
+     */
+    STREAMING
+  }
 }
@@ -1,7 +1,5 @@
 package io.hoplin.json;
 
-import com.google.common.collect.Sets;
-import com.google.common.collect.Sets.SetView;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonDeserializationContext;
@@ -12,17 +10,21 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.JsonToken;
 import io.hoplin.MessagePayload;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Message payload serializer Messages exchanged between two clients are decorated with special JSON
@@ -41,6 +43,11 @@ public class MessagePayloadSerializer implements JsonSerializer<MessagePayload>,
 
   private final Gson gson;
 
+  private final TypeAdapter<JsonElement> elementAdapter;
+
+  // resolved '_payload_type_' names, avoids Class.forName on every message
+  private final Map<String, Class<?>> payloadTypes = new ConcurrentHashMap<>();
+
   private Map<Class<?>, Set<String>> handlerClassFields = new HashMap<>();
 
   public MessagePayloadSerializer() {
@@ -54,12 +61,14 @@ public class MessagePayloadSerializer implements JsonSerializer<MessagePayload>,
   public MessagePayloadSerializer(final Gson gson) {
     Objects.requireNonNull(gson, "Gson can't be null");
     this.gson = gson;
+    this.elementAdapter = gson.getAdapter(JsonElement.class);
   }
 
   private MessagePayloadSerializer(final Map<Class<?>, Set<String>> handlerClassFields,
       final Gson gson) {
     this.handlerClassFields = handlerClassFields;
     this.gson = gson;
+    this.elementAdapter = gson.getAdapter(JsonElement.class);
   }
 
   @SuppressWarnings("unchecked")
@@ -84,13 +93,9 @@ public class MessagePayloadSerializer implements JsonSerializer<MessagePayload>,
       final String payloadTypeName = propertyElement.getAsString();
       final JsonElement payload = jsonObject.get(PAYLOAD_TAG);
 
-      try {
-        final Class actualClass = Class.forName(payloadTypeName);
-        final Object out = gson.fromJson(payload, actualClass);
-        return MessagePayload.of(out, actualClass, Integer.parseInt(statusValue));
-      } catch (final ClassNotFoundException e) {
-        throw new JsonParseException(e.getMessage());
-      }
+      final Class actualClass = resolvePayloadType(payloadTypeName);
+      final Object out = gson.fromJson(payload, actualClass);
+      return MessagePayload.of(out, actualClass, Integer.parseInt(statusValue));
     } else if (json.isJsonPrimitive()) {
       return getMessagePayloadAsPrimitive(json);
     } else if (json.isJsonArray()) {
@@ -100,23 +105,129 @@ public class MessagePayloadSerializer implements JsonSerializer<MessagePayload>,
     throw new IllegalStateException("Unsupported JSON message type : " + json);
   }
 
+  /**
+   * Read {@link MessagePayload} directly from the stream without building intermediate tree for
+   * the whole message. When '_payload_type_' precedes the 'payload' the payload is bound straight
+   * to its target class, otherwise only the payload element is buffered.
+   *
+   * @param reader the reader positioned at the start of the message
+   * @return decoded message
+   * @throws IOException when the stream can't be read
+   */
+  public MessagePayload read(final JsonReader reader) throws IOException {
+    Objects.requireNonNull(reader);
+    if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+      return readObject(reader);
+    }
+
+    final JsonElement json = elementAdapter.read(reader);
+    if (json.isJsonPrimitive()) {
+      return getMessagePayloadAsPrimitive(json);
+    } else if (json.isJsonArray()) {
+      return getMessagePayloadAsArrayPrimitive(json);
+    }
+
+    throw new IllegalStateException("Unsupported JSON message type : " + json);
+  }
+
+  private MessagePayload readObject(final JsonReader reader) throws IOException {
+    // fields seen before the payload type is known, for native messages this is the whole object
+    final JsonObject buffered = new JsonObject();
+    Class<?> actualClass = null;
+    Object out = null;
+    boolean bound = false;
+    Integer status = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String name = reader.nextName();
+      if (PROPERTY_NAME.equals(name)) {
+        actualClass = resolvePayloadType(reader.nextString());
+      } else if (actualClass == null) {
+        buffered.add(name, elementAdapter.read(reader));
+      } else if (PAYLOAD_TAG.equals(name)) {
+        out = gson.getAdapter(actualClass).read(reader);
+        bound = true;
+      } else if (STATUS_TAG.equals(name)) {
+        status = Integer.parseInt(reader.nextString());
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    if (actualClass == null) {
+      final Optional<Class<?>> located = locateBestMatchingType(buffered.keySet());
+      final Class<?> type = located.orElseThrow(
+          () -> new IllegalArgumentException("Unable to locate type for : " + buffered));
+      return MessagePayload.of(gson.fromJson(buffered, type), type, MessagePayload.SUCCESS);
+    }
+
+    if (!bound) {
+      out = gson.fromJson(buffered.get(PAYLOAD_TAG), actualClass);
+    }
+
+    if (status == null) {
+      final JsonElement statusElement = buffered.get(STATUS_TAG);
+      status = statusElement == null ? MessagePayload.SUCCESS
+          : Integer.parseInt(statusElement.getAsString());
+    }
+
+    return MessagePayload.of(out, actualClass, status);
+  }
+
+  private Class<?> resolvePayloadType(final String payloadTypeName) {
+    final Class<?> cached = payloadTypes.get(payloadTypeName);
+    if (cached != null) {
+      return cached;
+    }
+
+    try {
+      final Class<?> resolved = Class.forName(payloadTypeName);
+      payloadTypes.putIfAbsent(payloadTypeName, resolved);
+      return resolved;
+    } catch (final ClassNotFoundException e) {
+      throw new JsonParseException(e.getMessage());
+    }
+  }
+
   private Optional<Class<?>> locateBestMatchingType(final JsonObject jsonObject) {
-    final Map<String, JsonElement> raw = jsonObject
-        .entrySet()
-        .stream()
-        .collect(Collectors.toMap(Entry::getKey, e -> e.getValue()));
+    return locateBestMatchingType(jsonObject.keySet());
+  }
 
-    final Set<String> set1 = raw.keySet();
-    int count = set1.size();
+  /**
+   * Locate handler class whose declared fields best match the supplied keys. Classes that declare
+   * every key are preferred (Gson omits null fields so the keys are usually a subset of the fields),
+   * ties are broken by the number of fields that are not present in the keys.
+   *
+   * @param keys the keys present in the JSON object
+   * @return best matching class or empty when none of the handler classes matches
+   */
+  private Optional<Class<?>> locateBestMatchingType(final Set<String> keys) {
+    final int count = keys.size();
     Class<?> candidate = null;
+    int candidateMissing = Integer.MAX_VALUE;
+    int candidateExtra = Integer.MAX_VALUE;
 
     for (final Map.Entry<Class<?>, Set<String>> e : handlerClassFields.entrySet()) {
-      final Class<?> key = e.getKey();
-      final Set<String> set2 = e.getValue();
-      final SetView<String> diffView = Sets.symmetricDifference(set1, set2);
-      // sets are equal when both diff view is empty
-      if (diffView.size() < count) {
-        candidate = key;
+      final Set<String> fields = e.getValue();
+      int missing = 0;
+      for (final String key : keys) {
+        if (!fields.contains(key)) {
+          ++missing;
+        }
+      }
+
+      final int extra = fields.size() - (count - missing);
+      // sets are equal when both missing and extra are zero
+      if (missing > 0 && missing + extra >= count) {
+        continue;
+      }
+
+      if (missing < candidateMissing || (missing == candidateMissing && extra < candidateExtra)) {
+        candidate = e.getKey();
+        candidateMissing = missing;
+        candidateExtra = extra;
       }
     }
     return Optional.ofNullable(candidate);
@@ -170,16 +281,50 @@ public class MessagePayloadSerializer implements JsonSerializer<MessagePayload>,
     return null;
   }
 
+  /**
+   * Write the message straight to the {@link JsonWriter} producing the same document as {@link
+   * #serialize(MessagePayload, Type, JsonSerializationContext)} without building the tree
+   *
+   * @param out the writer to write to
+   * @param src the message to write
+   * @throws IOException when the writer fails
+   */
+  @SuppressWarnings("unchecked")
+  public void write(final JsonWriter out, final MessagePayload src) throws IOException {
+    final Object payload = src.getPayload();
+
+    out.beginObject();
+    if (payload != null) {
+      out.name(PROPERTY_NAME).value(payload.getClass().getName());
+    }
+    out.name(STATUS_TAG).value(src.getStatus());
+    if (payload != null) {
+      out.name(PAYLOAD_TAG);
+      ((TypeAdapter<Object>) gson.getAdapter(payload.getClass())).write(out, payload);
+    }
+    if (src.getType() != null) {
+      out.name("type").value(src.getType());
+    }
+    out.name("ctime").value(src.getCtime());
+    out.endObject();
+  }
+
   @Override
   public JsonElement serialize(final MessagePayload src, final Type typeOfSrc,
       final JsonSerializationContext context) {
-    final JsonElement retValue = gson.toJsonTree(src);
-    if (retValue.isJsonObject()) {
+    final JsonElement tree = gson.toJsonTree(src);
+    if (tree.isJsonObject()) {
       final Object payload = src.getPayload();
       final Class<?> clazz = payload.getClass();
 
-      retValue.getAsJsonObject().addProperty(PROPERTY_NAME, clazz.getName());
+      // type tag goes first so that readers can bind the payload while streaming
+      final JsonObject retValue = new JsonObject();
+      retValue.addProperty(PROPERTY_NAME, clazz.getName());
+      for (final Map.Entry<String, JsonElement> entry : tree.getAsJsonObject().entrySet()) {
+        retValue.add(entry.getKey(), entry.getValue());
+      }
+      return retValue;
     }
-    return retValue;
+    return tree;
   }
 }
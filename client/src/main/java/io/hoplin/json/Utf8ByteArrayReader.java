@@ -0,0 +1,129 @@
+package io.hoplin.json;
+
+import java.io.Reader;
+import java.util.Objects;
+
+/**
+ * {@link Reader} that decodes UTF-8 directly from a {@code byte[]}. Unlike {@link
+ * java.io.InputStreamReader} it does not allocate an intermediate decode buffer which matters when
+ * decoding small messages. Malformed sequences are replaced with {@code U+FFFD}.
+ */
+final class Utf8ByteArrayReader extends Reader {
+
+  private static final char REPLACEMENT = '�';
+
+  private final byte[] data;
+
+  private final int limit;
+
+  private int position;
+
+  // low surrogate left over when the previous read ran out of space
+  private char pending;
+
+  Utf8ByteArrayReader(final byte[] data) {
+    this.data = Objects.requireNonNull(data);
+    this.limit = data.length;
+  }
+
+  @Override
+  public int read(final char[] buffer, final int offset, final int length) {
+    if (length == 0) {
+      return 0;
+    }
+
+    int out = offset;
+    final int end = offset + length;
+
+    if (pending != 0) {
+      buffer[out++] = pending;
+      pending = 0;
+    }
+
+    while (out < end && position < limit) {
+      final int b0 = data[position];
+      if (b0 >= 0) {
+        buffer[out++] = (char) b0;
+        ++position;
+        continue;
+      }
+
+      final int codePoint = decodeSequence();
+      if (codePoint < 0) {
+        buffer[out++] = REPLACEMENT;
+      } else if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+        buffer[out++] = (char) codePoint;
+      } else {
+        buffer[out++] = Character.highSurrogate(codePoint);
+        if (out < end) {
+          buffer[out++] = Character.lowSurrogate(codePoint);
+        } else {
+          pending = Character.lowSurrogate(codePoint);
+        }
+      }
+    }
+
+    final int read = out - offset;
+    return read == 0 ? -1 : read;
+  }
+
+  /**
+   * Decode the multi-byte sequence at the current position. Continuation bytes are checked against
+   * the ranges of well-formed UTF-8, which excludes overlong forms and code points above {@code
+   * U+10FFFF}, encoded surrogates are rejected once complete. A malformed sequence consumes its
+   * longest valid prefix, at least one byte, like the JDK decoder.
+   *
+   * @return code point or -1 when the sequence is malformed
+   */
+  private int decodeSequence() {
+    final int b0 = data[position] & 0xFF;
+    final int continuations;
+    // valid range of the first continuation byte
+    int min = 0x80;
+    int max = 0xBF;
+    if (b0 >= 0xC2 && b0 <= 0xDF) {
+      continuations = 1;
+    } else if (b0 >= 0xE0 && b0 <= 0xEF) {
+      continuations = 2;
+      if (b0 == 0xE0) {
+        min = 0xA0;
+      }
+    } else if (b0 >= 0xF0 && b0 <= 0xF4) {
+      continuations = 3;
+      if (b0 == 0xF0) {
+        min = 0x90;
+      } else if (b0 == 0xF4) {
+        max = 0x8F;
+      }
+    } else {
+      // continuation byte without lead, or lead of an overlong or out of range sequence
+      ++position;
+      return -1;
+    }
+
+    int codePoint = b0 & (0x3F >> continuations);
+    int length = 1;
+    while (length <= continuations && position + length < limit) {
+      final int b = data[position + length] & 0xFF;
+      if (b < min || b > max) {
+        break;
+      }
+      codePoint = (codePoint << 6) | (b & 0x3F);
+      min = 0x80;
+      max = 0xBF;
+      ++length;
+    }
+
+    position += length;
+    if (length <= continuations
+        || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+      return -1;
+    }
+    return codePoint;
+  }
+
+  @Override
+  public void close() {
+    // NOOP
+  }
+}
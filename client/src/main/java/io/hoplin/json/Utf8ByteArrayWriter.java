@@ -0,0 +1,177 @@
+package io.hoplin.json;
+
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link Writer} that encodes characters as UTF-8 straight into a growable {@code byte[]}. Instances
+ * are reused through {@link #acquire()} so serializing a message does not allocate an intermediate
+ * {@code String} or encoder buffers. Unpaired surrogates are replaced with {@code ?}.
+ * <p>
+ * The pool holds a fixed number of writers shared by all threads rather than one per thread, so
+ * short-lived virtual threads neither allocate a writer each nor keep one alive. When every pooled
+ * writer is in use a new one is created and dropped again on release.
+ * </p>
+ */
+final class Utf8ByteArrayWriter extends Writer {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  // buffers grown above this size are not kept by the pool after use
+  private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+  private static final int POOL_SIZE = Math.max(4,
+      Runtime.getRuntime().availableProcessors() * 2);
+
+  // idle writers, a slot is emptied while its writer is in use
+  private static final AtomicReferenceArray<Utf8ByteArrayWriter> POOL =
+      new AtomicReferenceArray<>(POOL_SIZE);
+
+  private byte[] buffer = new byte[INITIAL_CAPACITY];
+
+  private int count;
+
+  // high surrogate waiting for its pair when a write ends in the middle of a code point
+  private char pending;
+
+  private Utf8ByteArrayWriter() {
+  }
+
+  /**
+   * Take an idle writer from the pool, a fresh writer is returned when all are in use
+   *
+   * @return empty writer, must be returned via {@link #release()}
+   */
+  static Utf8ByteArrayWriter acquire() {
+    final int start = start();
+    for (int i = 0; i < POOL_SIZE; ++i) {
+      final int slot = (start + i) % POOL_SIZE;
+      if (POOL.get(slot) != null) {
+        final Utf8ByteArrayWriter writer = POOL.getAndSet(slot, null);
+        if (writer != null) {
+          return writer;
+        }
+      }
+    }
+    return new Utf8ByteArrayWriter();
+  }
+
+  /**
+   * Reset the writer and return it to the pool, it is dropped when the pool is full
+   */
+  void release() {
+    count = 0;
+    pending = 0;
+    if (buffer.length > MAX_RETAINED_CAPACITY) {
+      buffer = new byte[INITIAL_CAPACITY];
+    }
+
+    final int start = start();
+    for (int i = 0; i < POOL_SIZE; ++i) {
+      if (POOL.compareAndSet((start + i) % POOL_SIZE, null, this)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * First slot to probe, spreads threads over the pool to reduce contention
+   */
+  private static int start() {
+    return (int) (Thread.currentThread().getId() % POOL_SIZE);
+  }
+
+  /**
+   * Copy of the encoded bytes
+   *
+   * @return the UTF-8 encoded data
+   */
+  byte[] toByteArray() {
+    if (pending != 0) {
+      ensureCapacity(1);
+      buffer[count++] = '?';
+      pending = 0;
+    }
+    return Arrays.copyOf(buffer, count);
+  }
+
+  @Override
+  public void write(final int c) {
+    write((char) c);
+  }
+
+  @Override
+  public void write(final char[] chars, final int offset, final int length) {
+    // worst case is 3 bytes per char, surrogate pairs use 4 bytes for 2 chars
+    ensureCapacity(length * 3 + 1);
+    for (int i = offset, end = offset + length; i < end; ++i) {
+      encode(chars[i]);
+    }
+  }
+
+  @Override
+  public void write(final String str, final int offset, final int length) {
+    ensureCapacity(length * 3 + 1);
+    for (int i = offset, end = offset + length; i < end; ++i) {
+      encode(str.charAt(i));
+    }
+  }
+
+  private void write(final char c) {
+    ensureCapacity(4);
+    encode(c);
+  }
+
+  private void encode(final char c) {
+    final byte[] buf = buffer;
+    if (pending != 0) {
+      final char high = pending;
+      pending = 0;
+      if (Character.isLowSurrogate(c)) {
+        final int codePoint = Character.toCodePoint(high, c);
+        buf[count++] = (byte) (0xF0 | (codePoint >>> 18));
+        buf[count++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3F));
+        buf[count++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3F));
+        buf[count++] = (byte) (0x80 | (codePoint & 0x3F));
+        return;
+      }
+      buf[count++] = '?';
+    }
+
+    if (c < 0x80) {
+      buf[count++] = (byte) c;
+    } else if (c < 0x800) {
+      buf[count++] = (byte) (0xC0 | (c >>> 6));
+      buf[count++] = (byte) (0x80 | (c & 0x3F));
+    } else if (Character.isHighSurrogate(c)) {
+      pending = c;
+    } else if (Character.isLowSurrogate(c)) {
+      buf[count++] = '?';
+    } else {
+      buf[count++] = (byte) (0xE0 | (c >>> 12));
+      buf[count++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+      buf[count++] = (byte) (0x80 | (c & 0x3F));
+    }
+  }
+
+  private void ensureCapacity(final int extra) {
+    final int required = count + extra;
+    if (required < 0) {
+      throw new OutOfMemoryError("Message too large");
+    }
+    if (required > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length << 1));
+    }
+  }
+
+  @Override
+  public void flush() {
+    // NOOP
+  }
+
+  @Override
+  public void close() {
+    // NOOP
+  }
+}
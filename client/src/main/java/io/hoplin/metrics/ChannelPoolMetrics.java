@@ -0,0 +1,239 @@
+package io.hoplin.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Channel pool metric tracking
+ */
+public interface ChannelPoolMetrics {
+
+  /**
+   * Record channel lease and the time spent waiting for a free channel
+   *
+   * @param waitNanos time waited in nanoseconds, 0 when channel was available immediately
+   */
+  void recordLease(long waitNanos);
+
+  /**
+   * Get count of channel leases
+   *
+   * @return
+   */
+  long getLeaseCount();
+
+  /**
+   * Get total time spent waiting for channels in nanoseconds
+   *
+   * @return
+   */
+  long getLeaseWaitTime();
+
+  /**
+   * Get the longest time spent waiting for channel in nanoseconds
+   *
+   * @return
+   */
+  long getMaxLeaseWaitTime();
+
+  /**
+   * Mark lease that timed out waiting for a channel
+   */
+  long markLeaseTimeout();
+
+  /**
+   * Get count of leases that timed out
+   *
+   * @return
+   */
+  long getLeaseTimeouts();
+
+  /**
+   * Mark when new channel has been opened by the pool
+   */
+  long markChannelCreated();
+
+  /**
+   * Get count of channels opened by the pool
+   *
+   * @return
+   */
+  long getChannelsCreated();
+
+  /**
+   * Mark when channel has been closed or discarded by the pool
+   */
+  long markChannelClosed();
+
+  /**
+   * Get count of channels closed or discarded by the pool
+   *
+   * @return
+   */
+  long getChannelsClosed();
+
+  /**
+   * Get copy of the counters since the metrics were created, {@link #reset()} does not affect it
+   * so the counts never decrease. Implementations that reset their counters should override it, by
+   * default it is read from the getters.
+   *
+   * @return
+   */
+  default Snapshot cumulative() {
+    return new Snapshot(getLeaseCount(), getLeaseWaitTime(), getLeaseTimeouts(),
+        getChannelsCreated(), getChannelsClosed());
+  }
+
+  /**
+   * Reset underlying statistics
+   */
+  void reset();
+
+  class Factory {
+
+    private static final ConcurrentHashMap<String, ChannelPoolMetrics> metrics = new ConcurrentHashMap<>();
+
+    public static ChannelPoolMetrics getInstance(final String key) {
+      return metrics.computeIfAbsent(key, k -> new DefaultChannelPoolMetrics());
+    }
+
+    public static Map<String, ChannelPoolMetrics> getMetrics() {
+      return Collections.unmodifiableMap(metrics);
+    }
+  }
+
+  /**
+   * Immutable copy of channel pool counters
+   */
+  final class Snapshot {
+
+    private final long leases;
+
+    private final long leaseWait;
+
+    private final long leaseTimeouts;
+
+    private final long created;
+
+    private final long closed;
+
+    Snapshot(final long leases, final long leaseWait, final long leaseTimeouts,
+        final long created, final long closed) {
+      this.leases = leases;
+      this.leaseWait = leaseWait;
+      this.leaseTimeouts = leaseTimeouts;
+      this.created = created;
+      this.closed = closed;
+    }
+
+    public long getLeaseCount() {
+      return leases;
+    }
+
+    public long getLeaseWaitTime() {
+      return leaseWait;
+    }
+
+    public long getLeaseTimeouts() {
+      return leaseTimeouts;
+    }
+
+    public long getChannelsCreated() {
+      return created;
+    }
+
+    public long getChannelsClosed() {
+      return closed;
+    }
+  }
+
+  /**
+   * Counters only grow, a reset moves the baseline that the getters subtract instead of clearing
+   * them
+   */
+  class DefaultChannelPoolMetrics implements ChannelPoolMetrics {
+
+    private final AtomicLong leases = new AtomicLong();
+
+    private final AtomicLong leaseWait = new AtomicLong();
+
+    private final AtomicLong maxLeaseWait = new AtomicLong();
+
+    private final AtomicLong leaseTimeouts = new AtomicLong();
+
+    private final AtomicLong created = new AtomicLong();
+
+    private final AtomicLong closed = new AtomicLong();
+
+    // cumulative counter values at the last reset
+    private volatile Snapshot baseline = new Snapshot(0, 0, 0, 0, 0);
+
+    @Override
+    public void recordLease(final long waitNanos) {
+      leases.incrementAndGet();
+      if (waitNanos > 0) {
+        leaseWait.addAndGet(waitNanos);
+        maxLeaseWait.accumulateAndGet(waitNanos, Math::max);
+      }
+    }
+
+    @Override
+    public long getLeaseCount() {
+      return leases.get() - baseline.leases;
+    }
+
+    @Override
+    public long getLeaseWaitTime() {
+      return leaseWait.get() - baseline.leaseWait;
+    }
+
+    @Override
+    public long getMaxLeaseWaitTime() {
+      return maxLeaseWait.get();
+    }
+
+    @Override
+    public long markLeaseTimeout() {
+      return leaseTimeouts.incrementAndGet() - baseline.leaseTimeouts;
+    }
+
+    @Override
+    public long getLeaseTimeouts() {
+      return leaseTimeouts.get() - baseline.leaseTimeouts;
+    }
+
+    @Override
+    public long markChannelCreated() {
+      return created.incrementAndGet() - baseline.created;
+    }
+
+    @Override
+    public long getChannelsCreated() {
+      return created.get() - baseline.created;
+    }
+
+    @Override
+    public long markChannelClosed() {
+      return closed.incrementAndGet() - baseline.closed;
+    }
+
+    @Override
+    public long getChannelsClosed() {
+      return closed.get() - baseline.closed;
+    }
+
+    @Override
+    public Snapshot cumulative() {
+      return new Snapshot(leases.get(), leaseWait.get(), leaseTimeouts.get(), created.get(),
+          closed.get());
+    }
+
+    @Override
+    public synchronized void reset() {
+      baseline = cumulative();
+      maxLeaseWait.set(0);
+    }
+  }
+}
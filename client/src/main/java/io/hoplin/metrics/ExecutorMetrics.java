@@ -0,0 +1,89 @@
+package io.hoplin.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Executor pool metric tracking
+ */
+public interface ExecutorMetrics {
+
+  /**
+   * Get number of threads executing tasks
+   *
+   * @return
+   */
+  long getActiveCount();
+
+  /**
+   * Get number of threads in the pool
+   *
+   * @return
+   */
+  long getPoolSize();
+
+  /**
+   * Get number of tasks waiting for a thread
+   *
+   * @return
+   */
+  long getQueueDepth();
+
+  /**
+   * Get count of completed tasks
+   *
+   * @return
+   */
+  long getCompletedCount();
+
+  /**
+   * Create metrics reading the state of a pool
+   *
+   * @param executor the pool to read
+   * @return metrics backed by the pool
+   */
+  static ExecutorMetrics of(final ThreadPoolExecutor executor) {
+    Objects.requireNonNull(executor);
+    return new ExecutorMetrics() {
+      @Override
+      public long getActiveCount() {
+        return executor.getActiveCount();
+      }
+
+      @Override
+      public long getPoolSize() {
+        return executor.getPoolSize();
+      }
+
+      @Override
+      public long getQueueDepth() {
+        return executor.getQueue().size();
+      }
+
+      @Override
+      public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+      }
+    };
+  }
+
+  class Factory {
+
+    private static final ConcurrentHashMap<String, ExecutorMetrics> metrics = new ConcurrentHashMap<>();
+
+    public static void register(final String key, final ExecutorMetrics executor) {
+      metrics.put(key, executor);
+    }
+
+    public static void unregister(final String key, final ExecutorMetrics executor) {
+      metrics.remove(key, executor);
+    }
+
+    public static Map<String, ExecutorMetrics> getMetrics() {
+      return Collections.unmodifiableMap(metrics);
+    }
+  }
+}
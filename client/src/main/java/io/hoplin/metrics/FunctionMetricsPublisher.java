@@ -64,22 +64,65 @@ public class FunctionMetricsPublisher implements MetricsPublisher {
         final Map<String, Map<String, String>> collected = new HashMap<>();
 
         metrics.forEach((key, value) -> {
+            final QueueMetrics.Snapshot snapshot = resetOnReporting
+                    ? value.snapshotThenReset() : value.snapshot();
             final Map<String, String> data = new HashMap<>();
-            data.put("received.count", Long.toString(value.getMessageReceived()));
-            data.put("received.size", Long.toString(value.getReceivedSize()));
-            data.put("sent.count", Long.toString(value.getMessageSent()));
-            data.put("sent.size", Long.toString(value.getSentSize()));
+            data.put("received.count", Long.toString(snapshot.getMessageReceived()));
+            data.put("received.size", Long.toString(snapshot.getReceivedSize()));
+            data.put("sent.count", Long.toString(snapshot.getMessageSent()));
+            data.put("sent.size", Long.toString(snapshot.getSentSize()));
+            data.put("sent.failed.count", Long.toString(snapshot.getMessagePublishFailed()));
+            data.put("redelivered.count", Long.toString(snapshot.getMessageRedelivered()));
+            data.put("discarded.count", Long.toString(snapshot.getMessageDiscarded()));
+            data.put("inflight.count", Long.toString(snapshot.getInFlightCount()));
+            data.put("inflight.size", Long.toString(snapshot.getInFlightSize()));
+            data.put("prefetch.count", Integer.toString(snapshot.getPrefetchCount()));
+            putLatency(data, "confirm.latency", snapshot.getConfirmLatency());
+            putLatency(data, "handler.latency", snapshot.getHandlerLatency());
+            putLatency(data, "rpc.latency", snapshot.getRoundTripLatency());
+
+            collected.put(key, data);
+        });
+
+        ChannelPoolMetrics.Factory.getMetrics().forEach((key, value) -> {
+            final Map<String, String> data = new HashMap<>();
+            data.put("lease.count", Long.toString(value.getLeaseCount()));
+            data.put("lease.wait.nanos", Long.toString(value.getLeaseWaitTime()));
+            data.put("lease.wait.max.nanos", Long.toString(value.getMaxLeaseWaitTime()));
+            data.put("lease.timeout.count", Long.toString(value.getLeaseTimeouts()));
+            data.put("channel.created", Long.toString(value.getChannelsCreated()));
+            data.put("channel.closed", Long.toString(value.getChannelsClosed()));
 
             if (resetOnReporting) {
                 value.reset();
             }
 
-            collected.put(key, data);
+            collected.put("channel-pool-" + key, data);
+        });
+
+        ExecutorMetrics.Factory.getMetrics().forEach((key, value) -> {
+            final Map<String, String> data = new HashMap<>();
+            data.put("active.count", Long.toString(value.getActiveCount()));
+            data.put("pool.size", Long.toString(value.getPoolSize()));
+            data.put("queue.depth", Long.toString(value.getQueueDepth()));
+            data.put("completed.count", Long.toString(value.getCompletedCount()));
+            collected.put("executor-" + key, data);
         });
 
         consumer.accept(collected);
     }
 
+    private static void putLatency(final Map<String, String> data, final String name,
+                                   final LatencyHistogram.Snapshot latency) {
+        if (latency.getCount() == 0) {
+            return;
+        }
+        data.put(name + ".count", Long.toString(latency.getCount()));
+        data.put(name + ".p50.nanos", Long.toString(latency.getValueAtQuantile(0.5)));
+        data.put(name + ".p99.nanos", Long.toString(latency.getValueAtQuantile(0.99)));
+        data.put(name + ".max.nanos", Long.toString(latency.getMax()));
+    }
+
     @Override
     public void shutdown() {
         executor.shutdown();
@@ -0,0 +1,240 @@
+package io.hoplin.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with logarithmic buckets, every power of two is split into linear sub-buckets
+ * so recorded values are kept within 1/{@value #SUB_BUCKETS} of their magnitude, like an HDR
+ * histogram with one significant digit.
+ * <p>
+ * Recording is lock-free and does not allocate. Snapshots copy the buckets while writers keep
+ * recording, every value lands either in the snapshot or in the buckets left behind.
+ * </p>
+ * <p>
+ * Buckets only grow, a reset moves the baseline that {@link #snapshot()} subtracts so
+ * {@link #cumulative()} keeps every value recorded since the histogram was created.
+ * </p>
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  private final LongAdder sum = new LongAdder();
+
+  // cumulative values at the last reset
+  private volatile Baseline baseline = new Baseline(new long[BUCKETS], 0, 0);
+
+  /**
+   * Record latency
+   *
+   * @param nanos the latency in nanoseconds, negative values are ignored
+   */
+  public void record(final long nanos) {
+    if (nanos < 0) {
+      return;
+    }
+    counts.incrementAndGet(indexOf(nanos));
+    max.accumulate(nanos);
+    sum.add(nanos);
+  }
+
+  /**
+   * Record latency since a start time
+   *
+   * @param startNanos the start time from {@link System#nanoTime()}
+   */
+  public void recordSince(final long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Copy of the values recorded since the last reset
+   *
+   * @return snapshot of the histogram
+   */
+  public Snapshot snapshot() {
+    // read the baseline first, the buckets copied after it are never below it
+    final Baseline base = baseline;
+    return new Snapshot(subtract(copy(), base.counts), max.get(), sum.sum() - base.sum);
+  }
+
+  /**
+   * Copy of the values recorded since the last reset, then reset the histogram. Every concurrently
+   * recorded value lands either in this snapshot or in the next one.
+   *
+   * @return snapshot of the histogram
+   */
+  public synchronized Snapshot snapshotThenReset() {
+    final Baseline base = baseline;
+    final long[] current = copy();
+    final long currentSum = sum.sum();
+    final long windowMax = max.getThenReset();
+    baseline = new Baseline(current, currentSum, Math.max(base.max, windowMax));
+    return new Snapshot(subtract(current.clone(), base.counts), windowMax, currentSum - base.sum);
+  }
+
+  /**
+   * Copy of all values recorded since the histogram was created, resets do not affect it
+   *
+   * @return snapshot of the histogram
+   */
+  public Snapshot cumulative() {
+    final Baseline base = baseline;
+    return new Snapshot(copy(), Math.max(base.max, max.get()), sum.sum());
+  }
+
+  private long[] copy() {
+    final long[] copy = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; ++i) {
+      copy[i] = counts.get(i);
+    }
+    return copy;
+  }
+
+  private static long[] subtract(final long[] counts, final long[] base) {
+    for (int i = 0; i < BUCKETS; ++i) {
+      counts[i] -= base[i];
+    }
+    return counts;
+  }
+
+  static int indexOf(final long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    // magnitude is at least SUB_BUCKET_BITS, the top bits below it select the sub-bucket
+    final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    final int shift = magnitude - SUB_BUCKET_BITS;
+    final int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return (shift + 1) * SUB_BUCKETS + sub;
+  }
+
+  static long upperBoundOf(final int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    final int shift = index / SUB_BUCKETS - 1;
+    if (shift + SUB_BUCKET_BITS + 1 >= 63) {
+      return Long.MAX_VALUE;
+    }
+    final long sub = index % SUB_BUCKETS;
+    return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+  }
+
+  /**
+   * Cumulative bucket counts, sum and largest value at a reset
+   */
+  private static final class Baseline {
+
+    private final long[] counts;
+
+    private final long sum;
+
+    private final long max;
+
+    private Baseline(final long[] counts, final long sum, final long max) {
+      this.counts = counts;
+      this.sum = sum;
+      this.max = max;
+    }
+  }
+
+  /**
+   * Immutable copy of a histogram
+   */
+  public static final class Snapshot {
+
+    private final long[] counts;
+
+    private final long count;
+
+    private final long max;
+
+    private final long sum;
+
+    private Snapshot(final long[] counts, final long max, final long sum) {
+      this.counts = counts;
+      long total = 0;
+      for (final long c : counts) {
+        total += c;
+      }
+      this.count = total;
+      this.max = max;
+      this.sum = sum;
+    }
+
+    /**
+     * Get number of recorded values
+     *
+     * @return
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Get largest recorded value in nanoseconds
+     *
+     * @return
+     */
+    public long getMax() {
+      return max;
+    }
+
+    /**
+     * Get sum of recorded values in nanoseconds
+     *
+     * @return
+     */
+    public long getSum() {
+      return sum;
+    }
+
+    /**
+     * Get value below which a fraction of the recorded values fall
+     *
+     * @param quantile the fraction, between 0 and 1
+     * @return upper bound of the bucket holding the quantile in nanoseconds, 0 when empty
+     */
+    public long getValueAtQuantile(final double quantile) {
+      if (quantile < 0 || quantile > 1) {
+        throw new IllegalArgumentException("quantile should be between 0 and 1 : " + quantile);
+      }
+      if (count == 0) {
+        return 0;
+      }
+
+      final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; ++i) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(upperBoundOf(i), max);
+        }
+      }
+      return max;
+    }
+
+    /**
+     * Get value at quantile converted to a time unit
+     *
+     * @param quantile the fraction, between 0 and 1
+     * @param unit     the unit to convert to
+     * @return value in the unit
+     */
+    public long getValueAtQuantile(final double quantile, final TimeUnit unit) {
+      return unit.convert(getValueAtQuantile(quantile), TimeUnit.NANOSECONDS);
+    }
+  }
+}
@@ -3,7 +3,8 @@ package io.hoplin.metrics;
 import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,11 +21,13 @@ public interface QueueMetrics {
    * @return
    */
   static String getKey(String exchange, String routingKey) {
-    return String.format("%s-%s", exchange, routingKey);
+    return exchange + "-" + routingKey;
   }
 
   /**
    * Mark when a messages has been sent
+   *
+   * @return count of messages sent since the last reset
    */
   long markMessageSent();
 
@@ -37,6 +40,8 @@ public interface QueueMetrics {
 
   /**
    * Mark when message has been received
+   *
+   * @return count of messages received since the last reset
    */
   long markMessageReceived();
 
@@ -48,10 +53,38 @@ public interface QueueMetrics {
   long getMessageReceived();
 
   /**
-   * Message publishing failed
+   * Mark when a message has been received again after an earlier delivery was not acknowledged
+   *
+   * @return count of redelivered messages since the last reset
+   */
+  long markMessageRedelivered();
+
+  /**
+   * Get count of redelivered messages received
    *
    * @return
    */
+  long getMessageRedelivered();
+
+  /**
+   * Mark when a received message has been discarded unprocessed to bound the consumer backlog
+   *
+   * @return count of discarded messages since the last reset
+   */
+  long markMessageDiscarded();
+
+  /**
+   * Get count of received messages discarded unprocessed
+   *
+   * @return
+   */
+  long getMessageDiscarded();
+
+  /**
+   * Message publishing failed
+   *
+   * @return count of failed publishes since the last reset
+   */
   long markMessagePublishFailed();
 
   /**
@@ -82,6 +115,97 @@ public interface QueueMetrics {
    */
   long getReceivedSize();
 
+  /**
+   * Mark published message as in flight until it is confirmed or failed
+   *
+   * @param dataSizeInBytes the size of the message
+   */
+  void incrementInFlight(long dataSizeInBytes);
+
+  /**
+   * Mark in flight message as confirmed or failed
+   *
+   * @param dataSizeInBytes the size of the message
+   */
+  void decrementInFlight(long dataSizeInBytes);
+
+  /**
+   * Get count of messages in flight
+   *
+   * @return
+   */
+  long getInFlightCount();
+
+  /**
+   * Get size of messages in flight in bytes
+   *
+   * @return
+   */
+  long getInFlightSize();
+
+  /**
+   * Get latency from publishing a message until the broker confirmed it
+   *
+   * @return
+   */
+  LatencyHistogram getConfirmLatency();
+
+  /**
+   * Adjust the prefetch count of the consumers of the queue, by the count set when a consumer
+   * starts and by the change of an adaptive prefetch count
+   *
+   * @param delta the change of the prefetch count
+   */
+  void addPrefetchCount(int delta);
+
+  /**
+   * Get the total prefetch count of the consumers of the queue, 0 when nothing consumes
+   *
+   * @return
+   */
+  int getPrefetchCount();
+
+  /**
+   * Get execution time of message handlers
+   *
+   * @return
+   */
+  LatencyHistogram getHandlerLatency();
+
+  /**
+   * Get latency from sending an RPC request until its reply arrived
+   *
+   * @return
+   */
+  LatencyHistogram getRoundTripLatency();
+
+  /**
+   * Get copy of the statistics, writers are not stopped while it is taken
+   *
+   * @return
+   */
+  Snapshot snapshot();
+
+  /**
+   * Get copy of the statistics and reset them, values recorded concurrently are either part of the
+   * snapshot or of the statistics left behind, never lost
+   *
+   * @return
+   */
+  Snapshot snapshotThenReset();
+
+  /**
+   * Get copy of the statistics counted since the metrics were created, {@link #reset()} and
+   * {@link #snapshotThenReset()} do not affect it so counters and latency counts never decrease.
+   * Implementations that reset their counters should override it, by default it is the same as
+   * {@link #snapshot()}.
+   *
+   * @return
+   */
+  default Snapshot cumulative() {
+    return snapshot();
+  }
+
   /**
    * Reset underlying statistics
    */
@@ -93,6 +217,10 @@ public interface QueueMetrics {
 
     private static final ConcurrentHashMap<String, QueueMetrics> metrics = new ConcurrentHashMap<>();
 
+    // metrics by exchange and routing key so publishers do not build the key on every message
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, QueueMetrics>> routes =
+        new ConcurrentHashMap<>();
+
     public static QueueMetrics getInstance(final String key) {
       final QueueMetrics metric = metrics.get(key);
       if (metric != null) {
@@ -109,75 +237,375 @@ public interface QueueMetrics {
       return existing;
     }
 
+    /**
+     * Get metrics of messages published to an exchange with a routing key, same instance as
+     * {@code getInstance(getKey(exchange, routingKey))}
+     *
+     * @param exchange
+     * @param routingKey
+     * @return
+     */
+    public static QueueMetrics getInstance(final String exchange, final String routingKey) {
+      if (exchange == null || routingKey == null) {
+        return getInstance(getKey(exchange, routingKey));
+      }
+
+      ConcurrentHashMap<String, QueueMetrics> byRoutingKey = routes.get(exchange);
+      if (byRoutingKey == null) {
+        byRoutingKey = routes.computeIfAbsent(exchange, key -> new ConcurrentHashMap<>());
+      }
+
+      final QueueMetrics metric = byRoutingKey.get(routingKey);
+      if (metric != null) {
+        return metric;
+      }
+      return byRoutingKey
+          .computeIfAbsent(routingKey, key -> getInstance(getKey(exchange, routingKey)));
+    }
+
     public static Map<String, QueueMetrics> getMetrics() {
       return Collections.unmodifiableMap(metrics);
     }
   }
 
+  /**
+   * Immutable copy of queue statistics
+   */
+  final class Snapshot {
+
+    private final long sent;
+
+    private final long received;
+
+    private final long sentFailed;
+
+    private final long redelivered;
+
+    private final long discarded;
+
+    private final long sentSize;
+
+    private final long receivedSize;
+
+    private final long inFlightCount;
+
+    private final long inFlightSize;
+
+    private final int prefetchCount;
+
+    private final LatencyHistogram.Snapshot confirmLatency;
+
+    private final LatencyHistogram.Snapshot handlerLatency;
+
+    private final LatencyHistogram.Snapshot roundTripLatency;
+
+    Snapshot(final long sent, final long received, final long sentFailed,
+        final long redelivered, final long discarded, final long sentSize,
+        final long receivedSize, final long inFlightCount, final long inFlightSize,
+        final int prefetchCount, final LatencyHistogram.Snapshot confirmLatency,
+        final LatencyHistogram.Snapshot handlerLatency,
+        final LatencyHistogram.Snapshot roundTripLatency) {
+      this.sent = sent;
+      this.received = received;
+      this.sentFailed = sentFailed;
+      this.redelivered = redelivered;
+      this.discarded = discarded;
+      this.sentSize = sentSize;
+      this.receivedSize = receivedSize;
+      this.inFlightCount = inFlightCount;
+      this.inFlightSize = inFlightSize;
+      this.prefetchCount = prefetchCount;
+      this.confirmLatency = confirmLatency;
+      this.handlerLatency = handlerLatency;
+      this.roundTripLatency = roundTripLatency;
+    }
+
+    public long getMessageSent() {
+      return sent;
+    }
+
+    public long getMessageReceived() {
+      return received;
+    }
+
+    public long getMessagePublishFailed() {
+      return sentFailed;
+    }
+
+    public long getMessageRedelivered() {
+      return redelivered;
+    }
+
+    public long getMessageDiscarded() {
+      return discarded;
+    }
+
+    public long getSentSize() {
+      return sentSize;
+    }
+
+    public long getReceivedSize() {
+      return receivedSize;
+    }
+
+    public long getInFlightCount() {
+      return inFlightCount;
+    }
+
+    public long getInFlightSize() {
+      return inFlightSize;
+    }
+
+    public int getPrefetchCount() {
+      return prefetchCount;
+    }
+
+    public LatencyHistogram.Snapshot getConfirmLatency() {
+      return confirmLatency;
+    }
+
+    public LatencyHistogram.Snapshot getHandlerLatency() {
+      return handlerLatency;
+    }
+
+    public LatencyHistogram.Snapshot getRoundTripLatency() {
+      return roundTripLatency;
+    }
+  }
+
+  /**
+   * Metrics backed by striped counters, writers never block. Counters only grow, a reset moves the
+   * baseline that readers subtract instead of clearing them.
+   */
   class DefaultQueueMetrics implements QueueMetrics {
 
-    private final AtomicLong sent = new AtomicLong();
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder received = new LongAdder();
+
+    private final LongAdder sentFailed = new LongAdder();
+
+    private final LongAdder redelivered = new LongAdder();
+
+    private final LongAdder discarded = new LongAdder();
+
+    private final LongAdder sentData = new LongAdder();
+
+    private final LongAdder receivedData = new LongAdder();
+
+    private final LongAdder inFlight = new LongAdder();
+
+    private final LongAdder inFlightData = new LongAdder();
 
-    private final AtomicLong received = new AtomicLong();
+    private final AtomicInteger prefetchCount = new AtomicInteger();
 
-    private final AtomicLong sentFailed = new AtomicLong();
+    private final LatencyHistogram confirmLatency = new LatencyHistogram();
 
-    private final AtomicLong sentData = new AtomicLong();
+    private final LatencyHistogram handlerLatency = new LatencyHistogram();
 
-    private final AtomicLong receivedData = new AtomicLong();
+    private final LatencyHistogram roundTripLatency = new LatencyHistogram();
+
+    private static final Counts ZERO = new Counts();
+
+    // cumulative counter values at the last reset
+    private volatile Counts baseline = ZERO;
 
     @Override
     public long markMessageSent() {
-      return sent.incrementAndGet();
+      sent.increment();
+      return getMessageSent();
     }
 
     @Override
     public long getMessageSent() {
-      return sent.get();
+      return sent.sum() - baseline.sent;
     }
 
     @Override
     public long markMessageReceived() {
-      return received.incrementAndGet();
+      received.increment();
+      return getMessageReceived();
     }
 
     @Override
     public long getMessageReceived() {
-      return received.get();
+      return received.sum() - baseline.received;
     }
 
     @Override
     public long markMessagePublishFailed() {
-      return sentFailed.incrementAndGet();
+      sentFailed.increment();
+      return sentFailed.sum() - baseline.sentFailed;
+    }
+
+    @Override
+    public long markMessageRedelivered() {
+      redelivered.increment();
+      return getMessageRedelivered();
+    }
+
+    @Override
+    public long getMessageRedelivered() {
+      return redelivered.sum() - baseline.redelivered;
+    }
+
+    @Override
+    public long markMessageDiscarded() {
+      discarded.increment();
+      return getMessageDiscarded();
+    }
+
+    @Override
+    public long getMessageDiscarded() {
+      return discarded.sum() - baseline.discarded;
     }
 
     @Override
     public void incrementReceived(long dataSizeInBytes) {
-      receivedData.addAndGet(dataSizeInBytes);
+      receivedData.add(dataSizeInBytes);
     }
 
     @Override
     public void incrementSend(long dataSizeInBytes) {
-      sentData.addAndGet(dataSizeInBytes);
+      sentData.add(dataSizeInBytes);
     }
 
     @Override
     public long getSentSize() {
-      return sentData.get();
+      return sentData.sum() - baseline.sentData;
     }
 
     @Override
     public long getReceivedSize() {
-      return receivedData.get();
+      return receivedData.sum() - baseline.receivedData;
+    }
+
+    @Override
+    public void incrementInFlight(long dataSizeInBytes) {
+      inFlight.increment();
+      inFlightData.add(dataSizeInBytes);
+    }
+
+    @Override
+    public void decrementInFlight(long dataSizeInBytes) {
+      inFlight.decrement();
+      inFlightData.add(-dataSizeInBytes);
     }
 
     @Override
-    public synchronized void reset() {
-      sent.set(0);
-      received.set(0);
-      sentData.set(0);
-      receivedData.set(0);
-      sentFailed.set(0);
+    public long getInFlightCount() {
+      return inFlight.sum();
+    }
+
+    @Override
+    public long getInFlightSize() {
+      return inFlightData.sum();
+    }
+
+    @Override
+    public void addPrefetchCount(int delta) {
+      prefetchCount.addAndGet(delta);
+    }
+
+    @Override
+    public int getPrefetchCount() {
+      return prefetchCount.get();
+    }
+
+    @Override
+    public LatencyHistogram getConfirmLatency() {
+      return confirmLatency;
+    }
+
+    @Override
+    public LatencyHistogram getHandlerLatency() {
+      return handlerLatency;
+    }
+
+    @Override
+    public LatencyHistogram getRoundTripLatency() {
+      return roundTripLatency;
+    }
+
+    @Override
+    public Snapshot snapshot() {
+      return snapshot(new Counts(this), baseline, confirmLatency.snapshot(),
+          handlerLatency.snapshot(), roundTripLatency.snapshot());
+    }
+
+    @Override
+    public Snapshot cumulative() {
+      return snapshot(new Counts(this), ZERO, confirmLatency.cumulative(),
+          handlerLatency.cumulative(), roundTripLatency.cumulative());
+    }
+
+    @Override
+    public Snapshot snapshotThenReset() {
+      final Counts current;
+      final Counts base;
+      // only resets are serialized, writers keep adding to the counters
+      synchronized (this) {
+        current = new Counts(this);
+        base = baseline;
+        baseline = current;
+      }
+      return snapshot(current, base, confirmLatency.snapshotThenReset(),
+          handlerLatency.snapshotThenReset(), roundTripLatency.snapshotThenReset());
+    }
+
+    private Snapshot snapshot(final Counts current, final Counts base,
+        final LatencyHistogram.Snapshot confirms, final LatencyHistogram.Snapshot handlers,
+        final LatencyHistogram.Snapshot roundTrips) {
+      return new Snapshot(current.sent - base.sent, current.received - base.received,
+          current.sentFailed - base.sentFailed, current.redelivered - base.redelivered,
+          current.discarded - base.discarded, current.sentData - base.sentData,
+          current.receivedData - base.receivedData, inFlight.sum(), inFlightData.sum(),
+          prefetchCount.get(), confirms, handlers, roundTrips);
+    }
+
+    @Override
+    public void reset() {
+      snapshotThenReset();
+    }
+
+    /**
+     * Cumulative values of the resettable counters
+     */
+    private static final class Counts {
+
+      private final long sent;
+
+      private final long received;
+
+      private final long sentFailed;
+
+      private final long redelivered;
+
+      private final long discarded;
+
+      private final long sentData;
+
+      private final long receivedData;
+
+      private Counts() {
+        this.sent = 0;
+        this.received = 0;
+        this.sentFailed = 0;
+        this.redelivered = 0;
+        this.discarded = 0;
+        this.sentData = 0;
+        this.receivedData = 0;
+      }
+
+      private Counts(final DefaultQueueMetrics metrics) {
+        this.sent = metrics.sent.sum();
+        this.received = metrics.received.sum();
+        this.sentFailed = metrics.sentFailed.sum();
+        this.redelivered = metrics.redelivered.sum();
+        this.discarded = metrics.discarded.sum();
+        this.sentData = metrics.sentData.sum();
+        this.receivedData = metrics.receivedData.sum();
+      }
     }
   }
 }
@@ -4,11 +4,16 @@ import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import io.hoplin.Binding;
 import io.hoplin.ConnectionProvider;
+import io.hoplin.ConsumerExecutors;
+import io.hoplin.ExecutionMode;
 import io.hoplin.HoplinRuntimeException;
+import io.hoplin.MessageIdGenerator;
 import io.hoplin.MessagePayload;
 import io.hoplin.RabbitMQClient;
 import io.hoplin.RabbitMQOptions;
-import io.hoplin.json.JsonMessagePayloadCodec;
+import io.hoplin.TraceContext;
+import io.hoplin.json.Codec;
+import io.hoplin.json.CodecRegistry;
 import io.hoplin.metrics.QueueMetrics;
 import java.io.IOException;
 import java.time.Duration;
@@ -33,7 +38,9 @@ public class DefaultRpcClient<I, O> implements RpcClient<I, O> {
    */
   private final String exchange;
 
-  private final JsonMessagePayloadCodec codec;
+  private final Codec codec;
+
+  private final CodecRegistry codecs;
 
   /**
    * Channel we are communicating on
@@ -53,12 +60,22 @@ public class DefaultRpcClient<I, O> implements RpcClient<I, O> {
 
   private final ConnectionProvider provider;
 
+  private final ExecutionMode executionMode;
+
+  private final MessageIdGenerator idGenerator;
+
+  private final boolean traceContextPropagation;
+
   public DefaultRpcClient(final RabbitMQOptions options, final Binding binding) {
     Objects.requireNonNull(options);
     Objects.requireNonNull(binding);
 
     this.provider = ConnectionProvider.createAndConnect(options);
-    this.codec = new JsonMessagePayloadCodec();
+    this.codecs = CodecRegistry.create(options.getCodec());
+    this.codec = codecs.getCodec();
+    this.executionMode = options.getExecutionMode();
+    this.idGenerator = options.getMessageIdGenerator();
+    this.traceContextPropagation = options.isTraceContextPropagation();
     this.exchange = binding.getExchange();
     this.replyToQueueName = binding.getQueue();
     this.channel = provider.acquire();
@@ -140,7 +157,8 @@ public class DefaultRpcClient<I, O> implements RpcClient<I, O> {
 
   private void consumeReply() {
     try {
-      consumer = new RpcCallerConsumer(channel, metrics);
+      consumer = new RpcCallerConsumer(channel, metrics,
+          ConsumerExecutors.createReply(provider.getExecutors(), executionMode), codecs);
       channel.basicConsume(replyToQueueName, true, consumer);
     } catch (final Exception e) {
       throw new HoplinRuntimeException("Unable to start RPC client reply consumer", e);
@@ -201,16 +219,24 @@ public class DefaultRpcClient<I, O> implements RpcClient<I, O> {
 
       log.info("Publishing to Exchange = {}, RoutingKey = {} , ReplyTo = {}", exchange, routingKey,
           replyToQueueName);
-      final String messageIdentifier = UUID.randomUUID().toString();
+      final String messageIdentifier = idGenerator.nextId();
 
       final AMQP.BasicProperties props = new AMQP.BasicProperties
           .Builder()
           .correlationId(messageIdentifier)
           .replyTo(replyToQueueName)
+          .contentType(codec.getContentType())
+          .headers(traceContextPropagation ? TraceContext.inject(null) : null)
           .build();
 
       final byte[] payload = createRequestPayload(request);
+      final long start = System.nanoTime();
       consumer.bind(messageIdentifier, promise);
+      promise.whenComplete((reply, e) -> {
+        if (e == null) {
+          metrics.getRoundTripLatency().recordSince(start);
+        }
+      });
       channel.basicPublish(exchange, routingKey, props, payload);
 
       metrics.incrementSend(payload.length);
@@ -4,14 +4,16 @@ import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import io.hoplin.Binding;
 import io.hoplin.ConnectionProvider;
+import io.hoplin.ConsumerExecutors;
 import io.hoplin.HoplinRuntimeException;
 import io.hoplin.RabbitMQClient;
+import io.hoplin.MessageTimingListener;
 import io.hoplin.RabbitMQOptions;
+import io.hoplin.json.CodecRegistry;
 import io.hoplin.metrics.QueueMetrics;
 import java.io.IOException;
 import java.util.Objects;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,13 +54,22 @@ public class DefaultRpcServer<I, O> implements RpcServer<I, O> {
 
   private Function<I, O> handler;
 
+  private final CodecRegistry codecs;
+
+  private final MessageTimingListener timingListener;
+
+  private final boolean traceContextPropagation;
+
   public DefaultRpcServer(final RabbitMQOptions options, final Binding binding) {
     Objects.requireNonNull(options);
     Objects.requireNonNull(binding);
 
     this.provider = ConnectionProvider.createAndConnect(options);
     this.channel = provider.acquire();
-    this.executor = createExecutor();
+    this.executor = createExecutor(options);
+    this.codecs = CodecRegistry.create(options.getCodec());
+    this.timingListener = options.getTimingListener();
+    this.traceContextPropagation = options.isTraceContextPropagation();
 
     this.exchange = binding.getExchange();
     this.routingKey = binding.getRoutingKey();
@@ -87,8 +98,10 @@ public class DefaultRpcServer<I, O> implements RpcServer<I, O> {
     return new DefaultRpcServer<>(options, binding);
   }
 
-  private Executor createExecutor() {
-    return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+  private Executor createExecutor(final RabbitMQOptions options) {
+    // requests are consumed with a prefetch of 1
+    return ConsumerExecutors.create(provider.getExecutors(), options.getExecutionMode(),
+        Runtime.getRuntime().availableProcessors(), 0);
   }
 
   private void setupChannel() {
@@ -134,7 +147,8 @@ public class DefaultRpcServer<I, O> implements RpcServer<I, O> {
       log.info("consumeRequest requestQueueName : {}, {}", requestQueueName, bindStatus);
       channel.basicQos(1);
       channel.basicConsume(requestQueueName, false,
-          new RpcResponderConsumer(channel, handler, executor, metrics));
+          new RpcResponderConsumer(channel, handler, executor, metrics, codecs, timingListener,
+              traceContextPropagation));
     } catch (final Exception e) {
       throw new HoplinRuntimeException("Unable to start RPC server consumer", e);
     }
@@ -4,15 +4,15 @@ import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.DefaultConsumer;
 import com.rabbitmq.client.Envelope;
+import io.hoplin.ExecutorRegistry;
 import io.hoplin.HoplinRuntimeException;
 import io.hoplin.MessagePayload;
-import io.hoplin.json.JsonMessagePayloadCodec;
+import io.hoplin.json.CodecRegistry;
 import io.hoplin.metrics.QueueMetrics;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,7 +29,7 @@ public class RpcCallerConsumer extends DefaultConsumer {
 
   private final ConcurrentHashMap<String, CompletableFuture> bindings = new ConcurrentHashMap<>();
 
-  private final JsonMessagePayloadCodec codec;
+  private final CodecRegistry codecs;
 
   private final boolean strictAction = true;
 
@@ -40,15 +40,32 @@ public class RpcCallerConsumer extends DefaultConsumer {
    */
   public RpcCallerConsumer(final Channel channel, final QueueMetrics metrics,
       final Executor executor) {
+    this(channel, metrics, executor, CodecRegistry.empty());
+  }
+
+  /**
+   * Constructs a new instance decoding replies by their content type
+   *
+   * @param channel  the channel to which this consumer is attached
+   * @param metrics  the metrics to update
+   * @param executor the executor replies are completed on
+   * @param codecs   the codecs used to decode replies
+   */
+  public RpcCallerConsumer(final Channel channel, final QueueMetrics metrics,
+      final Executor executor, final CodecRegistry codecs) {
     super(channel);
-    this.codec = new JsonMessagePayloadCodec();
+    this.codecs = Objects.requireNonNull(codecs);
     this.executor = Objects.requireNonNull(executor);
     this.metrics = Objects.requireNonNull(metrics);
   }
 
   public RpcCallerConsumer(final Channel channel, QueueMetrics metrics) {
-    this(channel, metrics,
-        Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+    this(channel, metrics, CodecRegistry.empty());
+  }
+
+  public RpcCallerConsumer(final Channel channel, final QueueMetrics metrics,
+      final CodecRegistry codecs) {
+    this(channel, metrics, ExecutorRegistry.getDefault().reply(), codecs);
   }
 
 
@@ -76,11 +93,12 @@ public class RpcCallerConsumer extends DefaultConsumer {
       }
       return;
     } else {
-      handleReply(body, action);
+      handleReply(properties.getContentType(), body, action);
     }
   }
 
-  private void handleReply(final byte[] body, final CompletableFuture<Object> action) {
+  private void handleReply(final String contentType, final byte[] body,
+      final CompletableFuture<Object> action) {
     CompletableFuture.runAsync(() ->
     {
       if (log.isDebugEnabled()) {
@@ -88,7 +106,7 @@ public class RpcCallerConsumer extends DefaultConsumer {
       }
 
       try {
-        final MessagePayload<?> reply = deserializeReplyPayload(body);
+        final MessagePayload<?> reply = deserializeReplyPayload(contentType, body);
         if (reply.isFailure()) {
           action.complete(null);
         }
@@ -118,7 +136,8 @@ public class RpcCallerConsumer extends DefaultConsumer {
     bindings.put(correlationId, promise);
   }
 
-  private MessagePayload<?> deserializeReplyPayload(final byte[] payload) {
-    return codec.deserialize(payload, MessagePayload.class);
+  private MessagePayload<?> deserializeReplyPayload(final String contentType,
+      final byte[] payload) {
+    return codecs.getCodec(contentType).deserialize(payload, MessagePayload.class);
   }
 }
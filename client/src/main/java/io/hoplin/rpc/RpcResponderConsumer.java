@@ -6,7 +6,8 @@ import com.rabbitmq.client.DefaultConsumer;
 import com.rabbitmq.client.Envelope;
 import com.rabbitmq.client.ShutdownSignalException;
 import io.hoplin.*;
-import io.hoplin.json.JsonMessagePayloadCodec;
+import io.hoplin.json.Codec;
+import io.hoplin.json.CodecRegistry;
 import io.hoplin.metrics.QueueMetrics;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
@@ -38,10 +39,14 @@ public class RpcResponderConsumer<I, O> extends DefaultConsumer {
 
   private final QueueMetrics metrics;
 
-  private final JsonMessagePayloadCodec codec;
+  private final CodecRegistry codecs;
 
   private final ConsumerErrorStrategy errorStrategy;
 
+  private final MessageTimingListener timingListener;
+
+  private final boolean traceContextPropagation;
+
   /**
    * Constructs a new instance and records its association to the passed-in channel.
    *
@@ -53,13 +58,51 @@ public class RpcResponderConsumer<I, O> extends DefaultConsumer {
   public RpcResponderConsumer(final Channel channel,
       final Function<I, O> handler,
       final Executor executor, QueueMetrics metrics) {
+    this(channel, handler, executor, metrics, CodecRegistry.empty());
+  }
+
+  /**
+   * Constructs a new instance, requests are decoded by their content type and replied to using the
+   * same codec.
+   *
+   * @param channel  the channel to which this consumer is attached
+   * @param handler  the request handler
+   * @param executor the executor requests are dispatched on
+   * @param metrics  the metrics to update
+   * @param codecs   the codecs used to decode requests and encode replies
+   */
+  public RpcResponderConsumer(final Channel channel,
+      final Function<I, O> handler,
+      final Executor executor, final QueueMetrics metrics, final CodecRegistry codecs) {
+    this(channel, handler, executor, metrics, codecs, null, false);
+  }
+
+  /**
+   * Constructs a new instance that traces every request
+   *
+   * @param channel                 the channel to which this consumer is attached
+   * @param handler                 the request handler
+   * @param executor                the executor requests are dispatched on
+   * @param metrics                 the metrics to update
+   * @param codecs                  the codecs used to decode requests and encode replies
+   * @param timingListener          the listener notified with the timings of handled requests,
+   *                                may be null
+   * @param traceContextPropagation true to continue the trace context of requests and propagate it
+   *                                to replies
+   */
+  public RpcResponderConsumer(final Channel channel,
+      final Function<I, O> handler,
+      final Executor executor, final QueueMetrics metrics, final CodecRegistry codecs,
+      final MessageTimingListener timingListener, final boolean traceContextPropagation) {
     super(channel);
 
     this.executor = Objects.requireNonNull(executor);
     this.handler = Objects.requireNonNull(handler);
     this.metrics = Objects.requireNonNull(metrics);
-    this.codec = new JsonMessagePayloadCodec();
+    this.codecs = Objects.requireNonNull(codecs);
     this.errorStrategy = new DefaultConsumerErrorStrategy(channel);
+    this.timingListener = timingListener;
+    this.traceContextPropagation = traceContextPropagation;
   }
 
   @Override
@@ -75,10 +118,14 @@ public class RpcResponderConsumer<I, O> extends DefaultConsumer {
     metrics.incrementReceived(body.length);
 
     final MessageContext context = MessageContext.create(consumerTag, envelope, properties, body);
+    final Codec codec = codecs.getCodec(properties.getContentType());
+    if (traceContextPropagation) {
+      context.setTraceContext(TraceContext.continueFrom(properties.getHeaders()));
+    }
 
     // 1 : Perform the action required in the RPC request
     CompletableFuture
-        .supplyAsync(() -> dispatch(body), executor)
+        .supplyAsync(() -> dispatch(codec, context), executor)
         .whenComplete((reply, throwable) ->
         {
 
@@ -88,13 +135,16 @@ public class RpcResponderConsumer<I, O> extends DefaultConsumer {
             //0 : there was unhandled exception while processing message
             if (throwable != null) {
               log.warn("Error dispatching message : {}", context, throwable);
-              replyMessage = createErrorMessage(throwable);
+              replyMessage = createErrorMessage(codec, throwable);
             }
 
             // 2 : Prepare the reply message Set the correlation ID in the reply properties
             final AMQP.BasicProperties replyProperties = new AMQP.BasicProperties
                 .Builder()
                 .correlationId(properties.getCorrelationId())
+                .contentType(codec.getContentType())
+                .headers(traceContextPropagation
+                    ? context.getTraceContext().newChild().injectInto(null) : null)
                 .build();
 
             // 3 : Publish the answer on the reply queue
@@ -102,24 +152,34 @@ public class RpcResponderConsumer<I, O> extends DefaultConsumer {
             log.info("replyTo, correlationId :  {}, {}", replyTo, properties.getCorrelationId());
 
             getChannel().basicPublish("", replyTo, replyProperties, replyMessage);
+            context.getTimings().mark(MessageTimings.Stage.REPLY_PUBLISHED);
 
             // 4 : Send the ack to the RPC request
             AckStrategy
                 .acknowledge(getChannel(), context, AcknowledgmentStrategies.BASIC_ACK.strategy());
+            context.getTimings().mark(MessageTimings.Stage.ACKED);
 
             metrics.markMessageSent();
             metrics.incrementSend(replyMessage.length);
           } catch (final Exception e1) {
             log.error("Unable to acknowledge execution", e1);
           }
+          notifyCompleted(context);
         });
   }
 
   @SuppressWarnings("unchecked")
-  private byte[] dispatch(final byte[] body) {
+  private byte[] dispatch(final Codec codec, final MessageContext context) {
+    final MessageTimings timings = context.getTimings();
+    timings.mark(MessageTimings.Stage.DISPATCHED);
+    final TraceContext previous = traceContextPropagation
+        ? TraceContext.attach(context.getTraceContext()) : null;
     try {
-      final MessagePayload<?> requestMsg = codec.deserialize(body, MessagePayload.class);
+      final MessagePayload<?> requestMsg = codec
+          .deserialize(context.getBody(), MessagePayload.class);
+      timings.mark(MessageTimings.Stage.DECODED);
       MessagePayload payload;
+      timings.mark(MessageTimings.Stage.HANDLER_START);
       try {
         final O reply = handler.apply((I) requestMsg.getPayload());
         payload = new MessagePayload(reply);
@@ -127,15 +187,31 @@ public class RpcResponderConsumer<I, O> extends DefaultConsumer {
         log.warn("Handling message error : {} ", requestMsg, e);
         payload = MessagePayload.error(e);
       }
+      timings.mark(MessageTimings.Stage.HANDLER_END);
 
       return codec.serialize(payload, MessagePayload.class);
     } catch (final Exception e) {
       log.error("Unable to apply reply handler", e);
       throw new HoplinRuntimeException("Unable to apply reply handler", e);
+    } finally {
+      if (traceContextPropagation) {
+        TraceContext.attach(previous);
+      }
+    }
+  }
+
+  private void notifyCompleted(final MessageContext context) {
+    if (timingListener == null) {
+      return;
+    }
+    try {
+      timingListener.onCompleted(context);
+    } catch (final Exception e) {
+      log.warn("Timing listener failed", e);
     }
   }
 
-  private byte[] createErrorMessage(final Throwable throwable) {
+  private byte[] createErrorMessage(final Codec codec, final Throwable throwable) {
     try {
       return codec.serialize(MessagePayload.error(throwable), MessagePayload.class);
     } catch (final Exception e) {
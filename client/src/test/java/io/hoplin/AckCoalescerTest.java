@@ -0,0 +1,78 @@
+package io.hoplin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.rabbitmq.client.Channel;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+
+public class AckCoalescerTest {
+
+  private final List<String> frames = new CopyOnWriteArrayList<>();
+
+  private final AckCoalescer acks = new AckCoalescer(channel(), 3, 60_000,
+      ExecutorRegistry.getDefault());
+
+  @Test
+  public void contiguousAcksSentAsOneFrame() throws Exception {
+    deliver(1, 2, 3, 4);
+    acks.complete(1, AcknowledgmentStrategies.BASIC_ACK.strategy());
+    acks.complete(2, AcknowledgmentStrategies.BASIC_ACK.strategy());
+    acks.complete(3, AcknowledgmentStrategies.BASIC_ACK.strategy());
+    acks.complete(4, AcknowledgmentStrategies.BASIC_ACK.strategy());
+
+    assertEquals(Arrays.asList("ack 3 true"), frames);
+    acks.flush();
+    assertEquals(Arrays.asList("ack 3 true", "ack 4 true"), frames);
+  }
+
+  @Test
+  public void outOfOrderCompletionWaitsForGap() throws Exception {
+    deliver(1, 2, 3, 4);
+    acks.complete(2, AcknowledgmentStrategies.BASIC_ACK.strategy());
+    acks.complete(3, AcknowledgmentStrategies.BASIC_ACK.strategy());
+    acks.complete(4, AcknowledgmentStrategies.BASIC_ACK.strategy());
+    acks.flush();
+    assertEquals(0, frames.size());
+
+    acks.complete(1, AcknowledgmentStrategies.BASIC_ACK.strategy());
+    assertEquals(Arrays.asList("ack 4 true"), frames);
+  }
+
+  @Test
+  public void nackSentImmediatelyAndNotCovered() throws Exception {
+    deliver(1, 2, 3);
+    acks.complete(3, AcknowledgmentStrategies.NACK_WITH_REQUEUE.strategy());
+    acks.complete(1, AcknowledgmentStrategies.BASIC_ACK.strategy());
+    acks.complete(2, AcknowledgmentStrategies.BASIC_ACK.strategy());
+    acks.flush();
+
+    // the multiple ack ends at the last acked tag, the nacked tag is no longer outstanding
+    assertEquals(Arrays.asList("nack 3 false", "ack 2 true"), frames);
+  }
+
+  private void deliver(final long... tags) {
+    for (final long tag : tags) {
+      acks.delivered(tag);
+    }
+  }
+
+  private Channel channel() {
+    return (Channel) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[]{Channel.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "basicAck":
+              frames.add("ack " + args[0] + " " + args[1]);
+              return null;
+            case "basicNack":
+              frames.add("nack " + args[0] + " " + args[1]);
+              return null;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+}
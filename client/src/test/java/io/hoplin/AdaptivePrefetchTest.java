@@ -0,0 +1,125 @@
+package io.hoplin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.rabbitmq.client.Channel;
+import io.hoplin.metrics.QueueMetrics;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class AdaptivePrefetchTest {
+
+  private final List<String> frames = new CopyOnWriteArrayList<>();
+
+  private final QueueMetrics metrics = QueueMetrics.Factory.getInstance("adaptive-prefetch-test");
+
+  @Test
+  public void fastHandlersRaisePrefetchToUpperBound() throws Exception {
+    final AdaptivePrefetch prefetch = prefetch(4);
+    for (int i = 0; i < 4; ++i) {
+      prefetch.delivered();
+    }
+    // broker takes far longer to refill a slot than the handler needs for a message
+    for (int i = 0; i < 3; ++i) {
+      prefetch.completed(TimeUnit.MICROSECONDS.toNanos(100));
+      Thread.sleep(10);
+      prefetch.delivered();
+    }
+    prefetch.tune();
+
+    assertEquals(Arrays.asList("qos 4 true", "qos 16 true"), frames);
+    assertEquals(16, prefetch.getPrefetchCount());
+    assertEquals(16, metrics.getPrefetchCount());
+    prefetch.stop();
+    assertEquals(0, metrics.getPrefetchCount());
+  }
+
+  @Test
+  public void slowHandlersLowerPrefetch() throws Exception {
+    final AdaptivePrefetch prefetch = prefetch(12);
+    for (int i = 0; i < 12; ++i) {
+      prefetch.delivered();
+    }
+    for (int i = 0; i < 3; ++i) {
+      prefetch.completed(TimeUnit.SECONDS.toNanos(1));
+      prefetch.delivered();
+    }
+    prefetch.tune();
+
+    // two handlers and a refill time well below the service time
+    assertEquals(Arrays.asList("qos 12 true", "qos 3 true"), frames);
+    prefetch.stop();
+  }
+
+  @Test
+  public void prefetchChangeSentFromConsumerExecutor() throws Exception {
+    final List<Runnable> tasks = new ArrayList<>();
+    final AdaptivePrefetch prefetch = prefetch(12, tasks::add);
+    for (int i = 0; i < 12; ++i) {
+      prefetch.delivered();
+    }
+    prefetch.completed(TimeUnit.SECONDS.toNanos(1));
+    prefetch.tune();
+
+    // the scheduler only computes the target, basic.qos waits for the consumer executor
+    assertEquals(Collections.singletonList("qos 12 true"), frames);
+    assertEquals(1, tasks.size());
+    prefetch.tune();
+    assertEquals(1, tasks.size());
+
+    tasks.get(0).run();
+    assertEquals(Arrays.asList("qos 12 true", "qos 2 true"), frames);
+    assertEquals(2, prefetch.getPrefetchCount());
+    prefetch.stop();
+  }
+
+  @Test
+  public void idleConsumerKeepsPrefetch() throws Exception {
+    final AdaptivePrefetch prefetch = prefetch(4);
+    prefetch.tune();
+    assertEquals(Collections.singletonList("qos 4 true"), frames);
+    assertEquals(4, prefetch.getPrefetchCount());
+    prefetch.stop();
+  }
+
+  private AdaptivePrefetch prefetch(final int initial) throws Exception {
+    // prefetch count changes are sent on the calling thread
+    return prefetch(initial, Runnable::run);
+  }
+
+  private AdaptivePrefetch prefetch(final int initial, final Executor executor)
+      throws Exception {
+    final QueueOptions options = QueueOptions.of(false)
+        .setConcurrency(2)
+        .setAdaptivePrefetch(1, 16)
+        // tuned by the tests only
+        .setPrefetchTuneInterval(TimeUnit.HOURS.toMillis(1));
+    options.setPrefetchCount(initial);
+    final AdaptivePrefetch prefetch = new AdaptivePrefetch(channel(), "adaptive-prefetch-test",
+        options, metrics, executor, ExecutorRegistry.getDefault());
+    prefetch.start();
+    return prefetch;
+  }
+
+  private Channel channel() {
+    return (Channel) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[]{Channel.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "basicQos":
+              frames.add("qos " + args[0] + " " + args[1]);
+              return null;
+            case "isOpen":
+              return true;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+}
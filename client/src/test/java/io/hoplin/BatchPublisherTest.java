@@ -0,0 +1,38 @@
+package io.hoplin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+public class BatchPublisherTest {
+
+  @Test
+  public void failuresOffsetAcrossBatches() {
+    final List<Integer> sizes = new ArrayList<>();
+    final BatchPublisher<Integer> publisher = new BatchPublisher<>(batch -> {
+      sizes.add(batch.size());
+      // every odd message fails
+      final Throwable[] failures = new Throwable[batch.size()];
+      for (int i = 0; i < batch.size(); ++i) {
+        if (batch.get(i) % 2 == 1) {
+          failures[i] = new HoplinRuntimeException("nacked");
+        }
+      }
+      return CompletableFuture.completedFuture(BatchPublishResult.of(failures));
+    }, 4);
+
+    for (int i = 0; i < 10; ++i) {
+      publisher.publish(i);
+    }
+    final BatchPublishResult result = publisher.flush().join();
+
+    assertEquals(3, sizes.size());
+    assertEquals(10, result.getSize());
+    assertEquals(5, result.getPublishedCount());
+    assertEquals(5, result.getFailures().size());
+    assertEquals(9, (int) result.getFailures().lastKey());
+  }
+}
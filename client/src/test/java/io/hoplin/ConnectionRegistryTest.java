@@ -0,0 +1,169 @@
+package io.hoplin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import io.hoplin.ConnectionRegistry.SharedConnection;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class ConnectionRegistryTest {
+
+  private final AtomicInteger opened = new AtomicInteger();
+
+  private final AtomicInteger confirmSelects = new AtomicInteger();
+
+  private final ConnectionRegistry registry = new ConnectionRegistry(options -> connection());
+
+  @Test
+  public void sharedConnectionClosedByLastRelease() throws Exception {
+    final RabbitMQOptions options = RabbitMQOptions.defaults();
+    final SharedConnection a = registry.acquire(options, new Object());
+    final SharedConnection b = registry.acquire(new RabbitMQOptions(options), new Object());
+
+    assertSame(a, b);
+    assertEquals(1, opened.get());
+
+    registry.release(a);
+    assertTrue(b.isOpen());
+
+    registry.release(b);
+    assertFalse(b.isOpen());
+    assertEquals(0, registry.getConnectionCount());
+  }
+
+  @Test
+  public void connectionsCappedPerNode() throws Exception {
+    final RabbitMQOptions options = RabbitMQOptions.defaults().setMaxConnectionsPerNode(2);
+    for (int i = 0; i < 10; ++i) {
+      registry.acquire(options, new Object());
+    }
+    assertEquals(2, registry.getConnectionCount());
+  }
+
+  @Test
+  public void unsharedConnectionPerOwner() throws Exception {
+    final RabbitMQOptions options = RabbitMQOptions.defaults().setSharedConnections(false);
+    final SharedConnection a = registry.acquire(options, new Object());
+    final SharedConnection b = registry.acquire(options, new Object());
+
+    assertNotSame(a, b);
+    assertEquals(2, opened.get());
+  }
+
+  @Test
+  public void differentSettingsNotShared() throws Exception {
+    final SharedConnection a = registry.acquire(RabbitMQOptions.defaults(), new Object());
+    final SharedConnection b = registry
+        .acquire(RabbitMQOptions.defaults().setVirtualHost("other"), new Object());
+
+    assertNotSame(a, b);
+  }
+
+  @Test
+  public void confirmModeOnlyForConfirmingPool() throws Exception {
+    final SharedConnection shared = registry.acquire(RabbitMQOptions.defaults(), new Object());
+    final Channel plain = shared.getPool(false).lease();
+    final Channel confirming = shared.getPool(true).lease();
+
+    assertEquals(1, confirmSelects.get());
+    assertSame(shared.getPool(false), shared.getPool(plain));
+    assertSame(shared.getPool(true), shared.getPool(confirming));
+    assertNull(shared.getPool(plain).getConfirms(plain));
+    assertNotNull(shared.getPool(confirming).getConfirms(confirming));
+  }
+
+  @Test
+  public void slowOpenDoesNotBlockOtherConnections() throws Exception {
+    final CountDownLatch handshake = new CountDownLatch(1);
+    final ConnectionRegistry slow = new ConnectionRegistry(options -> {
+      if ("slow".equals(options.getVirtualHost())) {
+        Uninterruptibles.awaitUninterruptibly(handshake);
+      }
+      return connection();
+    });
+    final ExecutorService clients = Executors.newFixedThreadPool(3);
+    final RabbitMQOptions options = RabbitMQOptions.defaults().setVirtualHost("slow");
+    final CompletableFuture<SharedConnection> first = CompletableFuture
+        .supplyAsync(() -> acquire(slow, options), clients);
+    final CompletableFuture<SharedConnection> second = CompletableFuture
+        .supplyAsync(() -> acquire(slow, options), clients);
+
+    final SharedConnection other = CompletableFuture
+        .supplyAsync(() -> acquire(slow, RabbitMQOptions.defaults()), clients)
+        .get(5, TimeUnit.SECONDS);
+    assertTrue(other.isOpen());
+    assertFalse(first.isDone());
+
+    handshake.countDown();
+    assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+    assertEquals(2, slow.getConnectionCount());
+    clients.shutdown();
+  }
+
+  private static SharedConnection acquire(final ConnectionRegistry registry,
+      final RabbitMQOptions options) {
+    try {
+      return registry.acquire(options, new Object());
+    } catch (final Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private Channel channel() {
+    return (Channel) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[]{Channel.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "confirmSelect":
+              confirmSelects.incrementAndGet();
+              return null;
+            case "isOpen":
+              return true;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return null;
+          }
+        });
+  }
+
+  private Connection connection() {
+    opened.incrementAndGet();
+    final AtomicBoolean open = new AtomicBoolean(true);
+    return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "isOpen":
+              return open.get();
+            case "createChannel":
+              return channel();
+            case "close":
+              open.set(false);
+              return null;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return null;
+          }
+        });
+  }
+}
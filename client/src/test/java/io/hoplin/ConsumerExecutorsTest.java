@@ -0,0 +1,39 @@
+package io.hoplin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class ConsumerExecutorsTest {
+
+  @Test
+  public void virtualThreadsBoundedByMaxConcurrency() throws InterruptedException {
+    final Executor executor = ConsumerExecutors.create(ExecutionMode.VIRTUAL_THREADS, 4, 2);
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger peak = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(20);
+
+    for (int i = 0; i < 20; ++i) {
+      executor.execute(() -> {
+        peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+          TimeUnit.MILLISECONDS.sleep(5);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        running.decrementAndGet();
+        done.countDown();
+      });
+    }
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    // without virtual threads the pool of 4 is used instead
+    assertTrue(peak.get() <= (ConsumerExecutors.isVirtualThreadsSupported() ? 2 : 4));
+    assertEquals(0, running.get());
+  }
+}
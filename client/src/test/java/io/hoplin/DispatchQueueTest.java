@@ -0,0 +1,76 @@
+package io.hoplin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Envelope;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class DispatchQueueTest {
+
+  private final List<Long> discarded = new CopyOnWriteArrayList<>();
+
+  private final List<Long> processed = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void keepMostRecentDiscardsOldestWaiting() {
+    final DispatchQueue queue = new DispatchQueue(2, true, this::discard);
+    final List<Runnable> tasks = new ArrayList<>();
+    for (long tag = 1; tag <= 4; ++tag) {
+      tasks.add(offer(queue, tag));
+    }
+    assertEquals(Arrays.asList(1L, 2L), discarded);
+    assertEquals(2, queue.size());
+
+    tasks.forEach(Runnable::run);
+    assertEquals(Arrays.asList(3L, 4L), processed);
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void fullQueueBlocksUntilMessageStarts() throws Exception {
+    final DispatchQueue queue = new DispatchQueue(1, false, this::discard);
+    final Runnable first = offer(queue, 1);
+
+    final CountDownLatch accepted = new CountDownLatch(1);
+    final Thread delivery = new Thread(() -> {
+      offer(queue, 2);
+      accepted.countDown();
+    });
+    delivery.start();
+    assertFalse(accepted.await(100, TimeUnit.MILLISECONDS));
+
+    first.run();
+    assertTrue(accepted.await(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList(1L), processed);
+    assertTrue(discarded.isEmpty());
+  }
+
+  @Test
+  public void clearedMessagesAreNotProcessed() {
+    final DispatchQueue queue = new DispatchQueue(4, false, this::discard);
+    final Runnable task = offer(queue, 1);
+    assertEquals(1, queue.clear());
+
+    task.run();
+    assertTrue(processed.isEmpty());
+  }
+
+  private void discard(final MessageContext context) {
+    discarded.add(context.getReceivedInfo().getDeliveryTag());
+  }
+
+  private Runnable offer(final DispatchQueue queue, final long tag) {
+    final MessageContext context = MessageContext.create("test",
+        new Envelope(tag, false, "exchange", "key"), new AMQP.BasicProperties(), new byte[0]);
+    return queue.offer(context, () -> processed.add(tag));
+  }
+}
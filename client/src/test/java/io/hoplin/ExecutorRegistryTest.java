@@ -0,0 +1,94 @@
+package io.hoplin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class ExecutorRegistryTest {
+
+  @Test
+  public void poolsShutDownWhenLastClientReleases() {
+    final ExecutorRegistry registry = new ExecutorRegistry("test", 2, 1, 1);
+    registry.retain();
+    registry.retain();
+
+    final Executor publish = registry.publish();
+    assertSame(publish, registry.publish());
+
+    registry.release();
+    assertFalse(((ExecutorService) publish).isShutdown());
+
+    registry.release();
+    assertTrue(((ExecutorService) publish).isShutdown());
+    assertEquals(0, registry.getReferenceCount());
+    assertNotSame(publish, registry.publish());
+  }
+
+  @Test
+  public void defaultPoolsOutliveClients() {
+    final ExecutorRegistry registry = ExecutorRegistry.getDefault();
+    // consumers created without a client use the pools without retaining the registry
+    final Executor view = registry.dispatch(1);
+    registry.retain();
+    registry.release();
+
+    final CompletableFuture<Boolean> daemon = new CompletableFuture<>();
+    view.execute(() -> daemon.complete(Thread.currentThread().isDaemon()));
+    assertTrue(daemon.join());
+  }
+
+  @Test
+  public void repliesCompleteWhileHandlersWait() throws InterruptedException {
+    final ExecutorRegistry registry = new ExecutorRegistry("test", 1, 1, 1);
+    registry.retain();
+    final CompletableFuture<String> reply = new CompletableFuture<>();
+    final CountDownLatch handled = new CountDownLatch(1);
+
+    // the only dispatch thread blocks on a reply like a handler calling request()
+    registry.dispatch(1).execute(() -> {
+      reply.join();
+      handled.countDown();
+    });
+    registry.reply().execute(() -> reply.complete("reply"));
+
+    assertTrue(handled.await(10, TimeUnit.SECONDS));
+    registry.release();
+  }
+
+  @Test
+  public void dispatchViewLimitsConcurrency() throws InterruptedException {
+    final ExecutorRegistry registry = new ExecutorRegistry("test", 4, 1, 1);
+    registry.retain();
+    final Executor view = registry.dispatch(2);
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger peak = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(20);
+
+    for (int i = 0; i < 20; ++i) {
+      view.execute(() -> {
+        peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+          Thread.sleep(5);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        running.decrementAndGet();
+        done.countDown();
+      });
+    }
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertTrue(peak.get() <= 2);
+    registry.release();
+  }
+}
@@ -2,12 +2,22 @@ package io.hoplin;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import io.hoplin.json.CborMessagePayloadCodec;
+import io.hoplin.json.CodecFactory;
+import io.hoplin.json.CodecRegistry;
 import io.hoplin.json.JsonMessagePayloadCodec;
+import io.hoplin.json.JsonMessagePayloadCodec.DecodeMode;
 import io.hoplin.model.TestCodecMapping;
 import io.hoplin.model.TestCodecMappingTuple;
 import io.hoplin.model.TestCodecMappingVal;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import org.junit.jupiter.api.Test;
@@ -159,6 +169,161 @@ public class JsonCodecTest {
     assertEquals(TestCodecMappingTuple.class, out.getTypeAsClass());
   }
 
+  @Test
+  public void codecStreamingWrappedPayload() {
+    final JsonMessagePayloadCodec codec = new JsonMessagePayloadCodec(getClasses());
+    final TestCodecMapping val = new TestCodecMapping();
+    val.setMsg("Msg A");
+    val.setValA(1);
+    val.setMapping(new TestCodecMappingVal().setValA(111));
+
+    final MessagePayload<TestCodecMapping> pay = new MessagePayload<>(val);
+    final byte[] data = codec.serialize(pay);
+    final MessagePayload out = codec.deserialize(data, MessagePayload.class);
+
+    assertNotNull(out);
+    assertEquals(TestCodecMapping.class, out.getTypeAsClass());
+    assertEquals(val.toString(), out.getPayload().toString());
+  }
+
+  @Test
+  public void codecStreamingPayloadBeforeTypeTag() {
+    final String json = "{\"status\":0,\"payload\":{\"valA\":5},"
+        + "\"type\":\"io.hoplin.model.TestCodecMappingVal\","
+        + "\"_payload_type_\":\"io.hoplin.model.TestCodecMappingVal\"}";
+    final byte[] data = json.getBytes(StandardCharsets.UTF_8);
+
+    final MessagePayload streaming = new JsonMessagePayloadCodec(getClasses())
+        .deserialize(data, MessagePayload.class);
+    final MessagePayload tree = new JsonMessagePayloadCodec(getClasses(), builder -> {
+    }, DecodeMode.TREE).deserialize(data, MessagePayload.class);
+
+    assertEquals(TestCodecMappingVal.class, streaming.getTypeAsClass());
+    assertEquals(tree.getPayload().toString(), streaming.getPayload().toString());
+  }
+
+  @Test
+  public void codecStreamingMultiByteCharacters() {
+    final JsonMessagePayloadCodec codec = new JsonMessagePayloadCodec(getClasses());
+    final String msg = "za\u017c\u00f3\u0142\u0107 \u20ac \ud83d\ude00";
+    final String json = "{\"_payload_type_\":\"io.hoplin.model.TestCodecMapping\","
+        + "\"status\":0,\"payload\":{\"msg\":\"" + msg + "\"}}";
+
+    final byte[] data = json.getBytes(StandardCharsets.UTF_8);
+    final MessagePayload out = codec.deserialize(data, MessagePayload.class);
+
+    assertEquals(msg, ((TestCodecMapping) out.getPayload()).getMsg());
+  }
+
+  @Test
+  public void codecStreamingMalformedUtf8() throws Exception {
+    final JsonMessagePayloadCodec codec = new JsonMessagePayloadCodec(getClasses());
+    // invalid continuation, truncated sequence, overlong '/', surrogate, above U+10FFFF,
+    // continuation without lead and valid two and four byte sequences
+    final byte[] malformed = {'a', (byte) 0xC3, '(', 'b', (byte) 0xE2, (byte) 0x82, 'x', 'c',
+        (byte) 0xC0, (byte) 0xAF, 'd', (byte) 0xED, (byte) 0xA0, (byte) 0x80, 'e', (byte) 0xF4,
+        (byte) 0x90, (byte) 0x80, (byte) 0x80, 'f', (byte) 0x80, 'g', (byte) 0xC3, (byte) 0xA9,
+        (byte) 0xF0, (byte) 0x9F, (byte) 0x98, (byte) 0x80, (byte) 0xF0, (byte) 0x9D, (byte) 0xA0,
+        (byte) 0x80};
+
+    final ByteArrayOutputStream json = new ByteArrayOutputStream();
+    json.write(("{\"_payload_type_\":\"io.hoplin.model.TestCodecMapping\","
+        + "\"status\":0,\"payload\":{\"msg\":\"").getBytes(StandardCharsets.UTF_8));
+    json.write(malformed);
+    json.write("\"}}".getBytes(StandardCharsets.UTF_8));
+    final MessagePayload out = codec.deserialize(json.toByteArray(), MessagePayload.class);
+
+    // same replacements as the JDK decoder
+    assertEquals(new String(malformed, StandardCharsets.UTF_8),
+        ((TestCodecMapping) out.getPayload()).getMsg());
+  }
+
+  @Test
+  public void codecSerializeCompactUtf8() {
+    final JsonMessagePayloadCodec codec = new JsonMessagePayloadCodec(getClasses());
+    final String msg = "za\u017c\u00f3\u0142\u0107 \u20ac \ud83d\ude00";
+    final TestCodecMapping val = new TestCodecMapping().setMsg(msg);
+
+    final byte[] data = codec.serialize(new MessagePayload<>(val));
+    final String json = new String(data, StandardCharsets.UTF_8);
+    final MessagePayload out = codec.deserialize(data, MessagePayload.class);
+
+    assertFalse(json.contains("\n"));
+    assertTrue(json.contains(msg));
+    assertEquals(msg, ((TestCodecMapping) out.getPayload()).getMsg());
+    assertTrue(new String(JsonMessagePayloadCodec.serializePretty(val), StandardCharsets.UTF_8)
+        .contains("\n"));
+  }
+
+  @Test
+  public void codecCborWrappedPayload() {
+    final CborMessagePayloadCodec codec = new CborMessagePayloadCodec(getClasses());
+    final TestCodecMapping val = new TestCodecMapping();
+    val.setMsg("Msg \u20ac \ud83d\ude00");
+    val.setValA(1);
+    val.setValB(Long.MAX_VALUE);
+    val.setMapping(new TestCodecMappingVal().setValA(-111));
+
+    final byte[] data = codec.serialize(new MessagePayload<>(val));
+    final MessagePayload out = codec.deserialize(data, MessagePayload.class);
+
+    assertNotNull(out);
+    assertEquals(TestCodecMapping.class, out.getTypeAsClass());
+    assertEquals(val.toString(), out.getPayload().toString());
+  }
+
+  @Test
+  public void codecCborWrappedDouble() {
+    final CborMessagePayloadCodec codec = new CborMessagePayloadCodec();
+    final Double val = 100.51;
+    final MessagePayload out = codec.deserialize(codec.serialize(val), MessagePayload.class);
+
+    assertEquals(Double.class, out.getTypeAsClass());
+    assertEquals(val, out.getPayload());
+  }
+
+  @Test
+  public void codecCborRejectsOversizedLength() {
+    final CborMessagePayloadCodec codec = new CborMessagePayloadCodec();
+    // array and map of 2^31 - 1 items, byte string of 2^32 - 1 bytes
+    assertNull(codec.deserialize(new byte[]{(byte) 0x9A, 0x7F, (byte) 0xFF, (byte) 0xFF,
+        (byte) 0xFF}, MessagePayload.class));
+    assertNull(codec.deserialize(new byte[]{(byte) 0xBA, 0x7F, (byte) 0xFF, (byte) 0xFF,
+        (byte) 0xFF}, MessagePayload.class));
+    assertNull(codec.deserialize(new byte[]{0x5A, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+        (byte) 0xFF}, MessagePayload.class));
+    // truncated header and array shorter than declared
+    assertNull(codec.deserialize(new byte[]{(byte) 0x9A, 0x00}, MessagePayload.class));
+    assertNull(codec.deserialize(new byte[]{(byte) 0x83, 0x01, 0x02}, MessagePayload.class));
+  }
+
+  @Test
+  public void codecCborRejectsDeepNesting() {
+    final CborMessagePayloadCodec codec = new CborMessagePayloadCodec();
+    final byte[] data = new byte[100_001];
+    // arrays of one element nested down to a null
+    Arrays.fill(data, (byte) 0x81);
+    data[data.length - 1] = (byte) 0xF6;
+
+    assertNull(codec.deserialize(data, MessagePayload.class));
+  }
+
+  @Test
+  public void codecRegistryByContentType() {
+    final CodecRegistry registry = CodecRegistry.create(CodecFactory.cbor())
+        .withHandlerClasses(getClasses());
+
+    assertEquals(CborMessagePayloadCodec.CONTENT_TYPE, registry.getCodec().getContentType());
+    assertEquals(CborMessagePayloadCodec.CONTENT_TYPE, registry.getCodec(null).getContentType());
+    assertEquals(JsonMessagePayloadCodec.CONTENT_TYPE,
+        registry.getCodec("application/json; charset=utf-8").getContentType());
+
+    final byte[] data = new JsonMessagePayloadCodec().serialize(new TestCodecMappingVal().setValA(7));
+    final MessagePayload out = registry.getCodec(JsonMessagePayloadCodec.CONTENT_TYPE)
+        .deserialize(data, MessagePayload.class);
+    assertEquals(TestCodecMappingVal.class, out.getTypeAsClass());
+  }
+
   private Set<Class<?>> getClasses() {
     final Set<Class<?>> mappings = new HashSet<>();
     mappings.add(TestCodecMapping.class);
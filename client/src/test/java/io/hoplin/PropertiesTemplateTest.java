@@ -0,0 +1,125 @@
+package io.hoplin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
+import io.hoplin.json.JsonMessagePayloadCodec;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.Test;
+
+public class PropertiesTemplateTest {
+
+  @Test
+  public void derivedPropertiesKeepTemplateValues() {
+    final MessageConfiguration conf = new MessageConfiguration()
+        .setPersistent(false)
+        .setPriority(5)
+        .setExpiration("60000");
+
+    final BasicProperties props = conf.getTemplate()
+        .derive("application/json", "id-1", "corr-1", Collections.singletonMap("k", "v"));
+
+    assertEquals(PropertiesTemplate.TRANSIENT, (int) props.getDeliveryMode());
+    assertEquals(5, (int) props.getPriority());
+    assertEquals("60000", props.getExpiration());
+    assertEquals("application/json", props.getContentType());
+    assertEquals("id-1", props.getMessageId());
+    assertEquals("corr-1", props.getCorrelationId());
+    assertEquals("v", props.getHeaders().get("k"));
+  }
+
+  @Test
+  public void defaultsArePersistent() {
+    final BasicProperties props = PropertiesTemplate.persistent()
+        .withContentType("application/cbor")
+        .derive("id-2", null, null);
+
+    assertEquals(PropertiesTemplate.PERSISTENT, (int) props.getDeliveryMode());
+    assertEquals("application/cbor", props.getContentType());
+    assertEquals("UTF-8", props.getContentEncoding());
+    assertNull(props.getPriority());
+  }
+
+  @Test
+  public void templateContentTypeSelectsCodec() {
+    final List<BasicProperties> published = new ArrayList<>();
+    final List<byte[]> bodies = new ArrayList<>();
+    final Publisher publisher = new Publisher(Runnable::run, new JsonMessagePayloadCodec());
+    final ConnectionProvider provider = provider(published, bodies);
+
+    publisher.basicPublishAsync(provider, "exchange", "key", "value", null,
+        PropertiesTemplate.persistent().withContentType("application/cbor")).join();
+    publisher.basicPublishAsync(provider, "exchange", "key", "value", null,
+        PropertiesTemplate.persistent().withContentType("application/json")).join();
+
+    assertEquals("application/cbor", published.get(0).getContentType());
+    // CBOR text string, not a quoted JSON string
+    assertEquals(0x60, bodies.get(0)[0] & 0xE0);
+    assertEquals("application/json", published.get(1).getContentType());
+    assertEquals('"', bodies.get(1)[0]);
+
+    final CompletionException e = assertThrows(CompletionException.class,
+        () -> publisher.basicPublishAsync(provider, "exchange", "key", "value", null,
+            PropertiesTemplate.persistent().withContentType("application/x-protobuf")).join());
+    assertTrue(e.getCause() instanceof IllegalArgumentException);
+    assertEquals(2, published.size());
+  }
+
+  private static ConnectionProvider provider(final List<BasicProperties> published,
+      final List<byte[]> bodies) {
+    final Channel channel = (Channel) Proxy.newProxyInstance(
+        PropertiesTemplateTest.class.getClassLoader(), new Class<?>[]{Channel.class},
+        (proxy, method, args) -> {
+          if ("basicPublish".equals(method.getName())) {
+            published.add((BasicProperties) args[2]);
+            bodies.add((byte[]) args[3]);
+            return null;
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+
+    return new ConnectionProvider() {
+      @Override
+      public Channel acquire() {
+        return channel;
+      }
+
+      @Override
+      public boolean isConnected() {
+        return true;
+      }
+
+      @Override
+      public boolean isOpenChannel() {
+        return true;
+      }
+
+      @Override
+      public boolean isAvailable() {
+        return true;
+      }
+
+      @Override
+      public void disconnect() {
+      }
+
+      @Override
+      public boolean connect() {
+        return true;
+      }
+
+      @Override
+      public void shutdownCompleted(final ShutdownSignalException cause) {
+      }
+    };
+  }
+}
@@ -0,0 +1,139 @@
+package io.hoplin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
+import io.hoplin.PublishWindow.Permit;
+import io.hoplin.json.JsonMessagePayloadCodec;
+import io.hoplin.metrics.QueueMetrics;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class PublishWindowTest {
+
+  @Test
+  public void failFastWhenFull() {
+    final PublishWindow window = new PublishWindow(1, 0, BackpressurePolicy.FAIL);
+    final Permit permit = window.acquire().join();
+
+    assertTrue(window.acquire().isCompletedExceptionally());
+
+    permit.release();
+    assertFalse(window.acquire().isCompletedExceptionally());
+  }
+
+  @Test
+  public void deferredUntilReleased() {
+    final PublishWindow window = new PublishWindow(0, 100, BackpressurePolicy.DEFER);
+    final QueueMetrics metrics = new QueueMetrics.DefaultQueueMetrics();
+    final Permit permit = window.acquire().join();
+    permit.record(150, metrics);
+
+    final CompletableFuture<Permit> pending = window.acquire();
+    assertFalse(pending.isDone());
+    assertEquals(150, metrics.getInFlightSize());
+
+    permit.release();
+    assertTrue(pending.isDone());
+    assertEquals(0, metrics.getInFlightCount());
+    assertEquals(1, window.getInFlightMessages());
+  }
+
+  @Test
+  public void blockedByBroker() {
+    final PublishWindow window = new PublishWindow(0, 0, BackpressurePolicy.DEFER);
+    window.handleBlocked("low on memory");
+
+    final CompletableFuture<Permit> pending = window.acquire();
+    assertFalse(pending.isDone());
+
+    window.handleUnblocked();
+    assertTrue(pending.isDone());
+  }
+
+  @Test
+  public void batchHoldsPermitsUntilConfirmed() {
+    final PublishWindow window = new PublishWindow(2, 0, BackpressurePolicy.FAIL);
+    final PublisherConfirms confirms = new PublisherConfirms();
+    final Publisher publisher = new Publisher(Runnable::run, new JsonMessagePayloadCodec(),
+        window);
+
+    final CompletableFuture<BatchPublishResult> result = publisher.basicPublishBatchAsync(
+        provider(confirms), "exchange", "key", Arrays.asList("a", "b", "c"), null);
+    assertFalse(result.isDone());
+    assertEquals(2, window.getInFlightMessages());
+    assertTrue(window.getInFlightBytes() > 0);
+
+    confirms.handleAck(2, true);
+    final BatchPublishResult published = result.join();
+    assertEquals(2, published.getPublishedCount());
+    assertEquals(2, (int) published.getFailures().firstKey());
+    assertEquals(0, window.getInFlightMessages());
+    assertEquals(0, window.getInFlightBytes());
+  }
+
+  private static ConnectionProvider provider(final PublisherConfirms confirms) {
+    final AtomicLong seqNo = new AtomicLong(1);
+    final Channel channel = (Channel) Proxy.newProxyInstance(
+        PublishWindowTest.class.getClassLoader(), new Class<?>[]{Channel.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getNextPublishSeqNo":
+              return seqNo.get();
+            case "basicPublish":
+              seqNo.incrementAndGet();
+              return null;
+            case "isOpen":
+              return true;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+
+    return new ConnectionProvider() {
+      @Override
+      public Channel acquire() {
+        return channel;
+      }
+
+      @Override
+      public PublisherConfirms confirms(final Channel leased) {
+        return confirms;
+      }
+
+      @Override
+      public boolean isConnected() {
+        return true;
+      }
+
+      @Override
+      public boolean isOpenChannel() {
+        return true;
+      }
+
+      @Override
+      public boolean isAvailable() {
+        return true;
+      }
+
+      @Override
+      public void disconnect() {
+      }
+
+      @Override
+      public boolean connect() {
+        return true;
+      }
+
+      @Override
+      public void shutdownCompleted(final ShutdownSignalException cause) {
+      }
+    };
+  }
+}
@@ -0,0 +1,51 @@
+package io.hoplin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.rabbitmq.client.ShutdownSignalException;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+public class PublisherConfirmsTest {
+
+  private final PublisherConfirms confirms = new PublisherConfirms();
+
+  @Test
+  public void multipleAckCompletesRange() {
+    final CompletableFuture<Void> first = confirms.register(1);
+    final CompletableFuture<Void> second = confirms.register(2);
+    final CompletableFuture<Void> third = confirms.register(3);
+
+    confirms.handleAck(2, true);
+
+    assertTrue(first.isDone() && !first.isCompletedExceptionally());
+    assertTrue(second.isDone() && !second.isCompletedExceptionally());
+    assertFalse(third.isDone());
+    assertEquals(1, confirms.getOutstandingCount());
+  }
+
+  @Test
+  public void nackFailsOnlyTaggedMessage() {
+    final CompletableFuture<Void> first = confirms.register(1);
+    final CompletableFuture<Void> second = confirms.register(2);
+
+    confirms.handleNack(2, false);
+
+    assertFalse(first.isDone());
+    assertTrue(second.isCompletedExceptionally());
+  }
+
+  @Test
+  public void shutdownFailsOutstanding() {
+    final CompletableFuture<Void> first = confirms.register(1);
+    final CompletableFuture<Void> second = confirms.register(2);
+
+    confirms.shutdownCompleted(new ShutdownSignalException(false, false, null, null));
+
+    assertTrue(first.isCompletedExceptionally());
+    assertTrue(second.isCompletedExceptionally());
+    assertEquals(0, confirms.getOutstandingCount());
+  }
+}
@@ -0,0 +1,48 @@
+package io.hoplin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class SequentialMessageIdGeneratorTest {
+
+  @Test
+  public void idsAreUniqueAcrossThreads() throws InterruptedException {
+    final SequentialMessageIdGenerator generator = new SequentialMessageIdGenerator();
+    final Set<String> ids = ConcurrentHashMap.newKeySet();
+    final int threads = 4;
+    final int perThread = 5000;
+
+    final ExecutorService pool = Executors.newFixedThreadPool(threads);
+    for (int t = 0; t < threads; ++t) {
+      pool.execute(() -> {
+        for (int i = 0; i < perThread; ++i) {
+          ids.add(generator.nextId());
+        }
+      });
+    }
+    pool.shutdown();
+    pool.awaitTermination(10, TimeUnit.SECONDS);
+
+    assertEquals(threads * perThread, ids.size());
+  }
+
+  @Test
+  public void idsAreUuidsWithProcessPrefix() {
+    final SequentialMessageIdGenerator generator = new SequentialMessageIdGenerator(42);
+    final UUID first = UUID.fromString(generator.nextId());
+    final UUID second = generator.nextUuid();
+
+    assertEquals(42, first.getMostSignificantBits());
+    assertEquals(first.getLeastSignificantBits() + 1, second.getLeastSignificantBits());
+    assertNotEquals(new SequentialMessageIdGenerator().nextId(),
+        new SequentialMessageIdGenerator().nextId());
+  }
+}
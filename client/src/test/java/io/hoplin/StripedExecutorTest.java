@@ -0,0 +1,50 @@
+package io.hoplin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class StripedExecutorTest {
+
+  @Test
+  public void tasksWithEqualKeyRunInOrder() throws InterruptedException {
+    final ExecutorService pool = Executors.newFixedThreadPool(4);
+    final StripedExecutor executor = new StripedExecutor(pool, 4);
+    final int keys = 8;
+    final int perKey = 500;
+    final List<List<Integer>> seen = new ArrayList<>();
+    for (int k = 0; k < keys; ++k) {
+      seen.add(new ArrayList<>());
+    }
+
+    final CountDownLatch done = new CountDownLatch(keys * perKey);
+    for (int i = 0; i < perKey; ++i) {
+      for (int k = 0; k < keys; ++k) {
+        final int key = k;
+        final int seq = i;
+        // lists are only touched by the lane of their key
+        executor.execute("entity-" + key, () -> {
+          seen.get(key).add(seq);
+          done.countDown();
+        });
+      }
+    }
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    pool.shutdown();
+
+    for (final List<Integer> sequence : seen) {
+      assertEquals(perKey, sequence.size());
+      for (int i = 0; i < perKey; ++i) {
+        assertEquals(i, (int) sequence.get(i));
+      }
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package io.hoplin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class TraceContextTest {
+
+  private static final String TRACEPARENT =
+      "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+  @Test
+  public void continueFromKeepsTraceWithNewSpan() {
+    final TraceContext context = TraceContext
+        .continueFrom(Collections.singletonMap(TraceContext.TRACEPARENT, TRACEPARENT));
+
+    assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", context.getTraceId());
+    assertNotEquals("00f067aa0ba902b7", context.getSpanId());
+    assertTrue(context.isSampled());
+  }
+
+  @Test
+  public void invalidHeaderStartsNewTrace() {
+    final TraceContext context = TraceContext
+        .continueFrom(Collections.singletonMap(TraceContext.TRACEPARENT, "00-xyz"));
+
+    assertNotEquals("4bf92f3577b34da6a3ce929d0e0e4736", context.getTraceId());
+    assertEquals(55, context.toTraceparent().length());
+  }
+
+  @Test
+  public void injectUsesAttachedContext() {
+    final TraceContext context = TraceContext.newRoot();
+    final TraceContext previous = TraceContext.attach(context);
+    try {
+      final Map<String, Object> headers = TraceContext.inject(null);
+      final TraceContext child = TraceContext.continueFrom(headers);
+      assertEquals(context.getTraceId(), child.getTraceId());
+    } finally {
+      TraceContext.attach(previous);
+    }
+    assertNull(TraceContext.current());
+  }
+}
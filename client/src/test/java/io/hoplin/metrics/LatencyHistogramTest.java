@@ -0,0 +1,88 @@
+package io.hoplin.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void quantilesWithinBucketPrecision() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 1; i <= 10_000; ++i) {
+      histogram.record(i * 1000);
+    }
+
+    final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(10_000, snapshot.getCount());
+    assertEquals(10_000_000, snapshot.getMax());
+    assertWithin(5_000_000, snapshot.getValueAtQuantile(0.5));
+    assertWithin(9_900_000, snapshot.getValueAtQuantile(0.99));
+  }
+
+  @Test
+  public void bucketsCoverAllValues() {
+    for (int shift = 0; shift < 63; ++shift) {
+      final long value = 1L << shift;
+      final int index = LatencyHistogram.indexOf(value);
+      assertTrue(LatencyHistogram.upperBoundOf(index) >= value);
+      assertTrue(index == 0 || LatencyHistogram.upperBoundOf(index - 1) < value);
+    }
+    assertTrue(LatencyHistogram.upperBoundOf(LatencyHistogram.indexOf(Long.MAX_VALUE)) > 0);
+  }
+
+  @Test
+  public void resetDoesNotLoseConcurrentValues() throws InterruptedException {
+    final QueueMetrics metrics = new QueueMetrics.DefaultQueueMetrics();
+    final ExecutorService pool = Executors.newFixedThreadPool(2);
+    final int perThread = 50_000;
+    for (int t = 0; t < 2; ++t) {
+      pool.execute(() -> {
+        for (int i = 0; i < perThread; ++i) {
+          metrics.markMessageSent();
+          metrics.getHandlerLatency().record(i);
+        }
+      });
+    }
+
+    long sent = 0;
+    long handled = 0;
+    while (!pool.isTerminated()) {
+      final QueueMetrics.Snapshot snapshot = metrics.snapshotThenReset();
+      sent += snapshot.getMessageSent();
+      handled += snapshot.getHandlerLatency().getCount();
+      pool.shutdown();
+      pool.awaitTermination(1, TimeUnit.MILLISECONDS);
+    }
+    final QueueMetrics.Snapshot rest = metrics.snapshotThenReset();
+
+    assertEquals(2 * perThread, sent + rest.getMessageSent());
+    assertEquals(2 * perThread, handled + rest.getHandlerLatency().getCount());
+  }
+
+  @Test
+  public void cumulativeIgnoresReset() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(1000);
+    histogram.record(5000);
+    assertEquals(2, histogram.snapshotThenReset().getCount());
+    histogram.record(2000);
+
+    assertEquals(1, histogram.snapshot().getCount());
+    assertEquals(2000, histogram.snapshot().getMax());
+    final LatencyHistogram.Snapshot cumulative = histogram.cumulative();
+    assertEquals(3, cumulative.getCount());
+    assertEquals(8000, cumulative.getSum());
+    assertEquals(5000, cumulative.getMax());
+  }
+
+  private static void assertWithin(final long expected, final long actual) {
+    final double error = Math.abs(actual - expected) / (double) expected;
+    assertTrue(error <= 1.0 / LatencyHistogram.SUB_BUCKETS,
+        "expected " + expected + " got " + actual);
+  }
+}
@@ -0,0 +1,136 @@
+package io.hoplin.exporter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.hoplin.HoplinRuntimeException;
+import io.hoplin.metrics.MetricsPublisher;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Embedded HTTP server exposing Hoplin metrics to be scraped by Prometheus or any OpenMetrics
+ * compatible collector.
+ *
+ * <pre>
+ *   final OpenMetricsServer server = OpenMetricsServer.create(9400);
+ *   server.start();
+ *   // GET http://localhost:9400/metrics
+ * </pre>
+ */
+public class OpenMetricsServer implements MetricsPublisher, AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(OpenMetricsServer.class);
+
+  /**
+   * Path the metrics are served on
+   */
+  public static final String PATH = "/metrics";
+
+  private final InetSocketAddress address;
+
+  private final OpenMetricsWriter writer;
+
+  private HttpServer server;
+
+  private ExecutorService executor;
+
+  /**
+   * Create server
+   *
+   * @param address the address to bind to
+   * @param writer  the writer of the exposition
+   */
+  public OpenMetricsServer(final InetSocketAddress address, final OpenMetricsWriter writer) {
+    this.address = Objects.requireNonNull(address);
+    this.writer = Objects.requireNonNull(writer);
+  }
+
+  /**
+   * Create server listening on all interfaces
+   *
+   * @param port the port to listen on, 0 for any free port
+   * @return new server
+   */
+  public static OpenMetricsServer create(final int port) {
+    return new OpenMetricsServer(new InetSocketAddress(port), new OpenMetricsWriter());
+  }
+
+  @Override
+  public synchronized void start() {
+    if (server != null) {
+      return;
+    }
+
+    try {
+      server = HttpServer.create(address, 0);
+    } catch (final IOException e) {
+      throw new HoplinRuntimeException("Unable to bind metrics server to " + address, e);
+    }
+
+    executor = Executors.newSingleThreadExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "hoplin-metrics-exporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.setExecutor(executor);
+    server.createContext(PATH, this::handle);
+    server.start();
+    log.info("Serving metrics on {}{}", server.getAddress(), PATH);
+  }
+
+  /**
+   * Get port the server listens on
+   *
+   * @return bound port or -1 when not started
+   */
+  public synchronized int getPort() {
+    return server == null ? -1 : server.getAddress().getPort();
+  }
+
+  private void handle(final HttpExchange exchange) throws IOException {
+    try {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+
+      final StringBuilder out = new StringBuilder(4096);
+      writer.write(out);
+      final byte[] body = out.toString().getBytes(StandardCharsets.UTF_8);
+
+      exchange.getResponseHeaders().set("Content-Type", OpenMetricsWriter.CONTENT_TYPE);
+      exchange.sendResponseHeaders(200, body.length);
+      try (final OutputStream os = exchange.getResponseBody()) {
+        os.write(body);
+      }
+    } catch (final RuntimeException e) {
+      log.error("Unable to write metrics", e);
+      exchange.sendResponseHeaders(500, -1);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  @Override
+  public synchronized void shutdown() {
+    if (server == null) {
+      return;
+    }
+    server.stop(0);
+    executor.shutdown();
+    server = null;
+    executor = null;
+  }
+
+  @Override
+  public void close() {
+    shutdown();
+  }
+}
@@ -0,0 +1,231 @@
+package io.hoplin.exporter;
+
+import io.hoplin.metrics.ChannelPoolMetrics;
+import io.hoplin.metrics.ExecutorMetrics;
+import io.hoplin.metrics.LatencyHistogram;
+import io.hoplin.metrics.QueueMetrics;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Writes all registered Hoplin metrics in the OpenMetrics text format. Values are read and formatted
+ * only when the metrics are scraped, nothing runs between scrapes.
+ * <p>
+ * Queue and channel pool metrics are read with {@link QueueMetrics#cumulative()} and
+ * {@link ChannelPoolMetrics#cumulative()}, so counters and summaries keep growing when another
+ * reporter resets the metrics, as OpenMetrics counters must. Scraping never resets them.
+ * </p>
+ *
+ * @see <a href="https://openmetrics.io">OpenMetrics</a>
+ */
+public class OpenMetricsWriter {
+
+  /**
+   * Content type of the exposition
+   */
+  public static final String CONTENT_TYPE =
+      "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+  private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+  private final String prefix;
+
+  public OpenMetricsWriter() {
+    this("hoplin");
+  }
+
+  /**
+   * Create writer with a metric name prefix
+   *
+   * @param prefix the prefix of every metric family name
+   */
+  public OpenMetricsWriter(final String prefix) {
+    this.prefix = Objects.requireNonNull(prefix);
+  }
+
+  /**
+   * Write all metrics
+   *
+   * @param out the builder to append to
+   */
+  public void write(final StringBuilder out) {
+    Objects.requireNonNull(out);
+    writeQueues(out, snapshots());
+    writeChannelPools(out, channelPools());
+    writeExecutors(out, ExecutorMetrics.Factory.getMetrics());
+    out.append("# EOF\n");
+  }
+
+  private static Map<String, QueueMetrics.Snapshot> snapshots() {
+    final Map<String, QueueMetrics.Snapshot> snapshots = new TreeMap<>();
+    QueueMetrics.Factory.getMetrics()
+        .forEach((key, value) -> snapshots.put(key, value.cumulative()));
+    return snapshots;
+  }
+
+  private static Map<String, ChannelPoolMetrics.Snapshot> channelPools() {
+    final Map<String, ChannelPoolMetrics.Snapshot> snapshots = new TreeMap<>();
+    ChannelPoolMetrics.Factory.getMetrics()
+        .forEach((key, value) -> snapshots.put(key, value.cumulative()));
+    return snapshots;
+  }
+
+  private void writeQueues(final StringBuilder out,
+      final Map<String, QueueMetrics.Snapshot> queues) {
+    if (queues.isEmpty()) {
+      return;
+    }
+
+    counter(out, "messages_sent", "Messages published", "queue", queues,
+        QueueMetrics.Snapshot::getMessageSent);
+    counter(out, "messages_publish_failed", "Messages that could not be published", "queue",
+        queues, QueueMetrics.Snapshot::getMessagePublishFailed);
+    counter(out, "messages_received", "Messages delivered to consumers", "queue", queues,
+        QueueMetrics.Snapshot::getMessageReceived);
+    counter(out, "messages_redelivered", "Messages delivered again after a failed delivery",
+        "queue", queues, QueueMetrics.Snapshot::getMessageRedelivered);
+    counter(out, "messages_discarded", "Messages discarded unprocessed when the consumer was full",
+        "queue", queues, QueueMetrics.Snapshot::getMessageDiscarded);
+    counter(out, "sent_bytes", "Bytes published", "queue", queues,
+        QueueMetrics.Snapshot::getSentSize);
+    counter(out, "received_bytes", "Bytes delivered to consumers", "queue", queues,
+        QueueMetrics.Snapshot::getReceivedSize);
+    gauge(out, "inflight_messages", "Published messages awaiting confirmation", "queue", queues,
+        QueueMetrics.Snapshot::getInFlightCount);
+    gauge(out, "inflight_bytes", "Bytes of published messages awaiting confirmation", "queue",
+        queues, QueueMetrics.Snapshot::getInFlightSize);
+    gauge(out, "prefetch_count", "Total prefetch count of the consumers of the queue",
+        "queue", queues, QueueMetrics.Snapshot::getPrefetchCount);
+
+    summary(out, "confirm_latency_seconds", "Latency from publish to broker confirm", queues,
+        QueueMetrics.Snapshot::getConfirmLatency);
+    summary(out, "handler_latency_seconds", "Execution time of message handlers", queues,
+        QueueMetrics.Snapshot::getHandlerLatency);
+    summary(out, "rpc_latency_seconds", "Round trip time of RPC requests", queues,
+        QueueMetrics.Snapshot::getRoundTripLatency);
+  }
+
+  private void writeChannelPools(final StringBuilder out,
+      final Map<String, ChannelPoolMetrics.Snapshot> pools) {
+    if (pools.isEmpty()) {
+      return;
+    }
+
+    counter(out, "channel_pool_leases", "Channels leased from the pool", "node", pools,
+        ChannelPoolMetrics.Snapshot::getLeaseCount);
+    counter(out, "channel_pool_lease_timeouts", "Leases that timed out waiting for a channel",
+        "node", pools, ChannelPoolMetrics.Snapshot::getLeaseTimeouts);
+    counter(out, "channel_pool_channels_created", "Channels opened by the pool", "node", pools,
+        ChannelPoolMetrics.Snapshot::getChannelsCreated);
+    counter(out, "channel_pool_channels_closed", "Channels closed by the pool", "node", pools,
+        ChannelPoolMetrics.Snapshot::getChannelsClosed);
+
+    family(out, "channel_pool_lease_wait_seconds", "counter", "Time spent waiting for a channel");
+    pools.forEach(
+        (key, value) -> sample(out, "channel_pool_lease_wait_seconds_total", "node", key)
+            .append(value.getLeaseWaitTime() / NANOS_PER_SECOND).append('\n'));
+  }
+
+  private void writeExecutors(final StringBuilder out,
+      final Map<String, ExecutorMetrics> executors) {
+    if (executors.isEmpty()) {
+      return;
+    }
+
+    gauge(out, "executor_active_threads", "Threads executing tasks", "executor", executors,
+        ExecutorMetrics::getActiveCount);
+    gauge(out, "executor_pool_threads", "Threads in the pool", "executor", executors,
+        ExecutorMetrics::getPoolSize);
+    gauge(out, "executor_queue_depth", "Tasks waiting for a thread", "executor", executors,
+        ExecutorMetrics::getQueueDepth);
+    counter(out, "executor_completed_tasks", "Tasks completed", "executor", executors,
+        ExecutorMetrics::getCompletedCount);
+  }
+
+  private <T> void counter(final StringBuilder out, final String name, final String help,
+      final String label, final Map<String, T> values, final ToLongFunction<T> reader) {
+    family(out, name, "counter", help);
+    final String sampleName = name + "_total";
+    values.forEach((key, value) -> sample(out, sampleName, label, key)
+        .append(reader.applyAsLong(value)).append('\n'));
+  }
+
+  private <T> void gauge(final StringBuilder out, final String name, final String help,
+      final String label, final Map<String, T> values, final ToLongFunction<T> reader) {
+    family(out, name, "gauge", help);
+    values.forEach((key, value) -> sample(out, name, label, key)
+        .append(reader.applyAsLong(value)).append('\n'));
+  }
+
+  private void summary(final StringBuilder out, final String name, final String help,
+      final Map<String, QueueMetrics.Snapshot> queues,
+      final Function<QueueMetrics.Snapshot, LatencyHistogram.Snapshot> reader) {
+    boolean described = false;
+    for (final Map.Entry<String, QueueMetrics.Snapshot> entry : queues.entrySet()) {
+      final LatencyHistogram.Snapshot latency = reader.apply(entry.getValue());
+      // queues only record the latencies of their role, skip the empty ones
+      if (latency.getCount() == 0) {
+        continue;
+      }
+      if (!described) {
+        family(out, name, "summary", help);
+        described = true;
+      }
+
+      final String queue = entry.getKey();
+      for (final double quantile : QUANTILES) {
+        sample(out, name, "queue", queue, "quantile", Double.toString(quantile))
+            .append(latency.getValueAtQuantile(quantile) / NANOS_PER_SECOND).append('\n');
+      }
+      sample(out, name + "_count", "queue", queue).append(latency.getCount()).append('\n');
+      sample(out, name + "_sum", "queue", queue)
+          .append(latency.getSum() / NANOS_PER_SECOND).append('\n');
+    }
+  }
+
+  private void family(final StringBuilder out, final String name, final String type,
+      final String help) {
+    out.append("# TYPE ").append(prefix).append('_').append(name).append(' ').append(type)
+        .append('\n');
+    out.append("# HELP ").append(prefix).append('_').append(name).append(' ').append(help)
+        .append('\n');
+  }
+
+  private StringBuilder sample(final StringBuilder out, final String name,
+      final String... labels) {
+    out.append(prefix).append('_').append(name).append('{');
+    for (int i = 0; i < labels.length; i += 2) {
+      if (i > 0) {
+        out.append(',');
+      }
+      out.append(labels[i]).append("=\"");
+      escape(out, labels[i + 1]);
+      out.append('"');
+    }
+    return out.append("} ");
+  }
+
+  private static void escape(final StringBuilder out, final String value) {
+    for (int i = 0; i < value.length(); ++i) {
+      final char c = value.charAt(i);
+      switch (c) {
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        default:
+          out.append(c);
+      }
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package io.hoplin.exporter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.hoplin.metrics.ChannelPoolMetrics;
+import io.hoplin.metrics.FunctionMetricsPublisher;
+import io.hoplin.metrics.MetricsPublisher;
+import io.hoplin.metrics.QueueMetrics;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class OpenMetricsWriterTest {
+
+  private static final String QUEUE = "queue=\"orders-\\\"eu\\\"\"";
+
+  @Test
+  public void writesQueueCountersAndLatency() {
+    final QueueMetrics metrics = QueueMetrics.Factory.getInstance("orders-\"eu\"");
+    metrics.markMessageSent();
+    metrics.markMessageSent();
+    metrics.getConfirmLatency().record(2_000_000);
+
+    final StringBuilder out = new StringBuilder();
+    new OpenMetricsWriter().write(out);
+    final String text = out.toString();
+
+    assertTrue(text.contains("# TYPE hoplin_messages_sent counter\n"));
+    assertTrue(text.contains("hoplin_messages_sent_total{" + QUEUE + "} 2\n"));
+    assertTrue(text.contains("# TYPE hoplin_confirm_latency_seconds summary\n"));
+    assertTrue(text.contains("hoplin_confirm_latency_seconds_count{" + QUEUE + "} 1\n"));
+    assertTrue(text.endsWith("# EOF\n"));
+  }
+
+  @Test
+  public void countersDoNotDecreaseWhenPublisherResets() throws InterruptedException {
+    final QueueMetrics metrics = QueueMetrics.Factory.getInstance("reset");
+    metrics.markMessageSent();
+    metrics.markMessageSent();
+    metrics.getConfirmLatency().record(2_000_000);
+    ChannelPoolMetrics.Factory.getInstance("reset-node").recordLease(1000);
+
+    final String before = scrape();
+
+    final CountDownLatch published = new CountDownLatch(1);
+    final MetricsPublisher publisher = FunctionMetricsPublisher
+        .consumer(collected -> published.countDown())
+        .withInterval(10, TimeUnit.MILLISECONDS)
+        .withResetOnReporting(true)
+        .build();
+    publisher.start();
+    try {
+      assertTrue(published.await(5, TimeUnit.SECONDS));
+    } finally {
+      publisher.shutdown();
+    }
+    assertEquals(0, metrics.snapshot().getMessageSent());
+
+    metrics.markMessageSent();
+    final String after = scrape();
+
+    final String[] samples = {
+        "hoplin_messages_sent_total{queue=\"reset\"}",
+        "hoplin_confirm_latency_seconds_count{queue=\"reset\"}",
+        "hoplin_confirm_latency_seconds_sum{queue=\"reset\"}",
+        "hoplin_channel_pool_leases_total{node=\"reset-node\"}",
+        "hoplin_channel_pool_lease_wait_seconds_total{node=\"reset-node\"}"
+    };
+    for (final String sample : samples) {
+      assertTrue(value(after, sample) >= value(before, sample), sample);
+    }
+    assertEquals(3, value(after, samples[0]));
+  }
+
+  @Test
+  public void serverExposesMetrics() throws IOException {
+    QueueMetrics.Factory.getInstance("scraped").markMessageReceived();
+
+    try (final OpenMetricsServer server = OpenMetricsServer.create(0)) {
+      server.start();
+      final URL url = new URL("http://localhost:" + server.getPort() + OpenMetricsServer.PATH);
+      final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+      assertEquals(200, connection.getResponseCode());
+      assertEquals(OpenMetricsWriter.CONTENT_TYPE, connection.getContentType());
+      assertTrue(read(connection.getInputStream())
+          .contains("hoplin_messages_received_total{queue=\"scraped\"} 1\n"));
+    }
+  }
+
+  private static String scrape() {
+    final StringBuilder out = new StringBuilder();
+    new OpenMetricsWriter().write(out);
+    return out.toString();
+  }
+
+  private static double value(final String text, final String sample) {
+    for (final String line : text.split("\n")) {
+      if (line.startsWith(sample + " ")) {
+        return Double.parseDouble(line.substring(sample.length() + 1));
+      }
+    }
+    throw new AssertionError("missing sample " + sample);
+  }
+
+  private static String read(final InputStream in) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[4096];
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      out.write(buffer, 0, n);
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,73 @@
+package io.hoplin.testkit;
+
+import com.rabbitmq.client.Consumer;
+
+/**
+ * Consumer registered on a {@link BrokerQueue} through a channel
+ */
+final class BrokerConsumer {
+
+  private final String tag;
+
+  private final InMemoryChannel channel;
+
+  private final BrokerQueue queue;
+
+  private final Consumer consumer;
+
+  private final boolean autoAck;
+
+  // unacknowledged deliveries allowed, 0 for no limit
+  private final int prefetch;
+
+  // guarded by the queue
+  private int inFlight;
+
+  BrokerConsumer(final String tag, final InMemoryChannel channel, final BrokerQueue queue,
+      final Consumer consumer, final boolean autoAck, final int prefetch) {
+    this.tag = tag;
+    this.channel = channel;
+    this.queue = queue;
+    this.consumer = consumer;
+    this.autoAck = autoAck;
+    this.prefetch = prefetch;
+  }
+
+  boolean hasCapacity() {
+    return autoAck || (prefetch == 0 || inFlight < prefetch) && channel.hasCapacity();
+  }
+
+  void delivered() {
+    if (!autoAck) {
+      ++inFlight;
+      channel.delivered();
+    }
+  }
+
+  void settled() {
+    if (!autoAck && inFlight > 0) {
+      --inFlight;
+      channel.settled();
+    }
+  }
+
+  String getTag() {
+    return tag;
+  }
+
+  InMemoryChannel getChannel() {
+    return channel;
+  }
+
+  BrokerQueue getQueue() {
+    return queue;
+  }
+
+  Consumer getConsumer() {
+    return consumer;
+  }
+
+  boolean isAutoAck() {
+    return autoAck;
+  }
+}
@@ -0,0 +1,36 @@
+package io.hoplin.testkit;
+
+/**
+ * Error the broker answers an operation with, the channel or connection that caused it is closed
+ * with the reply code and text like RabbitMQ would
+ */
+final class BrokerException extends RuntimeException {
+
+  static final int ACCESS_REFUSED = 403;
+
+  static final int NOT_FOUND = 404;
+
+  static final int RESOURCE_LOCKED = 405;
+
+  static final int PRECONDITION_FAILED = 406;
+
+  static final int COMMAND_INVALID = 503;
+
+  static final int NOT_ALLOWED = 530;
+
+  private final int replyCode;
+
+  BrokerException(final int replyCode, final String replyText) {
+    super(replyText, null, false, false);
+    this.replyCode = replyCode;
+  }
+
+  int getReplyCode() {
+    return replyCode;
+  }
+
+  static BrokerException notFound(final String kind, final String name) {
+    return new BrokerException(NOT_FOUND,
+        "NOT_FOUND - no " + kind + " '" + name + "' in vhost '/'");
+  }
+}
@@ -0,0 +1,215 @@
+package io.hoplin.testkit;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Exchange of the {@link InMemoryBroker}, routes messages to the queues bound to it with the rules
+ * of the RabbitMQ direct, fanout, topic and headers exchange types.
+ */
+final class BrokerExchange {
+
+  enum Type {
+    DIRECT, FANOUT, TOPIC, HEADERS;
+
+    static Type of(final String type) {
+      if (type != null) {
+        switch (type) {
+          case "direct":
+            return DIRECT;
+          case "fanout":
+            return FANOUT;
+          case "topic":
+            return TOPIC;
+          case "headers":
+            return HEADERS;
+          default:
+        }
+      }
+      return null;
+    }
+  }
+
+  private final String name;
+
+  private final Type type;
+
+  private final boolean durable;
+
+  private final boolean autoDelete;
+
+  // routing reads far more often than bindings change
+  private final List<Binding> bindings = new CopyOnWriteArrayList<>();
+
+  BrokerExchange(final String name, final Type type, final boolean durable,
+      final boolean autoDelete) {
+    this.name = Objects.requireNonNull(name);
+    this.type = Objects.requireNonNull(type);
+    this.durable = durable;
+    this.autoDelete = autoDelete;
+  }
+
+  /**
+   * Check if a redeclaration is equivalent to this exchange
+   */
+  boolean isEquivalent(final Type type, final boolean durable, final boolean autoDelete) {
+    return this.type == type && this.durable == durable && this.autoDelete == autoDelete;
+  }
+
+  void bind(final BrokerQueue queue, final String routingKey,
+      final Map<String, Object> arguments) {
+    final Binding binding = new Binding(queue, routingKey, arguments);
+    if (!bindings.contains(binding)) {
+      bindings.add(binding);
+    }
+  }
+
+  void unbind(final BrokerQueue queue, final String routingKey,
+      final Map<String, Object> arguments) {
+    bindings.remove(new Binding(queue, routingKey, arguments));
+  }
+
+  void unbindAll(final BrokerQueue queue) {
+    bindings.removeIf(binding -> binding.queue == queue);
+  }
+
+  boolean hasBindings() {
+    return !bindings.isEmpty();
+  }
+
+  /**
+   * Add the queues a message is routed to
+   *
+   * @param routingKey the routing key of the message
+   * @param headers    the headers of the message, may be null
+   * @param queues     the collection to add matching queues to
+   */
+  void route(final String routingKey, final Map<String, Object> headers,
+      final Collection<BrokerQueue> queues) {
+    for (final Binding binding : bindings) {
+      if (binding.matches(type, routingKey, headers)) {
+        queues.add(binding.queue);
+      }
+    }
+  }
+
+  String getName() {
+    return name;
+  }
+
+  Type getType() {
+    return type;
+  }
+
+  boolean isAutoDelete() {
+    return autoDelete;
+  }
+
+  /**
+   * Match topic binding key against a routing key, {@code *} matches exactly one word and {@code #}
+   * zero or more words
+   */
+  static boolean matchesTopic(final String bindingKey, final String routingKey) {
+    return matchesTopic(bindingKey.split("\\.", -1), 0, routingKey.split("\\.", -1), 0);
+  }
+
+  private static boolean matchesTopic(final String[] pattern, final int p, final String[] words,
+      final int w) {
+    if (p == pattern.length) {
+      return w == words.length;
+    }
+    if ("#".equals(pattern[p])) {
+      for (int i = w; i <= words.length; ++i) {
+        if (matchesTopic(pattern, p + 1, words, i)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (w == words.length) {
+      return false;
+    }
+    return ("*".equals(pattern[p]) || pattern[p].equals(words[w]))
+        && matchesTopic(pattern, p + 1, words, w + 1);
+  }
+
+  /**
+   * Match headers binding arguments against message headers, arguments starting with {@code x-}
+   * are not matched
+   */
+  static boolean matchesHeaders(final Map<String, Object> arguments,
+      final Map<String, Object> headers) {
+    final boolean any = "any".equals(String.valueOf(arguments.get("x-match")));
+    final Map<String, Object> actual = headers == null ? Collections.emptyMap() : headers;
+    boolean matchedAny = false;
+    for (final Map.Entry<String, Object> entry : arguments.entrySet()) {
+      if (entry.getKey().startsWith("x-")) {
+        continue;
+      }
+      final Object value = actual.get(entry.getKey());
+      // header values arrive as LongString, compare their text
+      final boolean matched = value != null
+          && (entry.getValue() == null || String.valueOf(entry.getValue())
+          .equals(String.valueOf(value)));
+      if (matched) {
+        matchedAny = true;
+      } else if (!any) {
+        return false;
+      }
+    }
+    return !any || matchedAny;
+  }
+
+  private static final class Binding {
+
+    private final BrokerQueue queue;
+
+    private final String routingKey;
+
+    private final Map<String, Object> arguments;
+
+    private Binding(final BrokerQueue queue, final String routingKey,
+        final Map<String, Object> arguments) {
+      this.queue = queue;
+      this.routingKey = routingKey == null ? "" : routingKey;
+      this.arguments = arguments == null ? Collections.emptyMap() : new HashMap<>(arguments);
+    }
+
+    private boolean matches(final Type type, final String key,
+        final Map<String, Object> headers) {
+      switch (type) {
+        case FANOUT:
+          return true;
+        case TOPIC:
+          return matchesTopic(routingKey, key);
+        case HEADERS:
+          return matchesHeaders(arguments, headers);
+        default:
+          return routingKey.equals(key);
+      }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final Binding that = (Binding) o;
+      return queue == that.queue && routingKey.equals(that.routingKey)
+          && arguments.equals(that.arguments);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(queue), routingKey, arguments);
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package io.hoplin.testkit;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+
+/**
+ * Message held by a {@link BrokerQueue}
+ */
+final class BrokerMessage {
+
+  private final String exchange;
+
+  private final String routingKey;
+
+  private final BasicProperties properties;
+
+  private final byte[] body;
+
+  private final boolean redelivered;
+
+  BrokerMessage(final String exchange, final String routingKey,
+      final BasicProperties properties, final byte[] body) {
+    this(exchange, routingKey, properties, body, false);
+  }
+
+  private BrokerMessage(final String exchange, final String routingKey,
+      final BasicProperties properties, final byte[] body, final boolean redelivered) {
+    this.exchange = exchange;
+    this.routingKey = routingKey;
+    this.properties = properties;
+    this.body = body;
+    this.redelivered = redelivered;
+  }
+
+  /**
+   * Copy of this message marked as delivered before
+   *
+   * @return redelivered message
+   */
+  BrokerMessage redelivered() {
+    return redelivered ? this : new BrokerMessage(exchange, routingKey, properties, body, true);
+  }
+
+  String getExchange() {
+    return exchange;
+  }
+
+  String getRoutingKey() {
+    return routingKey;
+  }
+
+  BasicProperties getProperties() {
+    return properties;
+  }
+
+  byte[] getBody() {
+    return body;
+  }
+
+  boolean isRedelivered() {
+    return redelivered;
+  }
+}
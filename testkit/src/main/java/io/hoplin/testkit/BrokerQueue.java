@@ -0,0 +1,172 @@
+package io.hoplin.testkit;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Queue of the {@link InMemoryBroker}. Messages are handed to consumers round-robin, a consumer is
+ * skipped while it or its channel holds as many unacknowledged deliveries as its prefetch allows.
+ */
+final class BrokerQueue {
+
+  private final String name;
+
+  private final boolean durable;
+
+  private final boolean autoDelete;
+
+  // connection owning an exclusive queue, null otherwise
+  private final InMemoryConnection owner;
+
+  private final Map<String, Object> arguments;
+
+  private final ArrayDeque<BrokerMessage> messages = new ArrayDeque<>();
+
+  private final List<BrokerConsumer> consumers = new ArrayList<>();
+
+  private int next;
+
+  private boolean deleted;
+
+  BrokerQueue(final String name, final boolean durable, final boolean autoDelete,
+      final InMemoryConnection owner, final Map<String, Object> arguments) {
+    this.name = Objects.requireNonNull(name);
+    this.durable = durable;
+    this.autoDelete = autoDelete;
+    this.owner = owner;
+    this.arguments = arguments == null ? Collections.emptyMap() : new HashMap<>(arguments);
+  }
+
+  /**
+   * Check if a redeclaration is equivalent to this queue
+   */
+  boolean isEquivalent(final boolean durable, final boolean exclusive, final boolean autoDelete) {
+    return this.durable == durable && (owner != null) == exclusive
+        && this.autoDelete == autoDelete;
+  }
+
+  synchronized void enqueue(final BrokerMessage message) {
+    if (deleted) {
+      return;
+    }
+    messages.addLast(message);
+    dispatch();
+  }
+
+  /**
+   * Delivery has been acknowledged, consumer is null for messages fetched with basic.get
+   */
+  synchronized void settle(final BrokerConsumer consumer) {
+    if (consumer != null) {
+      consumer.settled();
+    }
+    dispatch();
+  }
+
+  /**
+   * Delivery has been rejected with requeue or its channel closed, the message goes back to the
+   * head of the queue
+   */
+  synchronized void requeue(final BrokerConsumer consumer, final BrokerMessage message) {
+    if (consumer != null) {
+      consumer.settled();
+    }
+    if (!deleted) {
+      messages.addFirst(message.redelivered());
+    }
+    dispatch();
+  }
+
+  /**
+   * Dispatch again after a consumer gained capacity without a settled delivery of this queue
+   */
+  synchronized void resume() {
+    dispatch();
+  }
+
+  synchronized BrokerMessage poll() {
+    return messages.pollFirst();
+  }
+
+  synchronized void addConsumer(final BrokerConsumer consumer) {
+    consumers.add(consumer);
+    dispatch();
+  }
+
+  /**
+   * Remove consumer
+   *
+   * @return true when the queue should be deleted because it is auto-delete and lost its last
+   * consumer
+   */
+  synchronized boolean removeConsumer(final BrokerConsumer consumer) {
+    consumers.remove(consumer);
+    return autoDelete && consumers.isEmpty();
+  }
+
+  synchronized List<BrokerConsumer> delete() {
+    deleted = true;
+    messages.clear();
+    final List<BrokerConsumer> cancelled = new ArrayList<>(consumers);
+    consumers.clear();
+    return cancelled;
+  }
+
+  synchronized int purge() {
+    final int count = messages.size();
+    messages.clear();
+    return count;
+  }
+
+  synchronized int getMessageCount() {
+    return messages.size();
+  }
+
+  synchronized int getConsumerCount() {
+    return consumers.size();
+  }
+
+  String getName() {
+    return name;
+  }
+
+  InMemoryConnection getOwner() {
+    return owner;
+  }
+
+  Object getArgument(final String key) {
+    return arguments.get(key);
+  }
+
+  private void dispatch() {
+    while (!messages.isEmpty() && !consumers.isEmpty()) {
+      final int size = consumers.size();
+      BrokerConsumer target = null;
+      for (int i = 0; i < size; ++i) {
+        final BrokerConsumer candidate = consumers.get((next + i) % size);
+        if (candidate.hasCapacity()) {
+          target = candidate;
+          next = (next + i + 1) % size;
+          break;
+        }
+      }
+      if (target == null) {
+        return;
+      }
+
+      final BrokerMessage message = messages.pollFirst();
+      target.delivered();
+      if (!target.getChannel().deliver(target, this, message)) {
+        // channel closed under us, its consumers are removed by the close
+        target.settled();
+        messages.addFirst(message);
+        consumers.remove(target);
+      }
+    }
+  }
+}
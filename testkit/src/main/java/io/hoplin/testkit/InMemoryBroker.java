@@ -0,0 +1,448 @@
+package io.hoplin.testkit;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Connection;
+import io.hoplin.ConnectionRegistry;
+import io.hoplin.RabbitMQOptions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AMQP 0-9-1 broker living in the JVM, clients reach it through {@link #options()} instead of the
+ * network. Meant for load and end-to-end tests of the client where no RabbitMQ node is available.
+ * <p>
+ * Supported are direct, fanout, topic and headers exchanges, queues with per consumer and per
+ * channel prefetch, ack, nack and reject with requeue, dead letter exchanges, publisher confirms,
+ * mandatory returns, direct reply-to and connection blocking. Nothing is persisted, durability flags are only checked
+ * for equivalence on redeclaration. Like RabbitMQ, channels are closed with the AMQP reply code of
+ * an illegal operation, e.g. publishing to a missing exchange or acknowledging a delivery twice.
+ * </p>
+ *
+ * <pre>
+ *   InMemoryBroker broker = new InMemoryBroker();
+ *   ExchangeClient client = DirectExchangeClient.create(broker.options(), "exchange");
+ * </pre>
+ */
+public final class InMemoryBroker {
+
+  /**
+   * Pseudo queue of direct reply-to
+   */
+  public static final String DIRECT_REPLY_TO = "amq.rabbitmq.reply-to";
+
+  private final Map<String, BrokerExchange> exchanges = new ConcurrentHashMap<>();
+
+  private final Map<String, BrokerQueue> queues = new ConcurrentHashMap<>();
+
+  // reply-to addresses of channels consuming from direct reply-to
+  private final Map<String, InMemoryChannel> replyTo = new ConcurrentHashMap<>();
+
+  private final Set<InMemoryConnection> connections = ConcurrentHashMap.newKeySet();
+
+  private final AtomicInteger connectionIds = new AtomicInteger();
+
+  private final LongAdder published = new LongAdder();
+
+  private final LongAdder unroutable = new LongAdder();
+
+  private final ConnectionRegistry registry = new ConnectionRegistry(this::newConnection);
+
+  private volatile String blockedReason;
+
+  public InMemoryBroker() {
+    for (final String type : new String[]{"direct", "fanout", "topic", "headers"}) {
+      final BrokerExchange.Type exchangeType = BrokerExchange.Type.of(type);
+      exchanges.put("amq." + type, new BrokerExchange("amq." + type, exchangeType, true, false));
+    }
+    exchanges.put("amq.match", new BrokerExchange("amq.match", BrokerExchange.Type.HEADERS, true,
+        false));
+  }
+
+  /**
+   * Create client options connecting to this broker, connection settings like host and port are
+   * ignored
+   *
+   * @return new options
+   */
+  public RabbitMQOptions options() {
+    return new RabbitMQOptions().setConnectionRegistry(registry);
+  }
+
+  /**
+   * Get the registry clients of this broker share their connections through
+   *
+   * @return connection registry
+   */
+  public ConnectionRegistry getConnectionRegistry() {
+    return registry;
+  }
+
+  /**
+   * Open connection to this broker
+   *
+   * @param options the client options, client properties and requested channel max are honoured
+   * @return new connection
+   */
+  public Connection newConnection(final RabbitMQOptions options) {
+    Objects.requireNonNull(options);
+    final InMemoryConnection connection = new InMemoryConnection(this,
+        connectionIds.incrementAndGet(), options);
+    connections.add(connection);
+    final String reason = blockedReason;
+    if (reason != null) {
+      connection.blocked(reason);
+    }
+    return connection.getProxy();
+  }
+
+  /**
+   * Block publishing connections like a resource alarm of the broker would, the connections are
+   * notified through their {@link com.rabbitmq.client.BlockedListener}. Publishes are still
+   * accepted.
+   *
+   * @param reason the reason reported to the listeners
+   */
+  public void block(final String reason) {
+    Objects.requireNonNull(reason);
+    blockedReason = reason;
+    connections.forEach(connection -> connection.blocked(reason));
+  }
+
+  /**
+   * Lift the block set by {@link #block(String)}
+   */
+  public void unblock() {
+    blockedReason = null;
+    connections.forEach(InMemoryConnection::unblocked);
+  }
+
+  /**
+   * Force close all connections like a broker restart, clients see a connection shutdown not
+   * initiated by them
+   */
+  public void closeConnections() {
+    new ArrayList<>(connections).forEach(InMemoryConnection::forceClose);
+  }
+
+  /**
+   * Get number of messages ready for delivery
+   *
+   * @param queue the queue name
+   * @return ready messages
+   * @throws IllegalArgumentException when the queue does not exist
+   */
+  public int getMessageCount(final String queue) {
+    return existing(queue).getMessageCount();
+  }
+
+  /**
+   * Get number of consumers of a queue
+   *
+   * @param queue the queue name
+   * @return consumer count
+   * @throws IllegalArgumentException when the queue does not exist
+   */
+  public int getConsumerCount(final String queue) {
+    return existing(queue).getConsumerCount();
+  }
+
+  public boolean hasQueue(final String queue) {
+    return queues.containsKey(queue);
+  }
+
+  public boolean hasExchange(final String exchange) {
+    return exchanges.containsKey(exchange);
+  }
+
+  public int getConnectionCount() {
+    return connections.size();
+  }
+
+  /**
+   * Get number of messages published to this broker
+   *
+   * @return published messages
+   */
+  public long getPublishedCount() {
+    return published.sum();
+  }
+
+  /**
+   * Get number of published messages that were not routed to any queue
+   *
+   * @return dropped or returned messages
+   */
+  public long getUnroutableCount() {
+    return unroutable.sum();
+  }
+
+  private BrokerQueue existing(final String queue) {
+    final BrokerQueue found = queues.get(queue);
+    if (found == null) {
+      throw new IllegalArgumentException("Unknown queue : " + queue);
+    }
+    return found;
+  }
+
+  synchronized void declareExchange(final String name, final String type,
+      final boolean durable, final boolean autoDelete) {
+    if (name.isEmpty()) {
+      throw new BrokerException(BrokerException.ACCESS_REFUSED,
+          "ACCESS_REFUSED - operation not permitted on the default exchange");
+    }
+    if (name.startsWith("amq.") && !exchanges.containsKey(name)) {
+      throw new BrokerException(BrokerException.ACCESS_REFUSED,
+          "ACCESS_REFUSED - exchange name '" + name + "' contains reserved prefix 'amq.*'");
+    }
+
+    final BrokerExchange.Type exchangeType = BrokerExchange.Type.of(type);
+    if (exchangeType == null) {
+      throw new BrokerException(BrokerException.COMMAND_INVALID,
+          "COMMAND_INVALID - unknown exchange type '" + type + "'");
+    }
+
+    final BrokerExchange existing = exchanges.get(name);
+    if (existing == null) {
+      exchanges.put(name, new BrokerExchange(name, exchangeType, durable, autoDelete));
+    } else if (!existing.isEquivalent(exchangeType, durable, autoDelete)) {
+      throw new BrokerException(BrokerException.PRECONDITION_FAILED,
+          "PRECONDITION_FAILED - inequivalent arg for exchange '" + name + "' in vhost '/'");
+    }
+  }
+
+  void exchange(final String name) {
+    if (!name.isEmpty() && !exchanges.containsKey(name)) {
+      throw BrokerException.notFound("exchange", name);
+    }
+  }
+
+  synchronized void deleteExchange(final String name, final boolean ifUnused) {
+    final BrokerExchange exchange = exchanges.get(name);
+    if (exchange == null) {
+      return;
+    }
+    if (ifUnused && exchange.hasBindings()) {
+      throw new BrokerException(BrokerException.PRECONDITION_FAILED,
+          "PRECONDITION_FAILED - exchange '" + name + "' in use");
+    }
+    exchanges.remove(name);
+  }
+
+  synchronized BrokerQueue declareQueue(final String requested, final boolean durable,
+      final boolean exclusive, final boolean autoDelete, final Map<String, Object> arguments,
+      final InMemoryConnection connection) {
+    final String name = requested == null || requested.isEmpty()
+        ? "amq.gen-" + UUID.randomUUID() : requested;
+    if (requested != null && requested.startsWith("amq.")) {
+      throw new BrokerException(BrokerException.ACCESS_REFUSED,
+          "ACCESS_REFUSED - queue name '" + name + "' contains reserved prefix 'amq.*'");
+    }
+
+    final BrokerQueue existing = queues.get(name);
+    if (existing != null) {
+      checkOwner(existing, connection);
+      if (!existing.isEquivalent(durable, exclusive, autoDelete)) {
+        throw new BrokerException(BrokerException.PRECONDITION_FAILED,
+            "PRECONDITION_FAILED - inequivalent arg for queue '" + name + "' in vhost '/'");
+      }
+      return existing;
+    }
+
+    final BrokerQueue queue = new BrokerQueue(name, durable, autoDelete,
+        exclusive ? connection : null, arguments);
+    queues.put(name, queue);
+    return queue;
+  }
+
+  BrokerQueue queue(final String name, final InMemoryConnection connection) {
+    final BrokerQueue queue = queues.get(name);
+    if (queue == null) {
+      throw BrokerException.notFound("queue", name);
+    }
+    checkOwner(queue, connection);
+    return queue;
+  }
+
+  private static void checkOwner(final BrokerQueue queue, final InMemoryConnection connection) {
+    if (queue.getOwner() != null && queue.getOwner() != connection) {
+      throw new BrokerException(BrokerException.RESOURCE_LOCKED,
+          "RESOURCE_LOCKED - cannot obtain exclusive access to locked queue '"
+              + queue.getName() + "' in vhost '/'");
+    }
+  }
+
+  synchronized int deleteQueue(final String name, final boolean ifUnused, final boolean ifEmpty) {
+    final BrokerQueue queue = queues.get(name);
+    if (queue == null) {
+      return 0;
+    }
+    if (ifUnused && queue.getConsumerCount() > 0) {
+      throw new BrokerException(BrokerException.PRECONDITION_FAILED,
+          "PRECONDITION_FAILED - queue '" + name + "' in use");
+    }
+    if (ifEmpty && queue.getMessageCount() > 0) {
+      throw new BrokerException(BrokerException.PRECONDITION_FAILED,
+          "PRECONDITION_FAILED - queue '" + name + "' not empty");
+    }
+    return remove(queue);
+  }
+
+  /**
+   * Delete queue once its last consumer is gone, called for auto-delete queues
+   */
+  synchronized void deleteUnused(final BrokerQueue queue) {
+    if (queues.get(queue.getName()) == queue && queue.getConsumerCount() == 0) {
+      remove(queue);
+    }
+  }
+
+  private int remove(final BrokerQueue queue) {
+    queues.remove(queue.getName());
+    for (final BrokerExchange exchange : new ArrayList<>(exchanges.values())) {
+      exchange.unbindAll(queue);
+      if (exchange.isAutoDelete() && !exchange.hasBindings()) {
+        exchanges.remove(exchange.getName());
+      }
+    }
+
+    final int count = queue.getMessageCount();
+    for (final BrokerConsumer consumer : queue.delete()) {
+      consumer.getChannel().cancelled(consumer);
+    }
+    return count;
+  }
+
+  synchronized void bind(final String queue, final String exchange, final String routingKey,
+      final Map<String, Object> arguments, final InMemoryConnection connection) {
+    final BrokerQueue target = queue(queue, connection);
+    if (exchange.isEmpty()) {
+      throw new BrokerException(BrokerException.ACCESS_REFUSED,
+          "ACCESS_REFUSED - operation not permitted on the default exchange");
+    }
+    final BrokerExchange source = exchanges.get(exchange);
+    if (source == null) {
+      throw BrokerException.notFound("exchange", exchange);
+    }
+    source.bind(target, routingKey, arguments);
+  }
+
+  synchronized void unbind(final String queue, final String exchange, final String routingKey,
+      final Map<String, Object> arguments, final InMemoryConnection connection) {
+    final BrokerQueue target = queue(queue, connection);
+    final BrokerExchange source = exchanges.get(exchange);
+    if (source == null) {
+      throw BrokerException.notFound("exchange", exchange);
+    }
+    source.unbind(target, routingKey, arguments);
+    if (source.isAutoDelete() && !source.hasBindings()) {
+      exchanges.remove(exchange);
+    }
+  }
+
+  /**
+   * Route message to the queues bound to the exchange
+   *
+   * @return true when at least one queue received the message
+   */
+  boolean publish(final String exchange, final String routingKey,
+      final BasicProperties properties, final byte[] body) {
+    published.increment();
+    final BrokerMessage message = new BrokerMessage(exchange, routingKey, properties, body);
+
+    if (exchange.isEmpty()) {
+      final InMemoryChannel replyChannel = routingKey.startsWith(DIRECT_REPLY_TO + ".")
+          ? replyTo.get(routingKey) : null;
+      if (replyChannel != null) {
+        return replyChannel.deliverReply(message);
+      }
+      final BrokerQueue queue = queues.get(routingKey);
+      if (queue == null) {
+        unroutable.increment();
+        return false;
+      }
+      queue.enqueue(message);
+      return true;
+    }
+
+    final BrokerExchange target = exchanges.get(exchange);
+    if (target == null) {
+      throw BrokerException.notFound("exchange", exchange);
+    }
+
+    final List<BrokerQueue> matched = new ArrayList<>(2);
+    target.route(routingKey, properties.getHeaders(), matched);
+    if (matched.isEmpty()) {
+      unroutable.increment();
+      return false;
+    }
+    // a queue bound with several matching keys receives the message once
+    for (int i = 0; i < matched.size(); ++i) {
+      final BrokerQueue queue = matched.get(i);
+      if (matched.indexOf(queue) == i) {
+        queue.enqueue(message);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Republish message rejected without requeue to the dead letter exchange of its queue
+   */
+  void deadLetter(final BrokerQueue queue, final BrokerMessage message) {
+    final Object exchange = queue.getArgument("x-dead-letter-exchange");
+    if (exchange == null) {
+      return;
+    }
+    final Object key = queue.getArgument("x-dead-letter-routing-key");
+    final String routingKey = key == null ? message.getRoutingKey() : key.toString();
+
+    final Map<String, Object> death = new HashMap<>();
+    death.put("queue", queue.getName());
+    death.put("reason", "rejected");
+    death.put("count", 1L);
+    death.put("exchange", message.getExchange());
+    death.put("routing-keys", Collections.singletonList(message.getRoutingKey()));
+    final Map<String, Object> headers = message.getProperties().getHeaders() == null
+        ? new HashMap<>() : new HashMap<>(message.getProperties().getHeaders());
+    final List<Object> deaths = new ArrayList<>();
+    deaths.add(death);
+    headers.put("x-death", deaths);
+
+    try {
+      publish(exchange.toString(), routingKey,
+          message.getProperties().builder().headers(headers).build(), message.getBody());
+    } catch (final BrokerException e) {
+      // RabbitMQ silently drops messages dead lettered to a missing exchange
+      unroutable.increment();
+    }
+  }
+
+  void registerReplyTo(final String address, final InMemoryChannel channel) {
+    replyTo.put(address, channel);
+  }
+
+  void unregisterReplyTo(final String address) {
+    replyTo.remove(address);
+  }
+
+  /**
+   * Connection closed, its exclusive queues are deleted
+   */
+  synchronized void closed(final InMemoryConnection connection) {
+    connections.remove(connection);
+    for (final BrokerQueue queue : new ArrayList<>(queues.values())) {
+      if (queue.getOwner() == connection) {
+        remove(queue);
+      }
+    }
+  }
+}
@@ -0,0 +1,918 @@
+package io.hoplin.testkit;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.CancelCallback;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmCallback;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.ConsumerShutdownSignalCallback;
+import com.rabbitmq.client.DeliverCallback;
+import com.rabbitmq.client.Delivery;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import com.rabbitmq.client.Return;
+import com.rabbitmq.client.ReturnCallback;
+import com.rabbitmq.client.ReturnListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import com.rabbitmq.client.impl.AMQImpl;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link Channel} to the {@link InMemoryBroker}. Deliveries run on a single thread per channel so
+ * consumers see them in the order the broker dispatched them, like with the default consumer work
+ * pool of the Java client.
+ */
+final class InMemoryChannel implements InvocationHandler {
+
+  private static final Logger log = LoggerFactory.getLogger(InMemoryChannel.class);
+
+  private final InMemoryConnection connection;
+
+  private final InMemoryBroker broker;
+
+  private final int number;
+
+  private final Channel proxy;
+
+  private final Map<String, BrokerConsumer> consumers = new ConcurrentHashMap<>();
+
+  // unacknowledged deliveries by delivery tag
+  private final NavigableMap<Long, Unacked> unacked = new ConcurrentSkipListMap<>();
+
+  private final AtomicLong deliveryTags = new AtomicLong();
+
+  private final AtomicLong publishSeqNo = new AtomicLong();
+
+  private final List<ConfirmListener> confirmListeners = new CopyOnWriteArrayList<>();
+
+  private final List<ReturnListener> returnListeners = new CopyOnWriteArrayList<>();
+
+  private final List<ShutdownListener> shutdownListeners = new CopyOnWriteArrayList<>();
+
+  // guards the delivery executor and close against in-flight deliveries
+  private final Object deliveryLock = new Object();
+
+  private final Object confirmLock = new Object();
+
+  private ExecutorService deliveries;
+
+  private volatile ShutdownSignalException closeReason;
+
+  private volatile int prefetch;
+
+  // unacknowledged deliveries allowed across all consumers of the channel, 0 for no limit
+  private volatile int globalPrefetch;
+
+  // unacknowledged consumer deliveries, counted by the consumers against the global prefetch
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private volatile boolean confirms;
+
+  private long unconfirmed;
+
+  private volatile String lastQueue;
+
+  private volatile String replyAddress;
+
+  private volatile String replyTag;
+
+  private volatile Consumer replyConsumer;
+
+  InMemoryChannel(final InMemoryConnection connection, final int number) {
+    this.connection = connection;
+    this.broker = connection.getBroker();
+    this.number = number;
+    this.proxy = (Channel) Proxy.newProxyInstance(InMemoryChannel.class.getClassLoader(),
+        new Class<?>[]{Channel.class}, this);
+  }
+
+  Channel getProxy() {
+    return proxy;
+  }
+
+  int getNumber() {
+    return number;
+  }
+
+  /**
+   * Hand message to a consumer of this channel, called by the queue while it holds its lock
+   *
+   * @return false when the channel is closed and the message stays in the queue
+   */
+  boolean deliver(final BrokerConsumer consumer, final BrokerQueue queue,
+      final BrokerMessage message) {
+    synchronized (deliveryLock) {
+      if (closeReason != null) {
+        return false;
+      }
+      final long tag = deliveryTags.incrementAndGet();
+      if (!consumer.isAutoAck()) {
+        unacked.put(tag, new Unacked(consumer, queue, message));
+      }
+      final Envelope envelope = new Envelope(tag, message.isRedelivered(),
+          message.getExchange(), message.getRoutingKey());
+      final BasicProperties properties = wire(message.getProperties());
+      execute(() -> consumer.getConsumer()
+          .handleDelivery(consumer.getTag(), envelope, properties, message.getBody()));
+      return true;
+    }
+  }
+
+  boolean hasCapacity() {
+    final int limit = globalPrefetch;
+    return limit == 0 || inFlight.get() < limit;
+  }
+
+  void delivered() {
+    inFlight.incrementAndGet();
+  }
+
+  void settled() {
+    inFlight.decrementAndGet();
+  }
+
+  /**
+   * Hand reply published to the direct reply-to address of this channel to its reply consumer
+   *
+   * @return false when the channel no longer consumes replies
+   */
+  boolean deliverReply(final BrokerMessage message) {
+    synchronized (deliveryLock) {
+      final Consumer consumer = replyConsumer;
+      if (closeReason != null || consumer == null) {
+        return false;
+      }
+      final String tag = replyTag;
+      final Envelope envelope = new Envelope(deliveryTags.incrementAndGet(), false,
+          message.getExchange(), message.getRoutingKey());
+      final BasicProperties properties = wire(message.getProperties());
+      execute(() -> consumer.handleDelivery(tag, envelope, properties, message.getBody()));
+      return true;
+    }
+  }
+
+  /**
+   * Consumer cancelled by the broker because its queue was deleted
+   */
+  void cancelled(final BrokerConsumer consumer) {
+    if (consumers.remove(consumer.getTag(), consumer)) {
+      synchronized (deliveryLock) {
+        execute(() -> consumer.getConsumer().handleCancel(consumer.getTag()));
+      }
+    }
+  }
+
+  void connectionClosed(final ShutdownSignalException reason) {
+    close(reason, false);
+  }
+
+  // callers hold the delivery lock
+  private void execute(final Task task) {
+    if (deliveries == null) {
+      deliveries = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable,
+            "in-memory-broker-consumer-" + connection.getNumber() + "-" + number);
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    try {
+      deliveries.execute(() -> {
+        try {
+          task.run();
+        } catch (final Exception e) {
+          log.warn("Consumer failed on channel #{}", number, e);
+        }
+      });
+    } catch (final RejectedExecutionException e) {
+      log.debug("Channel #{} closed, dropping consumer callback", number);
+    }
+  }
+
+  private void ensureOpen() {
+    final ShutdownSignalException reason = closeReason;
+    if (reason != null) {
+      throw new AlreadyClosedException(reason);
+    }
+  }
+
+  /**
+   * Close channel because of an illegal operation and fail the calling method like the blocking
+   * RPC of the Java client does
+   */
+  private IOException fail(final BrokerException e) {
+    closeByBroker(e);
+    return new IOException(closeReason);
+  }
+
+  private void closeByBroker(final BrokerException e) {
+    close(new ShutdownSignalException(false, false,
+        new AMQImpl.Channel.Close(e.getReplyCode(), e.getMessage(), 0, 0), proxy), true);
+  }
+
+  private void close(final ShutdownSignalException reason, final boolean detach) {
+    final List<Unacked> pending;
+    final List<BrokerConsumer> removed;
+    final Map<String, Consumer> signalled = new LinkedHashMap<>();
+    synchronized (deliveryLock) {
+      if (closeReason != null) {
+        return;
+      }
+      closeReason = reason;
+      pending = new ArrayList<>(unacked.descendingMap().values());
+      unacked.clear();
+      removed = new ArrayList<>(consumers.values());
+      consumers.clear();
+      for (final BrokerConsumer consumer : removed) {
+        signalled.put(consumer.getTag(), consumer.getConsumer());
+      }
+      if (replyConsumer != null) {
+        signalled.put(replyTag, replyConsumer);
+      }
+    }
+
+    for (final BrokerConsumer consumer : removed) {
+      if (consumer.getQueue().removeConsumer(consumer)) {
+        broker.deleteUnused(consumer.getQueue());
+      }
+    }
+    if (replyAddress != null) {
+      broker.unregisterReplyTo(replyAddress);
+    }
+    // descending tags, the oldest delivery ends up at the head of its queue
+    for (final Unacked delivery : pending) {
+      delivery.queue.requeue(delivery.consumer, delivery.message);
+    }
+
+    synchronized (deliveryLock) {
+      if (deliveries != null) {
+        signalled.forEach((tag, consumer) -> execute(
+            () -> consumer.handleShutdownSignal(tag, reason)));
+        deliveries.shutdown();
+      }
+    }
+
+    synchronized (confirmLock) {
+      confirmLock.notifyAll();
+    }
+    if (detach) {
+      connection.channelClosed(this);
+    }
+    connection.callback(() -> {
+      for (final ShutdownListener listener : shutdownListeners) {
+        listener.shutdownCompleted(reason);
+      }
+    });
+  }
+
+  private void publish(final String exchange, final String routingKey, final boolean mandatory,
+      final BasicProperties props, final byte[] payload) {
+    ensureOpen();
+    BasicProperties properties = props == null ? new BasicProperties() : props;
+    if (InMemoryBroker.DIRECT_REPLY_TO.equals(properties.getReplyTo())) {
+      if (replyAddress == null) {
+        closeByBroker(new BrokerException(BrokerException.PRECONDITION_FAILED,
+            "PRECONDITION_FAILED - fast reply consumer does not exist"));
+        return;
+      }
+      properties = properties.builder().replyTo(replyAddress).build();
+    }
+
+    final long seqNo = confirms ? publishSeqNo.getAndIncrement() : 0;
+    if (confirms) {
+      synchronized (confirmLock) {
+        ++unconfirmed;
+      }
+    }
+
+    final byte[] body = payload == null ? new byte[0] : payload.clone();
+    final boolean routed;
+    try {
+      routed = broker.publish(exchange, routingKey, properties, body);
+    } catch (final BrokerException e) {
+      // publishing is asynchronous, the client learns about the error through the channel close
+      closeByBroker(e);
+      return;
+    }
+
+    if (!routed && mandatory) {
+      final BasicProperties returned = wire(properties);
+      connection.callback(() -> {
+        for (final ReturnListener listener : returnListeners) {
+          try {
+            listener.handleReturn(312, "NO_ROUTE", exchange, routingKey, returned, body);
+          } catch (final IOException e) {
+            log.warn("Return listener failed", e);
+          }
+        }
+      });
+    }
+    if (seqNo > 0) {
+      connection.callback(() -> {
+        try {
+          for (final ConfirmListener listener : confirmListeners) {
+            try {
+              listener.handleAck(seqNo, false);
+            } catch (final IOException e) {
+              log.warn("Confirm listener failed", e);
+            }
+          }
+        } finally {
+          synchronized (confirmLock) {
+            --unconfirmed;
+            confirmLock.notifyAll();
+          }
+        }
+      });
+    }
+  }
+
+  private String consume(final Object[] args) throws IOException {
+    ensureOpen();
+    final String queueName = (String) args[0];
+    Boolean autoAck = null;
+    String consumerTag = null;
+    Consumer consumer = null;
+    DeliverCallback deliverCallback = null;
+    CancelCallback cancelCallback = null;
+    ConsumerShutdownSignalCallback shutdownCallback = null;
+    for (int i = 1; i < args.length; ++i) {
+      final Object arg = args[i];
+      if (arg instanceof Boolean && autoAck == null) {
+        autoAck = (Boolean) arg;
+      } else if (arg instanceof String) {
+        consumerTag = (String) arg;
+      } else if (arg instanceof Consumer) {
+        consumer = (Consumer) arg;
+      } else if (arg instanceof DeliverCallback) {
+        deliverCallback = (DeliverCallback) arg;
+      } else if (arg instanceof CancelCallback) {
+        cancelCallback = (CancelCallback) arg;
+      } else if (arg instanceof ConsumerShutdownSignalCallback) {
+        shutdownCallback = (ConsumerShutdownSignalCallback) arg;
+      }
+    }
+    if (consumer == null) {
+      consumer = new CallbackConsumer(deliverCallback, cancelCallback, shutdownCallback);
+    }
+    final boolean ack = autoAck != null && autoAck;
+    final String tag = consumerTag == null || consumerTag.isEmpty()
+        ? "amq.ctag-" + UUID.randomUUID() : consumerTag;
+
+    try {
+      if (consumers.containsKey(tag) || tag.equals(replyTag)) {
+        throw new BrokerException(BrokerException.NOT_ALLOWED,
+            "NOT_ALLOWED - attempt to reuse consumer tag '" + tag + "'");
+      }
+
+      if (InMemoryBroker.DIRECT_REPLY_TO.equals(queueName)) {
+        if (!ack) {
+          throw new BrokerException(BrokerException.PRECONDITION_FAILED,
+              "PRECONDITION_FAILED - reply consumer cannot acknowledge");
+        }
+        if (replyAddress != null) {
+          throw new BrokerException(BrokerException.PRECONDITION_FAILED,
+              "PRECONDITION_FAILED - reply consumer already set");
+        }
+        final String address = InMemoryBroker.DIRECT_REPLY_TO + "." + connection.getNumber()
+            + "." + number;
+        final Consumer reply = consumer;
+        synchronized (deliveryLock) {
+          replyTag = tag;
+          replyConsumer = reply;
+          replyAddress = address;
+          execute(() -> reply.handleConsumeOk(tag));
+        }
+        broker.registerReplyTo(address, this);
+        return tag;
+      }
+
+      final String name = queueName.isEmpty() && lastQueue != null ? lastQueue : queueName;
+      final BrokerQueue queue = broker.queue(name, connection);
+      final BrokerConsumer registered = new BrokerConsumer(tag, this, queue, consumer, ack,
+          prefetch);
+      consumers.put(tag, registered);
+      final Consumer target = consumer;
+      synchronized (deliveryLock) {
+        execute(() -> target.handleConsumeOk(tag));
+      }
+      queue.addConsumer(registered);
+      return tag;
+    } catch (final BrokerException e) {
+      throw fail(e);
+    }
+  }
+
+  private void cancel(final String tag) throws IOException {
+    ensureOpen();
+    if (tag.equals(replyTag)) {
+      final Consumer consumer = replyConsumer;
+      broker.unregisterReplyTo(replyAddress);
+      synchronized (deliveryLock) {
+        replyConsumer = null;
+        replyAddress = null;
+        replyTag = null;
+        execute(() -> consumer.handleCancelOk(tag));
+      }
+      return;
+    }
+
+    final BrokerConsumer consumer = consumers.remove(tag);
+    if (consumer == null) {
+      throw new IOException("Unknown consumerTag");
+    }
+    if (consumer.getQueue().removeConsumer(consumer)) {
+      broker.deleteUnused(consumer.getQueue());
+    }
+    synchronized (deliveryLock) {
+      execute(() -> consumer.getConsumer().handleCancelOk(tag));
+    }
+  }
+
+  /**
+   * Settle unacknowledged deliveries
+   *
+   * @param tag      the delivery tag, with multiple 0 settles everything outstanding
+   * @param multiple settle all deliveries up to and including the tag
+   * @param ack      acknowledge, otherwise reject
+   * @param requeue  put rejected messages back, otherwise dead letter them
+   */
+  private void settle(final long tag, final boolean multiple, final boolean ack,
+      final boolean requeue) {
+    ensureOpen();
+    final List<Unacked> settled = new ArrayList<>();
+    if (multiple) {
+      if (tag != 0 && !unacked.containsKey(tag)) {
+        unknownDeliveryTag(tag);
+        return;
+      }
+      final NavigableMap<Long, Unacked> head = tag == 0 ? unacked : unacked.headMap(tag, true);
+      // reject in descending order so requeued messages keep their order
+      for (final Long key : new ArrayList<>(head.descendingKeySet())) {
+        final Unacked delivery = unacked.remove(key);
+        if (delivery != null) {
+          settled.add(delivery);
+        }
+      }
+    } else {
+      final Unacked delivery = unacked.remove(tag);
+      if (delivery == null) {
+        unknownDeliveryTag(tag);
+        return;
+      }
+      settled.add(delivery);
+    }
+
+    for (final Unacked delivery : settled) {
+      if (ack) {
+        delivery.queue.settle(delivery.consumer);
+      } else if (requeue) {
+        delivery.queue.requeue(delivery.consumer, delivery.message);
+      } else {
+        delivery.queue.settle(delivery.consumer);
+        broker.deadLetter(delivery.queue, delivery.message);
+      }
+    }
+    if (globalPrefetch != 0) {
+      // capacity freed by one queue may be taken by the consumers of another
+      resumeConsumers();
+    }
+  }
+
+  private void resumeConsumers() {
+    for (final BrokerConsumer consumer : consumers.values()) {
+      consumer.getQueue().resume();
+    }
+  }
+
+  private void unknownDeliveryTag(final long tag) {
+    closeByBroker(new BrokerException(BrokerException.PRECONDITION_FAILED,
+        "PRECONDITION_FAILED - unknown delivery tag " + tag));
+  }
+
+  private void recover() {
+    ensureOpen();
+    for (final Long key : new ArrayList<>(unacked.descendingKeySet())) {
+      final Unacked delivery = unacked.remove(key);
+      if (delivery != null) {
+        delivery.queue.requeue(delivery.consumer, delivery.message);
+      }
+    }
+  }
+
+  private GetResponse get(final String queueName, final boolean autoAck) throws IOException {
+    ensureOpen();
+    try {
+      final BrokerQueue queue = broker.queue(queueName, connection);
+      final BrokerMessage message = queue.poll();
+      if (message == null) {
+        return null;
+      }
+      final long tag = deliveryTags.incrementAndGet();
+      if (!autoAck) {
+        unacked.put(tag, new Unacked(null, queue, message));
+      }
+      return new GetResponse(new Envelope(tag, message.isRedelivered(), message.getExchange(),
+          message.getRoutingKey()), wire(message.getProperties()), message.getBody(),
+          queue.getMessageCount());
+    } catch (final BrokerException e) {
+      throw fail(e);
+    }
+  }
+
+  private boolean waitForConfirms(final long timeout) throws InterruptedException,
+      TimeoutException {
+    if (!confirms) {
+      throw new IllegalStateException("Confirms not selected");
+    }
+    final long deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout)
+        : Long.MAX_VALUE;
+    synchronized (confirmLock) {
+      while (unconfirmed > 0) {
+        ensureOpen();
+        final long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          throw new TimeoutException();
+        }
+        TimeUnit.NANOSECONDS.timedWait(confirmLock, remaining);
+      }
+    }
+    ensureOpen();
+    return true;
+  }
+
+  @Override
+  public Object invoke(final Object proxy, final Method method, final Object[] args)
+      throws Throwable {
+    final String name = method.getName();
+    final int arity = args == null ? 0 : args.length;
+    final boolean noWait = name.endsWith("NoWait");
+    switch (name) {
+      case "basicPublish":
+        publish((String) args[0], (String) args[1], arity > 4 && (Boolean) args[2],
+            (BasicProperties) args[arity - 2], (byte[]) args[arity - 1]);
+        return null;
+      case "basicConsume":
+        return consume(args);
+      case "basicCancel":
+        cancel((String) args[0]);
+        return null;
+      case "basicAck":
+        settle((Long) args[0], (Boolean) args[1], true, false);
+        return null;
+      case "basicNack":
+        settle((Long) args[0], (Boolean) args[1], false, (Boolean) args[2]);
+        return null;
+      case "basicReject":
+        settle((Long) args[0], false, false, (Boolean) args[1]);
+        return null;
+      case "basicRecover":
+        recover();
+        return new AMQImpl.Basic.RecoverOk();
+      case "basicGet":
+        return get((String) args[0], (Boolean) args[1]);
+      case "basicQos":
+        ensureOpen();
+        final int prefetchCount = (Integer) args[arity == 3 ? 1 : 0];
+        if (arity > 1 && (Boolean) args[arity - 1]) {
+          // shared by the consumers of the channel and applied right away
+          globalPrefetch = prefetchCount;
+          resumeConsumers();
+        } else {
+          // applies to consumers started afterwards
+          prefetch = prefetchCount;
+        }
+        return null;
+      case "confirmSelect":
+        ensureOpen();
+        confirms = true;
+        publishSeqNo.compareAndSet(0, 1);
+        return new AMQImpl.Confirm.SelectOk();
+      case "getNextPublishSeqNo":
+        return publishSeqNo.get();
+      case "waitForConfirms":
+        return waitForConfirms(arity == 0 ? 0 : (Long) args[0]);
+      case "waitForConfirmsOrDie":
+        waitForConfirms(arity == 0 ? 0 : (Long) args[0]);
+        return null;
+      case "addConfirmListener":
+        final ConfirmListener confirmListener = arity == 1 ? (ConfirmListener) args[0]
+            : confirmListener((ConfirmCallback) args[0], (ConfirmCallback) args[1]);
+        confirmListeners.add(confirmListener);
+        return arity == 1 ? null : confirmListener;
+      case "removeConfirmListener":
+        return confirmListeners.remove(args[0]);
+      case "clearConfirmListeners":
+        confirmListeners.clear();
+        return null;
+      case "addReturnListener":
+        final ReturnListener returnListener = args[0] instanceof ReturnListener
+            ? (ReturnListener) args[0] : returnListener((ReturnCallback) args[0]);
+        returnListeners.add(returnListener);
+        return args[0] instanceof ReturnListener ? null : returnListener;
+      case "removeReturnListener":
+        return returnListeners.remove(args[0]);
+      case "clearReturnListeners":
+        returnListeners.clear();
+        return null;
+      case "exchangeDeclare":
+      case "exchangeDeclareNoWait":
+        final String type = args[1] instanceof BuiltinExchangeType
+            ? ((BuiltinExchangeType) args[1]).getType() : (String) args[1];
+        final boolean durable = arity > 2 && (Boolean) args[2];
+        final boolean autoDelete = arity > 3 && args[3] instanceof Boolean && (Boolean) args[3];
+        return call(noWait, () -> broker.declareExchange((String) args[0], type, durable,
+            autoDelete), new AMQImpl.Exchange.DeclareOk());
+      case "exchangeDeclarePassive":
+        return call(false, () -> broker.exchange((String) args[0]),
+            new AMQImpl.Exchange.DeclareOk());
+      case "exchangeDelete":
+      case "exchangeDeleteNoWait":
+        final boolean ifUnused = arity > 1 && (Boolean) args[1];
+        return call(noWait, () -> broker.deleteExchange((String) args[0], ifUnused),
+            new AMQImpl.Exchange.DeleteOk());
+      case "queueDeclare":
+      case "queueDeclareNoWait":
+        return declareQueue(args, noWait);
+      case "queueDeclarePassive":
+        ensureOpen();
+        try {
+          final BrokerQueue queue = broker.queue((String) args[0], connection);
+          return new AMQImpl.Queue.DeclareOk(queue.getName(), queue.getMessageCount(),
+              queue.getConsumerCount());
+        } catch (final BrokerException e) {
+          throw fail(e);
+        }
+      case "queueDelete":
+      case "queueDeleteNoWait":
+        ensureOpen();
+        try {
+          final int count = broker.deleteQueue((String) args[0], arity > 1 && (Boolean) args[1],
+              arity > 2 && (Boolean) args[2]);
+          return noWait ? null : new AMQImpl.Queue.DeleteOk(count);
+        } catch (final BrokerException e) {
+          return fail(noWait, e);
+        }
+      case "queueBind":
+      case "queueBindNoWait":
+        return call(noWait, () -> broker.bind(queueName((String) args[0]), (String) args[1],
+            (String) args[2], arguments(args, 3), connection), new AMQImpl.Queue.BindOk());
+      case "queueUnbind":
+        return call(false, () -> broker.unbind(queueName((String) args[0]), (String) args[1],
+            (String) args[2], arguments(args, 3), connection), new AMQImpl.Queue.UnbindOk());
+      case "queuePurge":
+        ensureOpen();
+        try {
+          return new AMQImpl.Queue.PurgeOk(broker.queue((String) args[0], connection).purge());
+        } catch (final BrokerException e) {
+          throw fail(e);
+        }
+      case "messageCount":
+      case "consumerCount":
+        ensureOpen();
+        try {
+          final BrokerQueue queue = broker.queue((String) args[0], connection);
+          return (long) ("messageCount".equals(name) ? queue.getMessageCount()
+              : queue.getConsumerCount());
+        } catch (final BrokerException e) {
+          throw fail(e);
+        }
+      case "close":
+      case "abort":
+        final int code = arity == 0 ? 200 : (Integer) args[0];
+        final String text = arity == 0 ? "OK" : (String) args[1];
+        if ("close".equals(name)) {
+          ensureOpen();
+        }
+        close(new ShutdownSignalException(false, true,
+            new AMQImpl.Channel.Close(code, text, 0, 0), proxy), true);
+        return null;
+      case "isOpen":
+        return closeReason == null;
+      case "getCloseReason":
+        return closeReason;
+      case "getChannelNumber":
+        return number;
+      case "getConnection":
+        return connection.getProxy();
+      case "addShutdownListener":
+        final ShutdownListener listener = (ShutdownListener) args[0];
+        final ShutdownSignalException reason = closeReason;
+        if (reason != null) {
+          listener.shutdownCompleted(reason);
+        } else {
+          shutdownListeners.add(listener);
+        }
+        return null;
+      case "removeShutdownListener":
+        shutdownListeners.remove(args[0]);
+        return null;
+      case "notifyListeners":
+      case "setDefaultConsumer":
+        return null;
+      case "getDefaultConsumer":
+        return null;
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "equals":
+        return proxy == args[0];
+      case "toString":
+        return "InMemoryChannel#" + connection.getNumber() + "." + number;
+      default:
+        throw new UnsupportedOperationException(
+            "Not supported by the in-memory broker : Channel." + name);
+    }
+  }
+
+  private Object declareQueue(final Object[] args, final boolean noWait) throws IOException {
+    ensureOpen();
+    final boolean serverNamed = args == null;
+    try {
+      final BrokerQueue queue = serverNamed
+          ? broker.declareQueue("", false, true, true, null, connection)
+          : broker.declareQueue((String) args[0], (Boolean) args[1], (Boolean) args[2],
+              (Boolean) args[3], arguments(args, 4), connection);
+      lastQueue = queue.getName();
+      return noWait ? null : new AMQImpl.Queue.DeclareOk(queue.getName(),
+          queue.getMessageCount(), queue.getConsumerCount());
+    } catch (final BrokerException e) {
+      return fail(noWait, e);
+    }
+  }
+
+  private String queueName(final String name) {
+    return name.isEmpty() && lastQueue != null ? lastQueue : name;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> arguments(final Object[] args, final int index) {
+    return args.length > index ? (Map<String, Object>) args[index] : null;
+  }
+
+  /**
+   * Run broker operation, failures of a no-wait method close the channel without failing the
+   * caller
+   */
+  private Object call(final boolean noWait, final Runnable operation, final Object ok)
+      throws IOException {
+    ensureOpen();
+    try {
+      operation.run();
+      return noWait ? null : ok;
+    } catch (final BrokerException e) {
+      return fail(noWait, e);
+    }
+  }
+
+  private Object fail(final boolean noWait, final BrokerException e) throws IOException {
+    if (noWait) {
+      closeByBroker(e);
+      return null;
+    }
+    throw fail(e);
+  }
+
+  /**
+   * Copy properties the way they come off the wire, headers are a fresh mutable map and string
+   * values arrive as {@link com.rabbitmq.client.LongString}
+   */
+  private static BasicProperties wire(final BasicProperties properties) {
+    if (properties.getHeaders() == null) {
+      return properties;
+    }
+    try {
+      final DataInputStream in = properties.toFrame(0, 0).getInputStream();
+      // class id precedes the content header
+      in.readShort();
+      return new BasicProperties(in);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static ConfirmListener confirmListener(final ConfirmCallback ack,
+      final ConfirmCallback nack) {
+    return new ConfirmListener() {
+      @Override
+      public void handleAck(final long deliveryTag, final boolean multiple) throws IOException {
+        ack.handle(deliveryTag, multiple);
+      }
+
+      @Override
+      public void handleNack(final long deliveryTag, final boolean multiple) throws IOException {
+        nack.handle(deliveryTag, multiple);
+      }
+    };
+  }
+
+  private static ReturnListener returnListener(final ReturnCallback callback) {
+    return (replyCode, replyText, exchange, routingKey, properties, body) -> callback
+        .handle(new Return(replyCode, replyText, exchange, routingKey, properties, body));
+  }
+
+  private interface Task {
+
+    void run() throws Exception;
+  }
+
+  private static final class Unacked {
+
+    // null for messages fetched with basic.get
+    private final BrokerConsumer consumer;
+
+    private final BrokerQueue queue;
+
+    private final BrokerMessage message;
+
+    private Unacked(final BrokerConsumer consumer, final BrokerQueue queue,
+        final BrokerMessage message) {
+      this.consumer = consumer;
+      this.queue = queue;
+      this.message = message;
+    }
+  }
+
+  /**
+   * Consumer of the functional {@code basicConsume} variants
+   */
+  private static final class CallbackConsumer implements Consumer {
+
+    private final DeliverCallback deliver;
+
+    private final CancelCallback cancel;
+
+    private final ConsumerShutdownSignalCallback shutdown;
+
+    private CallbackConsumer(final DeliverCallback deliver, final CancelCallback cancel,
+        final ConsumerShutdownSignalCallback shutdown) {
+      this.deliver = deliver;
+      this.cancel = cancel;
+      this.shutdown = shutdown;
+    }
+
+    @Override
+    public void handleConsumeOk(final String consumerTag) {
+      // no callback
+    }
+
+    @Override
+    public void handleCancelOk(final String consumerTag) {
+      // no callback
+    }
+
+    @Override
+    public void handleCancel(final String consumerTag) throws IOException {
+      if (cancel != null) {
+        cancel.handle(consumerTag);
+      }
+    }
+
+    @Override
+    public void handleShutdownSignal(final String consumerTag,
+        final ShutdownSignalException sig) {
+      if (shutdown != null) {
+        shutdown.handleShutdownSignal(consumerTag, sig);
+      }
+    }
+
+    @Override
+    public void handleRecoverOk(final String consumerTag) {
+      // no callback
+    }
+
+    @Override
+    public void handleDelivery(final String consumerTag, final Envelope envelope,
+        final BasicProperties properties, final byte[] body) throws IOException {
+      if (deliver != null) {
+        deliver.handle(consumerTag, new Delivery(envelope, properties, body));
+      }
+    }
+  }
+}
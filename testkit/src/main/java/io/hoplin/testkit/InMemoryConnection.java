@@ -0,0 +1,298 @@
+package io.hoplin.testkit;
+
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.BlockedCallback;
+import com.rabbitmq.client.BlockedListener;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import com.rabbitmq.client.UnblockedCallback;
+import com.rabbitmq.client.impl.AMQImpl;
+import com.rabbitmq.client.impl.DefaultExceptionHandler;
+import io.hoplin.RabbitMQOptions;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link Connection} to the {@link InMemoryBroker}. Confirms, returns, blocked notifications and
+ * shutdown listeners run on a single thread per connection, like the I/O thread of a network
+ * connection.
+ */
+final class InMemoryConnection implements InvocationHandler {
+
+  private static final Logger log = LoggerFactory.getLogger(InMemoryConnection.class);
+
+  private static final int DEFAULT_CHANNEL_MAX = 2047;
+
+  private final InMemoryBroker broker;
+
+  private final int number;
+
+  private final Map<String, Object> clientProperties;
+
+  private final int channelMax;
+
+  private final Connection proxy;
+
+  private final Map<Integer, InMemoryChannel> channels = new ConcurrentHashMap<>();
+
+  private final List<ShutdownListener> shutdownListeners = new CopyOnWriteArrayList<>();
+
+  private final List<BlockedListener> blockedListeners = new CopyOnWriteArrayList<>();
+
+  private final ExecutorService callbacks;
+
+  private volatile ShutdownSignalException closeReason;
+
+  private volatile String id;
+
+  InMemoryConnection(final InMemoryBroker broker, final int number,
+      final RabbitMQOptions options) {
+    this.broker = broker;
+    this.number = number;
+    final Map<String, Object> properties = options.getClientProperties();
+    this.clientProperties = properties == null ? Collections.emptyMap()
+        : Collections.unmodifiableMap(new HashMap<>(properties));
+    this.channelMax = options.getRequestedChannelMax() > 0
+        ? Math.min(options.getRequestedChannelMax(), DEFAULT_CHANNEL_MAX) : DEFAULT_CHANNEL_MAX;
+    this.callbacks = Executors.newSingleThreadExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "in-memory-broker-connection-" + number);
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.proxy = (Connection) Proxy.newProxyInstance(InMemoryConnection.class.getClassLoader(),
+        new Class<?>[]{Connection.class}, this);
+  }
+
+  Connection getProxy() {
+    return proxy;
+  }
+
+  InMemoryBroker getBroker() {
+    return broker;
+  }
+
+  int getNumber() {
+    return number;
+  }
+
+  boolean isOpen() {
+    return closeReason == null;
+  }
+
+  /**
+   * Run callback on the connection thread
+   */
+  void callback(final Runnable task) {
+    try {
+      callbacks.execute(() -> {
+        try {
+          task.run();
+        } catch (final Exception e) {
+          log.warn("Callback failed on connection #{}", number, e);
+        }
+      });
+    } catch (final RejectedExecutionException e) {
+      // connection closed, nothing to notify
+    }
+  }
+
+  void blocked(final String reason) {
+    callback(() -> {
+      for (final BlockedListener listener : blockedListeners) {
+        try {
+          listener.handleBlocked(reason);
+        } catch (final IOException e) {
+          log.warn("Blocked listener failed", e);
+        }
+      }
+    });
+  }
+
+  void unblocked() {
+    callback(() -> {
+      for (final BlockedListener listener : blockedListeners) {
+        try {
+          listener.handleUnblocked();
+        } catch (final IOException e) {
+          log.warn("Unblocked listener failed", e);
+        }
+      }
+    });
+  }
+
+  void channelClosed(final InMemoryChannel channel) {
+    channels.remove(channel.getNumber(), channel);
+  }
+
+  /**
+   * Close the connection as the broker, e.g. on restart
+   */
+  void forceClose() {
+    close(new ShutdownSignalException(true, false,
+        new AMQImpl.Connection.Close(320, "CONNECTION_FORCED - broker forced connection closure",
+            0, 0), proxy));
+  }
+
+  private void close(final ShutdownSignalException reason) {
+    synchronized (this) {
+      if (closeReason != null) {
+        return;
+      }
+      closeReason = reason;
+    }
+
+    for (final InMemoryChannel channel : new ArrayList<>(channels.values())) {
+      channel.connectionClosed(reason);
+    }
+    channels.clear();
+    broker.closed(this);
+
+    callback(() -> {
+      for (final ShutdownListener listener : shutdownListeners) {
+        listener.shutdownCompleted(reason);
+      }
+    });
+    callbacks.shutdown();
+  }
+
+  private Channel createChannel(final int requested) {
+    ensureOpen();
+    if (requested > 0) {
+      if (requested > channelMax) {
+        return null;
+      }
+      final InMemoryChannel channel = new InMemoryChannel(this, requested);
+      return channels.putIfAbsent(requested, channel) == null ? channel.getProxy() : null;
+    }
+    for (int i = 1; i <= channelMax; ++i) {
+      final InMemoryChannel channel = new InMemoryChannel(this, i);
+      if (channels.putIfAbsent(i, channel) == null) {
+        return channel.getProxy();
+      }
+    }
+    return null;
+  }
+
+  private void ensureOpen() {
+    final ShutdownSignalException reason = closeReason;
+    if (reason != null) {
+      throw new AlreadyClosedException(reason);
+    }
+  }
+
+  @Override
+  public Object invoke(final Object proxy, final Method method, final Object[] args)
+      throws IOException {
+    final String name = method.getName();
+    final int arity = args == null ? 0 : args.length;
+    switch (name) {
+      case "createChannel":
+        return createChannel(arity == 0 ? 0 : (Integer) args[0]);
+      case "openChannel":
+        return Optional.ofNullable(createChannel(arity == 0 ? 0 : (Integer) args[0]));
+      case "close":
+      case "abort":
+        final int code = arity == 0 || !(args[0] instanceof Integer) ? 200 : (Integer) args[0];
+        final String text = arity > 1 && args[1] instanceof String ? (String) args[1] : "OK";
+        if ("close".equals(name)) {
+          ensureOpen();
+        }
+        close(new ShutdownSignalException(true, true,
+            new AMQImpl.Connection.Close(code, text, 0, 0), proxy));
+        return null;
+      case "isOpen":
+        return isOpen();
+      case "getCloseReason":
+        return closeReason;
+      case "addShutdownListener":
+        final ShutdownListener listener = (ShutdownListener) args[0];
+        final ShutdownSignalException reason = closeReason;
+        if (reason != null) {
+          listener.shutdownCompleted(reason);
+        } else {
+          shutdownListeners.add(listener);
+        }
+        return null;
+      case "removeShutdownListener":
+        shutdownListeners.remove(args[0]);
+        return null;
+      case "notifyListeners":
+        return null;
+      case "addBlockedListener":
+        final BlockedListener blocked = arity == 1 ? (BlockedListener) args[0]
+            : blockedListener((BlockedCallback) args[0], (UnblockedCallback) args[1]);
+        blockedListeners.add(blocked);
+        return arity == 1 ? null : blocked;
+      case "removeBlockedListener":
+        return blockedListeners.remove(args[0]);
+      case "clearBlockedListeners":
+        blockedListeners.clear();
+        return null;
+      case "getAddress":
+        return InetAddress.getLoopbackAddress();
+      case "getPort":
+        return 0;
+      case "getChannelMax":
+        return channelMax;
+      case "getFrameMax":
+      case "getHeartbeat":
+        return 0;
+      case "getClientProperties":
+        return clientProperties;
+      case "getClientProvidedName":
+        final Object provided = clientProperties.get("connection_name");
+        return provided == null ? null : provided.toString();
+      case "getServerProperties":
+        return Collections.singletonMap("product", "hoplin in-memory broker");
+      case "getExceptionHandler":
+        return new DefaultExceptionHandler();
+      case "getId":
+        return id;
+      case "setId":
+        id = (String) args[0];
+        return null;
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "equals":
+        return proxy == args[0];
+      case "toString":
+        return "InMemoryConnection#" + number;
+      default:
+        throw new UnsupportedOperationException(
+            "Not supported by the in-memory broker : Connection." + name);
+    }
+  }
+
+  private static BlockedListener blockedListener(final BlockedCallback blocked,
+      final UnblockedCallback unblocked) {
+    return new BlockedListener() {
+      @Override
+      public void handleBlocked(final String reason) throws IOException {
+        blocked.handle(reason);
+      }
+
+      @Override
+      public void handleUnblocked() throws IOException {
+        unblocked.handle();
+      }
+    };
+  }
+}
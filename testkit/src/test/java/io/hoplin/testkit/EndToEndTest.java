@@ -0,0 +1,184 @@
+package io.hoplin.testkit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.hoplin.Binding;
+import io.hoplin.BindingBuilder;
+import io.hoplin.DirectExchange;
+import io.hoplin.DirectExchangeClient;
+import io.hoplin.ExchangeClient;
+import io.hoplin.MessageContext;
+import io.hoplin.QueueOptions;
+import io.hoplin.RabbitMQClient;
+import io.hoplin.Reply;
+import io.hoplin.batch.BatchClient;
+import io.hoplin.batch.DefaultBatchClient;
+import io.hoplin.metrics.QueueMetrics;
+import io.hoplin.rpc.DefaultRpcClient;
+import io.hoplin.rpc.DefaultRpcServer;
+import io.hoplin.rpc.RpcClient;
+import io.hoplin.rpc.RpcServer;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class EndToEndTest {
+
+  private final InMemoryBroker broker = new InMemoryBroker();
+
+  @AfterEach
+  public void tearDown() {
+    broker.closeConnections();
+  }
+
+  @Test
+  public void publishSubscribe() throws InterruptedException {
+    final ExchangeClient client = DirectExchangeClient.create(broker.options(),
+        binding("e2e.events", "e2e.exchange"));
+    final int count = 1_000;
+    final CountDownLatch received = new CountDownLatch(count);
+    client.subscribe("test", Event.class, (Event event) -> received.countDown());
+
+    for (int i = 0; i < count; ++i) {
+      client.publish(new Event("event-" + i));
+    }
+
+    assertTrue(received.await(30, TimeUnit.SECONDS));
+    assertEquals(count, broker.getPublishedCount());
+  }
+
+  @Test
+  public void requestResponse() {
+    final Binding binding = binding("e2e.rpc", "e2e.rpc.exchange");
+    final RpcServer<Event, Event> server = DefaultRpcServer.create(broker.options(), binding);
+    server.respondAsync(request -> new Event("re: " + request.getName()));
+    final RpcClient<Event, Event> client = DefaultRpcClient.create(broker.options(), binding);
+
+    for (int i = 0; i < 10; ++i) {
+      final Event response = client.request(new Event("ping-" + i), Duration.ofSeconds(10));
+      assertEquals("re: ping-" + i, response.getName());
+    }
+    client.close();
+    server.close();
+  }
+
+  @Test
+  public void batch() throws Exception {
+    final ExchangeClient worker = DirectExchangeClient.create(broker.options(), "e2e.batch");
+    worker.subscribe("worker", Event.class,
+        (final Event event, final MessageContext context) -> Reply.with(event));
+
+    final BatchClient client = new DefaultBatchClient(broker.options(),
+        binding("e2e.batch.jobs", "e2e.batch"));
+    final CountDownLatch completed = new CountDownLatch(1);
+    client.startNew(context -> {
+      for (int i = 0; i < 5; ++i) {
+        final int index = i;
+        context.enqueue(() -> new Event("job-" + index));
+      }
+    }).whenComplete((context, throwable) -> completed.countDown());
+
+    assertTrue(completed.await(30, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void adaptivePrefetch() throws Exception {
+    final RabbitMQClient client = RabbitMQClient.create(broker.options());
+    client.queueDeclare("e2e.adaptive", false, false, false);
+    final int count = 200;
+    final CountDownLatch received = new CountDownLatch(count);
+    client.basicConsume("e2e.adaptive", QueueOptions.of(false)
+            .setConcurrency(2)
+            .setAdaptivePrefetch(1, 32)
+            .setPrefetchTuneInterval(20), Event.class,
+        (Event event) -> received.countDown());
+
+    for (int i = 0; i < count; ++i) {
+      client.basicPublish("", "e2e.adaptive", new Event("event-" + i));
+    }
+
+    assertTrue(received.await(30, TimeUnit.SECONDS));
+    final int prefetch = QueueMetrics.Factory.getInstance("e2e.adaptive").getPrefetchCount();
+    assertTrue(prefetch >= 1 && prefetch <= 32);
+    client.disconnect();
+  }
+
+  @Test
+  public void consumersPerQueue() throws Exception {
+    final RabbitMQClient client = RabbitMQClient.create(broker.options());
+    client.queueDeclare("e2e.parallel", false, false, false);
+    client.queueDeclare("e2e.other", false, false, false);
+    final int count = 300;
+    final CountDownLatch received = new CountDownLatch(count);
+    final CountDownLatch other = new CountDownLatch(1);
+    client.basicConsume("e2e.parallel", QueueOptions.of(false).setConsumerCount(3), Event.class,
+        (Event event) -> received.countDown());
+    client.basicConsume("e2e.other", QueueOptions.of(false), Event.class,
+        (Event event) -> other.countDown());
+
+    assertEquals(3, broker.getConsumerCount("e2e.parallel"));
+    assertEquals(1, broker.getConsumerCount("e2e.other"));
+    for (int i = 0; i < count; ++i) {
+      client.basicPublish("", "e2e.parallel", new Event("event-" + i));
+    }
+    client.basicPublish("", "e2e.other", new Event("other"));
+
+    assertTrue(received.await(30, TimeUnit.SECONDS));
+    assertTrue(other.await(30, TimeUnit.SECONDS));
+    client.disconnect();
+    assertEquals(0, broker.getConsumerCount("e2e.parallel"));
+  }
+
+  @Test
+  public void handlersAddedWhileConsuming() throws Exception {
+    final RabbitMQClient client = RabbitMQClient.create(broker.options());
+    client.queueDeclare("e2e.handlers", false, false, false);
+    final CountDownLatch first = new CountDownLatch(2);
+    final CountDownLatch second = new CountDownLatch(1);
+    final CountDownLatch alerts = new CountDownLatch(1);
+    client.basicConsume("e2e.handlers", Event.class, (Event event) -> first.countDown());
+    client.basicConsume("e2e.handlers", Alert.class, (Alert alert) -> alerts.countDown());
+    client.basicPublish("", "e2e.handlers", new Event("before"));
+
+    client.basicConsume("e2e.handlers", Event.class, (Event event) -> second.countDown());
+    client.basicPublish("", "e2e.handlers", new Event("after"));
+
+    assertTrue(first.await(30, TimeUnit.SECONDS));
+    assertTrue(second.await(30, TimeUnit.SECONDS));
+    // handlers of a subclass never see the base type
+    assertEquals(1, alerts.getCount());
+    client.disconnect();
+  }
+
+  private static Binding binding(final String queue, final String exchange) {
+    return BindingBuilder
+        .bind(queue)
+        .to(new DirectExchange(exchange))
+        .build();
+  }
+
+  public static class Event {
+
+    private String name;
+
+    public Event() {
+    }
+
+    Event(final String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+  }
+
+  public static class Alert extends Event {
+
+    public Alert() {
+    }
+  }
+}
@@ -0,0 +1,214 @@
+package io.hoplin.testkit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.GetResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class InMemoryBrokerTest {
+
+  private final InMemoryBroker broker = new InMemoryBroker();
+
+  private final Connection connection = broker.newConnection(broker.options());
+
+  @AfterEach
+  public void tearDown() {
+    broker.closeConnections();
+  }
+
+  @Test
+  public void topicAndHeadersRouting() throws IOException {
+    final Channel channel = connection.createChannel();
+    channel.exchangeDeclare("logs", "topic");
+    channel.queueDeclare("errors", false, false, false, null);
+    channel.queueBind("errors", "logs", "*.error.#");
+    channel.basicPublish("logs", "app.error", null, bytes("a"));
+    channel.basicPublish("logs", "app.error.db.primary", null, bytes("b"));
+    channel.basicPublish("logs", "app.info", null, bytes("c"));
+    assertEquals(2, broker.getMessageCount("errors"));
+    assertEquals(1, broker.getUnroutableCount());
+
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put("x-match", "all");
+    arguments.put("level", "warn");
+    channel.exchangeDeclare("headers", "headers");
+    channel.queueDeclare("warnings", false, false, false, null);
+    channel.queueBind("warnings", "headers", "", arguments);
+    channel.basicPublish("headers", "", props("level", "warn"), bytes("d"));
+    channel.basicPublish("headers", "", props("level", "info"), bytes("e"));
+
+    final GetResponse response = channel.basicGet("warnings", true);
+    assertEquals("d", new String(response.getBody(), StandardCharsets.UTF_8));
+    assertNull(channel.basicGet("warnings", true));
+  }
+
+  @Test
+  public void prefetchLimitsUnackedDeliveries() throws Exception {
+    final Channel channel = connection.createChannel();
+    channel.queueDeclare("work", false, false, false, null);
+    channel.basicQos(2);
+    final BlockingQueue<Long> tags = new ArrayBlockingQueue<>(10);
+    channel.basicConsume("work", false,
+        (tag, delivery) -> tags.add(delivery.getEnvelope().getDeliveryTag()), tag -> {
+        });
+    for (int i = 0; i < 5; ++i) {
+      channel.basicPublish("", "work", null, bytes("m" + i));
+    }
+
+    assertNotNull(tags.poll(5, TimeUnit.SECONDS));
+    final long second = tags.poll(5, TimeUnit.SECONDS);
+    assertNull(tags.poll(100, TimeUnit.MILLISECONDS));
+    assertEquals(3, broker.getMessageCount("work"));
+
+    channel.basicAck(second, true);
+    assertNotNull(tags.poll(5, TimeUnit.SECONDS));
+    assertNotNull(tags.poll(5, TimeUnit.SECONDS));
+    assertEquals(1, broker.getMessageCount("work"));
+  }
+
+  @Test
+  public void globalPrefetchChangesRunningConsumer() throws Exception {
+    final Channel channel = connection.createChannel();
+    channel.queueDeclare("work", false, false, false, null);
+    channel.basicQos(1, true);
+    final BlockingQueue<Long> tags = new ArrayBlockingQueue<>(10);
+    channel.basicConsume("work", false,
+        (tag, delivery) -> tags.add(delivery.getEnvelope().getDeliveryTag()), tag -> {
+        });
+    for (int i = 0; i < 5; ++i) {
+      channel.basicPublish("", "work", null, bytes("m" + i));
+    }
+
+    assertNotNull(tags.poll(5, TimeUnit.SECONDS));
+    assertNull(tags.poll(100, TimeUnit.MILLISECONDS));
+
+    channel.basicQos(3, true);
+    assertNotNull(tags.poll(5, TimeUnit.SECONDS));
+    assertNotNull(tags.poll(5, TimeUnit.SECONDS));
+    assertNull(tags.poll(100, TimeUnit.MILLISECONDS));
+    assertEquals(2, broker.getMessageCount("work"));
+  }
+
+  @Test
+  public void closedChannelRequeuesUnacked() throws Exception {
+    final Channel channel = connection.createChannel();
+    channel.queueDeclare("work", false, false, false, null);
+    final CountDownLatch delivered = new CountDownLatch(1);
+    channel.basicConsume("work", false, (tag, delivery) -> delivered.countDown(), tag -> {
+    });
+    channel.basicPublish("", "work", null, bytes("m"));
+    assertTrue(delivered.await(5, TimeUnit.SECONDS));
+    channel.close();
+
+    final GetResponse response = connection.createChannel().basicGet("work", true);
+    assertTrue(response.getEnvelope().isRedeliver());
+  }
+
+  @Test
+  public void rejectedMessageIsDeadLettered() throws Exception {
+    final Channel channel = connection.createChannel();
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put("x-dead-letter-exchange", "amq.direct");
+    arguments.put("x-dead-letter-routing-key", "dead");
+    channel.queueDeclare("work", false, false, false, arguments);
+    channel.queueDeclare("dead", false, false, false, null);
+    channel.queueBind("dead", "amq.direct", "dead");
+    channel.basicPublish("", "work", null, bytes("m"));
+
+    final GetResponse response = channel.basicGet("work", false);
+    channel.basicReject(response.getEnvelope().getDeliveryTag(), false);
+
+    final GetResponse dead = channel.basicGet("dead", true);
+    assertNotNull(dead.getProps().getHeaders().get("x-death"));
+  }
+
+  @Test
+  public void unknownDeliveryTagClosesChannel() throws Exception {
+    final Channel channel = connection.createChannel();
+    final CountDownLatch closed = new CountDownLatch(1);
+    channel.addShutdownListener(cause -> closed.countDown());
+    channel.basicAck(42, false);
+
+    assertTrue(closed.await(5, TimeUnit.SECONDS));
+    assertFalse(channel.isOpen());
+    assertTrue(connection.isOpen());
+  }
+
+  @Test
+  public void missingQueueFailsDeclare() throws Exception {
+    final Channel channel = connection.createChannel();
+    assertThrows(IOException.class, () -> channel.queueDeclarePassive("missing"));
+    assertFalse(channel.isOpen());
+  }
+
+  @Test
+  public void confirmsAndReturns() throws Exception {
+    final Channel channel = connection.createChannel();
+    channel.confirmSelect();
+    final List<Long> acks = new CopyOnWriteArrayList<>();
+    final List<String> returns = new CopyOnWriteArrayList<>();
+    channel.addConfirmListener((tag, multiple) -> acks.add(tag), (tag, multiple) -> {
+    });
+    channel.addReturnListener(returned -> returns.add(returned.getReplyText()));
+
+    channel.queueDeclare("work", false, false, false, null);
+    channel.basicPublish("", "work", true, null, bytes("a"));
+    channel.basicPublish("", "nowhere", true, null, bytes("b"));
+    channel.waitForConfirmsOrDie(5_000);
+
+    assertEquals(3, channel.getNextPublishSeqNo());
+    assertEquals(2, acks.size());
+    assertEquals(1, returns.size());
+  }
+
+  @Test
+  public void directReplyTo() throws Exception {
+    final Channel client = connection.createChannel();
+    final Channel server = broker.newConnection(broker.options()).createChannel();
+    server.queueDeclare("requests", false, false, false, null);
+    server.basicConsume("requests", true, (tag, delivery) -> server
+        .basicPublish("", delivery.getProperties().getReplyTo(), null,
+            delivery.getBody()), tag -> {
+    });
+
+    final BlockingQueue<String> replies = new ArrayBlockingQueue<>(1);
+    client.basicConsume(InMemoryBroker.DIRECT_REPLY_TO, true,
+        (tag, delivery) -> replies.add(new String(delivery.getBody(), StandardCharsets.UTF_8)),
+        tag -> {
+        });
+    client.basicPublish("", "requests",
+        new BasicProperties.Builder().replyTo(InMemoryBroker.DIRECT_REPLY_TO).build(),
+        bytes("ping"));
+
+    assertEquals("ping", replies.poll(5, TimeUnit.SECONDS));
+  }
+
+  private static BasicProperties props(final String header, final String value) {
+    final Map<String, Object> headers = new HashMap<>();
+    headers.put(header, value);
+    return new BasicProperties.Builder().headers(headers).build();
+  }
+
+  private static byte[] bytes(final String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}